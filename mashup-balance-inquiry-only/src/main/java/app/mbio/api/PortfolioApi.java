@@ -0,0 +1,19 @@
+package app.mbio.api;
+
+import io.smallrye.mutiny.Uni;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
+import io.quarkus.oidc.token.propagation.common.AccessToken;
+
+import app.mbio.dto.BalanceResponse;
+
+// 普通・定期＋合計を 1 往復で取る（mstd 側で並行取得・集計済み）
+@Path("/api/portfolio")
+@RegisterRestClient(configKey = "mstd")
+@Produces(MediaType.APPLICATION_JSON)
+@AccessToken
+public interface PortfolioApi {
+    @GET
+    Uni<BalanceResponse> byOwner(@QueryParam("owner") String owner);
+}
@@ -1,6 +1,7 @@
 package app.mbio.api;
 
 // import java.util.List;
+import io.smallrye.mutiny.Uni;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 
@@ -20,5 +21,6 @@ import io.quarkus.oidc.token.propagation.common.AccessToken;
 public interface SavingsApi {
     @GET
     @Path("/accounts")
-    List<SavingsAccountDto> byOwner(@QueryParam("owner") String owner);
+    // 非同期（Uni）で返す。BalanceResource が 2 本を並行に投げるため
+    Uni<List<SavingsAccountDto>> byOwner(@QueryParam("owner") String owner);
 }
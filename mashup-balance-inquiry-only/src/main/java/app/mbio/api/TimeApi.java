@@ -2,6 +2,7 @@
 package app.mbio.api;
 
 import java.util.List;
+import io.smallrye.mutiny.Uni;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
@@ -15,6 +16,7 @@ import app.mbio.dto.TimeDepositDto;
 @Produces(MediaType.APPLICATION_JSON)
 @AccessToken   // ← ここを付与
 public interface TimeApi {
+    // 非同期（Uni）で返す。BalanceResource が 2 本を並行に投げるため
     @GET @Path("/accounts")
-    List<TimeDepositDto> byOwner(@QueryParam("owner") String owner);
+    Uni<List<TimeDepositDto>> byOwner(@QueryParam("owner") String owner);
 }
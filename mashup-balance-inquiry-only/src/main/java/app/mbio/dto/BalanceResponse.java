@@ -1,13 +1,23 @@
 package app.mbio.dto;
 
+import java.math.BigDecimal;
 import java.util.List;
 
+// mstd の /api/portfolio の応答をそのまま受けられる形（合計値は mstd 側で計算済み）
 public record BalanceResponse(
     String owner,
     List<SavingsAccountDto> savings,
-    List<TimeDepositDto> timeDeposits
+    List<TimeDepositDto> timeDeposits,
+    BigDecimal savingsTotal,
+    BigDecimal principalTotal,
+    BigDecimal projectedPayoutTotal
 ) {
+    // 旧経路（/api/savings と /api/deposits を個別に呼ぶ）用。受取見込みは計算できないので null
     public static BalanceResponse of(String owner, List<SavingsAccountDto> s, List<TimeDepositDto> t) {
-        return new BalanceResponse(owner, s, t);
+        BigDecimal savingsTotal = BigDecimal.ZERO;
+        for (SavingsAccountDto a : s) if (a.balance != null) savingsTotal = savingsTotal.add(a.balance);
+        BigDecimal principalTotal = BigDecimal.ZERO;
+        for (TimeDepositDto d : t) if (d.principal != null) principalTotal = principalTotal.add(d.principal);
+        return new BalanceResponse(owner, s, t, savingsTotal, principalTotal, null);
     }
 }
@@ -1,18 +1,25 @@
 package app.mbio.resource;
 
+import io.quarkus.security.identity.SecurityIdentity;
+import io.smallrye.mutiny.Uni;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.jwt.JsonWebToken;
 import org.eclipse.microprofile.rest.client.inject.RestClient;
 
+import app.mbio.api.PortfolioApi;
 import app.mbio.api.SavingsApi;
 import app.mbio.api.TimeApi;
 import app.mbio.dto.BalanceResponse;
-import app.mbio.dto.SavingsAccountDto;
-import app.mbio.dto.TimeDepositDto;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 // ★ 追加：これを import
 import org.jboss.resteasy.reactive.ClientWebApplicationException;
@@ -21,27 +28,69 @@ import org.jboss.resteasy.reactive.ClientWebApplicationException;
 @Produces(MediaType.APPLICATION_JSON)
 public class BalanceResource {
 
+    @Inject @RestClient PortfolioApi portfolio;
     @Inject @RestClient SavingsApi savings;
     @Inject @RestClient TimeApi time;
 
+    // 下流 1 本あたりの待ち時間上限（超えたら 504）
+    @ConfigProperty(name = "mbio.leg-timeout", defaultValue = "3s")
+    Duration legTimeout;
+
+    @Inject JsonWebToken jwt;
+    @Inject SecurityIdentity identity;
+
+    // single-flight: 同じ (owner, トークンの sub) の照会が同時に来たら、下流への 1 本を共有する。
+    // ダッシュボードの一斉リフレッシュでも下流は owner × ユーザごとに同時 1 本。
+    // 結果は保持しない（終わった時点で外すので、次のリクエストは新しく取りに行く）。失敗も共有された分だけに返る
+    private final ConcurrentMap<FlightKey, Uni<BalanceResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private record FlightKey(String owner, String subject) {}
+
     @GET @Path("/{owner}")
-    public BalanceResponse byOwner(@PathParam("owner") String owner) {
-        List<SavingsAccountDto> s;
-        try {
-            s = savings.byOwner(owner);
-        } catch (ClientWebApplicationException ex) {
-            int st = ex.getResponse() != null ? ex.getResponse().getStatus() : 0;
-            if (st == 404 || st == 405) s = Collections.emptyList(); else throw ex;
-        }
-
-        List<TimeDepositDto> t;
-        try {
-            t = time.byOwner(owner);
-        } catch (ClientWebApplicationException ex) {
-            int st = ex.getResponse() != null ? ex.getResponse().getStatus() : 0;
-            if (st == 404 || st == 405) t = Collections.emptyList(); else throw ex;
-        }
-
-        return BalanceResponse.of(owner, s, t);
+    public Uni<BalanceResponse> byOwner(@PathParam("owner") String owner) {
+        FlightKey key = new FlightKey(owner, subject());
+        return Uni.createFrom().deferred(() -> inFlight.computeIfAbsent(key, k -> fetch(owner)
+                .onTermination().invoke(() -> inFlight.remove(k))
+                .memoize().indefinitely()));
+    }
+
+    // sub が取れないトークンはユーザ名で分ける（別ユーザの認可結果を共有しないため）
+    private String subject() {
+        String sub = jwt.getSubject();
+        if (sub != null) return sub;
+        return identity.isAnonymous() ? "" : identity.getPrincipal().getName();
+    }
+
+    // mstd の /api/portfolio を 1 回呼ぶだけ（並行取得・合計は mstd 側）。
+    // mstd が古く /api/portfolio を持たない（404/405）ときだけ、従来の 2 本並行にフォールバック
+    private Uni<BalanceResponse> fetch(String owner) {
+        return portfolio.byOwner(owner)
+                .ifNoItem().after(legTimeout)
+                .failWith(() -> new WebApplicationException("upstream timeout", Response.Status.GATEWAY_TIMEOUT))
+                .onFailure(BalanceResource::isMissingEndpoint)
+                .recoverWithUni(() -> fanOut(owner));
+    }
+
+    // 普通・定期の 2 本を同時に投げて両方そろったら返す（レイテンシは和ではなく遅い方）
+    private Uni<BalanceResponse> fanOut(String owner) {
+        return Uni.combine().all()
+                .unis(leg(savings.byOwner(owner)), leg(time.byOwner(owner)))
+                .asTuple()
+                .onItem().transform(t -> BalanceResponse.of(owner, t.getItem1(), t.getItem2()));
+    }
+
+    private <T> Uni<List<T>> leg(Uni<List<T>> call) {
+        return call
+                .ifNoItem().after(legTimeout)
+                .failWith(() -> new WebApplicationException("upstream timeout", Response.Status.GATEWAY_TIMEOUT))
+                // 下流に該当 API が無い（404/405）ときは空扱い（従来どおり）
+                .onFailure(BalanceResource::isMissingEndpoint)
+                .recoverWithItem(Collections.emptyList());
+    }
+
+    private static boolean isMissingEndpoint(Throwable t) {
+        if (!(t instanceof ClientWebApplicationException ex)) return false;
+        int st = ex.getResponse() != null ? ex.getResponse().getStatus() : 0;
+        return st == 404 || st == 405;
     }
 }
@@ -0,0 +1,33 @@
+package app.mstd.api;
+
+import java.util.Map;
+
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.faulttolerance.exceptions.BulkheadException;
+import org.eclipse.microprofile.faulttolerance.exceptions.CircuitBreakerOpenException;
+import org.jboss.resteasy.reactive.RestResponse;
+import org.jboss.resteasy.reactive.server.ServerExceptionMapper;
+
+/**
+ * 下流保護（バルクヘッド満杯・ブレーカ open）で呼ばなかったときは 503 + Retry-After で即返す。
+ * 下流を待たずに返すので、他方の下流（定期 / 普通）のルートはワーカースレッドを取られずに動き続ける。
+ */
+public class FaultToleranceExceptionMappers {
+
+    @ServerExceptionMapper
+    public RestResponse<Map<String, String>> bulkheadFull(BulkheadException e) {
+        return unavailable("downstream busy", 1);
+    }
+
+    @ServerExceptionMapper
+    public RestResponse<Map<String, String>> circuitOpen(CircuitBreakerOpenException e) {
+        return unavailable("downstream unavailable", 5);
+    }
+
+    private static RestResponse<Map<String, String>> unavailable(String error, int retryAfterSeconds) {
+        return RestResponse.ResponseBuilder
+                .create(Response.Status.SERVICE_UNAVAILABLE, Map.of("error", error))
+                .header("Retry-After", retryAfterSeconds)
+                .build();
+    }
+}
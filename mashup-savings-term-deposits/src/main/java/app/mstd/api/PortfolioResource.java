@@ -0,0 +1,31 @@
+package app.mstd.api;
+
+import io.quarkus.security.Authenticated;
+import io.smallrye.mutiny.Uni;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+
+import app.mstd.dto.Portfolio;
+import app.mstd.service.PortfolioService;
+
+/**
+ * 普通・定期をまとめた残高照会: GET /api/portfolio?owner=...
+ * mashup-balance-inquiry-only はこれ 1 本で照会する（/api/savings と /api/deposits の 2 往復を 1 往復に）。
+ */
+@Path("/api/portfolio")
+@Produces(MediaType.APPLICATION_JSON)
+@Authenticated
+public class PortfolioResource {
+
+    @Inject
+    PortfolioService portfolio;
+
+    @GET
+    public Uni<Portfolio> byOwner(@QueryParam("owner") String owner) {
+        if (owner == null || owner.isBlank()) {
+            throw new WebApplicationException("query param 'owner' is required", 400);
+        }
+        return portfolio.byOwner(owner);
+    }
+}
@@ -14,14 +14,17 @@ import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.rest.client.inject.RestClient;
 import org.jboss.resteasy.reactive.ClientWebApplicationException;
 
+import app.mstd.client.SavingsBatchClient;
 import app.mstd.client.SavingsServiceClient;
 import app.mstd.service.AccountQueryService;
+import app.mstd.service.HedgedReads;
+import app.mstd.service.ReadCache;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
-import java.util.List;
 // import java.util.Map;
 
 // import app.mstd.client.SavingsServiceClient;
@@ -32,15 +35,42 @@ import java.util.List;
 @Authenticated
 public class SavingsResource {
 
+    static final String NEXT_PAGE_TOKEN = "X-Next-Page-Token";
+
     @Inject
     @RestClient
     SavingsServiceClient savings;
 
+    @Inject
+    @RestClient
+    SavingsBatchClient batch;
+
+    @Inject
+    HedgedReads hedged;
+
+    @Inject
+    ReadCache cache;
+
     @GET
     @Path("/accounts/{id}")
     public Response getAccount(@PathParam("id") UUID id) {
         try {
-            return Response.ok(savings.get(id)).build();
+            return Response.ok(cache.get(ReadCache.Kind.SAVINGS_ACCOUNT, () -> hedged.get(() -> savings.get(id)), id)).build();
+        } catch (ClientWebApplicationException e) {
+            return forward(e);
+        }
+    }
+
+    // 複数口座の一括参照（下流の POST /accounts:batchGet に 1 回で渡す）
+    @POST
+    @Path("/accounts:batchGet")
+    public Response batchGet(Map<String, List<UUID>> req) {
+        List<UUID> ids = req == null ? null : req.get("ids");
+        if (ids == null || ids.isEmpty()) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(Map.of("error", "ids is required")).build();
+        }
+        try {
+            return Response.ok(hedged.get(() -> batch.batchGet(ids))).build();
         } catch (ClientWebApplicationException e) {
             return forward(e);
         }
@@ -50,7 +80,9 @@ public class SavingsResource {
     @Path("/accounts")
     public Response createAccount(Map<String, Object> req) {
         try {
-            return Response.ok(savings.create(req)).build();
+            var created = savings.create(req);
+            cache.savingsOwnerChanged(req.get("owner") instanceof String o ? o : null); // owner の一覧に新しい口座が出るように
+            return Response.ok(created).build();
         } catch (ClientWebApplicationException e) {
             return forward(e);
         }
@@ -60,7 +92,9 @@ public class SavingsResource {
     @Path("/accounts/{id}/deposit")
     public Response deposit(@PathParam("id") UUID id, Map<String, BigDecimal> req) {
         try {
-            return Response.ok(savings.deposit(id, req)).build();
+            var result = savings.deposit(id, req);
+            cache.savingsChanged(id);
+            return Response.ok(result).build();
         } catch (ClientWebApplicationException e) {
             return forward(e);
         }
@@ -70,7 +104,9 @@ public class SavingsResource {
     @Path("/accounts/{id}/withdraw")
     public Response withdraw(@PathParam("id") UUID id, Map<String, BigDecimal> req) {
         try {
-            return Response.ok(savings.withdraw(id, req)).build();
+            var result = savings.withdraw(id, req);
+            cache.savingsChanged(id);
+            return Response.ok(result).build();
         } catch (ClientWebApplicationException e) {
             return forward(e);
         }
@@ -94,12 +130,31 @@ public class SavingsResource {
     @Inject
     AccountQueryService accountQuery; // ← Service 経由（直で RestClient でもOK）
 
+    // limit / pageToken を付けるとキーセットページング（続きは X-Next-Page-Token ヘッダ）
     @GET
     @Path("/accounts")
-    public List<Map<String, Object>> accounts(@QueryParam("owner") String owner) {
+    public Response accounts(@QueryParam("owner") String owner,
+                             @QueryParam("limit") Integer limit,
+                             @QueryParam("pageToken") String pageToken) {
         if (owner == null || owner.isBlank()) {
             throw new WebApplicationException("query param 'owner' is required", 400);
         }
-        return accountQuery.listByOwner(owner);
+        if (limit == null && pageToken == null) {
+            return Response.ok(cache.get(ReadCache.Kind.SAVINGS_LIST, () -> accountQuery.listByOwner(owner), owner)).build();
+        }
+        try {
+            return page(cache.page(ReadCache.Kind.SAVINGS_LIST,
+                    () -> accountQuery.listByOwner(owner, limit, pageToken), owner, limit, pageToken));
+        } catch (ClientWebApplicationException e) {
+            return forward(e); // 壊れたトークンの 400 など
+        }
+    }
+
+    // 下流のページングを透過させる（本文は配列のまま、続きはヘッダ）
+    static Response page(ReadCache.Page p) {
+        var b = Response.ok(p.items());
+        String next = p.nextPageToken();
+        if (next != null) b.header(NEXT_PAGE_TOKEN, next);
+        return b.build();
     }
 }
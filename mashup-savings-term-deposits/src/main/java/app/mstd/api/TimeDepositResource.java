@@ -16,11 +16,12 @@ import org.jboss.resteasy.reactive.ClientWebApplicationException;
 
 // import app.mstd.client.SavingsServiceClient;
 import app.mstd.client.TimeDepositServiceClient;
+import app.mstd.service.HedgedReads;
+import app.mstd.service.ReadCache;
 
 import java.util.Map;
 import java.util.UUID;
 
-import java.util.List;
 // import java.util.Map;
 
 
@@ -35,14 +36,18 @@ public class TimeDepositResource {
     @RestClient
     TimeDepositServiceClient td;
 
-    
+    @Inject
+    HedgedReads hedged;
+
+    @Inject
+    ReadCache cache;
 
     // 定期預金の取得: GET /api/deposits/{id}
     @GET
     @Path("/{id}")
     public Response get(@PathParam("id") UUID id) {
         try {
-            return Response.ok(td.get(id)).build();
+            return Response.ok(cache.get(ReadCache.Kind.DEPOSIT, () -> hedged.get(() -> td.get(id)), id)).build();
         } catch (ClientWebApplicationException e) {
             return forward(e);
         }
@@ -51,8 +56,24 @@ public class TimeDepositResource {
     // 定期預金の作成: POST /api/deposits
     @POST
     public Response create(Map<String, Object> req) {
+        // 下流で作成が済んでから解釈に失敗して 500 にならないよう、呼ぶ前に検証する
+        UUID from = null;
+        if (req.get("fromAccountId") != null) {
+            try {
+                from = UUID.fromString(req.get("fromAccountId").toString());
+            } catch (IllegalArgumentException e) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("fromAccountId must be a UUID").build();
+            }
+        }
         try {
-            return Response.ok(td.create(req)).build();
+            var created = td.create(req);
+            // 作成した定期の owner の定期一覧と、元手を引き落とした普通預金（その口座と、同じ owner の普通一覧）
+            String owner = req.get("owner") instanceof String o ? o : null;
+            cache.depositChanged(null, owner);
+            cache.savingsOwnerChanged(owner);
+            if (from != null) cache.savingsChanged(from);
+            return Response.ok(created).build();
         } catch (ClientWebApplicationException e) {
             return forward(e);
         }
@@ -69,7 +90,10 @@ public class TimeDepositResource {
                     .entity("toAccountId is required").build();
         }
         try {
-            return Response.ok(td.close(id, toAccountId, at)).build();
+            var result = td.close(id, toAccountId, at);
+            cache.depositChanged(id, null);
+            cache.savingsChanged(toAccountId); // 払出先の普通預金の残高も変わる
+            return Response.ok(result).build();
         } catch (ClientWebApplicationException e) {
             return forward(e);
         }
@@ -88,13 +112,23 @@ public class TimeDepositResource {
 
 
     // ★ === ここから、検索用 ===
-    // 検索：GET /api/deposits/accounts?owner=...
+    // 検索：GET /api/deposits/accounts?owner=...（limit / pageToken でキーセットページング）
     @GET
     @Path("/accounts")
-    public List<Map<String, Object>> accounts(@QueryParam("owner") String owner) {
+    public Response accounts(@QueryParam("owner") String owner,
+                             @QueryParam("limit") Integer limit,
+                             @QueryParam("pageToken") String pageToken) {
         if (owner == null || owner.isBlank()) {
             throw new WebApplicationException("query param 'owner' is required", 400);
         }
-        return td.listByOwner(owner); // 下流の GET /deposits/accounts に委譲
+        if (limit == null && pageToken == null) {
+            return Response.ok(cache.get(ReadCache.Kind.DEPOSIT_LIST, () -> hedged.get(() -> td.listByOwner(owner)), owner)).build(); // 下流の GET /deposits/accounts に委譲
+        }
+        try {
+            return SavingsResource.page(cache.page(ReadCache.Kind.DEPOSIT_LIST,
+                    () -> hedged.get(() -> td.listByOwner(owner, limit, pageToken)), owner, limit, pageToken));
+        } catch (ClientWebApplicationException e) {
+            return forward(e);
+        }
     }
 }
@@ -9,6 +9,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 
 import io.quarkus.oidc.AccessTokenCredential;
@@ -74,40 +75,73 @@ public class DebugResource {
     }
 
     // ★ 追加: owner一覧を集約して返す
+    //   下流は ETag 付きで返すので、前回の ETag を If-None-Match で送り 304 なら手元の結果を使う。
+    //   集約結果にも ETag を付け、フロントの If-None-Match が一致すれば 304 で本文を省く。
     @GET
     @Path("/owners")
-    public Uni<Response> owners() {
-        Uni<JsonArray> s = webClient.getAbs(SAVINGS_BASE + "/debug/owners")
-                .putHeader("Authorization", bearer())
-                .putHeader("Accept", MediaType.APPLICATION_JSON)
-                .send()
-                .onItem().transform(resp -> new JsonArray(resp.bodyAsString()))
-                .onFailure().recoverWithItem(new JsonArray()); // 片方死んでても空配列に
-
-        Uni<JsonArray> t = webClient.getAbs(TIME_DEPOSIT_BASE + "/debug/owners")
-                .putHeader("Authorization", bearer())
-                .putHeader("Accept", MediaType.APPLICATION_JSON)
-                .send()
-                .onItem().transform(resp -> new JsonArray(resp.bodyAsString()))
-                .onFailure().recoverWithItem(new JsonArray());
+    public Uni<Response> owners(@HeaderParam("If-None-Match") String ifNoneMatch) {
+        Uni<Owners> s = fetchOwners(SAVINGS_BASE + "/debug/owners", savingsOwners);
+        Uni<Owners> t = fetchOwners(TIME_DEPOSIT_BASE + "/debug/owners", timeDepositOwners);
 
         // 並列結合 → Setで重複排除 → ソート → JSON配列へ
         return Uni.combine().all().unis(s, t).asTuple()
                 .emitOn(Infrastructure.getDefaultExecutor()) // マージ処理をワーカで
-                .onItem().transform(tuple -> {
-                    Set<String> set = new LinkedHashSet<>();
-                    Stream.of(tuple.getItem1(), tuple.getItem2())
-                            .forEach(arr -> arr.stream()
-                                    .filter(Objects::nonNull)
-                                    .map(Object::toString)
-                                    .map(String::trim)
-                                    .filter(x -> !x.isBlank())
-                                    .forEach(set::add));
-                    List<String> list = new ArrayList<>(set);
-                    Collections.sort(list, String::compareToIgnoreCase);
-                    return new JsonArray(list).encode();
+                .onItem().transform(tuple -> merge(tuple.getItem1(), tuple.getItem2()))
+                .onItem().transform(m -> {
+                    if (m.etag() != null && ifNoneMatch != null && ifNoneMatch.contains(m.etag())) {
+                        return Response.notModified().header("ETag", m.etag()).build();
+                    }
+                    var b = Response.ok(m.json()).type(MediaType.APPLICATION_JSON);
+                    if (m.etag() != null) b.header("ETag", m.etag());
+                    return b.build();
+                });
+    }
+
+    /** 下流 1 つ分の owner 一覧と、その ETag（取得失敗時は null） */
+    record Owners(String etag, JsonArray list) {}
+    /** 集約結果。etag は両方の下流 ETag から作る（どちらかが無ければ null＝キャッシュさせない） */
+    record Merged(String etag, String json) {}
+
+    private final AtomicReference<Owners> savingsOwners = new AtomicReference<>(new Owners(null, new JsonArray()));
+    private final AtomicReference<Owners> timeDepositOwners = new AtomicReference<>(new Owners(null, new JsonArray()));
+    private final AtomicReference<Merged> lastMerged = new AtomicReference<>(new Merged(null, "[]"));
+
+    private Uni<Owners> fetchOwners(String url, AtomicReference<Owners> cache) {
+        Owners prev = cache.get();
+        var req = webClient.getAbs(url)
+                .putHeader("Authorization", bearer())
+                .putHeader("Accept", MediaType.APPLICATION_JSON);
+        if (prev.etag() != null) req.putHeader("If-None-Match", prev.etag());
+        return req.send()
+                .onItem().transform(resp -> {
+                    if (resp.statusCode() == 304) return prev;
+                    Owners next = new Owners(resp.getHeader("ETag"), new JsonArray(resp.bodyAsString()));
+                    cache.set(next);
+                    return next;
                 })
-                .onItem().transform(json -> Response.ok(json).type(MediaType.APPLICATION_JSON).build());
+                .onFailure().recoverWithItem(new Owners(null, new JsonArray())); // 片方死んでても空配列に
+    }
+
+    private Merged merge(Owners a, Owners b) {
+        String etag = (a.etag() == null || b.etag() == null)
+                ? null
+                : "\"" + Integer.toHexString(Objects.hash(a.etag(), b.etag())) + "\"";
+        Merged prev = lastMerged.get();
+        if (etag != null && etag.equals(prev.etag())) return prev; // 下流が両方とも変わっていなければ再マージしない
+
+        Set<String> set = new LinkedHashSet<>();
+        Stream.of(a.list(), b.list())
+                .forEach(arr -> arr.stream()
+                        .filter(Objects::nonNull)
+                        .map(Object::toString)
+                        .map(String::trim)
+                        .filter(x -> !x.isBlank())
+                        .forEach(set::add));
+        List<String> list = new ArrayList<>(set);
+        Collections.sort(list, String::compareToIgnoreCase);
+        Merged next = new Merged(etag, new JsonArray(list).encode());
+        if (etag != null) lastMerged.set(next);
+        return next;
     }
 
     // 共通プロキシ（既存メソッドの体裁に合わせて共通化）
@@ -0,0 +1,22 @@
+package app.mstd.client;
+
+import jakarta.ws.rs.core.Response;
+import org.jboss.resteasy.reactive.ClientWebApplicationException;
+
+/**
+ * 下流の 4xx（入力不正・残高不足・未存在など）。
+ * 下流が正常に判断した結果なので、サーキットブレーカの失敗には数えない（@CircuitBreaker(skipOn = ...)）。
+ * ClientWebApplicationException のサブクラスなので、既存の forward（ステータス/本文の転送）はそのまま効く。
+ */
+public class DownstreamClientException extends ClientWebApplicationException {
+
+    public DownstreamClientException(Response response) {
+        super(response);
+    }
+
+    /** 各 REST クライアントの @ClientExceptionMapper から呼ぶ。4xx 以外は既定の変換に任せる（null） */
+    static RuntimeException map(Response response) {
+        int status = response.getStatus();
+        return status >= 400 && status < 500 ? new DownstreamClientException(response) : null;
+    }
+}
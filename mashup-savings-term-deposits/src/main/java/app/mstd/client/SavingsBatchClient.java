@@ -0,0 +1,39 @@
+package app.mstd.client;
+import org.eclipse.microprofile.faulttolerance.Bulkhead;
+import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
+import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
+import io.quarkus.rest.client.reactive.ClientExceptionMapper;
+import io.quarkus.oidc.token.propagation.AccessToken;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// savings-service の一括参照 POST /accounts:batchGet（ダッシュボードの N 件取得を 1 往復にする）。
+// SavingsServiceClient は @Path("/accounts") なので、メソッド側に ":batchGet" を書くと
+// "/accounts/:batchGet" に連結されてしまう。そのためパスごと別インタフェースにしている（接続先は同じ configKey）。
+@Path("/accounts:batchGet")
+@Consumes(MediaType.APPLICATION_JSON)
+@Produces(MediaType.APPLICATION_JSON)
+@AccessToken
+@RegisterRestClient(configKey = "savings")
+@Bulkhead(value = 20, waitingTaskQueue = 20)
+@CircuitBreaker(requestVolumeThreshold = 20, failureRatio = 0.5, delay = 5000, successThreshold = 2,
+        skipOn = DownstreamClientException.class)
+public interface SavingsBatchClient {
+
+    @ClientExceptionMapper
+    static RuntimeException toException(Response response) {
+        return DownstreamClientException.map(response);
+    }
+
+    // {"ids":[...]} → {"accounts":[...], "missing":[...]}
+    @POST
+    Map<String, Object> batchGet(Map<String, List<UUID>> req);
+
+    default Map<String, Object> batchGet(List<UUID> ids) {
+        return batchGet(Map.of("ids", ids));
+    }
+}
@@ -1,8 +1,14 @@
 package app.mstd.client;
+import org.eclipse.microprofile.faulttolerance.Bulkhead;
+import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
 import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
+import io.quarkus.rest.client.reactive.ClientExceptionMapper;
 import io.quarkus.oidc.token.propagation.AccessToken;
+import io.smallrye.mutiny.Uni;
+import org.jboss.resteasy.reactive.RestResponse;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
 import java.math.BigDecimal;
 import java.util.Map;
 import java.util.UUID;
@@ -13,8 +19,21 @@ import java.util.List;
 @Produces(MediaType.APPLICATION_JSON)
 @AccessToken
 @RegisterRestClient(configKey = "savings")
+// 下流が遅い・落ちているときに、こちらのワーカースレッドが 15s の read-timeout まで溜まり続けないようにする。
+// - Bulkhead: メソッドごとの同時実行数の上限（非同期版は waitingTaskQueue まで待つ）。超えたら即 503
+// - CircuitBreaker: 直近 requestVolumeThreshold 回の失敗率が failureRatio を超えたら delay の間は呼ばずに即 503。
+//   4xx（DownstreamClientException）は下流の正常な応答なので数えない
+// 値は MicroProfile Config で上書きできる（例: app.mstd.client.SavingsServiceClient/Bulkhead/value=40）
+@Bulkhead(value = 20, waitingTaskQueue = 20)
+@CircuitBreaker(requestVolumeThreshold = 20, failureRatio = 0.5, delay = 5000, successThreshold = 2,
+        skipOn = DownstreamClientException.class)
 public interface SavingsServiceClient {
 
+    @ClientExceptionMapper
+    static RuntimeException toException(Response response) {
+        return DownstreamClientException.map(response);
+    }
+
     // GET /accounts/{id}
     @GET
     @Path("/{id}")
@@ -32,9 +51,18 @@ public interface SavingsServiceClient {
     Map<String, Object> withdraw(@PathParam("id") UUID id, Map<String, BigDecimal> req);
 
 
-    // ownerで検索
+    // ownerで検索（limit / pageToken はキーセットページング。null なら付けない＝全件）
+    // 続きがあるときは X-Next-Page-Token ヘッダに次のトークンが入る
     @GET
-    List<Map<String, Object>> listByOwner(@QueryParam("owner") String owner);
+    RestResponse<List<Map<String, Object>>> listByOwner(@QueryParam("owner") String owner,
+                                                        @QueryParam("limit") Integer limit,
+                                                        @QueryParam("pageToken") String pageToken);
+
+    default List<Map<String, Object>> listByOwner(String owner) {
+        return listByOwner(owner, null, null).getEntity();
+    }
 
-    
+    // 非同期版（PortfolioService が普通・定期を並行に取るため）。全件を返す
+    @GET
+    Uni<List<Map<String, Object>>> listByOwnerAsync(@QueryParam("owner") String owner);
 }
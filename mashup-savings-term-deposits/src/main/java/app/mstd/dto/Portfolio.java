@@ -0,0 +1,56 @@
+package app.mstd.dto;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GET /api/portfolio の応答。普通・定期の明細と、呼び出し側で再計算しなくて済む合計値をまとめて返す。
+ *
+ * - savingsTotal:         普通預金の残高合計
+ * - principalTotal:       未解約（CLOSED 以外）の定期預金の元本合計
+ * - projectedPayoutTotal: 未解約の定期預金の満期受取見込み合計
+ *   （time-deposit-service の calculatePayout と同じ単利式: principal * (1 + annualRate * termDays / 365)）
+ */
+public record Portfolio(
+    String owner,
+    List<Map<String, Object>> savings,
+    List<Map<String, Object>> timeDeposits,
+    BigDecimal savingsTotal,
+    BigDecimal principalTotal,
+    BigDecimal projectedPayoutTotal
+) {
+  private static final BigDecimal DAYS_PER_YEAR = new BigDecimal("365");
+
+  public static Portfolio of(String owner, List<Map<String, Object>> savings, List<Map<String, Object>> timeDeposits) {
+    BigDecimal savingsTotal = BigDecimal.ZERO;
+    for (Map<String, Object> a : savings) savingsTotal = savingsTotal.add(decimal(a.get("balance")));
+
+    BigDecimal principalTotal = BigDecimal.ZERO;
+    BigDecimal payoutTotal = BigDecimal.ZERO;
+    for (Map<String, Object> td : timeDeposits) {
+      if ("CLOSED".equals(td.get("status"))) continue;
+      BigDecimal principal = decimal(td.get("principal"));
+      principalTotal = principalTotal.add(principal);
+      payoutTotal = payoutTotal.add(projectedPayout(principal, decimal(td.get("annualRate")), decimal(td.get("termDays"))));
+    }
+    return new Portfolio(owner, savings, timeDeposits,
+        savingsTotal.setScale(2, RoundingMode.HALF_UP),
+        principalTotal.setScale(2, RoundingMode.HALF_UP),
+        payoutTotal.setScale(2, RoundingMode.HALF_UP));
+  }
+
+  static BigDecimal projectedPayout(BigDecimal principal, BigDecimal annualRate, BigDecimal termDays) {
+    BigDecimal factor = BigDecimal.ONE.add(annualRate.multiply(termDays).divide(DAYS_PER_YEAR, MathContext.DECIMAL64));
+    return principal.multiply(factor).setScale(2, RoundingMode.HALF_UP);
+  }
+
+  // JSON 由来の数値（Integer / Double / BigDecimal / 文字列）を BigDecimal に。欠けていれば 0
+  private static BigDecimal decimal(Object v) {
+    if (v == null) return BigDecimal.ZERO;
+    if (v instanceof BigDecimal d) return d;
+    return new BigDecimal(v.toString());
+  }
+}
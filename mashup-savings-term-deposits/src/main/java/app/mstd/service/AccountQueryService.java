@@ -6,6 +6,7 @@ import java.util.Map;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.jboss.resteasy.reactive.RestResponse;
 
 import app.mstd.client.SavingsServiceClient;
 
@@ -15,7 +16,15 @@ public class AccountQueryService {
     @Inject @RestClient
     SavingsServiceClient savingsClient;
 
+    @Inject
+    HedgedReads hedged;
+
     public List<Map<String, Object>> listByOwner(String owner) {
-        return savingsClient.listByOwner(owner); // 単純委譲
+        return hedged.get(() -> savingsClient.listByOwner(owner)); // 委譲（遅いときだけ 2 本目を投げる）
+    }
+
+    // ページング版（下流の X-Next-Page-Token ヘッダごと返す）
+    public RestResponse<List<Map<String, Object>>> listByOwner(String owner, Integer limit, String pageToken) {
+        return hedged.get(() -> savingsClient.listByOwner(owner, limit, pageToken));
     }
 }
@@ -0,0 +1,137 @@
+package app.mstd.service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import app.mstd.client.DownstreamClientException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.WebApplicationException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.context.ManagedExecutor;
+
+/**
+ * 冪等な GET（get / listByOwner）のヘッジ（mstd.hedge.enabled=true のときだけ）。
+ *
+ * 1 本目が mstd.hedge.delay 以内に返らなければ同じ呼び出しをもう 1 本投げ、先に成功した方を使う。
+ * 負けた方の呼び出しは止めない: ブロッキング版は REST 呼び出しがワーカースレッド上で最後まで走り、結果を捨てるだけ
+ * （CompletableFuture#cancel は実行中の処理を中断しない）。非同期版は 2 本目の購読を解除するので、リアクティブな
+ * REST クライアントならその HTTP 要求は打ち切られるが、1 本目は memoize して共有しているので最後まで走る。
+ * たまに遅い 1 本に引きずられるテールレイテンシを削る代わりに、遅いときだけ下流への呼び出しが最大 2 倍になる。
+ * delay は下流の p95 程度にしておくと、追加の呼び出しは 5% 前後で済む。
+ * 2 本目もバルクヘッド・サーキットブレーカを通るので、下流が詰まっているときに無制限に増えることはない。
+ * 4xx（DownstreamClientException など）はもう 1 本投げても同じ答えなので、どちらの呼び出しで返っても待たずにそのまま返す。
+ * 1 本目が delay 以内に終われば（成功でも失敗でも）2 本目は投げない。
+ *
+ * メトリクス: mstd.hedge.fired（2 本目を投げた回数）/ mstd.hedge.won（2 本目が先に返った回数）
+ */
+@ApplicationScoped
+public class HedgedReads {
+
+    @ConfigProperty(name = "mstd.hedge.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "mstd.hedge.delay", defaultValue = "PT0.2S")
+    Duration delay;
+
+    // リクエストコンテキスト（@AccessToken のトークン伝播に必要）を引き継いで別スレッドで呼ぶ
+    @Inject
+    ManagedExecutor executor;
+
+    private final Counter fired;
+    private final Counter won;
+
+    @Inject
+    public HedgedReads(MeterRegistry meters) {
+        this.fired = meters.counter("mstd.hedge.fired");
+        this.won = meters.counter("mstd.hedge.won");
+    }
+
+    /** ブロッキング版（ワーカースレッドから呼ぶ） */
+    public <T> T get(Supplier<T> call) {
+        if (!enabled) return call.get();
+        CompletableFuture<T> primary = executor.supplyAsync(call);
+        try {
+            return primary.get(delay.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException slow) {
+            // 2 本目へ
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted", e);
+        }
+
+        fired.increment();
+        CompletableFuture<T> backup = executor.supplyAsync(call);
+        CompletableFuture<T> first = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        primary.whenComplete((v, e) -> settle(first, failures, v, e));
+        backup.whenComplete((v, e) -> {
+            if (e == null && !first.isDone()) won.increment();
+            settle(first, failures, v, e);
+        });
+        // 負けた方は待たないだけで、呼び出し自体は走り切る（結果は settle で捨てられる）
+        try {
+            return first.join();
+        } catch (CompletionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    /**
+     * 非同期版（Uni）。1 本目が delay 以内に終わればその結果（失敗も）をそのまま返し、
+     * 遅いときだけ 2 本目を購読して先に値を返した方を採る（4xx はすぐ失敗、それ以外は両方失敗したら失敗）。
+     * 1 本目が勝てば 2 本目の購読は解除される（下流への要求の打ち切りは call が返す Uni 次第）
+     */
+    public <T> Uni<T> getAsync(Supplier<Uni<T>> call) {
+        if (!enabled) return call.get();
+        // タイムアウトで購読をやめても 1 本目自体は続け、競争の側で同じ結果を受け取る
+        Uni<T> primary = call.get().memoize().indefinitely();
+        return primary.ifNoItem().after(delay).recoverWithUni(() -> race(primary, call));
+    }
+
+    private <T> Uni<T> race(Uni<T> primary, Supplier<Uni<T>> call) {
+        fired.increment();
+        AtomicInteger failures = new AtomicInteger();
+        Uni<T> backup = call.get().onItem().invoke(won::increment);
+        return Uni.join().first(settle(primary, failures), settle(backup, failures)).toTerminate();
+    }
+
+    // 4xx はそのまま失敗として流す。それ以外の失敗は、もう 1 本が残っていれば終わらせずに待つ
+    private static <T> Uni<T> settle(Uni<T> uni, AtomicInteger failures) {
+        return uni.onFailure(e -> retryable(e) && failures.incrementAndGet() < 2)
+                .recoverWithUni(() -> Uni.createFrom().nothing());
+    }
+
+    // 成功が 1 つでも来ればそれ、4xx ならすぐその例外、それ以外は 2 本とも失敗なら後の方の例外
+    private static <T> void settle(CompletableFuture<T> first, AtomicInteger failures, T value, Throwable error) {
+        if (error == null) first.complete(value);
+        else if (!retryable(error) || failures.incrementAndGet() == 2) first.completeExceptionally(error);
+    }
+
+    /** 2 本目で結果が変わりうる失敗か（4xx は下流が正常に判断した結果なので変わらない） */
+    static boolean retryable(Throwable e) {
+        if (e instanceof CompletionException && e.getCause() != null) e = e.getCause();
+        if (e instanceof DownstreamClientException) return false;
+        if (e instanceof WebApplicationException w && w.getResponse() != null) {
+            int status = w.getResponse().getStatus();
+            return status < 400 || status >= 500;
+        }
+        return true;
+    }
+
+    private static RuntimeException unwrap(Throwable t) {
+        if (t instanceof CompletionException && t.getCause() != null) t = t.getCause();
+        return t instanceof RuntimeException re ? re : new IllegalStateException(t);
+    }
+}
@@ -0,0 +1,48 @@
+package app.mstd.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.jboss.resteasy.reactive.ClientWebApplicationException;
+
+import app.mstd.client.SavingsServiceClient;
+import app.mstd.client.TimeDepositServiceClient;
+import app.mstd.dto.Portfolio;
+
+/**
+ * owner のポートフォリオ（普通 + 定期）を 1 回で組み立てる。
+ * 2 つの下流には並行に問い合わせる（レイテンシは遅い方の 1 本分）。
+ */
+@ApplicationScoped
+public class PortfolioService {
+
+    @Inject @RestClient
+    SavingsServiceClient savings;
+
+    @Inject @RestClient
+    TimeDepositServiceClient deposits;
+
+    @Inject
+    HedgedReads hedged;
+
+    public Uni<Portfolio> byOwner(String owner) {
+        return Uni.combine().all()
+                .unis(orEmpty(hedged.getAsync(() -> savings.listByOwnerAsync(owner))),
+                        orEmpty(hedged.getAsync(() -> deposits.listByOwnerAsync(owner))))
+                .asTuple()
+                .onItem().transform(t -> Portfolio.of(owner, t.getItem1(), t.getItem2()));
+    }
+
+    // 下流に該当 API が無い（404/405）ときは空扱い（BalanceResource と同じ方針）
+    private static Uni<List<Map<String, Object>>> orEmpty(Uni<List<Map<String, Object>>> call) {
+        return call.onFailure(t -> t instanceof ClientWebApplicationException ex
+                        && ex.getResponse() != null
+                        && (ex.getResponse().getStatus() == 404 || ex.getResponse().getStatus() == 405))
+                .recoverWithItem(Collections.emptyList());
+    }
+}
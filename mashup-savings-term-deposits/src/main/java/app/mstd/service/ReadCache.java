@@ -0,0 +1,169 @@
+package app.mstd.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.quarkus.cache.CaffeineCache;
+import io.quarkus.security.identity.SecurityIdentity;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.resteasy.reactive.RestResponse;
+
+/**
+ * 口座・定期の GET の読み通しキャッシュ（cache 名 mstd-reads。TTL は quarkus.cache.caffeine."mstd-reads".*）。
+ *
+ * フロントは同じ owner を数秒おきにポーリングするので、TTL 数秒でも下流への読み取りは桁で減る。
+ * - キーはログインユーザ + 種別 + 引数（他ユーザの下流認可の結果を流用しない）
+ * - 同じキーのミスが同時に来ても下流への呼び出しは 1 本（Caffeine が計算中の値を共有する）
+ * - 失敗（4xx/5xx・ブレーカ open など）はキャッシュしない
+ * - 入出金・解約・作成のあとは関係するキーをユーザを問わず捨てる（自分の書き込みが直後の GET に見えるように）
+ *   キャッシュ全体は走査しない。読み込み時に「口座 id / 定期 id / owner → キー」の索引に登録しておき、
+ *   その口座・定期と、その owner の一覧のキーだけを invalidate する。口座・定期の owner は読んだ値
+ *   （単体の owner、一覧の owner 引数）から覚える。owner が分からない口座はどの一覧のキャッシュにも載っていない
+ *   この対応表はキャッシュと同じ TTL（書き込みから）で消える。覚えるのは一覧・単体を読み込んだときだけなので、
+ *   それを覚えさせたキャッシュのキーより先に消えることはない（件数の上限で追い出された場合だけ、その owner の一覧が
+ *   TTL まで古いまま残りうる）
+ */
+@ApplicationScoped
+public class ReadCache {
+
+    public enum Kind { SAVINGS_ACCOUNT, SAVINGS_LIST, DEPOSIT, DEPOSIT_LIST }
+
+    record Key(Kind kind, String user, List<Object> args) {}
+
+    // 索引のタグ。単体は id、一覧は owner（args の先頭）
+    record Tag(Kind kind, Object value) {}
+
+    // これを超えたら、期限切れで消えたキーを索引から掃除する
+    private static final int INDEX_SWEEP_THRESHOLD = 10_000;
+
+    private final ConcurrentHashMap<Tag, Set<Key>> index = new ConcurrentHashMap<>();
+    // 口座・定期の id → owner（入出金・解約のあとに、その owner の一覧だけを捨てるため）
+    private Map<Object, String> ownerOf;
+
+    /** ページング版の一覧（RestResponse は使い回せないので本文と次トークンだけ持つ） */
+    public record Page(List<Map<String, Object>> items, String nextPageToken) {
+        static Page of(RestResponse<List<Map<String, Object>>> r) {
+            return new Page(r.getEntity(), r.getHeaderString("X-Next-Page-Token"));
+        }
+    }
+
+    @Inject
+    @CacheName("mstd-reads")
+    Cache cache;
+
+    @Inject
+    SecurityIdentity identity;
+
+    @ConfigProperty(name = "mstd.read-cache.ttl", defaultValue = "3S")
+    Duration ttl;
+
+    // 一覧 1 件に口座・定期が複数載るので、キャッシュの件数上限より多めに持つ
+    @ConfigProperty(name = "mstd.read-cache.max-entries", defaultValue = "10000")
+    long maxEntries;
+
+    @PostConstruct
+    void init() {
+        ownerOf = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxEntries * 10)
+                .<Object, String>build()
+                .asMap();
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(Kind kind, Supplier<T> loader, Object... args) {
+        Key key = new Key(kind, user(), Arrays.asList(args));
+        return (T) cache.get(key, k -> {
+            // 読み込み前に登録する（読み込み中の書き込みによる invalidate を取りこぼさない）
+            register(key);
+            T value = loader.get();
+            learnOwners(kind, args, value);
+            return value;
+        }).await().indefinitely();
+    }
+
+    public Page page(Kind kind, Supplier<RestResponse<List<Map<String, Object>>>> loader, Object... args) {
+        return get(kind, () -> Page.of(loader.get()), args);
+    }
+
+    /** 口座の入出金のあと: その口座と、その口座の owner の普通一覧 */
+    public void savingsChanged(UUID accountId) {
+        invalidate(new Tag(Kind.SAVINGS_ACCOUNT, accountId));
+        String owner = ownerOf.get(accountId);
+        if (owner != null) invalidate(new Tag(Kind.SAVINGS_LIST, owner));
+    }
+
+    /** 口座の作成のあと: その owner の普通一覧 */
+    public void savingsOwnerChanged(String owner) {
+        if (owner != null) invalidate(new Tag(Kind.SAVINGS_LIST, owner));
+    }
+
+    /** 定期の作成・解約のあと: その定期と、その owner の定期一覧（owner が null なら覚えている owner） */
+    public void depositChanged(UUID depositId, String owner) {
+        if (depositId != null) invalidate(new Tag(Kind.DEPOSIT, depositId));
+        String o = owner != null ? owner : depositId == null ? null : ownerOf.get(depositId);
+        if (o != null) invalidate(new Tag(Kind.DEPOSIT_LIST, o));
+    }
+
+    private void register(Key key) {
+        if (key.args().isEmpty() || key.args().get(0) == null) return;
+        index.computeIfAbsent(new Tag(key.kind(), key.args().get(0)), t -> ConcurrentHashMap.newKeySet()).add(key);
+        if (index.size() > INDEX_SWEEP_THRESHOLD) sweepIndex();
+    }
+
+    private void invalidate(Tag tag) {
+        Set<Key> keys = index.remove(tag);
+        if (keys == null) return;
+        for (Key k : keys) cache.invalidate(k).await().indefinitely();
+    }
+
+    // 単体は値の owner、一覧は owner 引数を、その中の口座・定期の id に結び付ける
+    private void learnOwners(Kind kind, Object[] args, Object value) {
+        switch (kind) {
+            case SAVINGS_ACCOUNT, DEPOSIT -> {
+                if (value instanceof Map<?, ?> m && m.get("owner") instanceof String owner) ownerOf.put(args[0], owner);
+            }
+            case SAVINGS_LIST, DEPOSIT_LIST -> {
+                List<?> items = value instanceof Page p ? p.items() : value instanceof List<?> l ? l : List.of();
+                for (Object item : items) {
+                    if (item instanceof Map<?, ?> m && id(m) != null && args[0] instanceof String owner) {
+                        ownerOf.put(id(m), owner);
+                    }
+                }
+            }
+        }
+    }
+
+    // 下流の一覧は id、mashup の整形済みは accountId
+    private static UUID id(Map<?, ?> m) {
+        Object id = m.get("id") != null ? m.get("id") : m.get("accountId");
+        try {
+            return id == null ? null : UUID.fromString(id.toString());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // TTL で消えたキーは索引に残るので、ときどき今キャッシュにあるキーだけに絞る（ここだけは全件を見る）
+    private void sweepIndex() {
+        Set<Object> live = cache.as(CaffeineCache.class).keySet();
+        index.values().forEach(keys -> keys.retainAll(live));
+        index.values().removeIf(Set::isEmpty);
+    }
+
+    private String user() {
+        return identity.isAnonymous() ? "" : identity.getPrincipal().getName();
+    }
+}
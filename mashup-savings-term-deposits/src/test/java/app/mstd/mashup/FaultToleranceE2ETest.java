@@ -0,0 +1,86 @@
+package app.mstd.mashup;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static io.restassured.RestAssured.given;
+
+import java.util.Map;
+import java.util.UUID;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.quarkus.test.security.TestSecurity;
+
+/**
+ * このテストで確認すること
+ * ---------------------------------------------------
+ * - savings-service が 500 を返し続けると、サーキットブレーカが open になり
+ *   以降は下流を呼ばずに 503 + Retry-After で即返すこと
+ * - savings 側のブレーカが open でも、time-deposit 側のルートは影響を受けないこと
+ *
+ * テスト方法
+ * ---------------------------------------------------
+ * - ブレーカのしきい値をプロファイルで 4 回に下げる（delay は長くしてテスト中に half-open にならないように）
+ * - WireMock の受信件数で「open 後は下流に届いていない」ことを見る
+ */
+@QuarkusTest
+@QuarkusTestResource(WireMockResources.class)
+@TestProfile(FaultToleranceE2ETest.SmallBreaker.class)
+@TestSecurity(user = "test-user", roles = {"user"})
+class FaultToleranceE2ETest {
+
+    public static class SmallBreaker implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of(
+                    "app.mstd.client.SavingsServiceClient/CircuitBreaker/requestVolumeThreshold", "4",
+                    "app.mstd.client.SavingsServiceClient/CircuitBreaker/delay", "60000");
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        WireMockResources.savingsMock.resetRequests();
+        WireMockResources.savingsMock.stubFor(get(urlPathMatching("/accounts/[^/]+"))
+                .willReturn(aResponse().withStatus(500)));
+    }
+
+    @Test
+    @DisplayName("savings が 500 を返し続けるとブレーカが開き、以降は 503 で即返す（他方の下流は影響なし）")
+    void breaker_opens_and_fails_fast() {
+        String path = "/api/savings/accounts/" + UUID.randomUUID();
+
+        // しきい値までは下流の 500 がそのまま転送される
+        for (int i = 0; i < 4; i++) {
+            given().accept("application/json").when().get(path).then().statusCode(500);
+        }
+
+        // open: 下流を呼ばずに 503
+        given().accept("application/json")
+        .when()
+            .get(path)
+        .then()
+            .statusCode(503)
+            .header("Retry-After", Matchers.notNullValue())
+            .body("error", Matchers.is("downstream unavailable"));
+
+        WireMockResources.savingsMock.verify(4, getRequestedFor(urlPathMatching("/accounts/[^/]+")));
+
+        // time-deposit 側は別のブレーカ / バルクヘッドなので動き続ける
+        given().accept("application/json")
+            .queryParam("owner", "CUST001")
+        .when()
+            .get("/api/deposits/accounts")
+        .then()
+            .statusCode(200);
+    }
+}
@@ -0,0 +1,59 @@
+package app.mstd.mashup;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.Test;
+
+/**
+ * E2E テスト（/api/portfolio の正常系）
+ *
+ * 目的:
+ *  - 普通・定期の両方を 1 回の呼び出しで集約し、合計値まで返すこと
+ *
+ * 検証:
+ *  - /api/portfolio?owner=CUST001 が 200
+ *  - savings / timeDeposits に WireMock の明細がそのまま入る
+ *  - savingsTotal / principalTotal が明細の合計になる
+ *    （スタブの定期には利率・期間が無いので、受取見込みは元本と同額）
+ *
+ * 注意:
+ *  - 下流は WireMockResources がスタブ化（TermDepositsE2ETest と同じ）
+ */
+@QuarkusTest
+@QuarkusTestResource(WireMockResources.class)
+@TestSecurity(user = "tester", roles = {"user"})
+public class PortfolioE2ETest {
+
+    @Test
+    void portfolio_should_combine_both_services_with_totals() {
+        given()
+            .accept(ContentType.JSON)
+        .when()
+            .get("/api/portfolio?owner=CUST001")
+        .then()
+            .statusCode(200)
+            .contentType(startsWith("application/json"))
+            .body("owner", equalTo("CUST001"))
+            .body("savings[0].type", equalTo("SAVINGS"))
+            .body("timeDeposits[0].type", equalTo("TERM"))
+            .body("savingsTotal", equalTo(50000.00f))
+            .body("principalTotal", equalTo(300000.00f))
+            .body("projectedPayoutTotal", equalTo(300000.00f));
+    }
+
+    @Test
+    void portfolio_requires_owner() {
+        given()
+            .accept(ContentType.JSON)
+        .when()
+            .get("/api/portfolio")
+        .then()
+            .statusCode(400);
+    }
+}
@@ -0,0 +1,74 @@
+package app.mstd.mashup;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static io.restassured.RestAssured.given;
+
+import java.util.UUID;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+
+/**
+ * このテストで確認すること
+ * ---------------------------------------------------
+ * - 同じ owner の一覧を TTL 内に繰り返し取っても、下流（savings-service）には 1 回しか届かないこと
+ * - 書き込みで捨てるのは関係するキーだけ（一覧に載っていない口座への入金では owner の一覧は捨てない）
+ * - 同じ owner の口座作成のあとはキャッシュが捨てられ、次の GET で下流から取り直すこと
+ */
+@QuarkusTest
+@QuarkusTestResource(WireMockResources.class)
+@TestSecurity(user = "test-user", roles = {"user"})
+class ReadCacheE2ETest {
+
+    private static final String OWNER = "CACHE-OWNER";
+
+    @BeforeEach
+    void setUp() {
+        WireMockResources.savingsMock.resetRequests();
+        WireMockResources.savingsMock.stubFor(post(urlPathMatching("/accounts/[^/]+/deposit"))
+                .willReturn(okJson("{\"balance\":100}")));
+        WireMockResources.savingsMock.stubFor(post(urlPathEqualTo("/accounts"))
+                .willReturn(okJson("{\"id\":\"" + UUID.randomUUID() + "\",\"owner\":\"" + OWNER + "\",\"balance\":0}")));
+    }
+
+    @Test
+    @DisplayName("TTL 内の繰り返し GET は下流 1 回にまとまり、同じ owner の口座作成で取り直す")
+    void repeated_reads_hit_cache_until_mutation() {
+        for (int i = 0; i < 5; i++) {
+            given().accept("application/json").queryParam("owner", OWNER)
+            .when().get("/api/savings/accounts")
+            .then().statusCode(200).body("[0].type", Matchers.is("SAVINGS"));
+        }
+        WireMockResources.savingsMock.verify(1, getRequestedFor(urlPathEqualTo("/accounts")));
+
+        given().contentType("application/json").body("{\"amount\":100}")
+        .when().post("/api/savings/accounts/" + UUID.randomUUID() + "/deposit")
+        .then().statusCode(200);
+
+        given().accept("application/json").queryParam("owner", OWNER)
+        .when().get("/api/savings/accounts")
+        .then().statusCode(200);
+        WireMockResources.savingsMock.verify(1, getRequestedFor(urlPathEqualTo("/accounts")));
+
+        given().contentType("application/json").body("{\"owner\":\"" + OWNER + "\"}")
+        .when().post("/api/savings/accounts")
+        .then().statusCode(200);
+        WireMockResources.savingsMock.verify(1, postRequestedFor(urlPathEqualTo("/accounts")));
+
+        given().accept("application/json").queryParam("owner", OWNER)
+        .when().get("/api/savings/accounts")
+        .then().statusCode(200);
+        WireMockResources.savingsMock.verify(2, getRequestedFor(urlPathEqualTo("/accounts")));
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.savings.controller;
+
+import com.example.savings.service.AccountService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 複数口座の一括参照: POST /accounts:batchGet  {"ids":[...]}
+ * → {"accounts":[...], "missing":[...]}（accounts は入力順・重複は 1 件、見つからない id は missing）
+ *
+ * ダッシュボードが口座を N 件読むときの N 往復（JWT 検証・findById も N 回）を 1 往復・1 クエリにする。
+ * パスが /accounts の下ではない（:batchGet）ので AccountController とは別にしている。
+ */
+@RestController
+public class AccountBatchGetController {
+
+    private final AccountService service;
+    private final int maxIds;
+
+    public AccountBatchGetController(AccountService service,
+                                     @Value("${savings.batch.max-get:100}") int maxIds) {
+        this.service = service;
+        this.maxIds = maxIds;
+    }
+
+    public record BatchGetRequest(List<UUID> ids) {}
+
+    // 参照なので “read” 権限（GET /accounts/{id} と同じ）
+    @PreAuthorize("hasRole('read')")
+    @PostMapping("/accounts:batchGet")
+    public AccountService.BatchGetResult batchGet(@RequestBody BatchGetRequest req) {
+        if (req.ids() != null && req.ids().size() > maxIds) {
+            throw new IllegalArgumentException("too many ids (max " + maxIds + ")");
+        }
+        return service.getAll(req.ids());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> handleBadRequest(RuntimeException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.savings.controller;
+
+import com.example.savings.dto.BatchRowResult;
+import com.example.savings.model.Account;
+import com.example.savings.service.AccountService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * POST /accounts/batch の 1 リクエスト分の状態。
+ *
+ * 行を chunkSize 件ずつ溜めて AccountService.createAll に渡し、結果を NDJSON で 1 行ずつ書き出す。
+ * チャンクごとに flush するので、クライアントは全件の完了を待たずに結果を受け取れる。
+ * チャンクの INSERT が失敗した場合はそのチャンクの全行をエラーとして返し、次のチャンクへ進む。
+ */
+final class AccountBatchWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountBatchWriter.class);
+
+    private final AccountService service;
+    private final NdjsonResponse<BatchRowResult> out;
+    private final int chunkSize;
+
+    private final List<Integer> indexes = new ArrayList<>();
+    private final List<String> owners = new ArrayList<>();
+
+    AccountBatchWriter(AccountService service, NdjsonResponse<BatchRowResult> out, int chunkSize) {
+        this.service = service;
+        this.out = out;
+        this.chunkSize = chunkSize;
+    }
+
+    void accept(int index, String owner) throws IOException {
+        indexes.add(index);
+        owners.add(owner);
+        if (owners.size() >= chunkSize) flush();
+    }
+
+    void reject(int index, String owner, String error) throws IOException {
+        out.accept(BatchRowResult.failed(index, owner, error));
+    }
+
+    void flush() throws IOException {
+        if (!owners.isEmpty()) {
+            List<Account> created = null;
+            try {
+                created = service.createAll(owners);
+            } catch (RuntimeException e) {
+                log.warn("batch insert failed for rows {}..{}", indexes.get(0), indexes.get(indexes.size() - 1), e);
+            }
+            for (int i = 0; i < owners.size(); i++) {
+                out.accept(created != null
+                        ? BatchRowResult.created(indexes.get(i), created.get(i))
+                        : BatchRowResult.failed(indexes.get(i), owners.get(i), "insert failed"));
+            }
+            indexes.clear();
+            owners.clear();
+        }
+        out.finish();
+    }
+}
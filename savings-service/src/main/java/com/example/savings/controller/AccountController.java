@@ -1,28 +1,64 @@
 package com.example.savings.controller;
 
+import com.example.savings.dto.AccountTransactionDto;
+import com.example.savings.dto.CreditRequest;
+import com.example.savings.dto.CreditResult;
+import com.example.savings.dto.KeysetPage;
+import com.example.savings.dto.SavingsAccountDto;
+import com.example.savings.idempotency.IdempotencyService;
 import com.example.savings.model.Account;
 // import com.example.savings.repository.AccountRepository;
 import com.example.savings.service.AccountService;
+import com.example.savings.service.AccountStreamService;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/accounts")
 public class AccountController {
     private final AccountService service;
+    private final AccountStreamService streams;
+    private final IdempotencyService idempotency;
+    private final ObjectMapper mapper;
+    private final int batchChunkSize;
+    private final int maxCredits;
 
-    public AccountController(AccountService service) { this.service = service; }
+    public AccountController(AccountService service, AccountStreamService streams, IdempotencyService idempotency,
+                             ObjectMapper mapper,
+                             @Value("${savings.batch.chunk-size:1000}") int batchChunkSize,
+                             @Value("${savings.batch.max-credits:5000}") int maxCredits) {
+        this.service = service;
+        this.streams = streams;
+        this.idempotency = idempotency;
+        this.mapper = mapper;
+        this.batchChunkSize = batchChunkSize;
+        this.maxCredits = maxCredits;
+    }
 
     public record CreateAccountRequest(@NotBlank String owner) {}
     public record MoneyRequest(@NotNull BigDecimal amount) {}
@@ -40,6 +76,61 @@ public class AccountController {
         ));
     }
 
+    // ▼ 一括作成（“user” 権限）。ボディは [{"owner":..}, ...] か NDJSON。
+    //   どちらも 1 要素ずつ読み、結果は 1 行 1 件の NDJSON で順次返す（全体をメモリに載せない）
+    @PreAuthorize("hasRole('user')")
+    @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void createBatchFromArray(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        AccountBatchWriter batch = startBatch(response);
+        int index = 0;
+        try (JsonParser p = mapper.getFactory().createParser(request.getInputStream())) {
+            if (p.nextToken() != JsonToken.START_ARRAY) {
+                batch.reject(0, null, "request body must be a JSON array");
+            } else {
+                for (JsonToken t; (t = p.nextToken()) != JsonToken.END_ARRAY && t != null; ) {
+                    JsonNode row = mapper.readTree(p);
+                    acceptRow(batch, index++, row);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            // 配列の途中で壊れていたらそれ以降は読めないので、そこまでの結果を返して終える
+            batch.flush();
+            batch.reject(index, null, "malformed JSON: " + e.getOriginalMessage());
+        }
+        batch.flush();
+    }
+
+    @PreAuthorize("hasRole('user')")
+    @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public void createBatchFromNdjson(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        AccountBatchWriter batch = startBatch(response);
+        var reader = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+        int index = 0;
+        for (String line; (line = reader.readLine()) != null; ) {
+            if (line.isBlank()) continue;
+            int i = index++;
+            JsonNode row;
+            try {
+                row = mapper.readTree(line);
+            } catch (JsonProcessingException e) {
+                batch.reject(i, null, "malformed JSON: " + e.getOriginalMessage());
+                continue;
+            }
+            acceptRow(batch, i, row);
+        }
+        batch.flush();
+    }
+
+    private AccountBatchWriter startBatch(HttpServletResponse response) throws IOException {
+        return new AccountBatchWriter(service, new NdjsonResponse<>(mapper, response), batchChunkSize);
+    }
+
+    private static void acceptRow(AccountBatchWriter batch, int index, JsonNode row) throws IOException {
+        String owner = row.path("owner").textValue();
+        if (owner == null || owner.isBlank()) batch.reject(index, owner, "owner is required");
+        else batch.accept(index, owner);
+    }
+
     // 参照は “read” 権限
     @PreAuthorize("hasRole('read')")
     @GetMapping("/{id}")
@@ -53,36 +144,98 @@ public class AccountController {
         ));
     }
 
-    // 入金は “user” 権限
+    // 入金は “user” 権限。Idempotency-Key 付きの再送は初回の応答を返す（二重に入金しない）
     @PreAuthorize("hasRole('user')")
     @PostMapping("/{id}/deposit")
-    public ResponseEntity<?> deposit(@PathVariable UUID id, @RequestBody MoneyRequest req) {
-        Account a = service.deposit(id, req.amount());
-        return ResponseEntity.ok(Map.of(
-                "id", a.getId(),
-                "balance", a.getBalance()
-        ));
+    public ResponseEntity<?> deposit(@PathVariable UUID id, @RequestBody MoneyRequest req,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idemKey) {
+        return idempotent(idemKey, "POST /accounts/" + id + "/deposit " + amountKey(req), () -> {
+            Account a = service.deposit(id, req.amount());
+            return ResponseEntity.ok(Map.of(
+                    "id", a.getId(),
+                    "balance", a.getBalance()
+            ));
+        });
+    }
+
+    // ▼ 一括入金（“user” 権限）。ボディは [{"accountId":..,"amount":..,"idempotencyKey":..}, ...]
+    //   1 トランザクションでまとめて適用し、1 件ごとの結果（APPLIED / DUPLICATE / REJECTED / FAILED）を入力順で返す
+    @PreAuthorize("hasRole('user')")
+    @PostMapping("/credits:batch")
+    public List<CreditResult> creditBatch(@RequestBody List<CreditRequest> credits) {
+        if (credits.size() > maxCredits) {
+            throw new IllegalArgumentException("too many credits (max " + maxCredits + ")");
+        }
+        return service.creditAll(credits);
     }
 
-    // 出金も “user” 権限
+    // 出金も “user” 権限（Idempotency-Key の扱いは入金と同じ）
     @PreAuthorize("hasRole('user')")
     @PostMapping("/{id}/withdraw")
-    public ResponseEntity<?> withdraw(@PathVariable UUID id, @RequestBody MoneyRequest req) {
-        Account a = service.withdraw(id, req.amount());
-        return ResponseEntity.ok(Map.of(
-                "id", a.getId(),
-                "balance", a.getBalance()
-        ));
+    public ResponseEntity<?> withdraw(@PathVariable UUID id, @RequestBody MoneyRequest req,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idemKey) {
+        return idempotent(idemKey, "POST /accounts/" + id + "/withdraw " + amountKey(req), () -> {
+            Account a = service.withdraw(id, req.amount());
+            return ResponseEntity.ok(Map.of(
+                    "id", a.getId(),
+                    "balance", a.getBalance()
+            ));
+        });
+    }
+
+    // ledger モードの入出金はトランザクションの外で確定を待つので、キーの確保と応答の保存を分ける
+    private ResponseEntity<?> idempotent(String key, String request,
+                                         Supplier<ResponseEntity<?>> action) {
+        return service.usesLedger() ? idempotency.executeDetached(key, request, action)
+                                    : idempotency.execute(key, request, action);
+    }
+
+    // 再送判定用の金額表記（50 と 50.00 を同じリクエストとみなす）
+    private static String amountKey(MoneyRequest req) {
+        return req.amount() == null ? "null" : req.amount().stripTrailingZeros().toPlainString();
+    }
+
+    // 入出金履歴（ジャーナル）も “read” 権限
+    @PreAuthorize("hasRole('read')")
+    @GetMapping("/{id}/transactions")
+    public List<AccountTransactionDto> transactions(@PathVariable UUID id,
+                                                    @RequestParam(name = "limit", defaultValue = "50") int limit) {
+        return service.history(id, limit).stream()
+                      .map(AccountTransactionDto::fromEntity)
+                      .toList();
     }
 
     // ▼ 一覧（owner 指定）— Service 経由に
+    //   limit / pageToken を付けるとキーセットページング（続きは X-Next-Page-Token ヘッダで返す）
     @PreAuthorize("hasRole('read')")
     @GetMapping
-    public List<Account> listByOwner(@RequestParam("owner") String owner) {
+    public ResponseEntity<List<Account>> listByOwner(@RequestParam("owner") String owner,
+                                                     @RequestParam(name = "limit", required = false) Integer limit,
+                                                     @RequestParam(name = "pageToken", required = false) String pageToken) {
+        requireOwner(owner);
+        if (limit == null && pageToken == null) {
+            return ResponseEntity.ok(service.findByOwner(owner));
+        }
+        KeysetPage<Account> page = service.findByOwner(owner, limit, pageToken);
+        var res = ResponseEntity.ok();
+        if (page.nextToken() != null) res.header(KeysetPage.NEXT_PAGE_TOKEN_HEADER, page.nextToken());
+        return res.body(page.items());
+    }
+
+    // ▼ 同じ一覧のストリーミング版（Accept: application/x-ndjson）。件数に関わらずメモリ一定
+    @PreAuthorize("hasRole('read')")
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void streamByOwner(@RequestParam("owner") String owner, HttpServletResponse response) throws IOException {
+        requireOwner(owner);
+        var out = new NdjsonResponse<SavingsAccountDto>(mapper, response);
+        streams.forEachByOwner(owner, out);
+        out.finish();
+    }
+
+    private static void requireOwner(String owner) {
         if (owner == null || owner.isBlank()) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "query param 'owner' is required");
         }
-        return service.findByOwner(owner);
     }
 
     @ExceptionHandler({IllegalArgumentException.class, IllegalStateException.class})
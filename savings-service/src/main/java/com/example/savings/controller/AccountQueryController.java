@@ -1,26 +1,72 @@
 package com.example.savings.controller;
 
+import com.example.savings.dto.KeysetPage;
+import com.example.savings.dto.PageToken;
 import com.example.savings.dto.SavingsAccountDto;
+import com.example.savings.model.Account;
 import com.example.savings.repository.SavingsAccountRepository;
+import com.example.savings.service.AccountStreamService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/accounts")
 public class AccountQueryController {
 
   private final SavingsAccountRepository repo;
+  private final AccountStreamService streams;
+  private final ObjectMapper mapper;
 
   // Lombokなしの明示コンストラクタ（単一なら Spring が自動DI）
-  public AccountQueryController(SavingsAccountRepository repo) {
+  public AccountQueryController(SavingsAccountRepository repo, AccountStreamService streams, ObjectMapper mapper) {
     this.repo = repo;
+    this.streams = streams;
+    this.mapper = mapper;
   }
 
+  // limit / pageToken を付けるとキーセットページング（続きは X-Next-Page-Token ヘッダで返す）
   @GetMapping("/search")
-  public List<SavingsAccountDto> search(@RequestParam("ownerKey") String ownerKey) {
-    return repo.searchByOwnerKey(ownerKey)
-               .stream()
-               .map(SavingsAccountDto::fromEntity) // ← from → fromEntity に
-               .toList();
+  public ResponseEntity<List<SavingsAccountDto>> search(@RequestParam("ownerKey") String ownerKey,
+                                                        @RequestParam(name = "limit", required = false) Integer limit,
+                                                        @RequestParam(name = "pageToken", required = false) String pageToken) {
+    if (limit == null && pageToken == null) {
+      // ページング指定なしは関連度順の上位 MAX_LIMIT 件
+      return ResponseEntity.ok(repo.searchByOwnerKey(ownerKey, KeysetPage.MAX_LIMIT)
+                                   .stream()
+                                   .map(SavingsAccountDto::fromEntity) // ← from → fromEntity に
+                                   .toList());
+    }
+    int n = KeysetPage.clamp(limit);
+    List<Account> rows = (pageToken == null || pageToken.isBlank())
+        ? repo.searchPageByOwnerKey(ownerKey, Limit.of(n + 1))
+        : searchAfter(ownerKey, PageToken.decode(pageToken), n + 1);
+    KeysetPage<Account> page = KeysetPage.of(rows, n, a -> new PageToken(a.getCreatedAt(), a.getId()));
+    var res = ResponseEntity.ok();
+    if (page.nextToken() != null) res.header(KeysetPage.NEXT_PAGE_TOKEN_HEADER, page.nextToken());
+    return res.body(page.items().stream().map(SavingsAccountDto::fromEntity).toList());
+  }
+
+  private List<Account> searchAfter(String ownerKey, PageToken after, int fetch) {
+    return repo.searchPageByOwnerKeyAfter(ownerKey, after.at(), after.id(), Limit.of(fetch));
+  }
+
+  @ExceptionHandler(IllegalArgumentException.class)
+  public ResponseEntity<?> handleBadRequest(RuntimeException e) {
+    return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+  }
+
+  // Accept: application/x-ndjson のときは 1 件ずつ書き出す（結果件数に関わらずメモリ一定）
+  @GetMapping(path = "/search", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public void searchStream(@RequestParam("ownerKey") String ownerKey, HttpServletResponse response) throws IOException {
+    var out = new NdjsonResponse<SavingsAccountDto>(mapper, response);
+    streams.forEachByOwnerKey(ownerKey, out);
+    out.finish();
   }
 }
@@ -0,0 +1,41 @@
+package com.example.savings.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * レスポンスへ 1 行 1 オブジェクトで書き出す sink。
+ * 書き込みはサーブレットの出力バッファ経由なので、バッファが埋まるたびにクライアントへ流れる。
+ */
+final class NdjsonResponse<T> implements Consumer<T> {
+
+    private final ObjectMapper mapper;
+    private final OutputStream out;
+
+    NdjsonResponse(ObjectMapper mapper, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        this.mapper = mapper;
+        this.out = response.getOutputStream();
+    }
+
+    @Override
+    public void accept(T value) {
+        try {
+            out.write(mapper.writeValueAsBytes(value)); // writeValue(out, ..) は out を閉じてしまう
+            out.write('\n');
+        } catch (IOException e) {
+            // クライアント切断など。ストリームを止めてトランザクションを閉じさせる
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void finish() throws IOException {
+        out.flush();
+    }
+}
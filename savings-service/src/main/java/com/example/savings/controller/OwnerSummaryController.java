@@ -0,0 +1,29 @@
+package com.example.savings.controller;
+
+import com.example.savings.dto.OwnerBalanceSummary;
+import com.example.savings.repository.OwnerSummaryRepository;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * owner ごとの残高合計: GET /owners/{owner}/summary → {"owner","balance","accounts"}
+ *
+ * owner_balance_summary の 1 行と、その owner の未畳み込みのジャーナルだけを読む（口座の行は読まない）。
+ * 費用は口座数に比例する（OwnerSummaryRepository#find 参照）。口座がない owner は 0 を返す。
+ */
+@RestController
+@RequestMapping("/owners")
+public class OwnerSummaryController {
+
+    private final OwnerSummaryRepository summaries;
+
+    public OwnerSummaryController(OwnerSummaryRepository summaries) {
+        this.summaries = summaries;
+    }
+
+    @PreAuthorize("hasRole('read')")
+    @GetMapping("/{owner}/summary")
+    public OwnerBalanceSummary summary(@PathVariable String owner) {
+        return summaries.find(owner).orElseGet(() -> OwnerBalanceSummary.empty(owner));
+    }
+}
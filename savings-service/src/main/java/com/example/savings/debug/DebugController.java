@@ -2,8 +2,11 @@ package com.example.savings.debug;
 
 import java.util.List;
 
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -13,6 +16,7 @@ import jakarta.persistence.PersistenceContext;
 
 import com.example.savings.model.Account;
 import com.example.savings.repository.SavingsAccountRepository; 
+import com.example.savings.service.OwnerDirectory;
 
 /**
  * デバッグ用検索API: /debug/savings?ownerKey=xxx
@@ -25,9 +29,11 @@ public class DebugController {
     @PersistenceContext
     EntityManager em;
     private final SavingsAccountRepository repo;
+    private final OwnerDirectory owners;
 
-    public DebugController(SavingsAccountRepository repo) {
+    public DebugController(SavingsAccountRepository repo, OwnerDirectory owners) {
         this.repo = repo;
+        this.owners = owners;
     }
 
     @GetMapping("/savings")
@@ -40,8 +46,15 @@ public class DebugController {
                  .getResultList();
     }
 
+    // DB には行かずインメモリの一覧を返す。If-None-Match が一致すれば 304（本文なし）
     @GetMapping("/owners")
-    public List<String> listOwners() {
-        return repo.findDistinctOwners();
+    public ResponseEntity<List<String>> listOwners(
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        OwnerDirectory.Snapshot snapshot = owners.snapshot();
+        String etag = snapshot.etag();
+        if (ifNoneMatch != null && ifNoneMatch.contains(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(snapshot.owners());
     }
 }
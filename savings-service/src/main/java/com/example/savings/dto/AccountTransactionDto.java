@@ -0,0 +1,25 @@
+package com.example.savings.dto;
+
+import com.example.savings.model.AccountTransaction;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+public record AccountTransactionDto(
+    Long seq,
+    UUID accountId,
+    String type,
+    BigDecimal amount,
+    Instant createdAt
+) {
+  public static AccountTransactionDto fromEntity(AccountTransaction t) {
+    if (t == null) return null;
+    return new AccountTransactionDto(
+        t.getSeq(),
+        t.getAccountId(),
+        t.getType() != null ? t.getType().name() : null,
+        t.getAmount(),
+        t.getCreatedAt()
+    );
+  }
+}
@@ -0,0 +1,22 @@
+package com.example.savings.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.example.savings.model.Account;
+import java.util.UUID;
+
+/** 一括作成の 1 行分の結果（NDJSON の 1 行）。成功時は id、失敗時は error を持つ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchRowResult(
+    int index,
+    UUID id,
+    String owner,
+    String error
+) {
+  public static BatchRowResult created(int index, Account a) {
+    return new BatchRowResult(index, a.getId(), a.getOwner(), null);
+  }
+
+  public static BatchRowResult failed(int index, String owner, String error) {
+    return new BatchRowResult(index, null, owner, error);
+  }
+}
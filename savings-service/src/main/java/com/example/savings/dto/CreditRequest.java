@@ -0,0 +1,11 @@
+package com.example.savings.dto;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/** 一括入金（POST /accounts/credits:batch）の 1 件分 */
+public record CreditRequest(
+    UUID accountId,
+    BigDecimal amount,
+    String idempotencyKey
+) {}
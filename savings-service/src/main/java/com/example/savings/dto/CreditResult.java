@@ -0,0 +1,43 @@
+package com.example.savings.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * 一括入金の 1 件分の結果（入力と同じ順・同じ index）。
+ * 適用時は balance（バッチ適用後の残高）、拒否時は error を持つ
+ * - APPLIED: 今回適用した / DUPLICATE: 同じ idempotencyKey・同じ内容で適用済み（今回は何もしていない）
+ * - REJECTED: 入力不正。同じ内容で再送しても通らない
+ * - FAILED: 適用していない。同じ idempotencyKey で再送してよい
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CreditResult(
+    int index,
+    UUID accountId,
+    String idempotencyKey,
+    String status,
+    BigDecimal balance,
+    String error
+) {
+  public static final String APPLIED = "APPLIED";
+  public static final String DUPLICATE = "DUPLICATE";
+  public static final String REJECTED = "REJECTED";
+  public static final String FAILED = "FAILED";
+
+  public static CreditResult applied(int index, CreditRequest c, BigDecimal balance) {
+    return new CreditResult(index, c.accountId(), c.idempotencyKey(), APPLIED, balance, null);
+  }
+
+  public static CreditResult duplicate(int index, CreditRequest c) {
+    return new CreditResult(index, c.accountId(), c.idempotencyKey(), DUPLICATE, null, null);
+  }
+
+  public static CreditResult failed(int index, CreditRequest c, String error) {
+    return new CreditResult(index, c.accountId(), c.idempotencyKey(), FAILED, null, error);
+  }
+
+  public static CreditResult rejected(int index, CreditRequest c, String error) {
+    return new CreditResult(index, c.accountId(), c.idempotencyKey(), REJECTED, null, error);
+  }
+}
@@ -0,0 +1,11 @@
+package com.example.savings.dto;
+
+import java.math.BigDecimal;
+
+/** owner の普通預金の残高合計と口座数（GET /owners/{owner}/summary） */
+public record OwnerBalanceSummary(String owner, BigDecimal balance, int accounts) {
+
+    public static OwnerBalanceSummary empty(String owner) {
+        return new OwnerBalanceSummary(owner, BigDecimal.ZERO.setScale(2), 0);
+    }
+}
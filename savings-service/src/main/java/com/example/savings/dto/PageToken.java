@@ -0,0 +1,28 @@
+package com.example.savings.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * キーセットページングの継続トークン（前ページ最終行の (created_at, id)）。
+ * クライアントには base64url の不透明な文字列として渡す。
+ */
+public record PageToken(Instant at, UUID id) {
+
+  public String encode() {
+    String raw = at.toString() + "|" + id;
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public static PageToken decode(String token) {
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      int sep = raw.indexOf('|');
+      return new PageToken(Instant.parse(raw.substring(0, sep)), UUID.fromString(raw.substring(sep + 1)));
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("invalid page token");
+    }
+  }
+}
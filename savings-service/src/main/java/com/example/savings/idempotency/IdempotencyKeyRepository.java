@@ -0,0 +1,112 @@
+package com.example.savings.idempotency;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * idempotency_keys テーブルの JDBC アクセス（いずれも呼び出し側のトランザクション内で使う）。
+ */
+@Repository
+public class IdempotencyKeyRepository {
+
+    private final JdbcTemplate jdbc;
+
+    public IdempotencyKeyRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * キーを確保する。確保できたら true。
+     * 同じキーを別トランザクションが確保中ならそのコミット／ロールバックまで一意制約で待たされる
+     * （= 同時に来た重複リクエストは先行分の結果が確定してから判定される）。
+     * 期限切れでまだ掃除されていない行は取り直す。
+     */
+    public boolean claim(String key, String fingerprint, Instant expiresAt) {
+        return jdbc.update("""
+                insert into idempotency_keys (key, fingerprint, expires_at) values (?, ?, ?)
+                on conflict (key) do update
+                   set fingerprint = excluded.fingerprint, status = null, body = null, expires_at = excluded.expires_at
+                 where idempotency_keys.expires_at < now()
+                """, key, fingerprint, Timestamp.from(expiresAt)) == 1;
+    }
+
+    /**
+     * 複数のキーを 1 文で確保し、確保できたキーを返す（待ち方・期限切れの扱いは claim と同じ）。
+     * keys は昇順で渡すこと（unnest の順に挿入され、その順で一意インデックスの行ロックを取る）
+     */
+    public Set<String> claimAll(List<String> keys, List<String> fingerprints, Instant expiresAt) {
+        Set<String> claimed = new HashSet<>();
+        jdbc.query("""
+                insert into idempotency_keys (key, fingerprint, expires_at)
+                select k, f, ? from unnest(?::text[], ?::text[]) with ordinality as t(k, f, n) order by n
+                on conflict (key) do update
+                   set fingerprint = excluded.fingerprint, status = null, body = null, expires_at = excluded.expires_at
+                 where idempotency_keys.expires_at < now()
+                returning key
+                """,
+                ps -> {
+                    ps.setTimestamp(1, Timestamp.from(expiresAt));
+                    ps.setArray(2, ps.getConnection().createArrayOf("text", keys.toArray()));
+                    ps.setArray(3, ps.getConnection().createArrayOf("text", fingerprints.toArray()));
+                },
+                rs -> { claimed.add(rs.getString(1)); });
+        return claimed;
+    }
+
+    public void complete(String key, int status, String body) {
+        jdbc.update("update idempotency_keys set status = ?, body = ? where key = ?", status, body, key);
+    }
+
+    public Optional<StoredResponse> find(String key) {
+        List<StoredResponse> rows = jdbc.query(
+                "select fingerprint, status, body, expires_at from idempotency_keys where key = ?",
+                (rs, n) -> new StoredResponse(rs.getString(1), rs.getInt(2), rs.getString(3),
+                                              rs.getTimestamp(4).toInstant()),
+                key);
+        return rows.stream().findFirst();
+    }
+
+    public void completeAll(Collection<String> keys, int status) {
+        jdbc.update(con -> {
+            var ps = con.prepareStatement("update idempotency_keys set status = ? where key = any(?)");
+            ps.setInt(1, status);
+            ps.setArray(2, con.createArrayOf("text", keys.toArray()));
+            return ps;
+        });
+    }
+
+    public void deleteAll(Collection<String> keys) {
+        jdbc.update(con -> {
+            var ps = con.prepareStatement("delete from idempotency_keys where key = any(?)");
+            ps.setArray(1, con.createArrayOf("text", keys.toArray()));
+            return ps;
+        });
+    }
+
+    public Map<String, StoredResponse> findAll(Collection<String> keys) {
+        Map<String, StoredResponse> found = new HashMap<>();
+        jdbc.query("select key, fingerprint, status, body, expires_at from idempotency_keys where key = any(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", keys.toArray())),
+                rs -> {
+                    int status = rs.getInt(3);
+                    found.put(rs.getString(1), new StoredResponse(rs.getString(2), rs.wasNull() ? 0 : status,
+                            rs.getString(4), rs.getTimestamp(5).toInstant()));
+                });
+        return found;
+    }
+
+    /** 期限切れの行を削除し、件数を返す */
+    public int purgeExpired(Instant now) {
+        return jdbc.update("delete from idempotency_keys where expires_at < ?", Timestamp.from(now));
+    }
+}
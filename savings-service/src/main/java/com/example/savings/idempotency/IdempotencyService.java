@@ -0,0 +1,262 @@
+package com.example.savings.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key による重複リクエストの排除と応答の再送。
+ *
+ * - 初回: キーの確保（idempotency_keys への INSERT）・本処理・応答の保存を 1 トランザクションで行う。
+ *   本処理（入出金のジャーナル追記）と同時にコミットされるので、「処理したのに記録がない」状態は作らない。
+ *   本処理が例外で終わったときはキーごとロールバックされ、再送は普通にやり直される。
+ * - 2 回目以降: 保存済みの応答（ステータスとボディのバイト列）をそのまま返し、accounts には触れない。
+ *   直近のキーはメモリ上の LRU から返すので DB にも行かない。
+ * - 同じキーでリクエスト内容が違う場合は 422。
+ * キーは JWT の subject ごとの名前空間に入れる（利用者間で衝突しない）。保持期間は ttl で、期限切れは定期削除。
+ *
+ * ledger モードの入出金は executeDetached を使う（本処理はライタのグループコミット待ちなので、
+ * その間 DB コネクションを握らないよう、キーの確保と応答の保存を別々の短いトランザクションにする）。
+ * - 処理中のキーへの再送は 409（初回の完了を待たない）
+ * - 本処理が結果不明（5xx、確定待ちのタイムアウトなど）で終わったキーは解放せず、TTL まで 409 のままにする
+ *   （解放すると、後から確定した初回と再送で二重適用になる）。それ以外の失敗はキーを解放して再送可能にする
+ *
+ * 一括入金の行ごとのキー（ボディの idempotencyKey）は claimAll / completeAll / releaseAll で同じ表に記録する
+ * （namespace を付けて、ヘッダのキーとは別の名前空間にする）。
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private final IdempotencyKeyRepository repo;
+    private final TransactionTemplate tx;
+    private final ObjectMapper mapper;
+    private final Duration ttl;
+    private final Map<String, StoredResponse> recent;
+
+    public IdempotencyService(IdempotencyKeyRepository repo, TransactionTemplate tx, ObjectMapper mapper,
+                              @Value("${savings.idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${savings.idempotency.cache-size:10000}") int cacheSize) {
+        this.repo = repo;
+        this.tx = tx;
+        this.mapper = mapper;
+        this.ttl = Duration.ofHours(ttlHours);
+        this.recent = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * key が無ければ action をそのまま実行する。
+     * request はリクエスト内容の識別文字列（メソッド・パス・ボディなど）で、同じキーの再送かどうかの判定に使う
+     */
+    public ResponseEntity<?> execute(String key, String request, Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) return action.get();
+        String scoped = scope(key);
+        String fingerprint = sha256(request);
+        Instant now = Instant.now();
+
+        StoredResponse cached = recent.get(scoped);
+        if (cached != null && cached.expiresAt().isAfter(now)) return replay(cached, fingerprint);
+
+        Result r = tx.execute(s -> {
+            if (!repo.claim(scoped, fingerprint, now.plus(ttl))) {
+                StoredResponse stored = repo.find(scoped)
+                        .orElseThrow(() -> new IllegalStateException("idempotency key vanished: " + key));
+                return new Result(stored, true);
+            }
+            ResponseEntity<?> res = action.get();
+            StoredResponse stored = new StoredResponse(fingerprint, res.getStatusCode().value(), json(res.getBody()), now.plus(ttl));
+            repo.complete(scoped, stored.status(), stored.body());
+            return new Result(stored, false);
+        });
+        recent.put(scoped, r.stored());
+        return r.replayed() ? replay(r.stored(), fingerprint) : toResponse(r.stored(), false);
+    }
+
+    /**
+     * execute と同じ判定を、本処理をトランザクションの外で行う形で提供する（ledger モード用）。
+     * キーの確保・応答の保存・キーの解放はそれぞれ独立した短いトランザクションで行う
+     */
+    public ResponseEntity<?> executeDetached(String key, String request, Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) return action.get();
+        String scoped = scope(key);
+        String fingerprint = sha256(request);
+        Instant now = Instant.now();
+
+        StoredResponse cached = recent.get(scoped);
+        if (cached != null && cached.expiresAt().isAfter(now)) return replay(cached, fingerprint);
+
+        if (!Boolean.TRUE.equals(tx.execute(s -> repo.claim(scoped, fingerprint, now.plus(ttl))))) {
+            StoredResponse stored = repo.find(scoped)
+                    .orElseThrow(() -> new IllegalStateException("idempotency key vanished: " + key));
+            if (stored.status() == 0) {
+                requireSameRequest(stored, fingerprint);
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "a request with this Idempotency-Key is still in progress");
+            }
+            recent.put(scoped, stored);
+            return replay(stored, fingerprint);
+        }
+
+        ResponseEntity<?> res;
+        try {
+            res = action.get();
+        } catch (RuntimeException e) {
+            if (!outcomeUnknown(e)) tx.executeWithoutResult(s -> repo.deleteAll(List.of(scoped)));
+            throw e;
+        }
+        StoredResponse stored = new StoredResponse(fingerprint, res.getStatusCode().value(), json(res.getBody()), now.plus(ttl));
+        tx.executeWithoutResult(s -> repo.complete(scoped, stored.status(), stored.body()));
+        recent.put(scoped, stored);
+        return toResponse(stored, false);
+    }
+
+    private static boolean outcomeUnknown(RuntimeException e) {
+        return e instanceof ResponseStatusException rse && rse.getStatusCode().is5xxServerError();
+    }
+
+    /** 行ごとのキーの確保結果 */
+    public enum KeyState {
+        /** 今回確保した（この呼び出しで適用する） */
+        CLAIMED,
+        /** 同じ内容で適用済み */
+        APPLIED,
+        /** 同じ内容で確保済みだが、まだ適用が確定していない（処理中、または確定前に落ちた） */
+        PENDING,
+        /** 別の内容で使われている */
+        CONFLICT
+    }
+
+    /**
+     * 行ごとのキーをまとめて確保する（1 文）。requests はキー → 行の内容の識別文字列。
+     * 呼び出し側のトランザクション内で使えば、確保は本処理と一緒にコミット／ロールバックされる。
+     */
+    public Map<String, KeyState> claimAll(String namespace, Map<String, String> requests) {
+        if (requests.isEmpty()) return Map.of();
+        // 一意インデックスの行ロックはキーの昇順で取る（重なるキーを逆順に持つバッチ同士がデッドロックしないように）
+        TreeMap<String, String> sorted = new TreeMap<>();
+        Map<String, String> byScoped = new HashMap<>();
+        requests.forEach((key, request) -> {
+            String scoped = scope(namespace + "|" + key);
+            sorted.put(scoped, sha256(request));
+            byScoped.put(scoped, key);
+        });
+        List<String> keys = new ArrayList<>(sorted.keySet());
+        List<String> fingerprints = new ArrayList<>(sorted.values());
+        Set<String> claimed = repo.claimAll(keys, fingerprints, Instant.now().plus(ttl));
+        Map<String, StoredResponse> stored = claimed.size() == keys.size() ? Map.of()
+                : repo.findAll(keys.stream().filter(k -> !claimed.contains(k)).toList());
+        Map<String, KeyState> states = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            String scoped = keys.get(i);
+            StoredResponse s = stored.get(scoped);
+            KeyState state;
+            if (claimed.contains(scoped)) state = KeyState.CLAIMED;
+            else if (s == null) throw new IllegalStateException("idempotency key vanished: " + byScoped.get(scoped));
+            else if (!s.fingerprint().equals(fingerprints.get(i))) state = KeyState.CONFLICT;
+            else state = s.status() == 0 ? KeyState.PENDING : KeyState.APPLIED;
+            states.put(byScoped.get(scoped), state);
+        }
+        return states;
+    }
+
+    /** claimAll で確保したキーを適用済みにする */
+    public void completeAll(String namespace, Collection<String> keys) {
+        if (!keys.isEmpty()) repo.completeAll(scopeAll(namespace, keys), HttpStatus.OK.value());
+    }
+
+    /** claimAll で確保したキーを手放す（適用しなかった行を同じキーで再送できるように） */
+    public void releaseAll(String namespace, Collection<String> keys) {
+        if (!keys.isEmpty()) repo.deleteAll(scopeAll(namespace, keys));
+    }
+
+    @Scheduled(fixedDelayString = "${savings.idempotency.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        Instant now = Instant.now();
+        recent.values().removeIf(s -> !s.expiresAt().isAfter(now));
+        int n = repo.purgeExpired(now);
+        if (n > 0) log.debug("purged {} expired idempotency keys", n);
+    }
+
+    private record Result(StoredResponse stored, boolean replayed) {}
+
+    private static ResponseEntity<?> replay(StoredResponse stored, String fingerprint) {
+        requireSameRequest(stored, fingerprint);
+        return toResponse(stored, true);
+    }
+
+    private static void requireSameRequest(StoredResponse stored, String fingerprint) {
+        if (!stored.fingerprint().equals(fingerprint)) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    "Idempotency-Key was already used for a different request");
+        }
+    }
+
+    // ボディは保存した JSON をそのまま返す（数値の桁なども初回と同じバイト列になる）
+    private static ResponseEntity<?> toResponse(StoredResponse stored, boolean replayed) {
+        var res = ResponseEntity.status(stored.status()).contentType(MediaType.APPLICATION_JSON);
+        if (replayed) res.header(REPLAYED_HEADER, "true");
+        return res.body(stored.body());
+    }
+
+    private String json(Object body) {
+        try {
+            return mapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("response is not serializable", e);
+        }
+    }
+
+    private static String scope(String key) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return (auth != null ? auth.getName() : "") + "|" + key;
+    }
+
+    private static List<String> scopeAll(String namespace, Collection<String> keys) {
+        return keys.stream().map(k -> scope(namespace + "|" + k)).sorted().toList();
+    }
+
+    private static String sha256(String s) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.savings.idempotency;
+
+import java.time.Instant;
+
+/** 保存済みの応答。fingerprint は最初のリクエスト内容（メソッド・パス・ボディ）のハッシュ */
+public record StoredResponse(
+    String fingerprint,
+    int status,
+    String body,
+    Instant expiresAt
+) {}
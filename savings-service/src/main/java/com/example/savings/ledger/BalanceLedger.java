@@ -0,0 +1,94 @@
+package com.example.savings.ledger;
+
+import com.example.savings.repository.AccountRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * ledger モード（savings.ledger.enabled=true）の入口。
+ *
+ * 口座ごとの残高を LedgerCell でメモリ上に持ち、入出金はセルへの原子的な加減算とジャーナル確定待ちだけで完了する。
+ * - 入金: ジャーナル確定を待ってからセルに加算する（未確定の入金を出金に使わせない。
+ *   先に加算すると、その間の出金が確定しなかった入金を引き出し、取り消しで残高がマイナスになる）
+ * - 出金: 先にセルから差し引いて（確保）からジャーナル確定を待ち、失敗したら戻す（戻しは加算なので負にならない）
+ * セルへの加算・戻しは Future の完了に結び付けてあるので、確定待ちが journal-timeout-ms で打ち切られても
+ * 後から確定（または失敗）した時点でセルは DB と揃う。打ち切った呼び出しは結果不明として 503 を返す。
+ * accounts 行の更新は BalanceSnapshotJob がまとめて後追いで行うため、
+ * ホットな口座でも行ロック・楽観ロック再試行で直列化されない。
+ */
+@Component
+@ConditionalOnProperty(name = "savings.ledger.enabled", havingValue = "true")
+public class BalanceLedger {
+
+    private final ConcurrentHashMap<UUID, LedgerCell> cells = new ConcurrentHashMap<>();
+    private final AccountRepository repo;
+    private final LedgerJournalWriter writer;
+    private final long journalTimeoutMs;
+
+    public BalanceLedger(AccountRepository repo, LedgerJournalWriter writer,
+                         @Value("${savings.ledger.journal-timeout-ms:5000}") long journalTimeoutMs) {
+        this.repo = repo;
+        this.writer = writer;
+        this.journalTimeoutMs = journalTimeoutMs;
+    }
+
+    /** 入金し、入金直後の残高を返す */
+    public BigDecimal deposit(UUID id, BigDecimal amount) {
+        long cents = toCents(amount);
+        LedgerCell cell = cell(id);
+        return fromCents(awaitJournal(writer.append(id, cents).thenApply(v -> cell.add(cents))));
+    }
+
+    /** 出金し、出金直後の残高を返す（残高不足は IllegalStateException） */
+    public BigDecimal withdraw(UUID id, BigDecimal amount) {
+        long cents = toCents(amount);
+        LedgerCell cell = cell(id);
+        long after = cell.tryWithdraw(cents);
+        if (after < 0) throw new IllegalStateException("insufficient funds");
+        CompletableFuture<Void> journaled = writer.append(id, -cents);
+        // ジャーナルに残らなかった出金はメモリからも取り消す
+        journaled.whenComplete((v, ex) -> { if (ex != null) cell.add(cents); });
+        awaitJournal(journaled);
+        return fromCents(after);
+    }
+
+    private LedgerCell cell(UUID id) {
+        // 初回だけ DB から残高を復元する（スナップショット + 未反映ジャーナル = 前回プロセスの書き残しも含む）
+        return cells.computeIfAbsent(id, k -> new LedgerCell(toCents(repo.currentBalance(k)
+                .orElseThrow(() -> new IllegalArgumentException("Account not found")))));
+    }
+
+    private <T> T awaitJournal(CompletableFuture<T> journaled) {
+        try {
+            return journaled.get(journalTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            // 書き込み自体は続いているので、取り消さずに結果不明として返す（再送は Idempotency-Key で判定する）
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "journal commit timed out; outcome unknown");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "interrupted while waiting for journal commit");
+        }
+    }
+
+    static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
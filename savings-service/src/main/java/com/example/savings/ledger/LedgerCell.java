@@ -0,0 +1,39 @@
+package com.example.savings.ledger;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 1 口座分のインメモリ残高（単位: 銭 = 小数2桁を整数化した値）。
+ *
+ * 残高はジャーナル確定済みの入金と、確保済み（確定待ちを含む）の出金だけを反映する。
+ * - 入金はジャーナル確定後に addAndGet で無条件に加算（ロックなし）
+ * - 出金は CAS ループで「残高 >= 出金額」を満たすときだけ減算
+ * 同じ口座への更新はすべてこのセルを経由するため、@Version の楽観ロック再試行が発生しない。
+ */
+final class LedgerCell {
+
+    private final AtomicLong cents;
+
+    LedgerCell(long initialCents) {
+        this.cents = new AtomicLong(initialCents);
+    }
+
+    long balance() {
+        return cents.get();
+    }
+
+    /** 差分を加算し、加算後の残高を返す（確定した入金と、ジャーナル書込みに失敗した出金の巻き戻しに使う） */
+    long add(long delta) {
+        return cents.addAndGet(delta);
+    }
+
+    /** 残高が足りれば減算して減算後の残高を、足りなければ -1 を返す */
+    long tryWithdraw(long amount) {
+        while (true) {
+            long current = cents.get();
+            if (current < amount) return -1;
+            long next = current - amount;
+            if (cents.compareAndSet(current, next)) return next;
+        }
+    }
+}
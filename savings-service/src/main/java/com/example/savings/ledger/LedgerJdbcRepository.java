@@ -0,0 +1,35 @@
+package com.example.savings.ledger;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ledger モード専用の JDBC アクセス。
+ * JPA のダーティチェックや IDENTITY 採番の往復を通さず、ジャーナルをバッチで追記する。
+ */
+@Repository
+@ConditionalOnProperty(name = "savings.ledger.enabled", havingValue = "true")
+public class LedgerJdbcRepository {
+
+    private final JdbcTemplate jdbc;
+
+    public LedgerJdbcRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /** ジャーナルへ 1 バッチ分を 1 トランザクションで追記する（owner ごとの残高合計は BalanceSnapshotJob が畳み込む） */
+    @Transactional
+    public void appendJournal(List<LedgerJournalWriter.Entry> entries) {
+        List<Object[]> args = new ArrayList<>(entries.size());
+        for (LedgerJournalWriter.Entry e : entries) {
+            args.add(new Object[]{e.accountId(), e.cents() >= 0 ? "DEPOSIT" : "WITHDRAW", BigDecimal.valueOf(e.cents(), 2)});
+        }
+        jdbc.batchUpdate("insert into account_transactions (account_id, type, amount) values (?, ?, ?)", args);
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.savings.ledger;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ledger モードの write-behind パイプライン（単一ライタスレッド）。
+ *
+ * 1) 呼び出し側は append() でエントリをキューに積み、返された Future の完了（= ジャーナル確定）を待つ
+ * 2) ライタはキューを最大 batch-size 件ずつ取り出し、1 トランザクションでジャーナルへ追記（グループコミット）
+ *
+ * accounts.balance への畳み込みは通常モードと同じく BalanceSnapshotJob が口座ごとに 1 UPDATE で行う。
+ * （ledger モードは 1 口座を 1 インスタンスだけが担当する前提）
+ *
+ * 停止判定とキューへの追加は同じロックの中で行うので、停止後に積まれて誰にも書かれないエントリはできない。
+ * ライタが書き切れずに抜けた場合（割り込み・停止待ちのタイムアウト）も、残ったエントリは失敗で完了させる。
+ */
+@Component
+@ConditionalOnProperty(name = "savings.ledger.enabled", havingValue = "true")
+public class LedgerJournalWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerJournalWriter.class);
+
+    record Entry(UUID accountId, long cents, CompletableFuture<Void> done) {}
+
+    private final LedgerJdbcRepository store;
+    private final int batchSize;
+
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile boolean running;
+    private Thread thread;
+
+    public LedgerJournalWriter(LedgerJdbcRepository store,
+                               @Value("${savings.ledger.batch-size:512}") int batchSize) {
+        this.store = store;
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        thread = new Thread(this::run, "ledger-journal-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        lock.lock();
+        try {
+            running = false;
+        } finally {
+            lock.unlock();
+        }
+        thread.join(TimeUnit.SECONDS.toMillis(30));
+        if (thread.isAlive()) {
+            thread.interrupt();
+            failRemaining(new IllegalStateException("ledger writer did not stop in time"));
+        }
+    }
+
+    /** 差分をジャーナルに積む。返り値の Future はジャーナルのコミット後に完了する */
+    public CompletableFuture<Void> append(UUID accountId, long cents) {
+        Entry e = new Entry(accountId, cents, new CompletableFuture<>());
+        lock.lock();
+        try {
+            if (running) {
+                queue.add(e);
+                return e.done();
+            }
+        } finally {
+            lock.unlock();
+        }
+        e.done().completeExceptionally(new IllegalStateException("ledger is shutting down"));
+        return e.done();
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        // 停止要求後もキューに残った分は書き切ってから抜ける
+        while (running || !queue.isEmpty()) {
+            try {
+                // タイムアウトは停止フラグを見るためだけのもの
+                Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    writeBatch(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                // 取り出し済みでまだ書いていない分も、キューの残りと一緒に失敗させる
+                batch.forEach(e -> e.done().completeExceptionally(new IllegalStateException("ledger writer interrupted")));
+                break;
+            } catch (RuntimeException ex) {
+                log.error("ledger writer loop failed", ex);
+                batch.forEach(e -> e.done().completeExceptionally(ex));
+                batch.clear();
+            }
+        }
+        failRemaining(new IllegalStateException("ledger writer stopped"));
+    }
+
+    // 書かれないまま残ったエントリの待ち手を解放する（未確定なので呼び出し側はセルを巻き戻す）
+    private void failRemaining(RuntimeException cause) {
+        List<Entry> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        rest.forEach(e -> e.done().completeExceptionally(cause));
+    }
+
+    private void writeBatch(List<Entry> batch) {
+        try {
+            store.appendJournal(batch);
+        } catch (RuntimeException ex) {
+            // 確定できなかった分は呼び出し側でセルを巻き戻す
+            batch.forEach(e -> e.done().completeExceptionally(ex));
+            return;
+        }
+        batch.forEach(e -> e.done().complete(null));
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.savings.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Formula;
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.UUID;
@@ -14,7 +15,10 @@ public class Account {
     @Column(nullable = false)
     private String owner;
 
-    @Column(nullable = false, precision = 19, scale = 2)
+    // balance 列は畳み込み済み（folded）のジャーナルのスナップショット。読み取り時は未畳み込みの分を足す。
+    // 列自体は BalanceSnapshotJob だけが更新する（INSERT 時は DB の DEFAULT 0）。
+    @Formula("balance + coalesce((select sum(t.amount) from account_transactions t"
+            + " where t.account_id = id and not t.folded), 0)")
     private BigDecimal balance = BigDecimal.ZERO;
 
     @Column(name = "created_at", nullable = false)
@@ -38,4 +42,21 @@ public class Account {
 
     public void setOwner(String owner) { this.owner = owner; }
     public void setBalance(BigDecimal balance) { this.balance = balance; }
+
+    /** 一括作成用。JPA を通さず INSERT するため、@PrePersist と同じ採番をここで済ませておく */
+    public static Account newAccount(String owner) {
+        Account a = new Account();
+        a.owner = owner;
+        a.onCreate();
+        a.version = 0L;
+        return a;
+    }
+
+    /** id と残高だけを持つ非管理のインスタンス（入出金レスポンス用） */
+    public static Account view(UUID id, BigDecimal balance) {
+        Account a = new Account();
+        a.id = id;
+        a.balance = balance;
+        return a;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,56 @@
+package com.example.savings.model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * 入出金ジャーナル（追記専用。UPDATE/DELETE はしない）。
+ * amount は符号付き（入金 +、出金 -）で、口座残高はこの合計から求まる。
+ */
+@Entity
+@Table(name = "account_transactions")
+public class AccountTransaction {
+    public enum Type { DEPOSIT, WITHDRAW }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long seq;
+
+    @Column(name = "account_id", nullable = false)
+    private UUID accountId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Type type;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+
+    // DB の clock_timestamp() で採番（アプリ側では入れない。履歴の並び用で、畳み込みの境界には使わない）
+    @Column(name = "created_at", insertable = false, updatable = false)
+    private Instant createdAt;
+
+    public static AccountTransaction deposit(UUID accountId, BigDecimal amount) {
+        return of(accountId, Type.DEPOSIT, amount);
+    }
+
+    public static AccountTransaction withdraw(UUID accountId, BigDecimal amount) {
+        return of(accountId, Type.WITHDRAW, amount.negate());
+    }
+
+    private static AccountTransaction of(UUID accountId, Type type, BigDecimal signedAmount) {
+        AccountTransaction t = new AccountTransaction();
+        t.accountId = accountId;
+        t.type = type;
+        t.amount = signedAmount;
+        return t;
+    }
+
+    public Long getSeq() { return seq; }
+    public UUID getAccountId() { return accountId; }
+    public Type getType() { return type; }
+    public BigDecimal getAmount() { return amount; }
+    public Instant getCreatedAt() { return createdAt; }
+}
@@ -0,0 +1,89 @@
+package com.example.savings.repository;
+
+import com.example.savings.dto.SavingsAccountDto;
+import com.example.savings.model.Account;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 口座の一括作成・一括入金用 JDBC アクセス。
+ * 1 行ごとの往復なしに JDBC バッチでまとめて INSERT する
+ * （reWriteBatchedInserts=true で PgJDBC が複数行 VALUES に書き換える）。
+ * 複数 id の参照は id = any(?) の 1 クエリにする。
+ */
+@Repository
+public class AccountJdbcRepository {
+
+    private final JdbcTemplate jdbc;
+
+    public AccountJdbcRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /** 呼び出し側のトランザクション内で INSERT する（balance は DB の DEFAULT） */
+    public void insertAll(List<Account> accounts) {
+        List<Object[]> args = new ArrayList<>(accounts.size());
+        for (Account a : accounts) {
+            args.add(new Object[]{a.getId(), a.getOwner(), Timestamp.from(a.getCreatedAt())});
+        }
+        jdbc.batchUpdate("insert into accounts (id, owner, created_at, version) values (?, ?, ?, 0)", args);
+    }
+
+    /** 存在する口座 id だけを返す */
+    public Set<UUID> existingIds(Collection<UUID> ids) {
+        Set<UUID> found = new HashSet<>();
+        jdbc.query("select id from accounts where id = any(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids.toArray())),
+                rs -> { found.add(rs.getObject(1, UUID.class)); });
+        return found;
+    }
+
+    /** 入金をジャーナルへまとめて追記する（呼び出し側のトランザクション内） */
+    public void appendDeposits(List<UUID> accountIds, List<BigDecimal> amounts) {
+        List<Object[]> args = new ArrayList<>(accountIds.size());
+        for (int i = 0; i < accountIds.size(); i++) {
+            args.add(new Object[]{accountIds.get(i), "DEPOSIT", amounts.get(i)});
+        }
+        jdbc.batchUpdate("insert into account_transactions (account_id, type, amount) values (?, ?, ?)", args);
+    }
+
+    /** 実残高（スナップショット + 未畳み込みのジャーナル。AccountRepository.currentBalance の複数口座版） */
+    public Map<UUID, BigDecimal> currentBalances(Collection<UUID> ids) {
+        Map<UUID, BigDecimal> balances = new HashMap<>();
+        jdbc.query("""
+                select a.id, a.balance + coalesce((select sum(t.amount) from account_transactions t
+                                                    where t.account_id = a.id and not t.folded), 0)
+                  from accounts a
+                 where a.id = any(?)
+                """,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids.toArray())),
+                rs -> { balances.put(rs.getObject(1, UUID.class), rs.getBigDecimal(2)); });
+        return balances;
+    }
+
+    /** 複数口座をまとめて読む（残高は currentBalances と同じ式。見つからない id は結果に含まれない） */
+    public List<SavingsAccountDto> findAll(Collection<UUID> ids) {
+        return jdbc.query("""
+                select a.id, a.owner,
+                       a.balance + coalesce((select sum(t.amount) from account_transactions t
+                                              where t.account_id = a.id and not t.folded), 0),
+                       a.created_at, a.version
+                  from accounts a
+                 where a.id = any(?)
+                """,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids.toArray())),
+                (rs, n) -> new SavingsAccountDto(rs.getObject(1, UUID.class), rs.getString(2), rs.getBigDecimal(3),
+                        rs.getTimestamp(4).toInstant(), rs.getLong(5)));
+    }
+}
@@ -1,13 +1,99 @@
 package com.example.savings.repository;
 
 import com.example.savings.model.Account;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.repository.query.Param;
 // import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.List;   // ← 追加
+import java.util.Optional;
 import java.util.UUID;  // ← UUID を使っているなら追加
+import java.util.stream.Stream;
 
 // public interface AccountRepository extends JpaRepository<Account, UUID> {}
 public interface AccountRepository extends JpaRepository<Account, UUID> {
-    List<Account> findByOwner(String owner);
-}
\ No newline at end of file
+    List<Account> findByOwnerOrderByCreatedAtAscIdAsc(String owner);
+
+    // ▼ キーセットページング（created_at, id 順）。accounts_owner_created_idx を範囲走査するので何ページ目でも同じコスト
+    @Query("select a from Account a where a.owner = :owner order by a.createdAt, a.id")
+    List<Account> findPageByOwner(@Param("owner") String owner, Limit limit);
+
+    // createdAt >= :at を先に置いてインデックスの開始位置にし、同時刻は id で切る
+    @Query("""
+        select a from Account a
+         where a.owner = :owner
+           and a.createdAt >= :at and (a.createdAt > :at or a.id > :id)
+         order by a.createdAt, a.id
+        """)
+    List<Account> findPageByOwnerAfter(@Param("owner") String owner, @Param("at") Instant at,
+                                       @Param("id") UUID id, Limit limit);
+
+    // NDJSON 出力用。サーバサイドカーソルで STREAM_FETCH_SIZE 件ずつ読む（トランザクション内で使うこと）
+    int STREAM_FETCH_SIZE = 500;
+
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select a from Account a where a.owner = :owner")
+    Stream<Account> streamByOwner(@Param("owner") String owner);
+
+    // 実残高 = スナップショット + 未畳み込みのジャーナル（Account.balance の @Formula と同じ式）
+    @Query(value = """
+        select a.balance + coalesce((select sum(t.amount) from account_transactions t
+                                      where t.account_id = a.id and not t.folded), 0)
+          from accounts a
+         where a.id = :id
+        """, nativeQuery = true)
+    Optional<BigDecimal> currentBalance(@Param("id") UUID id);
+
+    // 出金の残高チェックを口座単位で直列化する（入金の INSERT とは競合しない NO KEY UPDATE）
+    @Query(value = "select 1 from accounts where id = :id for no key update", nativeQuery = true)
+    Optional<Integer> lockForWithdraw(@Param("id") UUID id);
+
+    // スナップショット更新はクラスタで 1 本だけ走らせる（トランザクション終了で自動解放）
+    @Query(value = "select pg_try_advisory_xact_lock(hashtext('accounts-snapshot'))", nativeQuery = true)
+    boolean tryLockSnapshot();
+
+    /**
+     * 未畳み込み（folded = false）のジャーナルを最大 batch 行取り、印を付けたうえで口座ごとに合算して balance に畳み込む。
+     * 同じ文で owner ごとの合計（owner_balance_summary.balance）にも加算する（1 文なので、行の印・口座・合計が同時に変わる）。
+     * 見えるのはコミット済みの行だけなので、遅れてコミットされた行も次回に拾われる。印の付いた行は対象外なので二重計上しない。
+     * 畳み込んだジャーナルの行数を返す
+     */
+    @Query(value = """
+        with j as (
+            select seq, account_id, amount
+              from account_transactions
+             where not folded
+             limit :batch
+        ), marked as (
+            update account_transactions x
+               set folded = true
+              from j
+             where x.seq = j.seq
+        ), t as (
+            select account_id, sum(amount) as total from j group by account_id
+        ), folded as (
+            update accounts a
+               set balance = a.balance + t.total, version = a.version + 1
+              from t
+             where a.id = t.account_id
+            returning a.owner, t.total
+        ), owners as (
+            insert into owner_balance_summary (owner, balance)
+            select owner, sum(total) from folded group by owner order by owner
+            on conflict (owner) do update
+               set balance = owner_balance_summary.balance + excluded.balance, updated_at = now()
+        )
+        select count(*) from j
+        """, nativeQuery = true)
+    int foldJournal(@Param("batch") int batch);
+}
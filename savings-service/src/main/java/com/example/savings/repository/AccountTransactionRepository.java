@@ -0,0 +1,14 @@
+package com.example.savings.repository;
+
+import com.example.savings.model.AccountTransaction;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface AccountTransactionRepository extends JpaRepository<AccountTransaction, Long> {
+
+  // 新しい順の入出金履歴
+  List<AccountTransaction> findByAccountIdOrderBySeqDesc(UUID accountId, Limit limit);
+}
@@ -0,0 +1,36 @@
+package com.example.savings.repository;
+
+import java.util.Locale;
+
+/**
+ * owner 検索キーから LIKE パターンを作る。
+ *
+ * - 3 文字以上: 部分一致 '%key%'。lower(owner) の pg_trgm GIN インデックス（accounts_owner_trgm_idx）で引ける
+ * - 3 文字未満: トライグラムが作れず部分一致はインデックスに乗らないため、前方一致 'key%' に絞る
+ *   （lower(owner) text_pattern_ops の B-tree, accounts_owner_prefix_idx）
+ * 検索語中の % _ はワイルドカードにならないよう '!' でエスケープする（クエリ側は escape '!'）。
+ * 関連度順の「前方一致」判定にも、生のキーではなく prefix（エスケープ済み）を使う。
+ */
+public final class OwnerSearch {
+  public static final int TRIGRAM_MIN = 3;
+
+  private OwnerSearch() {}
+
+  public static String normalize(String key) {
+    return key == null ? "" : key.strip().toLowerCase(Locale.ROOT);
+  }
+
+  /** normalize 済みのキーに対する LIKE パターン（長さに応じて部分一致 / 前方一致） */
+  public static String pattern(String normalized) {
+    return normalized.length() >= TRIGRAM_MIN ? "%" + escape(normalized) + "%" : prefix(normalized);
+  }
+
+  /** normalize 済みのキーに対する前方一致の LIKE パターン */
+  public static String prefix(String normalized) {
+    return escape(normalized) + "%";
+  }
+
+  private static String escape(String s) {
+    return s.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+  }
+}
@@ -0,0 +1,68 @@
+package com.example.savings.repository;
+
+import com.example.savings.dto.OwnerBalanceSummary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * owner_balance_summary（owner ごとの残高合計）の JDBC アクセス。
+ *
+ * balance は口座残高と同じく「畳み込み済みの分」だけを持つ。入出金では書かず、BalanceSnapshotJob が
+ * ジャーナルを accounts.balance に畳み込むのと同じ文で owner ごとに加算する（AccountRepository#foldJournal）。
+ * そのため入金は owner 行をロックしない（同じ owner への入金同士も競合しない）。
+ * 読むとき（find）に、owner の口座の未畳み込みのジャーナルを足して今の合計にする。
+ * accounts（口座数）は作成と同じトランザクションで加算する。複数 owner をまとめるときは owner 順に並べて、
+ * バッチ同士のデッドロックを避ける。
+ */
+@Repository
+public class OwnerSummaryRepository {
+
+    private final JdbcTemplate jdbc;
+
+    public OwnerSummaryRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /** 口座の作成数を owner ごとに加算する */
+    public void addAccounts(List<String> owners) {
+        jdbc.update("""
+                insert into owner_balance_summary (owner, accounts)
+                select o.owner, count(*) from unnest(?::text[]) as o(owner)
+                 group by o.owner
+                 order by o.owner
+                on conflict (owner) do update
+                   set accounts = owner_balance_summary.accounts + excluded.accounts, updated_at = now()
+                """,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", owners.toArray())));
+    }
+
+    /**
+     * 畳み込み済みの合計 + owner の口座の未畳み込みのジャーナル（folded = false の行）。
+     *
+     * 点読み（O(1)）ではなく、owner の口座数に比例する: 口座 id を accounts_owner_created_idx からインデックスだけで取り、
+     * 口座ごとに account_transactions_unfolded_idx を 1 回引く。部分インデックスには直近の畳み込み以降の行しか載らないので、
+     * 1 回ごとは浅く、入出金の無い口座はヒープに触れない。
+     * 未畳み込み分も入出金と同じトランザクションで owner 行に加算すれば O(1) になるが、同じ owner への入出金が
+     * すべてその行のロックで直列化される（ジャーナル方式・ledger モードで避けているもの）。書き込みの並行性を優先して、
+     * 読み取り側でこの費用を払う
+     */
+    public Optional<OwnerBalanceSummary> find(String owner) {
+        return jdbc.query("""
+                        select s.owner,
+                               s.balance + coalesce((select sum(t.amount)
+                                                       from accounts a
+                                                       join account_transactions t
+                                                         on t.account_id = a.id and not t.folded
+                                                      where a.owner = s.owner), 0),
+                               s.accounts
+                          from owner_balance_summary s
+                         where s.owner = ?
+                        """,
+                        (rs, n) -> new OwnerBalanceSummary(rs.getString(1), rs.getBigDecimal(2), rs.getInt(3)),
+                        owner)
+                .stream().findFirst();
+    }
+}
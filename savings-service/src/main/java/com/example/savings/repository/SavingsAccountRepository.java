@@ -1,21 +1,86 @@
 package com.example.savings.repository;
 
 import com.example.savings.model.Account; // ← 実体
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface SavingsAccountRepository extends JpaRepository<Account, UUID> {
 
+  // owner 検索はすべて lower(owner) like :pattern escape '!' の形にしてインデックスに乗せる
+  // （:pattern は OwnerSearch.pattern で作る。下の default メソッド経由で呼ぶこと）
+
+  /** 関連度順の上位 limit 件（完全一致 → 前方一致 → トライグラム類似度の高い順） */
+  default List<Account> searchByOwnerKey(String key, int limit) {
+    String k = OwnerSearch.normalize(key);
+    return searchByOwnerRelevance(k, OwnerSearch.prefix(k), OwnerSearch.pattern(k), Limit.of(limit));
+  }
+
+  default List<Account> searchPageByOwnerKey(String key, Limit limit) {
+    return searchPageByOwnerLike(OwnerSearch.pattern(OwnerSearch.normalize(key)), limit);
+  }
+
+  default List<Account> searchPageByOwnerKeyAfter(String key, Instant at, UUID id, Limit limit) {
+    return searchPageByOwnerLikeAfter(OwnerSearch.pattern(OwnerSearch.normalize(key)), at, id, limit);
+  }
+
+  default Stream<Account> streamByOwnerKey(String key) {
+    return streamByOwnerLike(OwnerSearch.pattern(OwnerSearch.normalize(key)));
+  }
+
+  @Query("""
+    select a from Account a
+    where lower(a.owner) like :pattern escape '!'
+    order by case when lower(a.owner) = :key then 0
+                  when lower(a.owner) like :prefix escape '!' then 1
+                  else 2 end,
+             function('similarity', lower(a.owner), :key) desc,
+             a.owner, a.id
+  """)
+  List<Account> searchByOwnerRelevance(@Param("key") String key, @Param("prefix") String prefix,
+                                             @Param("pattern") String pattern, Limit limit);
+
+  // ▼ キーセットページング版（created_at, id 順）
   @Query("""
     select a from Account a
-    where lower(a.owner) like lower(concat('%', :key, '%'))
+    where lower(a.owner) like :pattern escape '!'
+    order by a.createdAt, a.id
   """)
-  List<Account> searchByOwnerKey(@Param("key") String key);
+  List<Account> searchPageByOwnerLike(@Param("pattern") String pattern, Limit limit);
+
+  @Query("""
+    select a from Account a
+    where lower(a.owner) like :pattern escape '!'
+      and a.createdAt >= :at and (a.createdAt > :at or a.id > :id)
+    order by a.createdAt, a.id
+  """)
+  List<Account> searchPageByOwnerLikeAfter(@Param("pattern") String pattern, @Param("at") Instant at,
+                                           @Param("id") UUID id, Limit limit);
+
+  // ストリーム版（NDJSON 出力用。トランザクション内で使うこと）
+  @QueryHints({
+      @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + AccountRepository.STREAM_FETCH_SIZE),
+      @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+  })
+  @Query("""
+    select a from Account a
+    where lower(a.owner) like :pattern escape '!'
+  """)
+  Stream<Account> streamByOwnerLike(@Param("pattern") String pattern);
 
   // ★ 追加: オーナー名の重複排除一覧
   @Query("select distinct a.owner from Account a where a.owner is not null order by a.owner")
   List<String> findDistinctOwners();
+
+  // OwnerDirectory の差分取り込み用（accounts_created_idx）
+  @Query("select distinct a.owner from Account a where a.createdAt > :since")
+  List<String> findOwnersCreatedSince(@Param("since") Instant since);
 }
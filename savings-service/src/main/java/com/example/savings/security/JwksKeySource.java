@@ -0,0 +1,130 @@
+package com.example.savings.security;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * JWT 検証鍵（JWKS）の手元保持。リクエストスレッドで鍵を取りに行くことはない。
+ *
+ * - 起動時: cacheFile があればそこから読む（Keycloak が落ちていても起動でき、最初のリクエストから検証できる）。
+ *   discovery（issuer-uri の .well-known）は使わない
+ * - バックグラウンド: refreshInterval ごとに jwks-uri から取り直して差し替え、cacheFile にも書く。
+ *   取得に失敗しても手元の鍵で検証を続ける（stale-while-revalidate）。鍵がまだ 1 つも無いときは
+ *   RETRY 間隔で取り直す
+ * - 未知の kid（鍵ローテーション直後）: そのリクエストは手元の鍵だけで判定し（=401）、取り直しを
+ *   バックグラウンドに依頼する（RETRY 間隔に 1 回まで）
+ */
+public class JwksKeySource implements JWKSource<SecurityContext>, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(JwksKeySource.class);
+    private static final Duration RETRY = Duration.ofSeconds(10);
+    private static final int TIMEOUT_MS = 2000;
+    private static final int SIZE_LIMIT = 512 * 1024;
+
+    private final URI uri;
+    private final Path cacheFile;
+    private final Duration refreshInterval;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private volatile JWKSet keys = new JWKSet();
+    private volatile Instant loadedAt = Instant.EPOCH;
+    private volatile Instant lastAttempt = Instant.EPOCH;
+
+    public JwksKeySource(URI uri, Path cacheFile, Duration refreshInterval) {
+        this.uri = uri;
+        this.cacheFile = cacheFile;
+        this.refreshInterval = refreshInterval;
+        loadCacheFile();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "jwks-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::tick, 0, RETRY.toSeconds(), TimeUnit.SECONDS);
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector selector, SecurityContext context) {
+        List<JWK> found = selector.select(keys);
+        if (found.isEmpty()) requestRefresh();
+        return found;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    int size() {
+        return keys.getKeys().size();
+    }
+
+    private void tick() {
+        boolean stale = Instant.now().isAfter(loadedAt.plus(refreshInterval));
+        if (keys.isEmpty() || stale) refresh();
+    }
+
+    private void requestRefresh() {
+        if (Instant.now().isAfter(lastAttempt.plus(RETRY))) scheduler.execute(this::refresh);
+    }
+
+    private void refresh() {
+        if (!refreshing.compareAndSet(false, true)) return;
+        lastAttempt = Instant.now();
+        try {
+            JWKSet fetched = JWKSet.load(uri.toURL(), TIMEOUT_MS, TIMEOUT_MS, SIZE_LIMIT);
+            if (fetched.isEmpty()) {
+                log.warn("JWKS from {} has no keys; keeping {} cached keys", uri, size());
+                return;
+            }
+            keys = fetched;
+            loadedAt = Instant.now();
+            writeCacheFile(fetched);
+        } catch (Exception e) {
+            log.warn("JWKS refresh from {} failed; keeping {} cached keys: {}", uri, size(), e.toString());
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    private void loadCacheFile() {
+        if (cacheFile == null || !Files.isReadable(cacheFile)) return;
+        try {
+            keys = JWKSet.parse(Files.readString(cacheFile));
+            // ファイルの鍵はすぐ使うが、鮮度は不明なので起動直後に取り直す（loadedAt は EPOCH のまま）
+            log.info("loaded {} JWKS keys from {}", size(), cacheFile);
+        } catch (Exception e) {
+            log.warn("ignoring unreadable JWKS cache file {}: {}", cacheFile, e.toString());
+        }
+    }
+
+    private void writeCacheFile(JWKSet set) {
+        if (cacheFile == null) return;
+        try {
+            Path tmp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+            Files.writeString(tmp, set.toString(true));
+            Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("could not write JWKS cache file {}: {}", cacheFile, e.toString());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.savings.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 検証済み JWT と変換後の権限のキャッシュ（トークンの SHA-256 がキー、トークンの exp まで有効）。
+ *
+ * BFF は同じアクセストークンを有効期限まで何十回も送ってくるので、署名検証（RSA）と
+ * クレーム → 権限の変換は初回だけにして、2 回目以降は結果を使い回す。
+ * - 検証に失敗したトークンはキャッシュしない（毎回デコーダに任せる）
+ * - exp の無いトークンはキャッシュしない
+ * - 件数は cacheSize で上限（LRU）
+ * メトリクス: savings.jwt.cache（result=hit|miss）
+ */
+public class JwtCache {
+
+    private final Map<String, Entry> entries;
+    private final Counter hits;
+    private final Counter misses;
+
+    private static final class Entry {
+        final Jwt jwt;
+        // 初回の変換で埋まる（それまでは null）
+        volatile Collection<GrantedAuthority> authorities;
+        volatile String name;
+
+        Entry(Jwt jwt) {
+            this.jwt = jwt;
+        }
+    }
+
+    public JwtCache(MeterRegistry meters, int cacheSize) {
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > cacheSize;
+            }
+        });
+        this.hits = meters.counter("savings.jwt.cache", "result", "hit");
+        this.misses = meters.counter("savings.jwt.cache", "result", "miss");
+    }
+
+    /** 検証済みならキャッシュから返し、無ければ delegate で検証して覚える */
+    public JwtDecoder decoder(JwtDecoder delegate) {
+        return token -> {
+            String key = sha256(token);
+            Entry e = live(key);
+            if (e != null) {
+                hits.increment();
+                return e.jwt;
+            }
+            misses.increment();
+            Jwt jwt = delegate.decode(token);
+            if (jwt.getExpiresAt() != null && jwt.getExpiresAt().isAfter(Instant.now())) entries.put(key, new Entry(jwt));
+            return jwt;
+        };
+    }
+
+    /** 権限の変換も初回だけ。認証オブジェクトは details を書き込まれるので毎回作り直す */
+    public Converter<Jwt, AbstractAuthenticationToken> converter(Converter<Jwt, ? extends AbstractAuthenticationToken> delegate) {
+        return jwt -> {
+            Entry e = live(sha256(jwt.getTokenValue()));
+            if (e != null && e.authorities != null) return new JwtAuthenticationToken(jwt, e.authorities, e.name);
+            AbstractAuthenticationToken auth = delegate.convert(jwt);
+            if (e != null && auth != null) {
+                e.name = auth.getName();
+                e.authorities = List.copyOf(auth.getAuthorities());
+            }
+            return auth;
+        };
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private Entry live(String key) {
+        Entry e = entries.get(key);
+        if (e == null) return null;
+        if (!e.jwt.getExpiresAt().isAfter(Instant.now())) {
+            entries.remove(key);
+            return null;
+        }
+        return e;
+    }
+
+    private static String sha256(String s) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
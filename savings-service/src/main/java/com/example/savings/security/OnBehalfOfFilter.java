@@ -0,0 +1,192 @@
+package com.example.savings.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * サービス用トークンで呼ばれたときに、誰の操作かを署名付きヘッダから受け取る。
+ *
+ * time-deposit-service はユーザの代わりに呼ぶとき、Authorization に自分のトークンを付け、次のヘッダを添える。
+ * - X-On-Behalf-Of: ユーザの sub / X-On-Behalf-Of-Roles: ユーザのロール（カンマ区切り）
+ * - X-On-Behalf-Of-Timestamp: epoch 秒 / X-On-Behalf-Of-Nonce: 1 回限りの乱数
+ * - X-On-Behalf-Of-Signature: HMAC-SHA256(共有鍵, canonical(...)) の base64url
+ *   canonical はメソッド・パス（クエリ込み）・ボディの SHA-256・sub・ロール・時刻・nonce を改行で繋いだもの
+ * 検証できたら、認証をユーザの sub とユーザのロールに差し替える（@PreAuthorize はユーザの権限で判定される）。
+ *
+ * - ヘッダが無ければ何もしない
+ * - 呼び出し元の JWT の azp（client_id）が allowed-clients に無ければ 403
+ * - 鍵未設定・署名不一致・時刻が MAX_SKEW_SECONDS 以上ずれている・nonce の再利用なら 401
+ * nonce はこのインスタンスのメモリで MAX_SKEW_SECONDS の間だけ覚える（複数台では別インスタンスへの再送は
+ * 防げないが、署名がメソッド・パス・ボディに結び付いているので、同じ操作の再送にしかならない）。
+ */
+public class OnBehalfOfFilter extends OncePerRequestFilter {
+
+    public static final String ON_BEHALF_OF = "X-On-Behalf-Of";
+    public static final String ROLES = "X-On-Behalf-Of-Roles";
+    public static final String TIMESTAMP = "X-On-Behalf-Of-Timestamp";
+    public static final String NONCE = "X-On-Behalf-Of-Nonce";
+    public static final String SIGNATURE = "X-On-Behalf-Of-Signature";
+    static final long MAX_SKEW_SECONDS = 60;
+    // これを超えたら期限切れの nonce を掃除する
+    private static final int NONCE_SWEEP_THRESHOLD = 10_000;
+
+    private final byte[] secret;
+    private final Set<String> allowedClients;
+    // nonce → 受け付けた時刻（epoch 秒）
+    private final ConcurrentHashMap<String, Long> seenNonces = new ConcurrentHashMap<>();
+
+    public OnBehalfOfFilter(String secret, Set<String> allowedClients) {
+        this.secret = secret == null ? new byte[0] : secret.getBytes(StandardCharsets.UTF_8);
+        this.allowedClients = Set.copyOf(allowedClients);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String subject = request.getHeader(ON_BEHALF_OF);
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (subject == null || !(auth instanceof JwtAuthenticationToken caller)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        if (!allowedClients.contains(clientId(caller))) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN, ON_BEHALF_OF + " is not allowed for this client");
+            return;
+        }
+        CachedBodyRequest cached = new CachedBodyRequest(request);
+        String roles = request.getHeader(ROLES) == null ? "" : request.getHeader(ROLES);
+        if (!verified(cached, subject, roles)) {
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "invalid " + ON_BEHALF_OF);
+            return;
+        }
+        List<GrantedAuthority> authorities = Arrays.stream(roles.split(","))
+                .map(String::trim).filter(r -> !r.isEmpty())
+                .<GrantedAuthority>map(r -> new SimpleGrantedAuthority("ROLE_" + r))
+                .toList();
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(new JwtAuthenticationToken(caller.getToken(), authorities, subject));
+        SecurityContextHolder.setContext(context);
+        chain.doFilter(cached, response);
+    }
+
+    private static String clientId(JwtAuthenticationToken caller) {
+        String azp = caller.getToken().getClaimAsString("azp");
+        return azp != null ? azp : caller.getToken().getClaimAsString("client_id");
+    }
+
+    boolean verified(CachedBodyRequest request, String subject, String roles) {
+        String timestamp = request.getHeader(TIMESTAMP);
+        String nonce = request.getHeader(NONCE);
+        String signature = request.getHeader(SIGNATURE);
+        if (secret.length == 0 || subject.isBlank() || timestamp == null || nonce == null || nonce.isBlank()
+                || signature == null) {
+            return false;
+        }
+        long ts;
+        try {
+            ts = Long.parseLong(timestamp);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        long now = Instant.now().getEpochSecond();
+        if (Math.abs(now - ts) > MAX_SKEW_SECONDS) return false;
+        String path = request.getRequestURI() + (request.getQueryString() == null ? "" : "?" + request.getQueryString());
+        byte[] expected = sign(secret, canonical(request.getMethod(), path, request.body, subject, roles, timestamp, nonce))
+                .getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, signature.getBytes(StandardCharsets.US_ASCII))) return false;
+        // 署名が合ったものだけ覚える（偽の nonce で表を埋められないように）
+        if (seenNonces.putIfAbsent(nonce, now) != null) return false;
+        if (seenNonces.size() > NONCE_SWEEP_THRESHOLD) {
+            seenNonces.values().removeIf(at -> now - at > 2 * MAX_SKEW_SECONDS);
+        }
+        return true;
+    }
+
+    /** 署名対象の文字列（time-deposit-service の SavingsClient と同じ組み立て） */
+    static String canonical(String method, String path, byte[] body, String subject, String roles,
+                            String timestamp, String nonce) {
+        String bodyHash;
+        try {
+            bodyHash = Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        return String.join("\n", method, path, bodyHash, subject, roles, timestamp, nonce);
+    }
+
+    static String sign(byte[] secret, String canonical) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            byte[] sig = mac.doFinal(canonical.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(sig);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** 署名検証のためにボディを先に読み切り、後続（コントローラ）にも同じ内容を渡す */
+    static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = request.getInputStream().readAllBytes();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override public boolean isFinished() { return in.available() == 0; }
+                @Override public boolean isReady() { return true; }
+                // ボディは読み終えてメモリにあるので、非同期読み取りでも待たずにすぐ通知する
+                @Override public void setReadListener(ReadListener listener) {
+                    try {
+                        if (!isFinished()) listener.onDataAvailable();
+                        listener.onAllDataRead();
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+                @Override public int read() { return in.read(); }
+                @Override public int read(byte[] b, int off, int len) { return in.read(b, off, len); }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+}
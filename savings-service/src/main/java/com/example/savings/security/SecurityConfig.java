@@ -3,6 +3,10 @@ package com.example.savings.security;
 import java.util.*;
 import java.util.stream.Stream;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -14,9 +18,11 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.oauth2.server.resource.web.BearerTokenAuthenticationEntryPoint;
 import org.springframework.security.oauth2.server.resource.web.access.BearerTokenAccessDeniedHandler;
+import org.springframework.security.oauth2.server.resource.web.authentication.BearerTokenAuthenticationFilter;
 import org.springframework.security.web.SecurityFilterChain;
 
 @Configuration
@@ -28,7 +34,9 @@ public class SecurityConfig {
   private static final String RESOURCE_CLIENT_ID = "savings-service";
 
   @Bean
-  public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+  public SecurityFilterChain securityFilterChain(HttpSecurity http, JwtDecoder jwtDecoder, JwtCache jwtCache,
+      @Value("${savings.security.on-behalf-of-secret:}") String onBehalfOfSecret,
+      @Value("${savings.security.on-behalf-of-clients:}") Set<String> onBehalfOfClients) throws Exception {
     http
       .csrf(csrf -> csrf.disable())
       .cors(Customizer.withDefaults())
@@ -51,12 +59,24 @@ public class SecurityConfig {
         .anyRequest().authenticated()
       )
       .oauth2ResourceServer(oauth2 -> oauth2
-        .jwt(jwt -> jwt.jwtAuthenticationConverter(jwtAuthenticationConverter()))
-      );
+        // 同じトークンの署名検証・権限変換は初回だけ（JwtCache）
+        .jwt(jwt -> jwt
+          .decoder(jwtCache.decoder(jwtDecoder))
+          .jwtAuthenticationConverter(jwtCache.converter(jwtAuthenticationConverter())))
+      )
+      // 許可したサービスからの呼び出しに付いてくる、署名付きのユーザ（X-On-Behalf-Of）とそのロールで認証し直す
+      .addFilterAfter(new OnBehalfOfFilter(onBehalfOfSecret, onBehalfOfClients), BearerTokenAuthenticationFilter.class);
 
     return http.build();
   }
 
+  @Bean
+  public JwtCache jwtCache(ObjectProvider<MeterRegistry> meters,
+                           @Value("${savings.security.jwt-cache-size:10000}") int cacheSize) {
+    // MeterRegistry の無い文脈（@WebMvcTest など）では数えるだけで出さない
+    return new JwtCache(meters.getIfAvailable(SimpleMeterRegistry::new), cacheSize);
+  }
+
   @Bean
   public JwtAuthenticationConverter jwtAuthenticationConverter() {
     JwtAuthenticationConverter converter = new JwtAuthenticationConverter();
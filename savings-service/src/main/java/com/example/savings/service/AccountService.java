@@ -1,52 +1,305 @@
 package com.example.savings.service;
 
+import com.example.savings.dto.CreditRequest;
+import com.example.savings.dto.CreditResult;
+import com.example.savings.dto.KeysetPage;
+import com.example.savings.dto.PageToken;
+import com.example.savings.dto.SavingsAccountDto;
+import com.example.savings.idempotency.IdempotencyService;
+import com.example.savings.idempotency.IdempotencyService.KeyState;
+import com.example.savings.ledger.BalanceLedger;
 import com.example.savings.model.Account;
+import com.example.savings.model.AccountTransaction;
+import com.example.savings.repository.AccountJdbcRepository;
 import com.example.savings.repository.AccountRepository;
+import com.example.savings.repository.AccountTransactionRepository;
+import com.example.savings.repository.OwnerSummaryRepository;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * 口座サービス。
+ *
+ * 入出金は accounts 行を書き換えず、account_transactions への追記（ジャーナル）で表現する。
+ * 残高 = accounts.balance（スナップショット）+ 以降のジャーナル合計。
+ * - 入金: INSERT のみ（行ロックなし。同じ口座への入金同士も競合しない）
+ * - 出金: 残高チェックのため口座行だけを NO KEY UPDATE でロックしてから INSERT
+ * owner ごとの残高合計（owner_balance_summary）は入出金では触らない（owner 行のロックで入金を直列化しないため）。
+ * ジャーナルを畳み込む BalanceSnapshotJob が口座残高と一緒に加算し、読むときに未畳み込みの分を足す。
+ */
 @Service
 public class AccountService {
+    public static final int MAX_HISTORY = 500;
+    // 一括入金の行ごとの idempotencyKey の名前空間（ヘッダの Idempotency-Key とは別）
+    static final String CREDIT_KEYS = "credits:batch";
+
     private final AccountRepository repo;
+    private final AccountTransactionRepository transactions;
+    private final AccountJdbcRepository bulk;
+    private final OwnerDirectory directory;
+    private final OwnerSummaryRepository summaries;
+    private final IdempotencyService idempotency;
+    private final TransactionTemplate tx;
+    // savings.ledger.enabled=true のときだけ存在する（入出金をインメモリ台帳経由にする）
+    private final BalanceLedger ledger;
 
-    public AccountService(AccountRepository repo) {
+    public AccountService(AccountRepository repo, AccountTransactionRepository transactions,
+                          AccountJdbcRepository bulk, OwnerDirectory directory,
+                          OwnerSummaryRepository summaries, IdempotencyService idempotency,
+                          TransactionTemplate tx, Optional<BalanceLedger> ledger) {
         this.repo = repo;
+        this.transactions = transactions;
+        this.bulk = bulk;
+        this.directory = directory;
+        this.summaries = summaries;
+        this.idempotency = idempotency;
+        this.tx = tx;
+        this.ledger = ledger.orElse(null);
     }
 
     public Account create(String owner) {
         Account a = new Account();
         a.setOwner(owner);
         a.setBalance(BigDecimal.ZERO);
-        return repo.save(a);
+        Account saved = tx.execute(s -> {
+            Account created = repo.save(a);
+            summaries.addAccounts(List.of(owner));
+            return created;
+        });
+        directory.add(owner);
+        return saved;
+    }
+
+    /** まとめて作成する（1 チャンク = 1 トランザクション = 1 JDBC バッチ） */
+    public List<Account> createAll(List<String> owners) {
+        List<Account> accounts = owners.stream().map(Account::newAccount).toList();
+        tx.executeWithoutResult(s -> {
+            bulk.insertAll(accounts);
+            summaries.addAccounts(owners);
+        });
+        directory.addAll(owners);
+        return accounts;
     }
 
     public Account get(UUID id) {
         return repo.findById(id).orElseThrow(() -> new IllegalArgumentException("Account not found"));
     }
 
-    @Transactional
+    /** 見つかった口座（入力順・重複は 1 件）と、見つからなかった id */
+    public record BatchGetResult(List<SavingsAccountDto> accounts, List<UUID> missing) {}
+
+    /** 複数口座を 1 クエリ（id = any(?)）で読む */
+    public BatchGetResult getAll(List<UUID> ids) {
+        if (ids == null || ids.isEmpty()) throw new IllegalArgumentException("ids is required");
+        if (ids.stream().anyMatch(Objects::isNull)) throw new IllegalArgumentException("ids must not contain null");
+        Set<UUID> wanted = new LinkedHashSet<>(ids);
+        Map<UUID, SavingsAccountDto> found = bulk.findAll(wanted).stream()
+                .collect(Collectors.toMap(SavingsAccountDto::id, Function.identity()));
+        List<SavingsAccountDto> accounts = new ArrayList<>(found.size());
+        List<UUID> missing = new ArrayList<>();
+        for (UUID id : wanted) {
+            SavingsAccountDto a = found.get(id);
+            if (a != null) accounts.add(a);
+            else missing.add(id);
+        }
+        return new BatchGetResult(accounts, missing);
+    }
+
+    /** 入出金が ledger モード（トランザクションの外でジャーナル確定を待つ）かどうか */
+    public boolean usesLedger() {
+        return ledger != null;
+    }
+
+    // ledger モードでは DB トランザクションを開かない（確定待ちの間コネクションを握らないため）。
+    // そのため @Transactional ではなく TransactionTemplate で JPA 経路だけを囲む。
     public Account deposit(UUID id, BigDecimal amount) {
         if (amount == null || amount.signum() <= 0) throw new IllegalArgumentException("amount must be > 0");
-        Account a = get(id);
-        a.setBalance(a.getBalance().add(amount));
-        return a;
+        if (ledger != null) return Account.view(id, ledger.deposit(id, amount));
+        return tx.execute(s -> {
+            if (!repo.existsById(id)) throw new IllegalArgumentException("Account not found");
+            transactions.save(AccountTransaction.deposit(id, amount));
+            return Account.view(id, balanceOf(id));
+        });
+    }
+
+    /**
+     * 一括入金。全件を 1 トランザクション・1 JDBC バッチでジャーナルに追記し、1 件ごとの結果を入力順で返す。
+     * 入金は口座行をロックしない（INSERT のみ）ので、件数や口座の並びによるデッドロックは起きない。
+     * 不正な行（金額 <= 0・口座なし・バッチ内での idempotencyKey 重複）はその行だけ REJECTED にする。
+     *
+     * idempotencyKey は idempotency_keys に記録する（subject ごと。バッチをまたいで効く）。
+     * 同じキー・同じ内容の再送は DUPLICATE（適用しない）、別の内容なら REJECTED。
+     * JPA 経路ではキーの記録とジャーナル追記が同じトランザクションなので、バッチ全体が適用されるか何も残らないかのどちらか。
+     *
+     * ledger モードは 1 件ずつ台帳に入金するのでバッチ全体の原子性はない（途中で失敗しても適用済みの行は戻さない）。
+     * 代わりに行ごとの結果で再送の要否がわかるようにする：APPLIED / DUPLICATE は済み、FAILED は同じキーで再送してよい。
+     * キーは入金前に確保して（処理中の再送は FAILED）、入金後に適用済みにする。その間にプロセスが落ちたキーは
+     * 期限切れまで FAILED（処理中）のままになるので、適用されたかは入出金履歴で確かめる。
+     */
+    public List<CreditResult> creditAll(List<CreditRequest> credits) {
+        CreditResult[] results = new CreditResult[credits.size()];
+        Set<UUID> ids = new HashSet<>();
+        for (CreditRequest c : credits) if (c.accountId() != null) ids.add(c.accountId());
+        Set<UUID> existing = ids.isEmpty() ? Set.of() : bulk.existingIds(ids);
+
+        Map<String, String> keyed = new HashMap<>();
+        List<Integer> accepted = new ArrayList<>(credits.size());
+        for (int i = 0; i < credits.size(); i++) {
+            CreditRequest c = credits.get(i);
+            String error = null;
+            if (c.accountId() == null) error = "accountId is required";
+            else if (c.amount() == null || c.amount().signum() <= 0) error = "amount must be > 0";
+            else if (!existing.contains(c.accountId())) error = "Account not found";
+            else if (c.idempotencyKey() != null && keyed.putIfAbsent(c.idempotencyKey(), creditKey(c)) != null) {
+                error = "duplicate idempotencyKey in batch";
+            }
+            if (error != null) results[i] = CreditResult.rejected(i, c, error);
+            else accepted.add(i);
+        }
+        if (accepted.isEmpty()) return List.of(results);
+
+        if (ledger != null) {
+            creditAllViaLedger(credits, accepted, keyed, results);
+            return List.of(results);
+        }
+
+        List<Integer> applied = new ArrayList<>(accepted.size());
+        Map<UUID, BigDecimal> balances = tx.execute(s -> {
+            // キーの確保もこのトランザクションで行う（同じキーの同時バッチは先行分の確定まで待たされる）
+            Map<String, KeyState> states = idempotency.claimAll(CREDIT_KEYS, keyed);
+            List<UUID> to = new ArrayList<>(accepted.size());
+            List<BigDecimal> amounts = new ArrayList<>(accepted.size());
+            for (int i : accepted) {
+                CreditRequest c = credits.get(i);
+                if (!claimed(i, c, states, results)) continue;
+                applied.add(i);
+                to.add(c.accountId());
+                amounts.add(c.amount());
+            }
+            if (to.isEmpty()) return Map.<UUID, BigDecimal>of();
+            bulk.appendDeposits(to, amounts);
+            idempotency.completeAll(CREDIT_KEYS, keysOf(credits, applied));
+            return bulk.currentBalances(new HashSet<>(to));
+        });
+        for (int i : applied) {
+            CreditRequest c = credits.get(i);
+            results[i] = CreditResult.applied(i, c, balances.get(c.accountId()));
+        }
+        return List.of(results);
+    }
+
+    private void creditAllViaLedger(List<CreditRequest> credits, List<Integer> accepted,
+                                    Map<String, String> keyed, CreditResult[] results) {
+        // キーの確保は先に短いトランザクションでコミットする（台帳の確定待ちの間コネクションを握らない）
+        Map<String, KeyState> states = keyed.isEmpty() ? Map.of() : tx.execute(s -> idempotency.claimAll(CREDIT_KEYS, keyed));
+        List<Integer> applied = new ArrayList<>();
+        List<Integer> released = new ArrayList<>();
+        for (int i : accepted) {
+            CreditRequest c = credits.get(i);
+            if (!claimed(i, c, states, results)) continue;
+            try {
+                results[i] = CreditResult.applied(i, c, ledger.deposit(c.accountId(), c.amount()));
+                applied.add(i);
+            } catch (IllegalArgumentException e) {
+                results[i] = CreditResult.rejected(i, c, e.getMessage());
+                released.add(i);
+            } catch (RuntimeException e) {
+                // 台帳は失敗した入金をメモリからも取り消している（未適用）ので、同じキーでの再送を許す
+                results[i] = CreditResult.failed(i, c, "credit was not applied; retry with the same idempotencyKey");
+                released.add(i);
+            }
+        }
+        List<String> done = keysOf(credits, applied);
+        List<String> undone = keysOf(credits, released);
+        if (!done.isEmpty() || !undone.isEmpty()) {
+            tx.executeWithoutResult(s -> {
+                idempotency.completeAll(CREDIT_KEYS, done);
+                idempotency.releaseAll(CREDIT_KEYS, undone);
+            });
+        }
+    }
+
+    // キーが無いか今回確保できた行だけ true。それ以外はその行の結果を埋める
+    private static boolean claimed(int i, CreditRequest c, Map<String, KeyState> states, CreditResult[] results) {
+        if (c.idempotencyKey() == null) return true;
+        switch (states.get(c.idempotencyKey())) {
+            case CLAIMED -> { return true; }
+            case APPLIED -> results[i] = CreditResult.duplicate(i, c);
+            case PENDING -> results[i] = CreditResult.failed(i, c, "idempotencyKey is being processed; retry later");
+            case CONFLICT -> results[i] = CreditResult.rejected(i, c, "idempotencyKey was already used for a different credit");
+        }
+        return false;
+    }
+
+    private static List<String> keysOf(List<CreditRequest> credits, List<Integer> rows) {
+        List<String> keys = new ArrayList<>();
+        for (int i : rows) if (credits.get(i).idempotencyKey() != null) keys.add(credits.get(i).idempotencyKey());
+        return keys;
+    }
+
+    // 同じキーの再送かどうかの判定に使う行の内容（金額は表記揺れで別物にならないよう正規化）
+    private static String creditKey(CreditRequest c) {
+        return c.accountId() + " " + c.amount().setScale(2, RoundingMode.HALF_UP).toPlainString();
     }
 
-    @Transactional
     public Account withdraw(UUID id, BigDecimal amount) {
         if (amount == null || amount.signum() <= 0) throw new IllegalArgumentException("amount must be > 0");
-        Account a = get(id);
-        if (a.getBalance().compareTo(amount) < 0) throw new IllegalStateException("insufficient funds");
-        a.setBalance(a.getBalance().subtract(amount));
-        return a;
+        if (ledger != null) return Account.view(id, ledger.withdraw(id, amount));
+        return tx.execute(s -> {
+            repo.lockForWithdraw(id).orElseThrow(() -> new IllegalArgumentException("Account not found"));
+            // ロック取得後に改めて読む（待っている間にコミットされた出金も含めて判定する）
+            BigDecimal balance = balanceOf(id);
+            if (balance.compareTo(amount) < 0) throw new IllegalStateException("insufficient funds");
+            transactions.save(AccountTransaction.withdraw(id, amount));
+            return Account.view(id, balance.subtract(amount));
+        });
     }
 
     @Transactional(readOnly = true)
     public List<Account> findByOwner(String owner) {
-        return repo.findByOwner(owner);
+        return repo.findByOwnerOrderByCreatedAtAscIdAsc(owner);
+    }
+
+    /** owner の口座を (created_at, id) 順に 1 ページ分。pageToken は前ページの nextToken（初回は null） */
+    @Transactional(readOnly = true)
+    public KeysetPage<Account> findByOwner(String owner, Integer limit, String pageToken) {
+        int n = KeysetPage.clamp(limit);
+        Limit fetch = Limit.of(n + 1);
+        List<Account> rows;
+        if (pageToken == null || pageToken.isBlank()) {
+            rows = repo.findPageByOwner(owner, fetch);
+        } else {
+            PageToken after = PageToken.decode(pageToken);
+            rows = repo.findPageByOwnerAfter(owner, after.at(), after.id(), fetch);
+        }
+        return KeysetPage.of(rows, n, a -> new PageToken(a.getCreatedAt(), a.getId()));
+    }
+
+    /** 入出金履歴（新しい順、最大 MAX_HISTORY 件） */
+    @Transactional(readOnly = true)
+    public List<AccountTransaction> history(UUID id, int limit) {
+        get(id);
+        return transactions.findByAccountIdOrderBySeqDesc(id, Limit.of(Math.max(1, Math.min(limit, MAX_HISTORY))));
+    }
+
+    private BigDecimal balanceOf(UUID id) {
+        return repo.currentBalance(id).orElseThrow(() -> new IllegalArgumentException("Account not found"));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,56 @@
+package com.example.savings.service;
+
+import com.example.savings.dto.SavingsAccountDto;
+import com.example.savings.model.Account;
+import com.example.savings.repository.AccountRepository;
+import com.example.savings.repository.SavingsAccountRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 口座一覧のストリーミング読み出し（Accept: application/x-ndjson 用）。
+ *
+ * カーソルから 1 件読むごとに DTO にして sink へ渡し、エンティティは即 detach する。
+ * 永続化コンテキストに溜まらないので、件数が増えてもヒープ使用量は一定。
+ * Stream は読み取り専用トランザクションの中でしか開けない（PostgreSQL のカーソルは autocommit=false 必須）。
+ */
+@Service
+public class AccountStreamService {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final AccountRepository accounts;
+    private final SavingsAccountRepository search;
+
+    public AccountStreamService(AccountRepository accounts, SavingsAccountRepository search) {
+        this.accounts = accounts;
+        this.search = search;
+    }
+
+    @Transactional(readOnly = true)
+    public void forEachByOwner(String owner, Consumer<SavingsAccountDto> sink) {
+        try (Stream<Account> s = accounts.streamByOwner(owner)) {
+            drain(s, sink);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void forEachByOwnerKey(String ownerKey, Consumer<SavingsAccountDto> sink) {
+        try (Stream<Account> s = search.streamByOwnerKey(ownerKey)) {
+            drain(s, sink);
+        }
+    }
+
+    private void drain(Stream<Account> s, Consumer<SavingsAccountDto> sink) {
+        s.forEach(a -> {
+            sink.accept(SavingsAccountDto.fromEntity(a));
+            em.detach(a);
+        });
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.savings.service;
+
+import com.example.savings.repository.SavingsAccountRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * owner 一覧（/debug/owners）のインメモリ索引。
+ *
+ * - 初回アクセス時に select distinct で全件ロードし、以降はソート済みの skip-list を返すだけ
+ * - このインスタンスでの口座作成は add() で即時反映
+ * - 他インスタンスでの作成は定期的に「created_at > 前回 - overlap」の差分だけ取り込む
+ * 中身が変わるたびに version を上げ、ETag として返す（変化がなければ 304 で転送自体を省ける）。
+ * version と一覧は 1 つの不変な State にまとめて AtomicReference で差し替えるので、snapshot() で読んだ
+ * ETag と本文は必ず同じ中身を指す（集合の変更と State の差し替えは writeLock の中で行う）。
+ * 口座は削除しないので、集合は増える一方でよい。
+ */
+@Component
+public class OwnerDirectory {
+
+    // 前回の差分取得と作成トランザクションのコミットがすれ違っても取りこぼさないための重なり
+    private static final Duration OVERLAP = Duration.ofMinutes(1);
+
+    private final SavingsAccountRepository repo;
+    private final ConcurrentSkipListSet<String> owners = new ConcurrentSkipListSet<>();
+    // owners と組になる version と、その version の一覧（null ならまだ作っていない）
+    private final AtomicReference<State> state = new AtomicReference<>(new State(0, null));
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // 再起動やインスタンス違いで同じ version が別内容を指さないよう ETag に混ぜる
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private volatile boolean loaded;
+    private volatile Instant since = Instant.EPOCH;
+
+    private record State(long version, List<String> owners) {}
+
+    /** 同じ version の ETag と昇順の owner 一覧 */
+    public record Snapshot(String etag, List<String> owners) {}
+
+    public OwnerDirectory(SavingsAccountRepository repo) {
+        this.repo = repo;
+    }
+
+    public Snapshot snapshot() {
+        if (!loaded) refresh();
+        State s = state.get();
+        if (s.owners() == null) s = materialize();
+        return new Snapshot("\"owners-" + epoch + "-" + s.version() + "\"", s.owners());
+    }
+
+    /** 昇順の owner 一覧 */
+    public List<String> list() {
+        return snapshot().owners();
+    }
+
+    public String etag() {
+        return snapshot().etag();
+    }
+
+    public void add(String owner) {
+        if (owner == null || owners.contains(owner)) return;
+        addAll(List.of(owner));
+    }
+
+    public void addAll(Collection<String> names) {
+        writeLock.lock();
+        try {
+            boolean changed = false;
+            for (String o : names) changed |= o != null && owners.add(o);
+            // 一覧は次に読まれたときに作る（作成のたびに全件コピーしない）
+            if (changed) state.set(new State(state.get().version() + 1, null));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${savings.owners.refresh-interval-ms:60000}",
+               initialDelayString = "${savings.owners.refresh-interval-ms:60000}")
+    public void refresh() {
+        // synchronized ではなく ReentrantLock: JDBC 待ちの間に仮想スレッドがキャリアを掴んだまま（pin）にならないように
+        refreshLock.lock();
+        try {
+            Instant now = Instant.now();
+            addAll(loaded ? repo.findOwnersCreatedSince(since.minus(OVERLAP)) : repo.findDistinctOwners());
+            since = now;
+            loaded = true;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    // 書き込みと同じロックの中でコピーするので、一覧はその時点の version の中身と一致する
+    private State materialize() {
+        writeLock.lock();
+        try {
+            State s = state.get();
+            if (s.owners() != null) return s;
+            State built = new State(s.version(), List.copyOf(owners));
+            state.set(built);
+            return built;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
@@ -4,4 +4,62 @@ CREATE TABLE IF NOT EXISTS accounts (
   balance NUMERIC(19,2) NOT NULL DEFAULT 0,
   created_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
   version BIGINT NOT NULL DEFAULT 0
-);
\ No newline at end of file
+);
+
+-- owner 一覧のキーセットページング（created_at, id 順）用
+CREATE INDEX IF NOT EXISTS accounts_owner_created_idx ON accounts (owner, created_at, id);
+-- owner 一覧（OwnerDirectory）の差分取り込み用
+CREATE INDEX IF NOT EXISTS accounts_created_idx ON accounts (created_at);
+
+-- owner 検索（/api/accounts/search）用。3 文字以上の部分一致は pg_trgm の GIN、
+-- それ未満は前方一致を text_pattern_ops の B-tree で引く（OwnerSearch 参照）
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS accounts_owner_trgm_idx ON accounts USING gin (lower(owner) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS accounts_owner_prefix_idx ON accounts (lower(owner) text_pattern_ops);
+
+-- 入出金のジャーナル（DELETE しない。UPDATE は BalanceSnapshotJob が folded を立てるときだけ）。amount は符号付き（出金は負）
+-- created_at は履歴の表示・並び用（clock_timestamp()）。畳み込みの境界には使わない
+CREATE TABLE IF NOT EXISTS account_transactions (
+  seq BIGSERIAL PRIMARY KEY,
+  account_id UUID NOT NULL,
+  type TEXT NOT NULL,
+  amount NUMERIC(19,2) NOT NULL,
+  created_at TIMESTAMPTZ NOT NULL DEFAULT clock_timestamp(),
+  CONSTRAINT account_transactions_type_chk CHECK (type IN ('DEPOSIT','WITHDRAW'))
+);
+CREATE INDEX IF NOT EXISTS account_transactions_account_idx ON account_transactions (account_id, created_at);
+CREATE INDEX IF NOT EXISTS account_transactions_created_idx ON account_transactions (created_at);
+-- 畳み込み済みの印。残高 = accounts.balance + folded = false の行の合計。
+-- 時刻や seq の境界は採番順で、コミット順ではない（遅れてコミットされた行が境界の手前に取り残される）ので、行そのものに印を付ける。
+-- 未コミットの行は畳み込みにも読み取りにも見えず、コミットされた時点で未畳み込みの tail に入る
+ALTER TABLE account_transactions ADD COLUMN IF NOT EXISTS folded BOOLEAN NOT NULL DEFAULT false;
+CREATE INDEX IF NOT EXISTS account_transactions_unfolded_idx ON account_transactions (account_id) INCLUDE (amount) WHERE NOT folded;
+
+-- Idempotency-Key の記録（IdempotencyService）。key は "JWT subject|ヘッダ値"、body は初回の応答 JSON
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+  key TEXT PRIMARY KEY,
+  fingerprint TEXT NOT NULL,
+  status INT,
+  body TEXT,
+  created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  expires_at TIMESTAMPTZ NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idempotency_keys_expires_idx ON idempotency_keys (expires_at);
+
+-- owner ごとの残高合計（OwnerSummaryRepository）。accounts は口座作成と同じトランザクションで加算する。
+-- balance は accounts.balance と同じく畳み込み済みの分の合計で、入出金では書かない（入金が owner 行をロックしないように）。
+-- BalanceSnapshotJob の畳み込みと同じ文で加算し、読むときに未畳み込みのジャーナルを足す。
+-- そのため読み取りは owner の口座数に比例する（accounts_owner_created_idx で口座 id、口座ごとに account_transactions_unfolded_idx）
+CREATE TABLE IF NOT EXISTS owner_balance_summary (
+  owner TEXT PRIMARY KEY,
+  balance NUMERIC(19,2) NOT NULL DEFAULT 0,
+  accounts INT NOT NULL DEFAULT 0,
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+-- 導入時の埋め戻し（表が空のときだけ。導入は書き込みを止めた状態で行うこと）。
+-- balance は畳み込み済みの分（accounts.balance の合計）だけ。以降のジャーナルは BalanceSnapshotJob が畳み込むときに加算する
+INSERT INTO owner_balance_summary (owner, balance, accounts)
+SELECT a.owner, sum(a.balance), count(*)
+  FROM accounts a
+ WHERE NOT EXISTS (SELECT 1 FROM owner_balance_summary)
+ GROUP BY a.owner;
@@ -2,14 +2,23 @@
 package com.example.savings.controller;
 
 import com.example.savings.model.Account;
+import com.example.savings.model.AccountTransaction;
 import com.example.savings.security.SecurityConfig;
+import com.example.savings.dto.CreditRequest;
+import com.example.savings.dto.CreditResult;
+import com.example.savings.dto.KeysetPage;
+import com.example.savings.dto.SavingsAccountDto;
+import com.example.savings.idempotency.IdempotencyService;
 import com.example.savings.service.AccountService;
+import com.example.savings.service.AccountStreamService;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.jwt.JwtDecoder; // Resource Server の起動に必要（テストではモック）
 import org.springframework.test.web.servlet.MockMvc;
@@ -19,8 +28,13 @@ import java.math.BigDecimal;
 import java.time.Instant;  // ← 本プロジェクトの Account.createdAt は Instant
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -51,6 +65,19 @@ class AccountControllerTest {
     @MockBean
     AccountService service;
 
+    @MockBean
+    AccountStreamService streams;
+
+    // Idempotency-Key の判定は IdempotencyServiceTest で見る。ここでは本処理をそのまま通す
+    @MockBean
+    IdempotencyService idempotency;
+
+    @BeforeEach
+    void passThroughIdempotency() {
+        when(idempotency.execute(any(), any(), any()))
+                .thenAnswer(inv -> inv.<Supplier<ResponseEntity<?>>>getArgument(2).get());
+    }
+
     // Resource Server 用の Bean。テストでは実処理不要なのでダミー化。
     @MockBean
     JwtDecoder jwtDecoder;
@@ -144,6 +171,61 @@ class AccountControllerTest {
            .andExpect(jsonPath("$.balance").value(150.00));
     }
 
+    /**
+     * シナリオ: Idempotency-Key ヘッダはリクエスト内容（パスと金額）と一緒に IdempotencyService へ渡る。
+     */
+    @Test
+    void deposit_passes_idempotency_key_and_request_fingerprint() throws Exception {
+        var id = UUID.randomUUID();
+        var a = new Account();
+        setField(a, "id", id);
+        a.setBalance(new BigDecimal("150.00"));
+        when(service.deposit(id, new BigDecimal("50.00"))).thenReturn(a);
+
+        mvc.perform(post("/accounts/{id}/deposit", id)
+                .with(jwtUser())
+                .header("Idempotency-Key", "REQ-1:CLOSE")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"amount\": 50.00}"))
+           .andExpect(status().isOk());
+
+        verify(idempotency).execute(eq("REQ-1:CLOSE"), eq("POST /accounts/" + id + "/deposit 50"), any());
+    }
+
+    /**
+     * シナリオ: 一括入金。サービスの 1 件ごとの結果を配列でそのまま返す。read ロールだけでは 403。
+     */
+    @Test
+    void creditBatch_requires_user_role_and_returns_per_item_results() throws Exception {
+        var id = UUID.randomUUID();
+        var ok = new CreditRequest(id, new BigDecimal("10.00"), "K1");
+        var ng = new CreditRequest(id, new BigDecimal("-1"), "K2");
+        when(service.creditAll(List.of(ok, ng))).thenReturn(List.of(
+                CreditResult.applied(0, ok, new BigDecimal("10.00")),
+                CreditResult.rejected(1, ng, "amount must be > 0")));
+        String body = """
+                [{"accountId":"%s","amount":10.00,"idempotencyKey":"K1"},
+                 {"accountId":"%s","amount":-1,"idempotencyKey":"K2"}]
+                """.formatted(id, id);
+
+        mvc.perform(post("/accounts/credits:batch")
+                .with(jwtUser())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+           .andExpect(status().isOk())
+           .andExpect(jsonPath("$[0].status").value("APPLIED"))
+           .andExpect(jsonPath("$[0].balance").value(10.00))
+           .andExpect(jsonPath("$[1].status").value("REJECTED"))
+           .andExpect(jsonPath("$[1].error").value("amount must be > 0"))
+           .andExpect(jsonPath("$[1].balance").doesNotExist());
+
+        mvc.perform(post("/accounts/credits:batch")
+                .with(jwtRead())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+           .andExpect(status().isForbidden());
+    }
+
     /**
      * シナリオ: 出金 API でサービスが IllegalStateException を投げたら
      * Controller の @ExceptionHandler により 400 と {"error": "..."} が返る。
@@ -185,6 +267,125 @@ class AccountControllerTest {
            .andExpect(status().isBadRequest());
     }
 
+    /**
+     * シナリオ: JSON 配列で一括作成すると、行ごとの結果が NDJSON で返る。
+     * ポイント: owner が無い行はサービスに渡さずエラー行になり、他の行は作成される。
+     */
+    @Test
+    void batch_jsonArray_reports_per_row_results() throws Exception {
+        when(service.createAll(List.of("alice", "carol")))
+                .thenReturn(List.of(Account.newAccount("alice"), Account.newAccount("carol")));
+
+        var body = mvc.perform(post("/accounts/batch")
+                .with(jwtUser())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"owner\":\"alice\"},{\"owner\":\" \"},{\"owner\":\"carol\"}]"))
+           .andExpect(status().isOk())
+           .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+           .andReturn().getResponse().getContentAsString();
+
+        var lines = body.lines().toList();
+        assertThat(lines).hasSize(3);
+        assertThat(lines).anySatisfy(l -> assertThat(l).contains("\"index\":1").contains("owner is required"));
+        assertThat(lines).anySatisfy(l -> assertThat(l).contains("\"index\":0").contains("\"id\""));
+        assertThat(lines).anySatisfy(l -> assertThat(l).contains("\"index\":2").contains("\"owner\":\"carol\""));
+    }
+
+    /**
+     * シナリオ: NDJSON で一括作成。壊れた行はその行だけエラーになり、後続行は処理される。
+     *          INSERT が失敗したチャンクは全行がエラーになる。read ロールだけでは 403。
+     */
+    @Test
+    void batch_ndjson_skips_malformed_lines() throws Exception {
+        when(service.createAll(List.of("alice", "bob"))).thenThrow(new IllegalStateException("db down"));
+
+        var body = mvc.perform(post("/accounts/batch")
+                .with(jwtUser())
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content("{\"owner\":\"alice\"}\n{oops\n\n{\"owner\":\"bob\"}\n"))
+           .andExpect(status().isOk())
+           .andReturn().getResponse().getContentAsString();
+
+        var lines = body.lines().toList();
+        assertThat(lines).hasSize(3);
+        assertThat(lines.get(0)).contains("\"index\":1").contains("malformed JSON");
+        assertThat(lines.get(1)).contains("\"index\":0").contains("insert failed");
+        assertThat(lines.get(2)).contains("\"index\":2").contains("insert failed");
+
+        mvc.perform(post("/accounts/batch")
+                .with(jwtRead())
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content("{\"owner\":\"alice\"}\n"))
+           .andExpect(status().isForbidden());
+    }
+
+    /**
+     * シナリオ: ROLE_read で入出金履歴 API を叩くと 200 と履歴が返る（limit はそのままサービスへ渡す）。
+     */
+    @Test
+    void transactions_requires_read_role() throws Exception {
+        var id = UUID.randomUUID();
+        when(service.history(id, 2)).thenReturn(List.of(
+                AccountTransaction.withdraw(id, new BigDecimal("5.00")),
+                AccountTransaction.deposit(id, new BigDecimal("20.00"))));
+
+        mvc.perform(get("/accounts/{id}/transactions", id).param("limit", "2").with(jwtRead()))
+           .andExpect(status().isOk())
+           .andExpect(jsonPath("$[0].type").value("WITHDRAW"))
+           .andExpect(jsonPath("$[0].amount").value(-5.00))
+           .andExpect(jsonPath("$[1].type").value("DEPOSIT"));
+
+        // user ロールだけでは 403
+        mvc.perform(get("/accounts/{id}/transactions", id).with(jwtUser()))
+           .andExpect(status().isForbidden());
+    }
+
+    /**
+     * シナリオ: limit を付けるとページングになり、続きがあれば X-Next-Page-Token ヘッダが付く。
+     */
+    @Test
+    void listByOwner_keyset_page_returns_next_token_header() throws Exception {
+        var a = Account.newAccount("alice");
+        when(service.findByOwner("alice", 1, null)).thenReturn(new KeysetPage<>(List.of(a), "tok"));
+        when(service.findByOwner("alice", 1, "tok")).thenReturn(new KeysetPage<>(List.of(), null));
+
+        mvc.perform(get("/accounts").param("owner", "alice").param("limit", "1").with(jwtRead()))
+           .andExpect(status().isOk())
+           .andExpect(header().string(KeysetPage.NEXT_PAGE_TOKEN_HEADER, "tok"))
+           .andExpect(jsonPath("$[0].owner").value("alice"));
+
+        mvc.perform(get("/accounts").param("owner", "alice").param("limit", "1").param("pageToken", "tok").with(jwtRead()))
+           .andExpect(status().isOk())
+           .andExpect(header().doesNotExist(KeysetPage.NEXT_PAGE_TOKEN_HEADER))
+           .andExpect(jsonPath("$").isEmpty());
+    }
+
+    /**
+     * シナリオ: Accept: application/x-ndjson の一覧は 1 行 1 口座で返る（通常の Accept は従来どおり JSON 配列）。
+     */
+    @Test
+    void listByOwner_streams_ndjson_when_requested() throws Exception {
+        doAnswer(inv -> {
+            Consumer<SavingsAccountDto> sink = inv.getArgument(1);
+            sink.accept(new SavingsAccountDto(UUID.randomUUID(), "alice", new BigDecimal("1.00"), Instant.now(), 0L));
+            sink.accept(new SavingsAccountDto(UUID.randomUUID(), "alice", new BigDecimal("2.00"), Instant.now(), 0L));
+            return null;
+        }).when(streams).forEachByOwner(eq("alice"), any());
+
+        var body = mvc.perform(get("/accounts").param("owner", "alice")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .with(jwtRead()))
+           .andExpect(status().isOk())
+           .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+           .andReturn().getResponse().getContentAsString();
+        assertThat(body.lines().toList()).hasSize(2).allSatisfy(l -> assertThat(l).contains("\"owner\":\"alice\""));
+
+        when(service.findByOwner("alice")).thenReturn(List.of());
+        mvc.perform(get("/accounts").param("owner", "alice").with(jwtRead()))
+           .andExpect(status().isOk())
+           .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
     /**
      * シナリオ: 未認証でアクセスすると 401（BearerTokenAuthenticationEntryPoint）。
      */
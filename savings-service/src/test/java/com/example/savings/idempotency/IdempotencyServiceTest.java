@@ -0,0 +1,242 @@
+package com.example.savings.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * IdempotencyService のユニットテスト。
+ *
+ * 目的:
+ * - 初回はキー確保 → 本処理 → 応答保存、2 回目は本処理を呼ばずに同じ応答を返す
+ * - 他ノードで処理済み（キー確保に失敗）なら DB の応答を返す
+ * - 同じキーで内容の違うリクエストは 422
+ * - 本処理が失敗したら応答は保存しない（再送でやり直せる）
+ * - 行ごとのキー（claimAll）は確保・適用済み・処理中・別内容を見分ける
+ * - 重なるキーを逆順に持つバッチが同時に来ても、確保はどちらもキーの昇順（ロック順が揃う）
+ * - executeDetached は確保と保存を別トランザクションにし、本処理はその間（トランザクションの外）で走る。
+ *   処理中のキーへの再送は 409、失敗はキーを解放、結果不明（5xx）はキーを残す
+ *
+ * 特徴:
+ * - IdempotencyKeyRepository はモック、トランザクションはモックの TransactionManager で素通し。
+ */
+class IdempotencyServiceTest {
+
+    private IdempotencyKeyRepository repo;
+    private IdempotencyService service;
+
+    @BeforeEach
+    void setUp() {
+        repo = mock(IdempotencyKeyRepository.class);
+        service = new IdempotencyService(repo, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                new ObjectMapper(), 24, 100);
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("alice", null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    @DisplayName("初回は本処理して保存、再送は本処理なしで同じ応答（Idempotent-Replayed 付き）")
+    void replays_without_running_action_again() {
+        when(repo.claim(eq("alice|K1"), anyString(), any())).thenReturn(true);
+        var calls = new AtomicInteger();
+
+        var first = service.execute("K1", "POST /accounts/x/deposit 50", () -> {
+            calls.incrementAndGet();
+            return ResponseEntity.ok(Map.of("balance", 150));
+        });
+        var second = service.execute("K1", "POST /accounts/x/deposit 50", () -> {
+            calls.incrementAndGet();
+            return ResponseEntity.ok(Map.of("balance", 999));
+        });
+
+        assertThat(calls).hasValue(1);
+        assertThat(first.getBody()).isEqualTo("{\"balance\":150}");
+        assertThat(second.getBody()).isEqualTo("{\"balance\":150}");
+        assertThat(second.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+        verify(repo).complete("alice|K1", 200, "{\"balance\":150}");
+        verify(repo, times(1)).claim(any(), any(), any()); // 2 回目はメモリから返す
+    }
+
+    @Test
+    @DisplayName("キーが確保済み（他ノードで処理済み）なら保存済みの応答を返す")
+    void replays_from_store_when_claimed_elsewhere() {
+        when(repo.claim(any(), anyString(), any())).thenReturn(false);
+        when(repo.find("alice|K2")).thenAnswer(inv -> Optional.of(new StoredResponse(
+                fingerprintOf("POST /accounts/x/withdraw 10"), 200, "{\"balance\":90}",
+                Instant.now().plus(1, ChronoUnit.HOURS))));
+
+        var res = service.execute("K2", "POST /accounts/x/withdraw 10", () -> {
+            throw new AssertionError("must not run");
+        });
+
+        assertThat(res.getBody()).isEqualTo("{\"balance\":90}");
+        verify(repo, never()).complete(any(), anyInt(), any());
+    }
+
+    @Test
+    @DisplayName("同じキーで内容が違うリクエストは 422")
+    void rejects_key_reuse_with_different_request() {
+        when(repo.claim(any(), anyString(), any())).thenReturn(true);
+        service.execute("K3", "POST /accounts/x/deposit 50", () -> ResponseEntity.ok(Map.of("balance", 150)));
+
+        assertThatThrownBy(() -> service.execute("K3", "POST /accounts/x/deposit 60",
+                () -> ResponseEntity.ok(Map.of("balance", 160))))
+                .isInstanceOf(ResponseStatusException.class)
+                .extracting(e -> ((ResponseStatusException) e).getStatusCode())
+                .isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    @Test
+    @DisplayName("本処理が失敗したら保存せず例外をそのまま返す。キー無しは素通し")
+    void failure_is_not_recorded_and_no_key_passes_through() {
+        when(repo.claim(any(), anyString(), any())).thenReturn(true);
+        assertThatThrownBy(() -> service.execute("K4", "req", () -> {
+            throw new IllegalStateException("insufficient funds");
+        })).isInstanceOf(IllegalStateException.class);
+        verify(repo, never()).complete(any(), anyInt(), any());
+
+        var res = service.execute(null, "req", () -> ResponseEntity.ok(Map.of("ok", true)));
+        assertThat(res.getBody()).isEqualTo(Map.of("ok", true));
+        verifyNoMoreInteractions(ignoreStubs(repo));
+    }
+
+    @Test
+    @DisplayName("executeDetached: キーの確保をコミットしてから本処理し、応答は別トランザクションで保存する")
+    void executeDetached_runsActionBetweenShortTransactions() {
+        PlatformTransactionManager ptm = mock(PlatformTransactionManager.class);
+        service = new IdempotencyService(repo, new TransactionTemplate(ptm), new ObjectMapper(), 24, 100);
+        when(repo.claim(eq("alice|D1"), anyString(), any())).thenReturn(true);
+
+        var res = service.executeDetached("D1", "POST /accounts/x/deposit 50", () -> {
+            verify(ptm, times(1)).commit(any());
+            verify(repo, never()).complete(any(), anyInt(), any());
+            return ResponseEntity.ok(Map.of("balance", 150));
+        });
+
+        assertThat(res.getBody()).isEqualTo("{\"balance\":150}");
+        verify(repo).complete("alice|D1", 200, "{\"balance\":150}");
+        verify(ptm, times(2)).commit(any());
+    }
+
+    @Test
+    @DisplayName("executeDetached: 処理中のキーへの再送は 409（内容が違えば 422）")
+    void executeDetached_inProgressKey_isConflict() throws Exception {
+        when(repo.claim(any(), anyString(), any())).thenReturn(false);
+        when(repo.find("alice|D2")).thenReturn(Optional.of(new StoredResponse(
+                fingerprintOf("POST /accounts/x/deposit 50"), 0, null, Instant.now().plus(1, ChronoUnit.HOURS))));
+
+        assertThatThrownBy(() -> service.executeDetached("D2", "POST /accounts/x/deposit 50", () -> {
+            throw new AssertionError("must not run");
+        })).extracting(e -> ((ResponseStatusException) e).getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        assertThatThrownBy(() -> service.executeDetached("D2", "POST /accounts/x/deposit 60", () -> {
+            throw new AssertionError("must not run");
+        })).extracting(e -> ((ResponseStatusException) e).getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    @Test
+    @DisplayName("executeDetached: 失敗したらキーを解放し、結果不明（5xx）ならキーを残す")
+    void executeDetached_releasesKeyOnlyWhenOutcomeIsKnown() {
+        when(repo.claim(any(), anyString(), any())).thenReturn(true);
+        assertThatThrownBy(() -> service.executeDetached("D3", "req", () -> {
+            throw new IllegalStateException("insufficient funds");
+        })).isInstanceOf(IllegalStateException.class);
+        verify(repo).deleteAll(List.of("alice|D3"));
+
+        assertThatThrownBy(() -> service.executeDetached("D4", "req", () -> {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "journal commit timed out");
+        })).isInstanceOf(ResponseStatusException.class);
+        verify(repo, never()).deleteAll(List.of("alice|D4"));
+        verify(repo, never()).complete(any(), anyInt(), any());
+    }
+
+    // サービスと同じ SHA-256（保存済み応答の fingerprint を作るため）
+    private static String fingerprintOf(String s) throws Exception {
+        return java.util.HexFormat.of().formatHex(
+                java.security.MessageDigest.getInstance("SHA-256").digest(s.getBytes(java.nio.charset.StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    @DisplayName("claimAll: 名前空間付きでまとめて確保し、確保できなかったキーは保存済みの内容で判定する")
+    void claimAll_classifiesEachKey() throws Exception {
+        when(repo.claimAll(anyList(), anyList(), any())).thenReturn(Set.of("alice|ns|K1"));
+        when(repo.findAll(anyCollection())).thenReturn(Map.of(
+                "alice|ns|K2", new StoredResponse(sha256("b"), 200, null, Instant.now()),
+                "alice|ns|K3", new StoredResponse(sha256("c"), 0, null, Instant.now()),
+                "alice|ns|K4", new StoredResponse(sha256("other"), 200, null, Instant.now())));
+
+        var states = service.claimAll("ns", Map.of("K1", "a", "K2", "b", "K3", "c", "K4", "d"));
+
+        assertThat(states).containsExactlyInAnyOrderEntriesOf(Map.of(
+                "K1", IdempotencyService.KeyState.CLAIMED,
+                "K2", IdempotencyService.KeyState.APPLIED,
+                "K3", IdempotencyService.KeyState.PENDING,
+                "K4", IdempotencyService.KeyState.CONFLICT));
+
+        service.completeAll("ns", List.of("K1"));
+        verify(repo).completeAll(List.of("alice|ns|K1"), 200);
+    }
+
+    @Test
+    @DisplayName("claimAll: 逆順の重なるバッチを同時に流しても、どちらもキーの昇順・内容と対で確保する")
+    void claimAll_locksKeysInSortedOrder_forConcurrentReverseBatches() throws Exception {
+        List<List<String>> seenKeys = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        List<List<String>> seenFingerprints = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        java.util.concurrent.CyclicBarrier bothInside = new java.util.concurrent.CyclicBarrier(2);
+        when(repo.claimAll(anyList(), anyList(), any())).thenAnswer(inv -> {
+            seenKeys.add(List.copyOf(inv.getArgument(0)));
+            seenFingerprints.add(List.copyOf(inv.getArgument(1)));
+            bothInside.await(5, java.util.concurrent.TimeUnit.SECONDS); // 2 本が同時に確保中
+            return Set.copyOf(inv.<List<String>>getArgument(0));
+        });
+        Map<String, String> forward = new java.util.LinkedHashMap<>();
+        Map<String, String> reverse = new java.util.LinkedHashMap<>();
+        for (String k : List.of("K1", "K2", "K3", "K4", "K5")) forward.put(k, "req-" + k);
+        for (String k : List.of("K5", "K4", "K3", "K2", "K1")) reverse.put(k, "req-" + k);
+
+        var pool = java.util.concurrent.Executors.newFixedThreadPool(2);
+        var auth = SecurityContextHolder.getContext().getAuthentication();
+        var a = pool.submit(() -> { SecurityContextHolder.getContext().setAuthentication(auth); return service.claimAll("ns", forward); });
+        var b = pool.submit(() -> { SecurityContextHolder.getContext().setAuthentication(auth); return service.claimAll("ns", reverse); });
+        a.get(10, java.util.concurrent.TimeUnit.SECONDS);
+        b.get(10, java.util.concurrent.TimeUnit.SECONDS);
+        pool.shutdown();
+
+        List<String> sorted = List.of("alice|ns|K1", "alice|ns|K2", "alice|ns|K3", "alice|ns|K4", "alice|ns|K5");
+        List<String> fingerprints = new java.util.ArrayList<>();
+        for (String k : List.of("K1", "K2", "K3", "K4", "K5")) fingerprints.add(sha256("req-" + k));
+        assertThat(seenKeys).containsExactly(sorted, sorted);
+        assertThat(seenFingerprints).containsExactly(fingerprints, fingerprints);
+    }
+
+    private static String sha256(String s) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8)));
+    }
+}
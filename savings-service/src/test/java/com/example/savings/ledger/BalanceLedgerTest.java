@@ -0,0 +1,143 @@
+package com.example.savings.ledger;
+
+import com.example.savings.repository.AccountRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ledger モードのユニットテスト。
+ *
+ * 目的:
+ * - 同一口座への並行入金でロストアップデートが起きないこと
+ * - 出金は残高を超えて成立しないこと（CAS による残高チェック）
+ * - ジャーナル確定に失敗した更新はメモリ上の残高に残らないこと
+ * - 確定前の入金は出金に使えないこと（確定しなかった入金を引き出して残高がマイナスにならない）
+ * - 確定待ちはタイムアウトで 503 を返し、その後の確定／失敗でメモリ上の残高が追従すること
+ *
+ * 特徴:
+ * - 残高の復元元（AccountRepository）とライタ（LedgerJournalWriter）はモック化。
+ *   ライタは即時完了する Future を返し、グループコミット自体はここでは検証しない。
+ */
+class BalanceLedgerTest {
+
+    private AccountRepository repo;
+    private LedgerJournalWriter writer;
+    private BalanceLedger ledger;
+    private final UUID id = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        repo = mock(AccountRepository.class);
+        writer = mock(LedgerJournalWriter.class);
+        when(writer.append(any(), anyLong())).thenReturn(CompletableFuture.completedFuture(null));
+        when(repo.currentBalance(id)).thenReturn(Optional.of(new BigDecimal("100.00")));
+        ledger = new BalanceLedger(repo, writer, 10_000);
+    }
+
+    @Test
+    @DisplayName("並行入金: 全件が残高に反映され、DB からの復元は初回 1 回だけ")
+    void concurrentDeposits_noLostUpdates() throws Exception {
+        int threads = 8, perThread = 2_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> fs = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            fs.add(pool.submit(() -> {
+                for (int i = 0; i < perThread; i++) ledger.deposit(id, new BigDecimal("0.01"));
+            }));
+        }
+        for (Future<?> f : fs) f.get();
+        pool.shutdown();
+
+        // 100.00 + 0.01 * 16000 = 260.00
+        assertThat(ledger.withdraw(id, new BigDecimal("260.00"))).isEqualByComparingTo("0.00");
+        verify(repo, times(1)).currentBalance(id);
+        verify(writer, times(threads * perThread)).append(id, 1L);
+    }
+
+    @Test
+    @DisplayName("出金: 残高不足は IllegalStateException でジャーナルにも積まない")
+    void withdraw_insufficient() {
+        assertThatThrownBy(() -> ledger.withdraw(id, new BigDecimal("100.01")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("insufficient funds");
+        verify(writer, never()).append(any(), anyLong());
+    }
+
+    @Test
+    @DisplayName("ジャーナル確定失敗: 例外を返し、メモリ上の残高は元に戻る")
+    void journalFailure_revertsCell() {
+        when(writer.append(id, 5000L)).thenReturn(CompletableFuture.failedFuture(new IllegalStateException("db down")));
+
+        assertThatThrownBy(() -> ledger.deposit(id, new BigDecimal("50.00")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("db down");
+        assertThat(ledger.deposit(id, new BigDecimal("1.00"))).isEqualByComparingTo("101.00");
+    }
+
+    @Test
+    @DisplayName("確定待ちの入金は出金に使えず、確定しなければ残高はマイナスにならない")
+    void pendingDeposit_isNotWithdrawable() throws Exception {
+        CompletableFuture<Void> journal = new CompletableFuture<>();
+        when(writer.append(id, 5000L)).thenReturn(journal);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<BigDecimal> deposit = pool.submit(() -> ledger.deposit(id, new BigDecimal("50.00")));
+        verify(writer, timeout(5_000)).append(id, 5000L);
+
+        assertThatThrownBy(() -> ledger.withdraw(id, new BigDecimal("150.00")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("insufficient funds");
+        journal.completeExceptionally(new IllegalStateException("db down"));
+        assertThatThrownBy(deposit::get).hasRootCauseMessage("db down");
+        pool.shutdown();
+
+        assertThat(ledger.withdraw(id, new BigDecimal("100.00"))).isEqualByComparingTo("0.00");
+    }
+
+    @Test
+    @DisplayName("確定待ちのタイムアウトは 503。後から確定した入金は加算され、失敗した出金は戻る")
+    void journalTimeout_isServiceUnavailable_andCellFollowsOutcome() {
+        ledger = new BalanceLedger(repo, writer, 50);
+        CompletableFuture<Void> deposit = new CompletableFuture<>();
+        CompletableFuture<Void> withdraw = new CompletableFuture<>();
+        when(writer.append(id, 5000L)).thenReturn(deposit);
+        when(writer.append(id, -3000L)).thenReturn(withdraw);
+
+        assertThatThrownBy(() -> ledger.deposit(id, new BigDecimal("50.00")))
+                .isInstanceOf(ResponseStatusException.class)
+                .extracting(e -> ((ResponseStatusException) e).getStatusCode())
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThatThrownBy(() -> ledger.withdraw(id, new BigDecimal("30.00")))
+                .isInstanceOf(ResponseStatusException.class);
+
+        deposit.complete(null);
+        withdraw.completeExceptionally(new IllegalStateException("ledger writer stopped"));
+        assertThat(ledger.withdraw(id, new BigDecimal("150.00"))).isEqualByComparingTo("0.00");
+    }
+
+    @Test
+    @DisplayName("存在しない口座は IllegalArgumentException")
+    void unknownAccount() {
+        var other = UUID.randomUUID();
+        when(repo.currentBalance(other)).thenReturn(Optional.empty());
+        assertThatThrownBy(() -> ledger.deposit(other, BigDecimal.ONE))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Account not found");
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.savings.ledger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * LedgerJournalWriter のユニットテスト。
+ *
+ * 目的:
+ * - 停止前に積んだエントリはすべて書かれてから止まること（取り残された Future が無い）
+ * - 停止後の append は即座に失敗すること
+ * - バッチの書き込みに失敗したら、そのバッチの Future はすべて失敗で完了すること
+ *
+ * 特徴:
+ * - LedgerJdbcRepository はモック。
+ */
+class LedgerJournalWriterTest {
+
+    private final UUID id = UUID.randomUUID();
+
+    @Test
+    @DisplayName("停止前に積んだ分は書き切り、停止後の append は失敗する")
+    void stop_drainsQueue_andRejectsLateAppends() throws Exception {
+        LedgerJdbcRepository store = mock(LedgerJdbcRepository.class);
+        LedgerJournalWriter writer = new LedgerJournalWriter(store, 16);
+        writer.start();
+        List<CompletableFuture<Void>> fs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) fs.add(writer.append(id, 1));
+        writer.stop();
+
+        CompletableFuture.allOf(fs.toArray(CompletableFuture[]::new)).get(1, TimeUnit.SECONDS);
+        assertThatThrownBy(() -> writer.append(id, 1).join())
+                .hasRootCauseMessage("ledger is shutting down");
+    }
+
+    @Test
+    @DisplayName("書き込み失敗はバッチ内の全エントリに伝わる")
+    void writeFailure_failsWholeBatch() throws Exception {
+        LedgerJdbcRepository store = mock(LedgerJdbcRepository.class);
+        doThrow(new IllegalStateException("db down")).when(store).appendJournal(anyList());
+        LedgerJournalWriter writer = new LedgerJournalWriter(store, 16);
+        writer.start();
+        CompletableFuture<Void> a = writer.append(id, 1);
+        CompletableFuture<Void> b = writer.append(id, -1);
+        writer.stop();
+
+        assertThat(a).failsWithin(1, TimeUnit.SECONDS);
+        assertThat(b).failsWithin(1, TimeUnit.SECONDS);
+    }
+}
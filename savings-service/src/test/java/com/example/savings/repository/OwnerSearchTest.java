@@ -0,0 +1,44 @@
+package com.example.savings.repository;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * owner 検索パターンのユニットテスト。
+ *
+ * 目的:
+ * - 3 文字以上は部分一致、未満は前方一致になること（インデックスに乗る形だけを作る）
+ * - 検索語の % _ ! がエスケープされ、ワイルドカードとして効かないこと
+ */
+class OwnerSearchTest {
+
+    @Test
+    @DisplayName("normalize: 前後の空白を除き小文字にする")
+    void normalize() {
+        assertThat(OwnerSearch.normalize("  Alice ")).isEqualTo("alice");
+        assertThat(OwnerSearch.normalize(null)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("pattern: 3 文字以上は部分一致、未満は前方一致")
+    void pattern_byLength() {
+        assertThat(OwnerSearch.pattern("ali")).isEqualTo("%ali%");
+        assertThat(OwnerSearch.pattern("al")).isEqualTo("al%");
+        assertThat(OwnerSearch.pattern("")).isEqualTo("%");
+    }
+
+    @Test
+    @DisplayName("pattern: % _ ! は ! でエスケープする")
+    void pattern_escapesWildcards() {
+        assertThat(OwnerSearch.pattern("a%_!b")).isEqualTo("%a!%!_!!b%");
+    }
+
+    @Test
+    @DisplayName("prefix: 関連度の前方一致判定も長さによらずエスケープ済みの前方一致")
+    void prefix_escapesWildcards() {
+        assertThat(OwnerSearch.prefix("a_c")).isEqualTo("a!_c%");
+        assertThat(OwnerSearch.prefix("%")).isEqualTo("!%%");
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.savings.security;
+
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * JwksKeySource のユニットテスト。
+ *
+ * 目的：
+ * - 発行元に繋がらなくても、キャッシュファイルの鍵で起動直後から鍵を引けること
+ * - バックグラウンドの取得に成功したら鍵を差し替え、キャッシュファイルに公開鍵だけを書くこと
+ */
+class JwksKeySourceTest {
+
+    @TempDir
+    Path dir;
+
+    private static JWKSelector byKid(String kid) {
+        return new JWKSelector(new JWKMatcher.Builder().keyID(kid).build());
+    }
+
+    @Test
+    void servesKeysFromCacheFile_whenIssuerIsDown() throws Exception {
+        RSAKey key = new RSAKeyGenerator(2048).keyID("k1").generate();
+        Path file = dir.resolve("jwks.json");
+        Files.writeString(file, new JWKSet(key).toString(true));
+
+        try (JwksKeySource source = new JwksKeySource(URI.create("http://127.0.0.1:1/certs"), file, Duration.ofMinutes(5))) {
+            assertThat(source.get(byKid("k1"), null)).hasSize(1);
+            assertThat(source.get(byKid("unknown"), null)).isEmpty();
+        }
+    }
+
+    @Test
+    void refreshReplacesKeys_andWritesPublicKeysToCacheFile() throws Exception {
+        RSAKey key = new RSAKeyGenerator(2048).keyID("k2").generate();
+        byte[] body = new JWKSet(key).toString(false).getBytes(StandardCharsets.UTF_8);
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/certs", ex -> {
+            ex.getResponseHeaders().add("Content-Type", "application/json");
+            ex.sendResponseHeaders(200, body.length);
+            ex.getResponseBody().write(body);
+            ex.close();
+        });
+        server.start();
+        Path file = dir.resolve("jwks.json");
+        try (JwksKeySource source = new JwksKeySource(
+                URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/certs"), file, Duration.ofMinutes(5))) {
+            // 起動直後の取得はバックグラウンドで走る（コンストラクタもリクエストも待たない）
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (!Files.exists(file) && System.nanoTime() < deadline) Thread.sleep(20);
+
+            assertThat(source.get(byKid("k2"), null)).hasSize(1);
+            JWKSet written = JWKSet.parse(Files.readString(file));
+            assertThat(written.getKeyByKeyId("k2").isPrivate()).isFalse();
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.savings.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+/**
+ * JwtCache のユニットテスト。
+ *
+ * 目的：
+ * - 同じトークンの 2 回目以降は署名検証（delegate）も権限変換も呼ばず、hit/miss が数えられること
+ * - 期限切れ・検証失敗のトークンはキャッシュから返さないこと
+ */
+class JwtCacheTest {
+
+    private static Jwt jwt(String token, Instant exp) {
+        return Jwt.withTokenValue(token).header("alg", "RS256").subject("alice")
+                .issuedAt(exp.minusSeconds(300)).expiresAt(exp).build();
+    }
+
+    @Test
+    void decodesOncePerToken_andConvertsAuthoritiesOnce() {
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        JwtCache cache = new JwtCache(meters, 100);
+        JwtDecoder delegate = mock(JwtDecoder.class);
+        when(delegate.decode("t1")).thenReturn(jwt("t1", Instant.now().plusSeconds(300)));
+        AtomicInteger conversions = new AtomicInteger();
+        Converter<Jwt, AbstractAuthenticationToken> converter = j -> {
+            conversions.incrementAndGet();
+            return new JwtAuthenticationToken(j, List.of(new SimpleGrantedAuthority("ROLE_user")), j.getSubject());
+        };
+
+        JwtDecoder decoder = cache.decoder(delegate);
+        Converter<Jwt, AbstractAuthenticationToken> cached = cache.converter(converter);
+        AbstractAuthenticationToken first = cached.convert(decoder.decode("t1"));
+        AbstractAuthenticationToken second = cached.convert(decoder.decode("t1"));
+
+        verify(delegate, times(1)).decode("t1");
+        assertThat(conversions).hasValue(1);
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getName()).isEqualTo("alice");
+        assertThat(second.getAuthorities()).extracting(GrantedAuthority::getAuthority).containsExactly("ROLE_user");
+        assertThat(meters.counter("savings.jwt.cache", "result", "hit").count()).isEqualTo(1.0);
+        assertThat(meters.counter("savings.jwt.cache", "result", "miss").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void expiredOrInvalidTokens_areNotServedFromCache() {
+        JwtCache cache = new JwtCache(new SimpleMeterRegistry(), 100);
+        JwtDecoder delegate = mock(JwtDecoder.class);
+        when(delegate.decode("old")).thenReturn(jwt("old", Instant.now().minusSeconds(1)));
+        when(delegate.decode("bad")).thenThrow(new BadJwtException("bad signature"));
+        JwtDecoder decoder = cache.decoder(delegate);
+
+        decoder.decode("old");
+        decoder.decode("old");
+        verify(delegate, times(2)).decode("old");
+        assertThat(cache.size()).isZero();
+
+        assertThatThrownBy(() -> decoder.decode("bad")).isInstanceOf(BadJwtException.class);
+        assertThatThrownBy(() -> decoder.decode("bad")).isInstanceOf(BadJwtException.class);
+        verify(delegate, times(2)).decode("bad");
+    }
+}
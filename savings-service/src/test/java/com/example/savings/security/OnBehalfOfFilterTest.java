@@ -0,0 +1,156 @@
+package com.example.savings.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * OnBehalfOfFilter のユニットテスト。
+ *
+ * 目的：
+ * - 署名が合えば、認証がユーザの sub とユーザのロールに変わること（サービスのロールは使わない）
+ * - 後続にも同じボディが読めること（ReadListener による非同期読み取りでも、すぐ読み終わりが通知される）
+ * - 署名不一致（パス・ボディの改ざん含む）・時刻ずれ・nonce の再利用は 401 で止まること
+ * - 許可していないクライアントからのヘッダは 403 で止まること
+ */
+class OnBehalfOfFilterTest {
+
+    private static final String SECRET = "obo-secret";
+    private static final byte[] KEY = SECRET.getBytes(StandardCharsets.UTF_8);
+    private static final String BODY = "{\"amount\":10}";
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private static OnBehalfOfFilter filter() {
+        return new OnBehalfOfFilter(SECRET, Set.of("time-deposit-service"));
+    }
+
+    private static void authenticateAs(String clientId) {
+        Jwt jwt = Jwt.withTokenValue("svc").header("alg", "none").subject("service-account")
+                .claim("azp", clientId).build();
+        SecurityContextHolder.getContext().setAuthentication(
+                new JwtAuthenticationToken(jwt, List.of(new SimpleGrantedAuthority("ROLE_service"))));
+    }
+
+    /** path / body に対して署名し、送るリクエストは sentPath / sentBody（改ざんの再現用） */
+    private static MockHttpServletRequest request(String path, String body, String sentPath, String sentBody,
+                                                  long ts, String nonce) {
+        String canonical = OnBehalfOfFilter.canonical("POST", path, body.getBytes(StandardCharsets.UTF_8),
+                "alice", "user,read", String.valueOf(ts), nonce);
+        MockHttpServletRequest req = new MockHttpServletRequest("POST", sentPath);
+        req.setContent(sentBody.getBytes(StandardCharsets.UTF_8));
+        req.addHeader(OnBehalfOfFilter.ON_BEHALF_OF, "alice");
+        req.addHeader(OnBehalfOfFilter.ROLES, "user,read");
+        req.addHeader(OnBehalfOfFilter.TIMESTAMP, String.valueOf(ts));
+        req.addHeader(OnBehalfOfFilter.NONCE, nonce);
+        req.addHeader(OnBehalfOfFilter.SIGNATURE, OnBehalfOfFilter.sign(KEY, canonical));
+        return req;
+    }
+
+    private static MockHttpServletRequest request(long ts, String nonce) {
+        return request("/accounts/x/deposit", BODY, "/accounts/x/deposit", BODY, ts, nonce);
+    }
+
+    @Test
+    void validSignature_actsAsUserWithUserRoles() throws Exception {
+        authenticateAs("time-deposit-service");
+        AtomicReference<Authentication> seen = new AtomicReference<>();
+        AtomicReference<String> body = new AtomicReference<>();
+        MockFilterChain chain = new MockFilterChain() {
+            @Override
+            public void doFilter(jakarta.servlet.ServletRequest request, jakarta.servlet.ServletResponse response) {
+                seen.set(SecurityContextHolder.getContext().getAuthentication());
+                try {
+                    body.set(new String(request.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+                } catch (java.io.IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+
+        filter().doFilter(request(Instant.now().getEpochSecond(), UUID.randomUUID().toString()),
+                new MockHttpServletResponse(), chain);
+
+        assertThat(seen.get().getName()).isEqualTo("alice");
+        assertThat(seen.get().getAuthorities()).extracting(Object::toString)
+                .containsExactlyInAnyOrder("ROLE_user", "ROLE_read");
+        assertThat(body.get()).isEqualTo(BODY);
+    }
+
+    @Test
+    void tamperedStaleOrReplayed_isRejected() throws Exception {
+        authenticateAs("time-deposit-service");
+        long now = Instant.now().getEpochSecond();
+        long stale = now - OnBehalfOfFilter.MAX_SKEW_SECONDS - 10;
+        OnBehalfOfFilter filter = filter();
+
+        MockHttpServletResponse otherPath = new MockHttpServletResponse();
+        filter.doFilter(request("/accounts/x/deposit", BODY, "/accounts/x/withdraw", BODY, now, "n1"),
+                otherPath, new MockFilterChain());
+        MockHttpServletResponse otherBody = new MockHttpServletResponse();
+        filter.doFilter(request("/accounts/x/deposit", BODY, "/accounts/x/deposit", "{\"amount\":9999}", now, "n2"),
+                otherBody, new MockFilterChain());
+        MockHttpServletResponse old = new MockHttpServletResponse();
+        filter.doFilter(request(stale, "n3"), old, new MockFilterChain());
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        filter.doFilter(request(now, "n4"), first, new MockFilterChain());
+        MockHttpServletResponse replay = new MockHttpServletResponse();
+        filter.doFilter(request(now, "n4"), replay, new MockFilterChain());
+
+        assertThat(otherPath.getStatus()).isEqualTo(401);
+        assertThat(otherBody.getStatus()).isEqualTo(401);
+        assertThat(old.getStatus()).isEqualTo(401);
+        assertThat(first.getStatus()).isEqualTo(200);
+        assertThat(replay.getStatus()).isEqualTo(401);
+    }
+
+    @Test
+    void headerFromUnlistedClient_isForbidden() throws Exception {
+        authenticateAs("some-other-client");
+        MockHttpServletResponse res = new MockHttpServletResponse();
+
+        filter().doFilter(request(Instant.now().getEpochSecond(), "n5"), res, new MockFilterChain());
+
+        assertThat(res.getStatus()).isEqualTo(403);
+    }
+
+    @Test
+    void cachedBody_notifiesReadListenerImmediately() throws Exception {
+        MockHttpServletRequest req = new MockHttpServletRequest("POST", "/accounts/x/deposit");
+        req.setContent(BODY.getBytes(StandardCharsets.UTF_8));
+        jakarta.servlet.ServletInputStream in = new OnBehalfOfFilter.CachedBodyRequest(req).getInputStream();
+        List<String> events = new java.util.ArrayList<>();
+        java.io.ByteArrayOutputStream read = new java.io.ByteArrayOutputStream();
+
+        in.setReadListener(new jakarta.servlet.ReadListener() {
+            @Override public void onDataAvailable() throws java.io.IOException {
+                events.add("data");
+                while (in.isReady() && !in.isFinished()) read.write(in.read());
+            }
+            @Override public void onAllDataRead() { events.add("done"); }
+            @Override public void onError(Throwable t) { events.add("error"); }
+        });
+
+        assertThat(events).containsExactly("data", "done");
+        assertThat(read.toString(StandardCharsets.UTF_8)).isEqualTo(BODY);
+    }
+}
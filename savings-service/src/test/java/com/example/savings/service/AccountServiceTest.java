@@ -1,18 +1,37 @@
 // src/test/java/com/example/savings/service/AccountServiceTest.java
 package com.example.savings.service;
 
+import com.example.savings.dto.CreditRequest;
+import com.example.savings.dto.CreditResult;
+import com.example.savings.dto.SavingsAccountDto;
+import com.example.savings.idempotency.IdempotencyService;
+import com.example.savings.idempotency.IdempotencyService.KeyState;
+import com.example.savings.ledger.BalanceLedger;
 import com.example.savings.model.Account;
+import com.example.savings.model.AccountTransaction;
+import com.example.savings.repository.AccountJdbcRepository;
 import com.example.savings.repository.AccountRepository;
+import com.example.savings.repository.AccountTransactionRepository;
+import com.example.savings.repository.OwnerSummaryRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 /**
@@ -24,18 +43,43 @@ import static org.mockito.Mockito.*;
  * 特徴:
  * - AccountRepository は Mockito でモック化（DB に依存しない）。
  * - 例外発生条件や境界値（0, マイナス、残高不足）を網羅。
- * - @Transactional の下でエンティティのフィールドを書き換える設計のため、
- *   repo.save(...) の呼び出し検証は行っていない（=JPA のフラッシュ前提）。
+ * - 入出金は accounts を書き換えずジャーナル（account_transactions）へ追記するため、
+ *   repo.save(...) ではなく transactions.save(...) の呼び出しを検証する。
+ *   入出金後の残高は repo.currentBalance（スナップショット + ジャーナル）のモック値で表す。
+ * - 入出金は TransactionTemplate で囲むため、トランザクションマネージャはモックを渡す。
+ * - ledger モードは無効（Optional.empty()）の状態を検証する。
  */
 class AccountServiceTest {
 
     private AccountRepository repo;
+    private AccountTransactionRepository transactions;
+    private AccountJdbcRepository bulk;
+    private OwnerDirectory directory;
+    private OwnerSummaryRepository summaries;
+    private IdempotencyService idempotency;
     private AccountService service;
 
     @BeforeEach
     void setUp() {
         repo = mock(AccountRepository.class);
-        service = new AccountService(repo);
+        transactions = mock(AccountTransactionRepository.class);
+        bulk = mock(AccountJdbcRepository.class);
+        directory = mock(OwnerDirectory.class);
+        summaries = mock(OwnerSummaryRepository.class);
+        idempotency = mock(IdempotencyService.class);
+        // 既定では行ごとのキーはすべて今回確保できたことにする
+        when(idempotency.claimAll(eq(AccountService.CREDIT_KEYS), anyMap())).thenAnswer(inv -> {
+            Map<String, String> requests = inv.getArgument(1);
+            Map<String, KeyState> states = new java.util.HashMap<>();
+            requests.keySet().forEach(k -> states.put(k, KeyState.CLAIMED));
+            return states;
+        });
+        service = newService(Optional.empty());
+    }
+
+    private AccountService newService(Optional<BalanceLedger> ledger) {
+        return new AccountService(repo, transactions, bulk, directory, summaries, idempotency,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), ledger);
     }
 
     @Test
@@ -51,6 +95,39 @@ class AccountServiceTest {
         assertThat(result.getOwner()).isEqualTo("alice");
         assertThat(result.getBalance()).isEqualByComparingTo("0");
         verify(repo).save(any(Account.class)); // save が一度呼ばれること
+        verify(directory).add("alice");         // owner 一覧にも即時反映
+        verify(summaries).addAccounts(List.of("alice")); // owner の口座数に加算
+    }
+
+    @Test
+    @DisplayName("createAll: id を採番済みの口座を 1 回のバッチ INSERT に渡す")
+    void createAll_singleBatch() {
+        var res = service.createAll(List.of("alice", "bob"));
+
+        assertThat(res).extracting(Account::getOwner).containsExactly("alice", "bob");
+        assertThat(res).allSatisfy(a -> {
+            assertThat(a.getId()).isNotNull();
+            assertThat(a.getCreatedAt()).isNotNull();
+        });
+        verify(bulk, times(1)).insertAll(res);
+        verify(directory).addAll(List.of("alice", "bob"));
+        verify(repo, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("getAll: 1 回の findAll で読み、入力順（重複は 1 件）に並べて見つからない id を missing に返す")
+    void getAll_singleQueryKeepsOrder() {
+        UUID a = UUID.randomUUID(), b = UUID.randomUUID(), gone = UUID.randomUUID();
+        when(bulk.findAll(anyCollection())).thenReturn(List.of(
+                new SavingsAccountDto(a, "alice", new BigDecimal("1"), Instant.now(), 0L),
+                new SavingsAccountDto(b, "bob", new BigDecimal("2"), Instant.now(), 0L)));
+
+        var res = service.getAll(List.of(b, gone, a, b));
+
+        assertThat(res.accounts()).extracting(SavingsAccountDto::id).containsExactly(b, a);
+        assertThat(res.missing()).containsExactly(gone);
+        verify(bulk, times(1)).findAll(Set.of(a, b, gone));
+        assertThatThrownBy(() -> service.getAll(List.of())).isInstanceOf(IllegalArgumentException.class);
     }
 
     @Test
@@ -65,65 +142,194 @@ class AccountServiceTest {
     }
 
     @Test
-    @DisplayName("deposit: 正の金額で加算される")
+    @DisplayName("deposit: 正の金額でジャーナルに追記し、加算後の残高を返す")
     void deposit_ok() {
         var id = UUID.randomUUID();
-        var a = new Account();
-        a.setOwner("alice");
-        a.setBalance(new BigDecimal("100"));
-
-        when(repo.findById(id)).thenReturn(Optional.of(a));
+        when(repo.existsById(id)).thenReturn(true);
+        when(repo.currentBalance(id)).thenReturn(Optional.of(new BigDecimal("125.50")));
 
         var res = service.deposit(id, new BigDecimal("25.50"));
         assertThat(res.getBalance()).isEqualByComparingTo("125.50");
-        // エンティティ更新方式のため save は必須ではない
+        verify(transactions).save(argThat(t -> t.getType() == AccountTransaction.Type.DEPOSIT
+                && t.getAmount().compareTo(new BigDecimal("25.50")) == 0));
+        // 口座行は書き換えない
         verify(repo, never()).save(any());
+        // owner の合計は入金では書かない（owner 行をロックしない。畳み込み時に加算）
+        verifyNoInteractions(summaries);
     }
 
     @Test
     @DisplayName("deposit: 0以下は IllegalArgumentException")
     void deposit_ng_amount() {
         var id = UUID.randomUUID();
-        var a = new Account();
-        a.setBalance(BigDecimal.TEN);
-        when(repo.findById(id)).thenReturn(Optional.of(a));
+        when(repo.existsById(id)).thenReturn(true);
 
         assertThatThrownBy(() -> service.deposit(id, new BigDecimal("0")))
                 .isInstanceOf(IllegalArgumentException.class);
         assertThatThrownBy(() -> service.deposit(id, new BigDecimal("-1")))
                 .isInstanceOf(IllegalArgumentException.class);
+        verify(transactions, never()).save(any());
     }
 
     @Test
-    @DisplayName("withdraw: 残高以内なら減算される")
+    @DisplayName("deposit: 存在しない口座は IllegalArgumentException")
+    void deposit_notFound() {
+        var id = UUID.randomUUID();
+        when(repo.existsById(id)).thenReturn(false);
+
+        assertThatThrownBy(() -> service.deposit(id, BigDecimal.ONE))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Account not found");
+        verify(transactions, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("withdraw: 残高以内なら負の金額で追記し、減算後の残高を返す")
     void withdraw_ok() {
         var id = UUID.randomUUID();
-        var a = new Account();
-        a.setBalance(new BigDecimal("100.00"));
-        when(repo.findById(id)).thenReturn(Optional.of(a));
+        when(repo.lockForWithdraw(id)).thenReturn(Optional.of(1));
+        when(repo.currentBalance(id)).thenReturn(Optional.of(new BigDecimal("100.00")));
 
         var res = service.withdraw(id, new BigDecimal("40.00"));
         assertThat(res.getBalance()).isEqualByComparingTo("60.00");
+        verify(transactions).save(argThat(t -> t.getType() == AccountTransaction.Type.WITHDRAW
+                && t.getAmount().compareTo(new BigDecimal("-40.00")) == 0));
+        verifyNoInteractions(summaries);
     }
 
     @Test
     @DisplayName("withdraw: 残高不足は IllegalStateException")
     void withdraw_insufficient() {
         var id = UUID.randomUUID();
-        var a = new Account();
-        a.setBalance(new BigDecimal("30"));
-        when(repo.findById(id)).thenReturn(Optional.of(a));
+        when(repo.lockForWithdraw(id)).thenReturn(Optional.of(1));
+        when(repo.currentBalance(id)).thenReturn(Optional.of(new BigDecimal("30")));
 
         assertThatThrownBy(() -> service.withdraw(id, new BigDecimal("31")))
                 .isInstanceOf(IllegalStateException.class)
                 .hasMessageContaining("insufficient funds");
+        verify(transactions, never()).save(any());
+        verifyNoInteractions(summaries);
     }
 
     @Test
-    @DisplayName("findByOwner: repository 経由で検索する")
+    @DisplayName("findByOwner: repository 経由で (created_at, id) 順に検索する")
     void findByOwner() {
-        when(repo.findByOwner("alice")).thenReturn(List.of(new Account()));
+        when(repo.findByOwnerOrderByCreatedAtAscIdAsc("alice")).thenReturn(List.of(new Account()));
         assertThat(service.findByOwner("alice")).hasSize(1);
-        verify(repo).findByOwner("alice");
+        verify(repo).findByOwnerOrderByCreatedAtAscIdAsc("alice");
+    }
+
+    @Test
+    @DisplayName("findByOwner(ページ): limit+1 件取れたら次トークンを返し、トークンから続きを検索する")
+    void findByOwner_keysetPage() {
+        var a1 = Account.newAccount("alice");
+        var a2 = Account.newAccount("alice");
+        var a3 = Account.newAccount("alice");
+        when(repo.findPageByOwner("alice", Limit.of(3))).thenReturn(List.of(a1, a2, a3));
+
+        var first = service.findByOwner("alice", 2, null);
+        assertThat(first.items()).containsExactly(a1, a2);
+        assertThat(first.nextToken()).isNotNull();
+
+        when(repo.findPageByOwnerAfter("alice", a2.getCreatedAt(), a2.getId(), Limit.of(3))).thenReturn(List.of(a3));
+        var second = service.findByOwner("alice", 2, first.nextToken());
+        assertThat(second.items()).containsExactly(a3);
+        assertThat(second.nextToken()).isNull();
+    }
+
+    @Test
+    @DisplayName("findByOwner(ページ): 壊れたトークンは IllegalArgumentException")
+    void findByOwner_invalidToken() {
+        assertThatThrownBy(() -> service.findByOwner("alice", 10, "not-a-token"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("invalid page token");
+    }
+
+    @Test
+    @DisplayName("history: limit は 1..MAX_HISTORY に丸めて検索する")
+    void history_clampsLimit() {
+        var id = UUID.randomUUID();
+        when(repo.findById(id)).thenReturn(Optional.of(new Account()));
+
+        service.history(id, 10_000);
+        service.history(id, 0);
+        verify(transactions).findByAccountIdOrderBySeqDesc(id, Limit.of(AccountService.MAX_HISTORY));
+        verify(transactions).findByAccountIdOrderBySeqDesc(id, Limit.of(1));
+    }
+
+    @Test
+    @DisplayName("creditAll: 有効な行だけを 1 回のバッチで追記し、結果を入力順に返す")
+    void creditAll_singleBatch_perItemOutcome() {
+        var a = UUID.randomUUID();
+        var b = UUID.randomUUID();
+        var missing = UUID.randomUUID();
+        when(bulk.existingIds(anyCollection())).thenReturn(Set.of(a, b));
+        when(bulk.currentBalances(anyCollection())).thenReturn(Map.of(a, new BigDecimal("110.00"), b, new BigDecimal("5.00")));
+
+        var res = service.creditAll(List.of(
+                new CreditRequest(a, new BigDecimal("100.00"), "K1"),
+                new CreditRequest(missing, new BigDecimal("1.00"), "K2"),
+                new CreditRequest(b, new BigDecimal("0"), "K3"),
+                new CreditRequest(b, new BigDecimal("5.00"), "K4"),
+                new CreditRequest(a, new BigDecimal("10.00"), "K1")));
+
+        assertThat(res).extracting(CreditResult::index).containsExactly(0, 1, 2, 3, 4);
+        assertThat(res).extracting(CreditResult::status)
+                .containsExactly("APPLIED", "REJECTED", "REJECTED", "APPLIED", "REJECTED");
+        assertThat(res.get(1).error()).isEqualTo("Account not found");
+        assertThat(res.get(2).error()).isEqualTo("amount must be > 0");
+        assertThat(res.get(4).error()).contains("duplicate idempotencyKey");
+        assertThat(res.get(0).balance()).isEqualByComparingTo("110.00");
+        // 適用分だけがまとめて 1 回で追記される（1 件ずつの save はしない）
+        verify(bulk).appendDeposits(List.of(a, b), List.of(new BigDecimal("100.00"), new BigDecimal("5.00")));
+        // 適用した行のキーだけを、同じトランザクションで適用済みにする
+        verify(idempotency).completeAll(AccountService.CREDIT_KEYS, List.of("K1", "K4"));
+        verifyNoInteractions(summaries);
+        verifyNoInteractions(transactions);
+    }
+
+    @Test
+    @DisplayName("creditAll: 前のバッチで使われたキーは再適用しない（同じ内容は DUPLICATE、別の内容は REJECTED）")
+    void creditAll_keysAcrossBatches() {
+        var a = UUID.randomUUID();
+        when(bulk.existingIds(anyCollection())).thenReturn(Set.of(a));
+        when(bulk.currentBalances(anyCollection())).thenReturn(Map.of(a, new BigDecimal("4.00")));
+        when(idempotency.claimAll(eq(AccountService.CREDIT_KEYS), anyMap())).thenReturn(Map.of(
+                "K1", KeyState.APPLIED, "K2", KeyState.CONFLICT, "K3", KeyState.PENDING, "K4", KeyState.CLAIMED));
+
+        var res = service.creditAll(List.of(
+                new CreditRequest(a, new BigDecimal("1.00"), "K1"),
+                new CreditRequest(a, new BigDecimal("2.00"), "K2"),
+                new CreditRequest(a, new BigDecimal("3.00"), "K3"),
+                new CreditRequest(a, new BigDecimal("4.00"), "K4")));
+
+        assertThat(res).extracting(CreditResult::status)
+                .containsExactly("DUPLICATE", "REJECTED", "FAILED", "APPLIED");
+        assertThat(res.get(1).error()).contains("different credit");
+        verify(idempotency).claimAll(AccountService.CREDIT_KEYS, Map.of(
+                "K1", a + " 1.00", "K2", a + " 2.00", "K3", a + " 3.00", "K4", a + " 4.00"));
+        verify(bulk).appendDeposits(List.of(a), List.of(new BigDecimal("4.00")));
+        verify(idempotency).completeAll(AccountService.CREDIT_KEYS, List.of("K4"));
+    }
+
+    @Test
+    @DisplayName("creditAll（ledger モード）: 失敗した行は FAILED にしてキーを手放し、適用済みの行はそのまま")
+    void creditAll_ledger_perRowRetrySafeStatus() {
+        var a = UUID.randomUUID();
+        var b = UUID.randomUUID();
+        BalanceLedger ledger = mock(BalanceLedger.class);
+        when(bulk.existingIds(anyCollection())).thenReturn(Set.of(a, b));
+        when(ledger.deposit(a, new BigDecimal("1.00"))).thenReturn(new BigDecimal("11.00"));
+        when(ledger.deposit(b, new BigDecimal("2.00"))).thenThrow(new IllegalStateException("journal write failed"));
+
+        var res = newService(Optional.of(ledger)).creditAll(List.of(
+                new CreditRequest(a, new BigDecimal("1.00"), "K1"),
+                new CreditRequest(b, new BigDecimal("2.00"), "K2")));
+
+        assertThat(res).extracting(CreditResult::status).containsExactly("APPLIED", "FAILED");
+        assertThat(res.get(0).balance()).isEqualByComparingTo("11.00");
+        verify(idempotency).completeAll(AccountService.CREDIT_KEYS, List.of("K1"));
+        verify(idempotency).releaseAll(AccountService.CREDIT_KEYS, List.of("K2"));
+        verifyNoInteractions(transactions);
     }
 }
@@ -0,0 +1,45 @@
+package com.example.savings.service;
+
+import com.example.savings.repository.AccountRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+/**
+ * 残高スナップショット更新のユニットテスト。
+ *
+ * 目的:
+ * - 1 回の畳み込みが batch 行で埋まったら、残りを続けて畳み込むこと
+ * - 他ノードが実行中（アドバイザリロックが取れない）なら何もしないこと
+ */
+class BalanceSnapshotJobTest {
+
+    private final AccountRepository repo = mock(AccountRepository.class);
+    private final BalanceSnapshotJob job = new BalanceSnapshotJob(repo,
+            new TransactionTemplate(mock(PlatformTransactionManager.class)), 100);
+
+    @Test
+    @DisplayName("batch 行で埋まった間は続けて畳み込み、足りなくなったら止める")
+    void foldsUntilBatchIsNotFull() {
+        when(repo.tryLockSnapshot()).thenReturn(true);
+        when(repo.foldJournal(100)).thenReturn(100, 100, 7);
+
+        job.snapshot();
+
+        verify(repo, times(3)).foldJournal(100);
+    }
+
+    @Test
+    @DisplayName("ロックが取れなければ畳み込まない")
+    void skipsWhenAnotherNodeIsFolding() {
+        when(repo.tryLockSnapshot()).thenReturn(false);
+
+        job.snapshot();
+
+        verify(repo, never()).foldJournal(anyInt());
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.savings.service;
+
+import com.example.savings.repository.SavingsAccountRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * owner 一覧キャッシュのユニットテスト。
+ *
+ * 目的:
+ * - 初回だけ全件ロードし、以降は DB に行かずソート済み一覧を返すこと
+ * - 中身が変わったときだけ ETag が変わること
+ * - 定期リフレッシュは差分クエリだけを使うこと
+ * - snapshot() の ETag と一覧は同じ version を指すこと
+ */
+class OwnerDirectoryTest {
+
+    private SavingsAccountRepository repo;
+    private OwnerDirectory directory;
+
+    @BeforeEach
+    void setUp() {
+        repo = mock(SavingsAccountRepository.class);
+        when(repo.findDistinctOwners()).thenReturn(List.of("bob", "alice"));
+        directory = new OwnerDirectory(repo);
+    }
+
+    @Test
+    @DisplayName("list: 初回だけ全件ロードし、昇順で返す")
+    void list_loadsOnce() {
+        assertThat(directory.list()).containsExactly("alice", "bob");
+        assertThat(directory.list()).containsExactly("alice", "bob");
+        verify(repo, times(1)).findDistinctOwners();
+    }
+
+    @Test
+    @DisplayName("etag: 新しい owner の追加でだけ変わる")
+    void etag_changesOnlyOnNewOwner() {
+        String e1 = directory.etag();
+        directory.add("alice");
+        assertThat(directory.etag()).isEqualTo(e1);
+
+        directory.add("carol");
+        assertThat(directory.etag()).isNotEqualTo(e1);
+        assertThat(directory.list()).containsExactly("alice", "bob", "carol");
+    }
+
+    @Test
+    @DisplayName("refresh: 2 回目以降は作成日時の差分だけを取り込む")
+    void refresh_isIncremental() {
+        directory.list();
+        when(repo.findOwnersCreatedSince(any(Instant.class))).thenReturn(List.of("dave"));
+
+        directory.refresh();
+
+        assertThat(directory.list()).containsExactly("alice", "bob", "dave");
+        verify(repo, times(1)).findDistinctOwners();
+        verify(repo).findOwnersCreatedSince(any(Instant.class));
+    }
+
+    @Test
+    @DisplayName("snapshot: ETag と一覧は同じ中身を指し、後からの追加で書き換わらない")
+    void snapshot_pairsEtagWithOwners() {
+        OwnerDirectory.Snapshot before = directory.snapshot();
+        directory.add("carol");
+        OwnerDirectory.Snapshot after = directory.snapshot();
+
+        assertThat(before.owners()).containsExactly("alice", "bob");
+        assertThat(after.owners()).containsExactly("alice", "bob", "carol");
+        assertThat(after.etag()).isNotEqualTo(before.etag());
+        assertThat(directory.snapshot().etag()).isEqualTo(after.etag());
+    }
+}
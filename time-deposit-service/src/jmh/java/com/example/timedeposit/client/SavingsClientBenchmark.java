@@ -0,0 +1,135 @@
+package com.example.timedeposit.client;
+
+import com.example.timedeposit.config.SavingsHttpClientConfig;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+import javax.net.ServerSocketFactory;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SavingsClient.deposit 1 回あたりのレイテンシ（ローカルの MockWebServer 相手）。
+ *
+ * - simple: これまでの既定（JDK HttpURLConnection。keep-alive のキャッシュは宛先ごとに http.maxConnections=5 本）
+ * - pooled: SavingsHttpClientConfig と同じ設定のコネクションプール（宛先ごと 50 本）
+ * 既定は 1 スレッド。多コア環境で同時実行の差（simple は 6 本目以降の接続を毎回張り直す）を見るなら @Threads を上げる。
+ * ループバック越しの 1 回数百 us の計測は JIT・GC・スケジューラの揺れが大きく、1 フォーク 5 反復では誤差が平均を超える。
+ * 比べるときは 3 フォーク × 10 反復（既定）の誤差幅が重ならないことを確かめてから数字を使う。
+ *
+ * 実行（bench プロファイルでだけ JMH を解決する）:
+ *   mvn -Pbench test-compile exec:exec -Dbench.main=com.example.timedeposit.client.SavingsClientBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Threads(1)
+@Fork(3)
+public class SavingsClientBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("100.00");
+
+    private MockWebServer server;
+    private CloseableHttpClient pooledHttp;
+    private SavingsClient simple;
+    private SavingsClient pooled;
+    private UUID account;
+
+    @Setup
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse()
+                        .setHeader("Content-Type", "application/json")
+                        .setBody("{\"id\":\"" + UUID.randomUUID() + "\",\"owner\":\"alice\",\"balance\":100.00}");
+            }
+        });
+        // 応答のヘッダと本文が別パケットになり、Nagle と遅延 ACK で 40ms 待たされるのを避ける
+        server.setServerSocketFactory(new ServerSocketFactory() {
+            @Override public ServerSocket createServerSocket() throws IOException { return noDelay(); }
+            @Override public ServerSocket createServerSocket(int port) throws IOException { return bind(noDelay(), port, 50); }
+            @Override public ServerSocket createServerSocket(int port, int backlog) throws IOException { return bind(noDelay(), port, backlog); }
+            @Override public ServerSocket createServerSocket(int port, int backlog, InetAddress addr) throws IOException {
+                ServerSocket s = noDelay();
+                s.bind(new InetSocketAddress(addr, port), backlog);
+                return s;
+            }
+        });
+        server.start();
+        String baseUrl = server.url("/").toString();
+        account = UUID.randomUUID();
+
+        simple = new SavingsClient(RestClient.builder(), baseUrl, "bench-token", new SimpleClientHttpRequestFactory());
+
+        pooledHttp = SavingsHttpClientConfig.httpClient(
+                SavingsHttpClientConfig.connectionManager(100, 50, Duration.ofSeconds(1), Duration.ofSeconds(5),
+                        Duration.ofMinutes(5)),
+                Duration.ofMillis(500), Duration.ofSeconds(5), Duration.ofSeconds(30));
+        pooled = new SavingsClient(RestClient.builder(), baseUrl, "bench-token",
+                new HttpComponentsClientHttpRequestFactory(pooledHttp));
+    }
+
+    private static ServerSocket noDelay() throws IOException {
+        return new ServerSocket() {
+            @Override
+            public Socket accept() throws IOException {
+                Socket s = super.accept();
+                s.setTcpNoDelay(true);
+                return s;
+            }
+        };
+    }
+
+    private static ServerSocket bind(ServerSocket s, int port, int backlog) throws IOException {
+        s.bind(new InetSocketAddress(port), backlog);
+        return s;
+    }
+
+    // MockWebServer は受けたリクエストを全部キューに溜めるので、反復ごとに捨てる
+    @TearDown(Level.Iteration)
+    public void drain() throws InterruptedException {
+        while (server.takeRequest(0, TimeUnit.MILLISECONDS) != null) { }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        pooledHttp.close();
+        server.shutdown();
+    }
+
+    @Benchmark
+    public Object simple() {
+        return simple.deposit(account, AMOUNT, "bench");
+    }
+
+    @Benchmark
+    public Object pooled() {
+        return pooled.deposit(account, AMOUNT, "bench");
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(SavingsClientBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
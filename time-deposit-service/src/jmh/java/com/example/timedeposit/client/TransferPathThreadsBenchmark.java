@@ -0,0 +1,118 @@
+package com.example.timedeposit.client;
+
+import com.example.timedeposit.config.SavingsHttpClientConfig;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 振替経路の負荷比較: 同時 1,000 件の「savings-service を呼んで待つ」リクエストを捌き切るまでの時間。
+ *
+ * - platform: Tomcat 既定と同じ 200 本のプラットフォームスレッドのプール（server.tomcat.threads.max の既定）
+ * - virtual: 1 リクエスト 1 仮想スレッド（spring.threads.virtual.enabled=true 相当）
+ * savings-service 役の MockWebServer は 1 件ごとに latencyMs 待ってから返す。待ちが支配的な経路では
+ * platform はプールの本数ごとの波（1,000 / 200 = 5 波）になり、virtual は 1 波で済む。
+ * 接続プールは同時数で頭打ちにならないよう大きめにしてある（比較したいのはスレッドの差だけ）。
+ *
+ * 実行（bench プロファイルでだけ JMH を解決する）:
+ *   mvn -Pbench test-compile exec:exec -Dbench.main=com.example.timedeposit.client.TransferPathThreadsBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class TransferPathThreadsBenchmark {
+
+    private static final int REQUESTS = 1_000;
+    private static final BigDecimal AMOUNT = new BigDecimal("100.00");
+
+    @Param({"50"})
+    public long latencyMs;
+
+    private MockWebServer server;
+    private CloseableHttpClient http;
+    private SavingsClient client;
+    private ExecutorService platform;
+    private ExecutorService virtual;
+
+    @Setup
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse()
+                        .setHeadersDelay(latencyMs, TimeUnit.MILLISECONDS)
+                        .setHeader("Content-Type", "application/json")
+                        .setBody("{\"balance\":100.00}");
+            }
+        });
+        server.start();
+        http = SavingsHttpClientConfig.httpClient(
+                SavingsHttpClientConfig.connectionManager(2 * REQUESTS, 2 * REQUESTS, Duration.ofSeconds(10),
+                        Duration.ofSeconds(10), Duration.ofMinutes(5)),
+                Duration.ofSeconds(10), Duration.ofSeconds(10), Duration.ofSeconds(30));
+        client = new SavingsClient(RestClient.builder(), server.url("/").toString(), "bench-token",
+                new HttpComponentsClientHttpRequestFactory(http));
+        platform = Executors.newFixedThreadPool(200);
+        virtual = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @TearDown(Level.Iteration)
+    public void drain() throws InterruptedException {
+        while (server.takeRequest(0, TimeUnit.MILLISECONDS) != null) { }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        platform.shutdownNow();
+        virtual.shutdownNow();
+        http.close();
+        server.shutdown();
+    }
+
+    @Benchmark
+    public int platform() throws Exception {
+        return burst(platform);
+    }
+
+    @Benchmark
+    public int virtual() throws Exception {
+        return burst(virtual);
+    }
+
+    private int burst(ExecutorService executor) throws Exception {
+        UUID account = UUID.randomUUID();
+        List<Future<?>> calls = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            calls.add(executor.submit(() -> client.withdraw(account, AMOUNT, null)));
+        }
+        for (Future<?> f : calls) f.get();
+        return calls.size();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(TransferPathThreadsBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.timedeposit.service;
+
+import com.example.timedeposit.model.TimeDeposit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 満期受取額計算のベンチマーク（従来の BigDecimal 版 vs PayoutEngine）。
+ *
+ * 実行（bench プロファイルでだけ JMH を解決する）:
+ *   mvn -Pbench test-compile exec:exec
+ *
+ * GC プロファイラ付きで走るので、ns/op に加えて gc.alloc.rate.norm（B/op）で割り当て量を比べられる。
+ * 入力は商品 300 種（利率 × 期間）に元本をばらつかせた 100,000 件。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayoutEngineBenchmark {
+
+    private List<TimeDeposit> deposits;
+    private PayoutEngine engine;
+
+    @Setup
+    public void setUp() throws Exception {
+        Random rnd = new Random(7);
+        BigDecimal[] rates = new BigDecimal[30];
+        for (int i = 0; i < rates.length; i++) rates[i] = BigDecimal.valueOf(1_000 + 500L * i, 6);
+        int[] terms = {7, 14, 30, 60, 90, 180, 365, 730, 1095, 1825};
+
+        deposits = new ArrayList<>(100_000);
+        var principal = TimeDeposit.class.getDeclaredField("principal");
+        var rate = TimeDeposit.class.getDeclaredField("annualRate");
+        var days = TimeDeposit.class.getDeclaredField("termDays");
+        principal.setAccessible(true);
+        rate.setAccessible(true);
+        days.setAccessible(true);
+        for (int i = 0; i < 100_000; i++) {
+            TimeDeposit td = new TimeDeposit();
+            principal.set(td, BigDecimal.valueOf(10_000_00L + rnd.nextLong(100_000_000_00L), 2));
+            rate.set(td, rates[rnd.nextInt(rates.length)]);
+            days.setInt(td, terms[rnd.nextInt(terms.length)]);
+            deposits.add(td);
+        }
+        engine = new PayoutEngine();
+        engine.calculatePayouts(deposits); // 係数キャッシュを温めておく
+    }
+
+    /** 置き換え前の TimeDepositService.calculatePayout */
+    private static BigDecimal legacy(TimeDeposit td) {
+        BigDecimal days = new BigDecimal(td.getTermDays());
+        BigDecimal factor = BigDecimal.ONE.add(td.getAnnualRate().multiply(days).divide(new BigDecimal("365"), MathContext.DECIMAL64));
+        return td.getPrincipal().multiply(factor).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100_000)
+    public void legacyBigDecimal(Blackhole bh) {
+        for (TimeDeposit td : deposits) bh.consume(legacy(td));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100_000)
+    public void engineSingle(Blackhole bh) {
+        for (TimeDeposit td : deposits) bh.consume(engine.calculatePayout(td));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100_000)
+    public List<BigDecimal> engineBulk() {
+        return engine.calculatePayouts(deposits);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(PayoutEngineBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
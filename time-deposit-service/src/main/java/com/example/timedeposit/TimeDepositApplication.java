@@ -2,8 +2,10 @@ package com.example.timedeposit;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling // OwnerDirectory, MaturitySweepJob, TransferRelay
 public class TimeDepositApplication {
     public static void main(String[] args) {
         SpringApplication.run(TimeDepositApplication.class, args);
@@ -1,26 +1,51 @@
 package com.example.timedeposit;
 
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.*;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.oauth2.server.resource.authentication.*;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.*;
-import org.springframework.web.reactive.function.client.ClientRequest;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+import java.time.Duration;
 
+
+/**
+ * savings-service 向けの WebClient（ReactiveSavingsClient が使う）。
+ *
+ * - Reactor Netty のコネクションプール。上限・タイムアウトは RestClient 側と同じ savings.http.* を使う
+ *   （プールの状態は reactor.netty.connection.provider.*{name=savings} で見える）
+ * - 認証ヘッダはここでは付けない。ReactiveSavingsClient が SavingsClient と同じ SavingsAuthorization で付ける
+ */
 @Configuration
 public class WebClientConfig {
+
+  @Bean(destroyMethod = "dispose")
+  ConnectionProvider savingsConnectionProvider(
+      @Value("${savings.http.max-per-route:50}") int maxConnections,
+      @Value("${savings.http.pool-acquire-timeout-ms:500}") long acquireTimeoutMs,
+      @Value("${savings.http.idle-evict-seconds:30}") long idleSeconds,
+      @Value("${savings.http.ttl-seconds:300}") long ttlSeconds) {
+    return ConnectionProvider.builder("savings")
+        .maxConnections(maxConnections)
+        .pendingAcquireTimeout(Duration.ofMillis(acquireTimeoutMs))
+        .maxIdleTime(Duration.ofSeconds(idleSeconds))
+        .maxLifeTime(Duration.ofSeconds(ttlSeconds))
+        .evictInBackground(Duration.ofSeconds(idleSeconds))
+        .metrics(true)
+        .build();
+  }
+
   @Bean
-  WebClient webClient(WebClient.Builder builder) {
-    return builder.filter((request, next) -> {
-      Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-      if (auth instanceof JwtAuthenticationToken jwt) {
-        ClientRequest newReq = ClientRequest.from(request)
-            .headers(h -> h.setBearerAuth(jwt.getToken().getTokenValue()))
-            .build();
-        return next.exchange(newReq);
-      }
-      return next.exchange(request);
-    }).build();
+  WebClient webClient(WebClient.Builder builder, ConnectionProvider savingsConnectionProvider,
+                      @Value("${savings.http.connect-timeout-ms:1000}") int connectTimeoutMs,
+                      @Value("${savings.http.read-timeout-ms:5000}") long readTimeoutMs) {
+    HttpClient http = HttpClient.create(savingsConnectionProvider)
+        .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+        .responseTimeout(Duration.ofMillis(readTimeoutMs));
+    return builder
+        .clientConnector(new ReactorClientHttpConnector(http))
+        .build();
   }
 }
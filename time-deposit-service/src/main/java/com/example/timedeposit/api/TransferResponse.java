@@ -1,9 +1,24 @@
 package com.example.timedeposit.api;
 
+import com.example.timedeposit.model.Transfer;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
 import java.util.UUID;
 
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public record TransferResponse(
+        UUID id,
         UUID fromAccountId,
-        UUID timeDepositId,
-        String status // "COMPLETED"
-) {}
+        UUID timeDepositId,   // COMPLETED になるまで null
+        String status,        // PENDING / WITHDRAWN / COMPLETED / COMPENSATING / FAILED
+        int attempts,
+        String error,
+        Instant createdAt,
+        Instant updatedAt
+) {
+    public static TransferResponse fromEntity(Transfer t) {
+        return new TransferResponse(t.getId(), t.getFromAccountId(), t.getTimeDepositId(), t.getStatus().name(),
+                t.getAttempts(), t.getLastError(), t.getCreatedAt(), t.getUpdatedAt());
+    }
+}
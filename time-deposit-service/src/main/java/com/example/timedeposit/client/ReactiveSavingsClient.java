@@ -0,0 +1,115 @@
+package com.example.timedeposit.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * SavingsClient のノンブロッキング版（WebClientConfig の WebClient を使う）。
+ * 応答を待つ間スレッドを占有しないので、オーケストレーション系のエンドポイント（ReactiveDepositController）で使う。
+ *
+ * 認証ヘッダは SavingsClient と同じ SavingsAuthorization で付ける（savings.auth.mode・署名付きヘッダも同じ）。
+ * 呼び出し元は SecurityContextHolder（スレッドローカル）ではなく Reactor の Context から取る。
+ * 応答を待った後の後続呼び出しは Netty のスレッドで動くので、スレッドローカルでは見失うため。
+ * 呼び出し側で contextWrite(ReactiveSecurityContextHolder.withAuthentication(auth)) しておくこと。
+ */
+@Component
+public class ReactiveSavingsClient {
+
+    private static final ParameterizedTypeReference<Map<String, Object>> MAP = new ParameterizedTypeReference<>() {};
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final WebClient web;
+    private final SavingsAuthorization authorization;
+    private final String baseUrl;
+
+    @Autowired
+    public ReactiveSavingsClient(WebClient webClient, SavingsClient savings,
+                                 @Value("${savings.base-url:http://savings-service:8081}") String baseUrl) {
+        this(webClient, savings.authorization(), baseUrl);
+    }
+
+    public ReactiveSavingsClient(WebClient webClient, SavingsAuthorization authorization, String baseUrl) {
+        this.web = webClient;
+        this.authorization = authorization;
+        // 末尾スラッシュは重複させない
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    public Mono<Map<String, Object>> deposit(UUID accountId, BigDecimal amount, String idempotencyKey) {
+        return post("/accounts/{id}/deposit", accountId, amount, idempotencyKey);
+    }
+
+    public Mono<Map<String, Object>> withdraw(UUID accountId, BigDecimal amount, String idempotencyKey) {
+        return post("/accounts/{id}/withdraw", accountId, amount, idempotencyKey);
+    }
+
+    public Mono<Map<String, Object>> getAccount(UUID accountId) {
+        URI uri = uri("/accounts/{id}", accountId);
+        return authorized(HttpMethod.GET, uri, new byte[0])
+                .flatMap(h -> web.get()
+                        .uri(uri)
+                        .headers(x -> x.addAll(h))
+                        .retrieve()
+                        .bodyToMono(MAP));
+    }
+
+    private Mono<Map<String, Object>> post(String path, UUID accountId, BigDecimal amount, String idempotencyKey) {
+        URI uri = uri(path, accountId);
+        // 署名はボディのバイト列に対して付けるので、送るバイト列をここで確定させる
+        byte[] body;
+        try {
+            body = JSON.writeValueAsBytes(Map.of("amount", amount));
+        } catch (JsonProcessingException e) {
+            return Mono.error(new IllegalStateException(e));
+        }
+        return authorized(HttpMethod.POST, uri, body)
+                .flatMap(h -> web.post()
+                        .uri(uri)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .headers(x -> {
+                            x.addAll(h);
+                            if (idempotencyKey != null && !idempotencyKey.isBlank()) x.set("Idempotency-Key", idempotencyKey);
+                        })
+                        .bodyValue(body)
+                        .retrieve()
+                        .bodyToMono(MAP));
+    }
+
+    /** Reactor の Context の呼び出し元で認証ヘッダを作る。サービス用トークンの取り直しはブロッキングなので Netty のスレッドでは呼ばない */
+    private Mono<HttpHeaders> authorized(HttpMethod method, URI uri, byte[] body) {
+        return ReactiveSecurityContextHolder.getContext()
+                .mapNotNull(SecurityContext::getAuthentication)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.<Authentication>empty())
+                .publishOn(Schedulers.boundedElastic())
+                .map(auth -> {
+                    HttpHeaders h = new HttpHeaders();
+                    authorization.apply(h, auth.orElse(null), method.name(), uri, body);
+                    return h;
+                });
+    }
+
+    private URI uri(String path, UUID accountId) {
+        return UriComponentsBuilder.fromUriString(baseUrl + path).buildAndExpand(accountId).toUri();
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.timedeposit.client;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * savings-service への認証ヘッダの付け方（SavingsClient.AuthMode の規則）。
+ * SavingsClient（RestClient）と ReactiveSavingsClient（WebClient）で共有し、どちらから呼んでも同じ規則で付ける。
+ * 認証（auth）の取り出し方だけが呼び出し側で違う（スレッドローカルか Reactor の Context か）。
+ */
+public final class SavingsAuthorization {
+
+    private final ServiceTokenProvider serviceTokens;
+    private final SavingsClient.AuthMode mode;
+    private final byte[] onBehalfOfSecret;
+
+    public SavingsAuthorization(ServiceTokenProvider serviceTokens, SavingsClient.AuthMode mode, String onBehalfOfSecret) {
+        this.serviceTokens = serviceTokens;
+        this.mode = mode;
+        this.onBehalfOfSecret = onBehalfOfSecret == null ? new byte[0] : onBehalfOfSecret.getBytes(StandardCharsets.UTF_8);
+        if (mode == SavingsClient.AuthMode.SERVICE && this.onBehalfOfSecret.length == 0) {
+            throw new IllegalStateException("savings.auth.on-behalf-of-secret is required in service mode");
+        }
+    }
+
+    /** ユーザのいない処理から呼べる（サービス用トークンがある）か */
+    public boolean canCallAsService() {
+        return serviceTokens.isAvailable();
+    }
+
+    /** ユーザの代わりに呼べる（サービス用トークンと署名鍵がある）か */
+    public boolean canActOnBehalfOfUsers() {
+        return serviceTokens.isAvailable() && onBehalfOfSecret.length > 0;
+    }
+
+    /**
+     * auth（呼び出し元。null ならユーザのいない処理）として送るための Authorization と、ユーザの代わりに呼ぶなら署名付きヘッダを付ける。
+     * 署名にはメソッド・パス・ボディを含めるので、送るボディのバイト列そのものを渡すこと。
+     * サービス用トークンの取り直しはブロッキングなので、Netty のスレッドからは呼ばない
+     */
+    public void apply(HttpHeaders h, Authentication auth, String method, URI uri, byte[] body) {
+        boolean hasUser = auth != null && auth.isAuthenticated() && !(auth instanceof AnonymousAuthenticationToken);
+        if (mode == SavingsClient.AuthMode.PROPAGATE && auth instanceof JwtAuthenticationToken user) {
+            h.setBearerAuth(user.getToken().getTokenValue());
+            return;
+        }
+        String token = serviceTokens.token();
+        if (token == null) {
+            throw new IllegalStateException("No JWT available to propagate and no service token configured "
+                    + "(set savings.oauth.* or savings.service-token)");
+        }
+        h.setBearerAuth(token);
+        if (!hasUser) return;
+        if (onBehalfOfSecret.length == 0) {
+            throw new IllegalStateException("savings.auth.on-behalf-of-secret is required to call savings-service on behalf of a user");
+        }
+        String subject = auth.getName();
+        String roles = auth.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .filter(a -> a.startsWith("ROLE_"))
+                .map(a -> a.substring("ROLE_".length()))
+                .sorted()
+                .collect(Collectors.joining(","));
+        String ts = String.valueOf(Instant.now().getEpochSecond());
+        String nonce = UUID.randomUUID().toString();
+        String path = uri.getRawPath() + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery());
+        h.set(SavingsClient.ON_BEHALF_OF, subject);
+        h.set(SavingsClient.ON_BEHALF_OF_ROLES, roles);
+        h.set(SavingsClient.ON_BEHALF_OF_TIMESTAMP, ts);
+        h.set(SavingsClient.ON_BEHALF_OF_NONCE, nonce);
+        h.set(SavingsClient.ON_BEHALF_OF_SIGNATURE, sign(onBehalfOfSecret,
+                canonical(method, path, body, subject, roles, ts, nonce)));
+    }
+
+    /** 署名対象の文字列（savings-service の OnBehalfOfFilter と同じ組み立て） */
+    static String canonical(String method, String path, byte[] body, String subject, String roles,
+                            String timestamp, String nonce) {
+        String bodyHash;
+        try {
+            bodyHash = Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        return String.join("\n", method, path, bodyHash, subject, roles, timestamp, nonce);
+    }
+
+    /** HMAC-SHA256(secret, canonical) の base64url */
+    static String sign(byte[] secret, String canonical) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            byte[] sig = mac.doFinal(canonical.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(sig);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
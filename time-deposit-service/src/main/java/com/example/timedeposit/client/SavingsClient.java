@@ -1,42 +1,95 @@
 package com.example.timedeposit.client;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
 import org.springframework.http.MediaType;
-import org.springframework.security.core.Authentication;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClient;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
 @Component
 public class SavingsClient {
 
+    // サービス用トークンでユーザの代わりに呼ぶときに、誰の操作かを伝えるヘッダ（savings-service の OnBehalfOfFilter が検証する）
+    public static final String ON_BEHALF_OF = "X-On-Behalf-Of";
+    public static final String ON_BEHALF_OF_ROLES = "X-On-Behalf-Of-Roles";
+    public static final String ON_BEHALF_OF_TIMESTAMP = "X-On-Behalf-Of-Timestamp";
+    public static final String ON_BEHALF_OF_NONCE = "X-On-Behalf-Of-Nonce";
+    public static final String ON_BEHALF_OF_SIGNATURE = "X-On-Behalf-Of-Signature";
+
+    /**
+     * savings-service への認証の付け方。
+     * - PROPAGATE: ユーザのリクエスト中はユーザの JWT をそのまま転送する
+     * - SERVICE: 常にサービス用トークン。ユーザのリクエスト中は sub とロールを署名付きヘッダで添える
+     *   （savings-service はユーザトークンの再検証をせずに済む）
+     * どちらのモードでも、JWT の無いユーザ（TransferRelay が申込者として動くとき）はサービス用トークン + 署名付きヘッダ、
+     * ユーザのいない処理（満期スイープ）はサービス用トークンだけで呼ぶ。
+     */
+    public enum AuthMode { PROPAGATE, SERVICE }
+
     private final RestClient rest;
     private final String baseUrl;
+    private final SavingsAuthorization authorization;
+
+    public SavingsClient(RestClient.Builder builder, String baseUrl) {
+        this(builder, baseUrl, null, null);
+    }
+
+    public SavingsClient(RestClient.Builder builder, String baseUrl, String serviceToken,
+                         ClientHttpRequestFactory requestFactory) {
+        this(builder, baseUrl, ServiceTokenProvider.fixed(serviceToken), AuthMode.PROPAGATE, "", requestFactory);
+    }
 
     // docker-compose のサービス名で到達できる URL をデフォルトにしています。
     // 例: http://savings-service:8081 （savings-service の 8081）
+    // requestFactory は SavingsHttpClientConfig のコネクションプール付きクライアント（null なら builder の既定）
+    @Autowired
     public SavingsClient(RestClient.Builder builder,
-                         @Value("${savings.base-url:http://savings-service:8081}") String baseUrl) {
-        this.rest = builder.build();
+                         @Value("${savings.base-url:http://savings-service:8081}") String baseUrl,
+                         ServiceTokenProvider serviceTokens,
+                         @Value("${savings.auth.mode:PROPAGATE}") AuthMode mode,
+                         @Value("${savings.auth.on-behalf-of-secret:}") String onBehalfOfSecret,
+                         @Qualifier("savingsRequestFactory") ClientHttpRequestFactory requestFactory) {
+        this.authorization = new SavingsAuthorization(serviceTokens, mode, onBehalfOfSecret);
+        // 署名にメソッド・パス・ボディを含めるため、認証ヘッダは送信直前のインターセプタで付ける
+        builder = builder.requestInterceptor(this::authorize);
+        this.rest = requestFactory != null ? builder.requestFactory(requestFactory).build() : builder.build();
         // 末尾スラッシュは重複させない
         this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
     }
 
-    /**
-     * 現在のリクエストに付いてきたユーザの JWT を取り出して Bearer ヘッダ文字列を作る
-     */
-    private String bearer() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth instanceof JwtAuthenticationToken jwtAuth) {
-            return "Bearer " + jwtAuth.getToken().getTokenValue();
-        }
-        throw new IllegalStateException("No JWT available to propagate (Authorization header is required)");
+    /** 認証ヘッダの付け方（ReactiveSavingsClient も同じ設定で使う） */
+    public SavingsAuthorization authorization() {
+        return authorization;
+    }
+
+    /** ユーザのいない処理（満期スイープ）から呼べる（サービス用トークンがある）か。MaturitySweepJob が起動時に確かめる */
+    public boolean canCallAsService() {
+        return authorization.canCallAsService();
+    }
+
+    /** ユーザの代わりに呼べる（サービス用トークンと署名鍵がある）か。TransferRelay が起動時に確かめる */
+    public boolean canActOnBehalfOfUsers() {
+        return authorization.canActOnBehalfOfUsers();
+    }
+
+    /** 認証ヘッダ（Authorization と、ユーザの代わりに呼ぶなら署名付きヘッダ）を付けて送る */
+    private ClientHttpResponse authorize(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        authorization.apply(request.getHeaders(), SecurityContextHolder.getContext().getAuthentication(),
+                request.getMethod().name(), request.getURI(), body);
+        return execution.execute(request, body);
     }
 
 
@@ -59,8 +112,7 @@ public class SavingsClient {
     public Map<String, Object> deposit(UUID accountId, BigDecimal amount, String idempotencyKey) {
         RestClient.RequestBodySpec req = rest.post()
                 .uri(this.baseUrl + "/accounts/{id}/deposit", accountId)
-                .contentType(MediaType.APPLICATION_JSON)
-                .header(HttpHeaders.AUTHORIZATION, bearer());
+                .contentType(MediaType.APPLICATION_JSON);
 
         if (idempotencyKey != null && !idempotencyKey.isBlank()) {
             req = req.header("Idempotency-Key", idempotencyKey);
@@ -77,6 +129,25 @@ public class SavingsClient {
         return deposit(accountId, amount, null);
     }
 
+    /** 一括入金の 1 件分（idempotencyKey は null 可） */
+    public record Credit(UUID accountId, BigDecimal amount, String idempotencyKey) {}
+
+    /**
+     * 一括入金（POST /accounts/credits:batch）。1 往復・1 トランザクションで全件を適用する。
+     * 戻り値は入力順の結果。一部だけ失敗しても例外にはならない。status は
+     * APPLIED（今回適用）/ DUPLICATE（同じ idempotencyKey・同じ内容で適用済み）/ REJECTED（入力不正。error 付き。再送しても通らない）/
+     * FAILED（未適用。error 付き。同じ idempotencyKey で再送してよい）
+     */
+    @SuppressWarnings("unchecked")
+    public List<Map<String, Object>> depositBatch(List<Credit> credits) {
+        return rest.post()
+                .uri(this.baseUrl + "/accounts/credits:batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(credits)
+                .retrieve()
+                .body(List.class);
+    }
+
 
     // @SuppressWarnings("unchecked")
     // SavingsClient に “ヘッダ付き版” を追加（既存メソッドはそのまま）
@@ -97,8 +168,7 @@ public class SavingsClient {
     public Map<String, Object> withdraw(UUID accountId, BigDecimal amount, String idempotencyKey) {
         RestClient.RequestBodySpec req = rest.post()
                 .uri(this.baseUrl + "/accounts/{id}/withdraw", accountId)
-                .contentType(MediaType.APPLICATION_JSON)
-                .header(HttpHeaders.AUTHORIZATION, bearer());
+                .contentType(MediaType.APPLICATION_JSON);
 
         if (idempotencyKey != null && !idempotencyKey.isBlank()) {
             req = req.header("Idempotency-Key", idempotencyKey);
@@ -119,7 +189,6 @@ public class SavingsClient {
     public Map<String, Object> getAccount(UUID accountId) {
         return rest.get()
                 .uri(this.baseUrl + "/accounts/{id}", accountId)
-                .header(HttpHeaders.AUTHORIZATION, bearer())
                 .retrieve()
                 .body(Map.class);
     }
@@ -129,7 +198,6 @@ public class SavingsClient {
         return rest.post()
                 .uri(this.baseUrl + "/accounts")
                 .contentType(MediaType.APPLICATION_JSON)
-                .header(HttpHeaders.AUTHORIZATION, bearer())
                 .body(Map.of("owner", owner))
                 .retrieve()
                 .body(Map.class);
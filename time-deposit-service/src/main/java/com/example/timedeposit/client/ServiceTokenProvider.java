@@ -0,0 +1,164 @@
+package com.example.timedeposit.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * savings-service を time-deposit-service 自身として呼ぶためのアクセストークン（client_credentials）。
+ *
+ * 取得したトークンはメモリに持ち、期限の refresh-ahead-seconds 前からは呼び出しを待たせずに
+ * 裏で 1 本だけ取り直す（期限切れ・未取得のときだけ呼び出し側が取得を待つ）。
+ * token-uri / client-id が未設定なら savings.service-token（固定トークン）を返す（どちらも無ければ null）。
+ *
+ * メトリクス: timedeposit.service-token.fetches（result=success|failure）
+ */
+@Component
+public class ServiceTokenProvider {
+
+    private static final Logger log = LoggerFactory.getLogger(ServiceTokenProvider.class);
+    // 時計ずれ・転送時間のぶん、期限より少し前から使わない
+    private static final Duration EXPIRY_MARGIN = Duration.ofSeconds(5);
+
+    private record Token(String value, Instant refreshAt, Instant expiresAt) {}
+
+    private final RestClient rest;
+    private final String tokenUri;
+    private final String clientId;
+    private final String clientSecret;
+    private final String staticToken;
+    private final Duration refreshAhead;
+    private final ReentrantLock fetchLock = new ReentrantLock();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final Counter fetched;
+    private final Counter failed;
+
+    private volatile Token current;
+
+    @Autowired
+    public ServiceTokenProvider(RestClient.Builder builder,
+                                @Value("${savings.oauth.token-uri:}") String tokenUri,
+                                @Value("${savings.oauth.client-id:}") String clientId,
+                                @Value("${savings.oauth.client-secret:}") String clientSecret,
+                                @Value("${savings.service-token:}") String staticToken,
+                                @Value("${savings.oauth.refresh-ahead-seconds:60}") long refreshAheadSeconds,
+                                ObjectProvider<MeterRegistry> meters) {
+        this(builder.build(), tokenUri, clientId, clientSecret, staticToken, Duration.ofSeconds(refreshAheadSeconds),
+                meters.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    ServiceTokenProvider(RestClient rest, String tokenUri, String clientId, String clientSecret,
+                         String staticToken, Duration refreshAhead, MeterRegistry meters) {
+        this.rest = rest;
+        this.tokenUri = tokenUri;
+        this.clientId = clientId;
+        this.clientSecret = clientSecret;
+        this.staticToken = staticToken;
+        this.refreshAhead = refreshAhead;
+        this.fetched = meters.counter("timedeposit.service-token.fetches", "result", "success");
+        this.failed = meters.counter("timedeposit.service-token.fetches", "result", "failure");
+    }
+
+    /** 固定トークンだけを返す（ベンチマーク・テスト用） */
+    public static ServiceTokenProvider fixed(String token) {
+        return new ServiceTokenProvider(RestClient.create(), "", "", "", token, Duration.ZERO, new SimpleMeterRegistry());
+    }
+
+    public boolean isAvailable() {
+        return usesClientCredentials() || hasText(staticToken);
+    }
+
+    /** 使えるトークン（無ければ null）。取得に失敗したら IllegalStateException */
+    public String token() {
+        if (!usesClientCredentials()) return hasText(staticToken) ? staticToken : null;
+        Instant now = Instant.now();
+        Token t = current;
+        if (t != null && now.isBefore(t.refreshAt())) return t.value();
+        if (t != null && now.isBefore(t.expiresAt())) {
+            refreshInBackground();
+            return t.value();
+        }
+        fetchLock.lock();
+        try {
+            t = current;
+            if (t != null && Instant.now().isBefore(t.expiresAt())) return t.value();
+            return fetch().value();
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    private void refreshInBackground() {
+        if (!refreshing.compareAndSet(false, true)) return;
+        Thread.ofVirtual().name("service-token-refresh").start(() -> {
+            fetchLock.lock();
+            try {
+                fetch();
+            } catch (RuntimeException e) {
+                // 期限まではいまのトークンで続ける（次の呼び出しでまた試す）
+                log.warn("service token refresh failed: {}", e.toString());
+            } finally {
+                fetchLock.unlock();
+                refreshing.set(false);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private Token fetch() {
+        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+        form.add("grant_type", "client_credentials");
+        form.add("client_id", clientId);
+        if (hasText(clientSecret)) form.add("client_secret", clientSecret);
+        Map<String, Object> body;
+        try {
+            body = rest.post()
+                    .uri(tokenUri)
+                    .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                    .body(form)
+                    .retrieve()
+                    .body(Map.class);
+        } catch (RuntimeException e) {
+            failed.increment();
+            throw new IllegalStateException("service token request failed: " + e.getMessage(), e);
+        }
+        Object value = body == null ? null : body.get("access_token");
+        if (value == null) {
+            failed.increment();
+            throw new IllegalStateException("service token response has no access_token");
+        }
+        long expiresIn = body.get("expires_in") instanceof Number n ? n.longValue() : 60;
+        Instant now = Instant.now();
+        Instant expiresAt = now.plusSeconds(expiresIn).minus(EXPIRY_MARGIN);
+        // 寿命が短いトークンでも、寿命の半分までは取り直さない
+        Duration ahead = refreshAhead.compareTo(Duration.ofSeconds(expiresIn / 2)) < 0 ? refreshAhead : Duration.ofSeconds(expiresIn / 2);
+        Token t = new Token(value.toString(), expiresAt.minus(ahead), expiresAt);
+        current = t;
+        fetched.increment();
+        return t;
+    }
+
+    private boolean usesClientCredentials() {
+        return hasText(tokenUri) && hasText(clientId);
+    }
+
+    private static boolean hasText(String s) {
+        return s != null && !s.isBlank();
+    }
+}
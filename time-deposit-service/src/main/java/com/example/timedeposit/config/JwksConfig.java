@@ -0,0 +1,45 @@
+package com.example.timedeposit.config;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.util.StringUtils;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * JwtDecoder を手元の JWKS（JwksKeySource）で組み立てる。
+ * Boot の自動構成（issuer-uri からの discovery と、鍵の同期取得）の代わり。issuer の検証は従来どおり行う。
+ */
+@Configuration
+public class JwksConfig {
+
+    @Bean
+    public JwksKeySource jwksKeySource(@Value("${time-deposit.security.jwks.uri}") URI uri,
+                                       @Value("${time-deposit.security.jwks.cache-file:}") String cacheFile,
+                                       @Value("${time-deposit.security.jwks.refresh-interval-seconds:300}") long refreshSeconds) {
+        return new JwksKeySource(uri, StringUtils.hasText(cacheFile) ? Path.of(cacheFile) : null,
+                Duration.ofSeconds(refreshSeconds));
+    }
+
+    @Bean
+    public JwtDecoder jwtDecoder(JwksKeySource keys,
+                                 @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}") String issuer) {
+        DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+        processor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, keys));
+        // クレームの検証は Spring 側（JwtValidators）に任せる
+        processor.setJWTClaimsSetVerifier((claims, context) -> {});
+        NimbusJwtDecoder decoder = new NimbusJwtDecoder(processor);
+        decoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuer));
+        return decoder;
+    }
+}
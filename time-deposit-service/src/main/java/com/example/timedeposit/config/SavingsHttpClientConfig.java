@@ -0,0 +1,94 @@
+package com.example.timedeposit.config;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+import java.time.Duration;
+
+/**
+ * savings-service 向けの HTTP クライアント（Apache HttpClient 5 のコネクションプール）。
+ *
+ * - HTTP/1.1 keep-alive で接続を使い回す。接続数は全体 max-total / 宛先ごと max-per-route で頭打ち
+ * - プールが空くのを待つのは pool-acquire-timeout まで（下流が詰まったとき呼び出し側が溜まり続けないため）
+ * - 接続の寿命 ttl・アイドル idle-evict を過ぎた接続は捨てる（LB 側で切られた接続を掴まないため）
+ * - プールの状態は httpcomponents.httpclient.pool.*{httpclient=savings} で見える
+ */
+@Configuration
+public class SavingsHttpClientConfig {
+
+    @Bean(destroyMethod = "close")
+    PoolingHttpClientConnectionManager savingsConnectionManager(
+            @Value("${savings.http.max-total:100}") int maxTotal,
+            @Value("${savings.http.max-per-route:50}") int maxPerRoute,
+            @Value("${savings.http.connect-timeout-ms:1000}") long connectTimeoutMs,
+            @Value("${savings.http.read-timeout-ms:5000}") long readTimeoutMs,
+            @Value("${savings.http.ttl-seconds:300}") long ttlSeconds) {
+        return connectionManager(maxTotal, maxPerRoute, Duration.ofMillis(connectTimeoutMs),
+                Duration.ofMillis(readTimeoutMs), Duration.ofSeconds(ttlSeconds));
+    }
+
+    @Bean(destroyMethod = "close")
+    CloseableHttpClient savingsHttpClient(
+            PoolingHttpClientConnectionManager savingsConnectionManager,
+            @Value("${savings.http.pool-acquire-timeout-ms:500}") long acquireTimeoutMs,
+            @Value("${savings.http.read-timeout-ms:5000}") long readTimeoutMs,
+            @Value("${savings.http.idle-evict-seconds:30}") long idleEvictSeconds) {
+        return httpClient(savingsConnectionManager, Duration.ofMillis(acquireTimeoutMs),
+                Duration.ofMillis(readTimeoutMs), Duration.ofSeconds(idleEvictSeconds));
+    }
+
+    @Bean
+    ClientHttpRequestFactory savingsRequestFactory(CloseableHttpClient savingsHttpClient) {
+        return new HttpComponentsClientHttpRequestFactory(savingsHttpClient);
+    }
+
+    @Bean
+    MeterBinder savingsConnectionPoolMetrics(PoolingHttpClientConnectionManager savingsConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(savingsConnectionManager, "savings");
+    }
+
+    // ベンチマークからも同じ設定で組めるように static で持つ
+    public static PoolingHttpClientConnectionManager connectionManager(int maxTotal, int maxPerRoute,
+                                                                       Duration connectTimeout, Duration readTimeout,
+                                                                       Duration ttl) {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setTimeToLive(TimeValue.of(ttl))
+                        // しばらく使っていない接続は貸し出し前に生きているか確かめる
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+    }
+
+    public static CloseableHttpClient httpClient(PoolingHttpClientConnectionManager cm, Duration acquireTimeout,
+                                                 Duration readTimeout, Duration idleEvict) {
+        return HttpClients.custom()
+                .setConnectionManager(cm)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(acquireTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(idleEvict))
+                // 再試行は呼び出し側（TransferRelay 等）が Idempotency-Key 付きで行う
+                .disableAutomaticRetries()
+                .build();
+    }
+}
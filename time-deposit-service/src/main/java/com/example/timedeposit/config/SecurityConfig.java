@@ -1,5 +1,9 @@
 package com.example.timedeposit.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -8,6 +12,7 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.web.SecurityFilterChain;
 
@@ -19,7 +24,7 @@ import java.util.stream.Collectors;
 public class SecurityConfig {
 
     @Bean
-    SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    SecurityFilterChain securityFilterChain(HttpSecurity http, JwtDecoder jwtDecoder, JwtCache jwtCache) throws Exception {
         http
             .csrf(csrf -> csrf.disable())
             .authorizeHttpRequests(auth -> auth
@@ -27,11 +32,21 @@ public class SecurityConfig {
                 .anyRequest().authenticated()
             )
             .oauth2ResourceServer(oauth -> oauth
-                .jwt(jwt -> jwt.jwtAuthenticationConverter(jwtAuthConverter()))
+                // 同じトークンの署名検証・権限変換は初回だけ（JwtCache）
+                .jwt(jwt -> jwt
+                    .decoder(jwtCache.decoder(jwtDecoder))
+                    .jwtAuthenticationConverter(jwtCache.converter(jwtAuthConverter())))
             );
         return http.build();
     }
 
+    @Bean
+    JwtCache jwtCache(ObjectProvider<MeterRegistry> meters,
+                      @Value("${time-deposit.security.jwt-cache-size:10000}") int cacheSize) {
+        // MeterRegistry の無い文脈（@WebMvcTest など）では数えるだけで出さない
+        return new JwtCache(meters.getIfAvailable(SimpleMeterRegistry::new), cacheSize);
+    }
+
     @Bean
     JwtAuthenticationConverter jwtAuthConverter() {
         JwtAuthenticationConverter converter = new JwtAuthenticationConverter();
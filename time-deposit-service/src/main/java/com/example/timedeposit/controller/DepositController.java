@@ -13,6 +13,9 @@ import java.time.Instant;
 import java.util.Map;
 import java.util.UUID;
 
+import static com.example.timedeposit.controller.DepositViews.addSfx;
+import static com.example.timedeposit.controller.DepositViews.view;
+
 
 @RestController
 @RequestMapping("/deposits")
@@ -30,7 +33,8 @@ public class DepositController {
                                 @NotNull @DecimalMin("0.01") BigDecimal principal,
                                 @NotNull @DecimalMin("0.0") BigDecimal annualRate,
                                 @Min(1) int termDays,
-                                UUID fromAccountId // ← null 可：指定がある時だけ withdraw を実施
+                                UUID fromAccountId, // ← null 可：指定がある時だけ withdraw を実施
+                                UUID payoutAccountId // ← null 可：満期の自動払出先（省略時は fromAccountId）
                                 ) {}
 
     @PostMapping
@@ -54,17 +58,9 @@ public class DepositController {
 
         try {
             // 2) 定期作成
-            TimeDeposit td = service.create(req.owner(), amount, req.annualRate(), req.termDays());
-            return ResponseEntity.status(201).body(Map.of(
-                    "id", td.getId(),
-                    "owner", td.getOwner(),
-                    "principal", td.getPrincipal(),
-                    "annualRate", td.getAnnualRate(),
-                    "termDays", td.getTermDays(),
-                    "startAt", td.getStartAt(),
-                    "maturityDate", td.getMaturityAt(),
-                    "status", td.getStatus()
-            ));
+            UUID payoutTo = req.payoutAccountId() != null ? req.payoutAccountId() : from;
+            TimeDeposit td = service.create(req.owner(), amount, req.annualRate(), req.termDays(), payoutTo);
+            return ResponseEntity.status(201).body(view(td));
         } catch (RuntimeException e) {
             // 3) 失敗時は補償（引落し済みなら同額を deposit で戻す）
             if (withdrew && from != null) {
@@ -80,34 +76,20 @@ public class DepositController {
         }
     }
 
-    private static String addSfx(String key, String sfx) {
-        return (key == null || key.isBlank()) ? null : key + sfx;
-    }
-
-
     @GetMapping("/{id}")
     public ResponseEntity<?> get(@PathVariable UUID id) {
         TimeDeposit td = service.get(id);
-        return ResponseEntity.ok(Map.of(
-                "id", td.getId(),
-                "owner", td.getOwner(),
-                "principal", td.getPrincipal(),
-                "annualRate", td.getAnnualRate(),
-                "termDays", td.getTermDays(),
-                "startAt", td.getStartAt(),
-                "maturityDate", td.getMaturityAt(),
-                "status", td.getStatus()
-        ));
+        return ResponseEntity.ok(view(td));
     }
 
     // 解約時に普通預金へ自動振替
     @PostMapping("/{id}/close")
     public ResponseEntity<?> closeAndTransfer(@PathVariable UUID id,
                                               @RequestParam(name = "toAccountId") UUID toAccountId,
-                                              @RequestParam(name = "at", required = false) String atIso,
-                                              @RequestHeader(value = "Idempotency-Key", required = false) String idemKey) {
+                                              @RequestParam(name = "at", required = false) String atIso) {
         Instant now = (atIso == null) ? Instant.now() : Instant.parse(atIso);
-        BigDecimal payout = service.closeAndTransfer(id, toAccountId, now, savingsClient, addSfx(idemKey, ":CLOSE"));
+        // 再送しても払い出しは 1 回（キーは引き受けごとに固定。TimeDeposit#payoutKey）。払出先の 4xx はそのまま返し、定期は OPEN に戻る
+        BigDecimal payout = service.closeAndTransfer(id, toAccountId, now, savingsClient);
         return ResponseEntity.ok(Map.of(
                 "id", id,
                 "status", "CLOSED",
@@ -115,11 +97,4 @@ public class DepositController {
                 "toAccountId", toAccountId
         ));
     }
-
-
-
-    @ExceptionHandler({IllegalArgumentException.class, IllegalStateException.class})
-    public ResponseEntity<?> handleBadRequest(RuntimeException e) {
-        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,17 @@
+package com.example.timedeposit.controller;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.Map;
+
+/** /deposits と /reactive/deposits の入力・状態エラーを 400 で返す */
+@RestControllerAdvice(assignableTypes = {DepositController.class, ReactiveDepositController.class})
+class DepositErrorHandler {
+
+    @ExceptionHandler({IllegalArgumentException.class, IllegalStateException.class})
+    public ResponseEntity<?> handleBadRequest(RuntimeException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.timedeposit.controller;
+
+import com.example.timedeposit.model.TimeDeposit;
+
+import java.util.Map;
+
+/** DepositController と ReactiveDepositController で共通の応答の形と冪等キーの組み立て */
+final class DepositViews {
+
+    private DepositViews() {}
+
+    static Map<String, Object> view(TimeDeposit td) {
+        return Map.of(
+                "id", td.getId(),
+                "owner", td.getOwner(),
+                "principal", td.getPrincipal(),
+                "annualRate", td.getAnnualRate(),
+                "termDays", td.getTermDays(),
+                "startAt", td.getStartAt(),
+                "maturityDate", td.getMaturityAt(),
+                "status", td.getStatus()
+        );
+    }
+
+    /** 下流に伝搬する Idempotency-Key（:WD 引落し / :CP 補償）。元のキーが無ければ付けない */
+    static String addSfx(String key, String sfx) {
+        return (key == null || key.isBlank()) ? null : key + sfx;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.timedeposit.controller;
+
+import com.example.timedeposit.dto.OwnerDepositSummary;
+import com.example.timedeposit.repository.OwnerSummaryRepository;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * owner ごとの定期の合計: GET /owners/{owner}/summary → {"owner","openDeposits","principal","projectedPayout"}
+ *
+ * owner_deposit_summary の 1 行を読むだけ（定期を全件読んで合算しない）。定期がない owner は 0 を返す。
+ */
+@RestController
+@RequestMapping("/owners")
+public class OwnerSummaryController {
+
+    private final OwnerSummaryRepository summaries;
+
+    public OwnerSummaryController(OwnerSummaryRepository summaries) {
+        this.summaries = summaries;
+    }
+
+    @GetMapping("/{owner}/summary")
+    public OwnerDepositSummary summary(@PathVariable String owner) {
+        return summaries.find(owner).orElseGet(() -> OwnerDepositSummary.empty(owner));
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.timedeposit.controller;
+
+import com.example.timedeposit.client.ReactiveSavingsClient;
+import com.example.timedeposit.service.TimeDepositService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.example.timedeposit.controller.DepositViews.addSfx;
+import static com.example.timedeposit.controller.DepositViews.view;
+
+/**
+ * DepositController のノンブロッキング版（/reactive/deposits）。
+ *
+ * savings-service の応答待ちの間はサーブレットスレッドを返す（Spring MVC の非同期処理で Mono を返す）。
+ * JPA はブロッキングなので、定期の作成だけ boundedElastic に逃がす。
+ * 呼び出し元の認証はここで Reactor の Context に積み、ReactiveSavingsClient が SavingsClient と同じ規則で下流へ送る。
+ * 応答の形と 400 の返し方は DepositController と共通（DepositViews / DepositErrorHandler）。
+ *
+ * 振替（/transfers/deposits/from-savings）は受付時に savings-service を呼ばなくなった（TransferRelay が非同期に進める）
+ * ので、リアクティブ版は設けていない。
+ */
+@RestController
+@RequestMapping("/reactive/deposits")
+public class ReactiveDepositController {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveDepositController.class);
+
+    private final TimeDepositService service;
+    private final ReactiveSavingsClient savingsClient;
+
+    public ReactiveDepositController(TimeDepositService service, ReactiveSavingsClient savingsClient) {
+        this.service = service;
+        this.savingsClient = savingsClient;
+    }
+
+    // 振る舞いは DepositController#create と同じ（withdraw → 定期作成 → 失敗時は補償 deposit）
+    @PostMapping
+    public Mono<ResponseEntity<Map<String, Object>>> create(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idemKey,
+            @RequestBody DepositController.CreateRequest req,
+            Authentication auth
+    ) {
+        UUID from = req.fromAccountId();
+        BigDecimal amount = req.principal();
+        UUID payoutTo = req.payoutAccountId() != null ? req.payoutAccountId() : from;
+
+        Mono<Boolean> withdrawn = from == null
+                ? Mono.just(false)
+                : savingsClient.withdraw(from, amount, addSfx(idemKey, ":WD")).thenReturn(true);
+
+        Mono<ResponseEntity<Map<String, Object>>> flow = withdrawn.flatMap(withdrew ->
+                Mono.fromCallable(() -> service.create(req.owner(), amount, req.annualRate(), req.termDays(), payoutTo))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .onErrorResume(e -> withdrew ? compensate(from, amount, idemKey).then(Mono.error(e)) : Mono.error(e)))
+                .map(td -> ResponseEntity.status(201).body(view(td)));
+
+        return auth == null ? flow : flow.contextWrite(ReactiveSecurityContextHolder.withAuthentication(auth));
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Map<String, Object>>> get(@PathVariable UUID id) {
+        return Mono.fromCallable(() -> service.get(id))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(td -> ResponseEntity.ok(view(td)));
+    }
+
+    // 補償失敗はログだけ残して元の例外を返す（運用で検知）
+    private Mono<Void> compensate(UUID from, BigDecimal amount, String idemKey) {
+        return savingsClient.deposit(from, amount, addSfx(idemKey, ":CP"))
+                .then()
+                .onErrorResume(ce -> {
+                    log.error("compensation failed for account {}: {}", from, ce.toString());
+                    return Mono.empty();
+                });
+    }
+}
@@ -1,9 +1,14 @@
 package com.example.timedeposit.controller;
 
+import com.example.timedeposit.dto.KeysetPage;
+import com.example.timedeposit.dto.PageToken;
 import com.example.timedeposit.model.TimeDeposit;
 import com.example.timedeposit.repository.TimeDepositRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/deposits")
@@ -15,8 +20,30 @@ public class TimeDepositController {
         this.repo = repo;
     }
     
+    // limit / pageToken を付けるとキーセットページング（続きは X-Next-Page-Token ヘッダで返す）
     @GetMapping
-    public List<TimeDeposit> listByOwner(@RequestParam("owner") String owner) {
-        return repo.findByOwner(owner);
+    public ResponseEntity<List<TimeDeposit>> listByOwner(@RequestParam("owner") String owner,
+                                                         @RequestParam(name = "limit", required = false) Integer limit,
+                                                         @RequestParam(name = "pageToken", required = false) String pageToken) {
+        if (limit == null && pageToken == null) {
+            return ResponseEntity.ok(repo.findByOwnerOrderByStartAtAscIdAsc(owner));
+        }
+        int n = KeysetPage.clamp(limit);
+        List<TimeDeposit> rows;
+        if (pageToken == null || pageToken.isBlank()) {
+            rows = repo.findPageByOwner(owner, Limit.of(n + 1));
+        } else {
+            PageToken after = PageToken.decode(pageToken);
+            rows = repo.findPageByOwnerAfter(owner, after.at(), after.id(), Limit.of(n + 1));
+        }
+        KeysetPage<TimeDeposit> page = KeysetPage.of(rows, n, t -> new PageToken(t.getStartAt(), t.getId()));
+        var res = ResponseEntity.ok();
+        if (page.nextToken() != null) res.header(KeysetPage.NEXT_PAGE_TOKEN_HEADER, page.nextToken());
+        return res.body(page.items());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> handleBadRequest(RuntimeException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
     }
 }
@@ -1,10 +1,16 @@
 package com.example.timedeposit.controller;
 
+import com.example.timedeposit.dto.KeysetPage;
+import com.example.timedeposit.dto.PageToken;
 import com.example.timedeposit.dto.TimeDepositDto;
+import com.example.timedeposit.model.TimeDeposit;
 import com.example.timedeposit.repository.TimeDepositAccountRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/time-deposits")
@@ -16,11 +22,34 @@ public class TimeDepositQueryController {
     this.repo = repo;
   }
 
+  // limit / pageToken を付けるとキーセットページング（続きは X-Next-Page-Token ヘッダで返す）
   @GetMapping("/search")
-  public List<TimeDepositDto> search(@RequestParam("ownerKey") String ownerKey) {
-    return repo.searchByOwnerKey(ownerKey)
-               .stream()
-               .map(TimeDepositDto::fromEntity) // from → fromEntity に統一
-               .toList();
+  public ResponseEntity<List<TimeDepositDto>> search(@RequestParam("ownerKey") String ownerKey,
+                                                     @RequestParam(name = "limit", required = false) Integer limit,
+                                                     @RequestParam(name = "pageToken", required = false) String pageToken) {
+    if (limit == null && pageToken == null) {
+      // ページング指定なしは関連度順の上位 MAX_LIMIT 件
+      return ResponseEntity.ok(repo.searchByOwnerKey(ownerKey, KeysetPage.MAX_LIMIT)
+                                   .stream()
+                                   .map(TimeDepositDto::fromEntity) // from → fromEntity に統一
+                                   .toList());
+    }
+    int n = KeysetPage.clamp(limit);
+    List<TimeDeposit> rows = (pageToken == null || pageToken.isBlank())
+        ? repo.searchPageByOwnerKey(ownerKey, Limit.of(n + 1))
+        : searchAfter(ownerKey, PageToken.decode(pageToken), n + 1);
+    KeysetPage<TimeDeposit> page = KeysetPage.of(rows, n, t -> new PageToken(t.getStartAt(), t.getId()));
+    var res = ResponseEntity.ok();
+    if (page.nextToken() != null) res.header(KeysetPage.NEXT_PAGE_TOKEN_HEADER, page.nextToken());
+    return res.body(page.items().stream().map(TimeDepositDto::fromEntity).toList());
+  }
+
+  private List<TimeDeposit> searchAfter(String ownerKey, PageToken after, int fetch) {
+    return repo.searchPageByOwnerKeyAfter(ownerKey, after.at(), after.id(), Limit.of(fetch));
+  }
+
+  @ExceptionHandler(IllegalArgumentException.class)
+  public ResponseEntity<?> handleBadRequest(RuntimeException e) {
+    return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
   }
 }
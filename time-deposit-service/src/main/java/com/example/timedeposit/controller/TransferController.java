@@ -1,14 +1,21 @@
 package com.example.timedeposit.controller;
 
 import com.example.timedeposit.api.TransferRequest;
-// import com.example.timedeposit.api.TransferResponse;
+import com.example.timedeposit.api.TransferResponse;
+import com.example.timedeposit.model.Transfer;
+import com.example.timedeposit.service.TransferRelay;
 import com.example.timedeposit.service.TransferService;
 import jakarta.annotation.security.PermitAll;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-// import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.net.URI;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 @RestController
@@ -16,20 +23,38 @@ import java.util.UUID;
 public class TransferController {
 
     private final TransferService service;
+    // time-deposit.transfers.enabled=true のときだけ存在する（無ければ受け付けても進める者がいない）
+    private final TransferRelay relay;
 
-    public TransferController(TransferService service) {
+    public TransferController(TransferService service, Optional<TransferRelay> relay) {
         this.service = service;
+        this.relay = relay.orElse(null);
     }
 
-    // 定期預金申込は user 権限
-    // @PreAuthorize("hasRole('user')")
+    // 定期預金申込は user 権限。出金は申込者の代わりとして行う（サービスの権限では動かさない）
+    @PreAuthorize("hasRole('user')")
+    // 受け付けるだけで 202 を返す（出金・定期作成は TransferRelay が非同期に進める）。
+    // 進行状況は Location の GET /transfers/{id} で確認する。リレーが無効なら受け付けずに 503
     @PostMapping("/deposits/from-savings")
-    public ResponseEntity<?> createFromSavings(
+    public ResponseEntity<TransferResponse> createFromSavings(
         @RequestHeader(value = "Idempotency-Key", required = false) String key,
-        @RequestBody TransferRequest req
+        @RequestBody TransferRequest req,
+        Authentication auth
     ) {
-        UUID tdId = service.transfer(req, key);
-        return ResponseEntity.status(201).body(Map.of("id", tdId));
+        if (relay == null) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "transfers are disabled");
+        }
+        Transfer t = service.submit(req, key, auth);
+        relay.wakeUp();
+        return ResponseEntity.accepted()
+                .location(URI.create("/transfers/" + t.getId()))
+                .body(TransferResponse.fromEntity(t));
+    }
+
+    // 照会は申込者本人だけ
+    @GetMapping("/{id}")
+    public TransferResponse get(@PathVariable UUID id, Authentication auth) {
+        return TransferResponse.fromEntity(service.get(id, auth.getName()));
     }
 
 
@@ -39,4 +64,9 @@ public class TransferController {
     public Map<String, String> health() {
         return Map.of("status", "ok");
     }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> handleBadRequest(RuntimeException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
 }
@@ -1,10 +1,13 @@
 package com.example.timedeposit.debug;
 
 import java.util.List;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import com.example.timedeposit.model.TimeDeposit;
 import com.example.timedeposit.repository.TimeDepositRepository;
 import com.example.timedeposit.repository.TimeDepositAccountRepository;
+import com.example.timedeposit.service.OwnerDirectory;
 
 @RestController
 @RequestMapping("/debug")
@@ -12,14 +15,17 @@ public class DebugController {
 
     private final TimeDepositRepository repo;
     private final TimeDepositAccountRepository accRepo;
+    private final OwnerDirectory owners;
 
     // ★ 手書きコンストラクタ（@Autowired は単一コンストラクタなら省略可）
     // public DebugController(TimeDepositRepository repo) {
     //     this.repo = repo;
     // }
-    public DebugController(TimeDepositRepository repo, TimeDepositAccountRepository accRepo) {
+    public DebugController(TimeDepositRepository repo, TimeDepositAccountRepository accRepo,
+                           OwnerDirectory owners) {
         this.repo = repo;
         this.accRepo = accRepo;
+        this.owners = owners;
     }
 
     @GetMapping("/time-deposits")
@@ -30,8 +36,15 @@ public class DebugController {
         return (key == null || key.isBlank()) ? List.of() : repo.findByOwner(key);
     }
 
+    // DB には行かずインメモリの一覧を返す。If-None-Match が一致すれば 304（本文なし）
     @GetMapping("/owners")
-    public List<String> listOwners() {
-        return accRepo.findDistinctOwners();
+    public ResponseEntity<List<String>> listOwners(
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        OwnerDirectory.Snapshot snapshot = owners.snapshot();
+        String etag = snapshot.etag();
+        if (ifNoneMatch != null && ifNoneMatch.contains(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(snapshot.owners());
     }
 }
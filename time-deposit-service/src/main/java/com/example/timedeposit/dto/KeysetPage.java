@@ -0,0 +1,29 @@
+package com.example.timedeposit.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * キーセットページングの 1 ページ分。
+ * 本文は従来どおり配列で返し、続きがあるときだけ NEXT_PAGE_TOKEN_HEADER に次のトークンを載せる。
+ */
+public record KeysetPage<T>(
+    List<T> items,
+    String nextToken
+) {
+  public static final String NEXT_PAGE_TOKEN_HEADER = "X-Next-Page-Token";
+  public static final int DEFAULT_LIMIT = 100;
+  public static final int MAX_LIMIT = 500;
+
+  /** limit を 1..MAX_LIMIT に丸める（未指定は DEFAULT_LIMIT） */
+  public static int clamp(Integer limit) {
+    return limit == null ? DEFAULT_LIMIT : Math.max(1, Math.min(limit, MAX_LIMIT));
+  }
+
+  /** limit + 1 件取得した結果から 1 ページを作る（余分な 1 件があれば続きあり） */
+  public static <T> KeysetPage<T> of(List<T> fetched, int limit, Function<T, PageToken> key) {
+    if (fetched.size() <= limit) return new KeysetPage<>(fetched, null);
+    List<T> page = fetched.subList(0, limit);
+    return new KeysetPage<>(page, key.apply(page.get(limit - 1)).encode());
+  }
+}
@@ -0,0 +1,12 @@
+package com.example.timedeposit.dto;
+
+import java.math.BigDecimal;
+
+/** owner の未解約の定期の件数・元本合計・満期受取額合計（GET /owners/{owner}/summary） */
+public record OwnerDepositSummary(String owner, int openDeposits, BigDecimal principal, BigDecimal projectedPayout) {
+
+    public static OwnerDepositSummary empty(String owner) {
+        BigDecimal zero = BigDecimal.ZERO.setScale(2);
+        return new OwnerDepositSummary(owner, 0, zero, zero);
+    }
+}
@@ -17,7 +17,8 @@ public record TimeDepositDto(
     String status,
     BigDecimal payoutAmount,
     UUID payoutAccount,
-    Instant closedAt
+    Instant closedAt,
+    String payoutError
 ) {
   public static TimeDepositDto fromEntity(TimeDeposit t) {
     if (t == null) return null;
@@ -32,7 +33,8 @@ public record TimeDepositDto(
         t.getStatus() != null ? t.getStatus().name() : null,
         t.getPayoutAmount(),
         t.getPayoutAccount(),
-        t.getClosedAt()
+        t.getClosedAt(),
+        t.getPayoutError()
     );
   }
 }
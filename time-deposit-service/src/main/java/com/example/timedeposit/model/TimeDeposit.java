@@ -46,6 +46,26 @@ public class TimeDeposit {
     @Column(nullable = false)
     private Status status = Status.OPEN;
 
+    // CLOSING にした（払い出しを引き受けた）時刻。古いまま残っていればスイープが払い出しをやり直す
+    @Column(name = "closing_at")
+    private Instant closingAt;
+
+    // 払い出しを引き受けた利用者（手動解約）。null はサービス自身（満期スイープ）で、スイープが再送するのはこちらだけ
+    @Column(name = "closing_by")
+    private String closingBy;
+
+    // 払出先に拒否されて OPEN に戻した回数。払い出しの Idempotency-Key を引き受けごとに変えるために使う
+    @Column(name = "payout_attempts", nullable = false)
+    private int payoutAttempts;
+
+    // 直近の払い出しが拒否された理由（次に引き受けたときに消す）
+    @Column(name = "payout_error")
+    private String payoutError;
+
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     @PrePersist
     void onCreate() {
         if (id == null) id = UUID.randomUUID();
@@ -79,4 +99,37 @@ public class TimeDeposit {
 
     public Instant getClosedAt() { return closedAt; }
     public void setClosedAt(Instant v) { this.closedAt = v; }
+
+    public Instant getClosingAt() { return closingAt; }
+    public void setClosingAt(Instant v) { this.closingAt = v; }
+
+    public String getClosingBy() { return closingBy; }
+    public void setClosingBy(String v) { this.closingBy = v; }
+
+    public int getPayoutAttempts() { return payoutAttempts; }
+
+    public String getPayoutError() { return payoutError; }
+    public void setPayoutError(String v) { this.payoutError = v; }
+
+    public long getVersion() { return version; }
+
+    /** 払出先に拒否された払い出しを取り下げて OPEN に戻す（振込先は外すので、スイープは拾わず、別口座で解約し直せる） */
+    public void reopenAfterRejectedPayout(String error) {
+        status = Status.OPEN;
+        payoutAmount = null;
+        payoutAccount = null;
+        closingAt = null;
+        closingBy = null;
+        payoutAttempts++;
+        payoutError = error;
+    }
+
+    /**
+     * 満期払い出しの Idempotency-Key。1 回の引き受け（CLOSING）の間は固定なので、同じ呼び出し元が何回送っても
+     * savings-service 側で 1 回になる。拒否されて引き受け直したときは別の払い出しなので、回数を付けて変える
+     * （初回は以前のスイープと同じ形なので、移行中の再送も重ならない）
+     */
+    public String payoutKey() {
+        return "sweep:" + id + ":CLOSE" + (payoutAttempts == 0 ? "" : ":" + payoutAttempts);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,146 @@
+package com.example.timedeposit.model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * 普通預金 → 定期預金の振替（サガ）の状態。受付時に 1 行 INSERT するだけで、これが outbox を兼ねる。
+ * 以降の withdraw → 定期作成 →（失敗時）補償 deposit は TransferRelay が非同期に進める。
+ *
+ * PENDING → WITHDRAWN → COMPLETED
+ *                    ↘ COMPENSATING → FAILED（出金を戻した）
+ * PENDING で出金が業務エラー（残高不足など）なら、何も動かさずに FAILED
+ */
+@Entity
+@Table(name = "transfers")
+public class Transfer {
+    public enum Status { PENDING, WITHDRAWN, COMPLETED, COMPENSATING, FAILED }
+
+    @Id
+    private UUID id;
+
+    // 受付の重複排除用（クライアントの Idempotency-Key。無ければ null）。一意なのは申込者ごと
+    @Column(name = "idempotency_key")
+    private String idempotencyKey;
+
+    // 申込者（JWT の sub）。リレーはこの名義で savings-service を呼ぶ（X-On-Behalf-Of）。照会もこの人だけ
+    @Column(name = "requested_by")
+    private String requestedBy;
+
+    // 申込時点の申込者のロール（カンマ区切り）。リレーが代わりに呼ぶときにそのまま渡す
+    @Column(name = "requested_roles")
+    private String requestedRoles;
+
+    // 受付内容の SHA-256。同じキーで内容の違う再送を見分ける
+    @Column(name = "request_hash")
+    private String requestHash;
+
+    @Column(nullable = false)
+    private String owner;
+
+    @Column(name = "from_account_id", nullable = false)
+    private UUID fromAccountId;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal principal;
+
+    @Column(name = "annual_rate", nullable = false, precision = 9, scale = 6)
+    private BigDecimal annualRate;
+
+    @Column(name = "term_days", nullable = false)
+    private int termDays;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status = Status.PENDING;
+
+    @Column(name = "time_deposit_id")
+    private UUID timeDepositId;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    // リレーが次に処理してよい時刻（リトライの待ちと、処理中のリースを兼ねる）
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(name = "last_error")
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    // リースが切れて他ノードが同じ行を掴んだとき、遅れた側の書き込み（定期作成を含むトランザクション）を失敗させる
+    @Version
+    @Column(nullable = false)
+    private long version;
+
+    public static Transfer of(String owner, UUID fromAccountId, BigDecimal principal,
+                              BigDecimal annualRate, int termDays, String idempotencyKey) {
+        return of(owner, fromAccountId, principal, annualRate, termDays, idempotencyKey, null, null, null);
+    }
+
+    public static Transfer of(String owner, UUID fromAccountId, BigDecimal principal,
+                              BigDecimal annualRate, int termDays, String idempotencyKey,
+                              String requestedBy, String requestedRoles, String requestHash) {
+        Transfer t = new Transfer();
+        t.owner = owner;
+        t.fromAccountId = fromAccountId;
+        t.principal = principal;
+        t.annualRate = annualRate;
+        t.termDays = termDays;
+        t.idempotencyKey = idempotencyKey;
+        t.requestedBy = requestedBy;
+        t.requestedRoles = requestedRoles;
+        t.requestHash = requestHash;
+        return t;
+    }
+
+    @PrePersist
+    void onCreate() {
+        if (id == null) id = UUID.randomUUID();
+        if (createdAt == null) createdAt = Instant.now();
+        if (nextAttemptAt == null) nextAttemptAt = createdAt;
+        updatedAt = createdAt;
+    }
+
+    @PreUpdate
+    void onUpdate() {
+        updatedAt = Instant.now();
+    }
+
+    /** 下流に送る Idempotency-Key（クライアントのキーがあればそれ、無ければ振替 ID）+ 手順ごとのサフィックス */
+    public String stepKey(String suffix) {
+        return (idempotencyKey != null ? idempotencyKey : id.toString()) + suffix;
+    }
+
+    public UUID getId() { return id; }
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public String getRequestedBy() { return requestedBy; }
+    public String getRequestedRoles() { return requestedRoles; }
+    public String getRequestHash() { return requestHash; }
+    public String getOwner() { return owner; }
+    public UUID getFromAccountId() { return fromAccountId; }
+    public BigDecimal getPrincipal() { return principal; }
+    public BigDecimal getAnnualRate() { return annualRate; }
+    public int getTermDays() { return termDays; }
+    public Status getStatus() { return status; }
+    public UUID getTimeDepositId() { return timeDepositId; }
+    public int getAttempts() { return attempts; }
+    public Instant getNextAttemptAt() { return nextAttemptAt; }
+    public String getLastError() { return lastError; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getUpdatedAt() { return updatedAt; }
+    public long getVersion() { return version; }
+
+    public void setStatus(Status status) { this.status = status; }
+    public void setTimeDepositId(UUID timeDepositId) { this.timeDepositId = timeDepositId; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+    public void setNextAttemptAt(Instant nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+}
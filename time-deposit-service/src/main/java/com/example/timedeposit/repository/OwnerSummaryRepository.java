@@ -0,0 +1,109 @@
+package com.example.timedeposit.repository;
+
+import com.example.timedeposit.dto.OwnerDepositSummary;
+import com.example.timedeposit.model.TimeDeposit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * owner_deposit_summary（owner ごとの未解約の定期の合計）の JDBC アクセス。
+ *
+ * 書き込みはすべて呼び出し側のトランザクション内で「差分を加算する」upsert なので、
+ * 定期の状態変更と同時にコミット・ロールバックされ、合計がずれない。
+ * 複数 owner をまとめて更新するとき（満期スイープ）は owner 順に並べて、デッドロックを避ける。
+ * closed() に渡すのは、同じトランザクションで行ロックのうえ CLOSED にした定期だけ（二重に差し引かない）。
+ * それでもずれた owner は OwnerSummaryReconciler が time_deposits から数え直す（driftedOwners / overwrite）。
+ */
+@Repository
+public class OwnerSummaryRepository {
+
+    private record Delta(int deposits, BigDecimal principal, BigDecimal payout) {
+        Delta plus(Delta o) {
+            return new Delta(deposits + o.deposits, principal.add(o.principal), payout.add(o.payout));
+        }
+    }
+
+    private final JdbcTemplate jdbc;
+
+    public OwnerSummaryRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /** 作成した定期を加算する（payout は満期受取額） */
+    public void opened(TimeDeposit td, BigDecimal payout) {
+        apply(List.of(td), List.of(payout), 1);
+    }
+
+    /** 解約した定期を差し引く（payouts は作成時と同じ式の満期受取額。入力と同じ順）。CLOSED に変えた定期だけを渡すこと */
+    public void closed(List<TimeDeposit> deposits, List<BigDecimal> payouts) {
+        if (!deposits.isEmpty()) apply(deposits, payouts, -1);
+    }
+
+    private void apply(List<TimeDeposit> deposits, List<BigDecimal> payouts, int sign) {
+        BigDecimal k = BigDecimal.valueOf(sign);
+        Map<String, Delta> byOwner = new TreeMap<>();
+        for (int i = 0; i < deposits.size(); i++) {
+            TimeDeposit td = deposits.get(i);
+            byOwner.merge(td.getOwner(),
+                    new Delta(sign, td.getPrincipal().multiply(k), payouts.get(i).multiply(k)), Delta::plus);
+        }
+        List<Object[]> args = new ArrayList<>(byOwner.size());
+        byOwner.forEach((owner, d) -> args.add(new Object[]{owner, d.deposits(), d.principal(), d.payout()}));
+        jdbc.batchUpdate("""
+                insert into owner_deposit_summary (owner, open_deposits, principal, projected_payout)
+                values (?, ?, ?, ?)
+                on conflict (owner) do update
+                   set open_deposits = owner_deposit_summary.open_deposits + excluded.open_deposits,
+                       principal = owner_deposit_summary.principal + excluded.principal,
+                       projected_payout = owner_deposit_summary.projected_payout + excluded.projected_payout,
+                       updated_at = now()
+                """, args);
+    }
+
+    /**
+     * 件数か元本の合計が time_deposits と合わない owner を最大 limit 件返す（time_deposits を全件集計する重いクエリ）。
+     * ロックを取らないので、書き込み途中の owner も拾いうる（overwrite 側で数え直すので害はない）
+     */
+    public List<String> driftedOwners(int limit) {
+        return jdbc.queryForList("""
+                select coalesce(d.owner, s.owner)
+                  from (select owner, count(*) as n, sum(principal) as p
+                          from time_deposits where status <> 'CLOSED' group by owner) d
+                  full join owner_deposit_summary s on s.owner = d.owner
+                 where coalesce(d.n, 0) <> coalesce(s.open_deposits, 0)
+                    or coalesce(d.p, 0) <> coalesce(s.principal, 0)
+                 limit ?
+                """, String.class, limit);
+    }
+
+    /**
+     * owner の行をロックする（無ければ作ってから）。呼び出し側のトランザクションでこの後に数え直して overwrite する。
+     * 作成・解約はこの行の upsert で待つので、数え直しの間の差分が上書きで消えることはない
+     */
+    public void lock(String owner) {
+        jdbc.update("insert into owner_deposit_summary (owner) values (?) on conflict (owner) do nothing", owner);
+        jdbc.queryForList("select owner from owner_deposit_summary where owner = ? for update", String.class, owner);
+    }
+
+    public void overwrite(String owner, int openDeposits, BigDecimal principal, BigDecimal projectedPayout) {
+        jdbc.update("""
+                update owner_deposit_summary
+                   set open_deposits = ?, principal = ?, projected_payout = ?, updated_at = now()
+                 where owner = ?
+                """, openDeposits, principal, projectedPayout, owner);
+    }
+
+    public Optional<OwnerDepositSummary> find(String owner) {
+        return jdbc.query("select owner, open_deposits, principal, projected_payout from owner_deposit_summary where owner = ?",
+                        (rs, n) -> new OwnerDepositSummary(rs.getString(1), rs.getInt(2), rs.getBigDecimal(3), rs.getBigDecimal(4)),
+                        owner)
+                .stream().findFirst();
+    }
+}
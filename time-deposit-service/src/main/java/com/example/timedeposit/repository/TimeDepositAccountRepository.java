@@ -1,21 +1,67 @@
 package com.example.timedeposit.repository;
 
 import com.example.timedeposit.model.TimeDeposit;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
 public interface TimeDepositAccountRepository extends JpaRepository<TimeDeposit, UUID> {
 
+  // owner 検索はすべて lower(owner) like :pattern escape '!' の形にしてインデックスに乗せる
+  // （:pattern は OwnerSearch.pattern で作る。下の default メソッド経由で呼ぶこと）
+
+  /** 関連度順の上位 limit 件（完全一致 → 前方一致 → トライグラム類似度の高い順） */
+  default List<TimeDeposit> searchByOwnerKey(String key, int limit) {
+    String k = OwnerSearch.normalize(key);
+    return searchByOwnerRelevance(k, OwnerSearch.prefix(k), OwnerSearch.pattern(k), Limit.of(limit));
+  }
+
+  default List<TimeDeposit> searchPageByOwnerKey(String key, Limit limit) {
+    return searchPageByOwnerLike(OwnerSearch.pattern(OwnerSearch.normalize(key)), limit);
+  }
+
+  default List<TimeDeposit> searchPageByOwnerKeyAfter(String key, Instant at, UUID id, Limit limit) {
+    return searchPageByOwnerLikeAfter(OwnerSearch.pattern(OwnerSearch.normalize(key)), at, id, limit);
+  }
+
   @Query("""
     select t from TimeDeposit t
-    where lower(t.owner) like lower(concat('%', :key, '%'))
+    where lower(t.owner) like :pattern escape '!'
+    order by case when lower(t.owner) = :key then 0
+                  when lower(t.owner) like :prefix escape '!' then 1
+                  else 2 end,
+             function('similarity', lower(t.owner), :key) desc,
+             t.owner, t.id
   """)
-  List<TimeDeposit> searchByOwnerKey(@Param("key") String key);
+  List<TimeDeposit> searchByOwnerRelevance(@Param("key") String key, @Param("prefix") String prefix,
+                                             @Param("pattern") String pattern, Limit limit);
+
+  // ▼ キーセットページング版（start_at, id 順）
+  @Query("""
+    select t from TimeDeposit t
+    where lower(t.owner) like :pattern escape '!'
+    order by t.startAt, t.id
+  """)
+  List<TimeDeposit> searchPageByOwnerLike(@Param("pattern") String pattern, Limit limit);
+
+  @Query("""
+    select t from TimeDeposit t
+    where lower(t.owner) like :pattern escape '!'
+      and t.startAt >= :at and (t.startAt > :at or t.id > :id)
+    order by t.startAt, t.id
+  """)
+  List<TimeDeposit> searchPageByOwnerLikeAfter(@Param("pattern") String pattern, @Param("at") Instant at,
+                                               @Param("id") UUID id, Limit limit);
 
   @Query("select distinct t.owner from TimeDeposit t where t.owner is not null order by t.owner")
   List<String> findDistinctOwners();
+
+  // OwnerDirectory の差分取り込み用（time_deposits_start_idx）
+  @Query("select distinct t.owner from TimeDeposit t where t.startAt > :since")
+  List<String> findOwnersStartedSince(@Param("since") Instant since);
 }
@@ -2,11 +2,61 @@
 package com.example.timedeposit.repository;
 
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import com.example.timedeposit.model.TimeDeposit;
 
 public interface TimeDepositRepository extends JpaRepository<TimeDeposit, UUID> {
     List<TimeDeposit> findByOwner(String owner);
+
+    List<TimeDeposit> findByOwnerOrderByStartAtAscIdAsc(String owner);
+
+    // ▼ キーセットページング（start_at, id 順）。time_deposits_owner_start_idx を範囲走査するので何ページ目でも同じコスト
+    @Query("select t from TimeDeposit t where t.owner = :owner order by t.startAt, t.id")
+    List<TimeDeposit> findPageByOwner(@Param("owner") String owner, Limit limit);
+
+    // startAt >= :at を先に置いてインデックスの開始位置にし、同時刻は id で切る
+    @Query("""
+        select t from TimeDeposit t
+         where t.owner = :owner
+           and t.startAt >= :at and (t.startAt > :at or t.id > :id)
+         order by t.startAt, t.id
+        """)
+    List<TimeDeposit> findPageByOwnerAfter(@Param("owner") String owner, @Param("at") Instant at,
+                                           @Param("id") UUID id, Limit limit);
+
+    // ▼ 解約: 1 件を行ロックして読む（手動解約とスイープの取り合いを直列化する）
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select t from TimeDeposit t where t.id = :id")
+    Optional<TimeDeposit> findForUpdate(@Param("id") UUID id);
+
+    // ▼ 払い出し後の確定: まとめて行ロックする（id 順に取ってデッドロックを避ける）
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select t from TimeDeposit t where t.id in :ids order by t.id")
+    List<TimeDeposit> findAllForUpdate(@Param("ids") Collection<UUID> ids);
+
+    // ▼ 満期スイープ: 満期到来・振込先指定済みの OPEN と、スイープが引き受けて staleBefore より前から払い出しが終わっていない
+    // CLOSING を古い順に limit 件ロックする（time_deposits_status_maturity_idx）。
+    // 手動解約が引き受けた CLOSING（closing_by あり）は利用者の認証で払うものなので拾わない（利用者の再送で続きを行う）。
+    // SKIP LOCKED なので、他ノードが処理中の行は待たずに飛ばして次の行を取る（複数ノードで並行に回せる）
+    @Query(value = """
+        select * from time_deposits
+         where ((status = 'OPEN' and maturity_at <= :now)
+                or (status = 'CLOSING' and closing_at <= :staleBefore and closing_by is null))
+           and payout_account is not null
+         order by maturity_at
+         limit :limit
+         for update skip locked
+        """, nativeQuery = true)
+    List<TimeDeposit> lockMaturedForSweep(@Param("now") Instant now, @Param("staleBefore") Instant staleBefore,
+                                          @Param("limit") int limit);
 }
@@ -0,0 +1,27 @@
+package com.example.timedeposit.repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import com.example.timedeposit.model.Transfer;
+
+public interface TransferRepository extends JpaRepository<Transfer, UUID> {
+
+    // Idempotency-Key は申込者ごとに一意（transfers_idempotency_idx）
+    Optional<Transfer> findByRequestedByAndIdempotencyKey(String requestedBy, String idempotencyKey);
+
+    // ▼ リレー: 進行中で待ち時間の過ぎた振替を古い順にロックする（transfers_due_idx）。
+    // SKIP LOCKED なので複数ノードのリレーが同じ行を取り合わない
+    @Query(value = """
+        select * from transfers
+         where status in ('PENDING', 'WITHDRAWN', 'COMPENSATING') and next_attempt_at <= :now
+         order by next_attempt_at
+         limit :limit
+         for update skip locked
+        """, nativeQuery = true)
+    List<Transfer> lockDue(@Param("now") Instant now, @Param("limit") int limit);
+}
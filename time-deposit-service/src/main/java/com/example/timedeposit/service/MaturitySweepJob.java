@@ -0,0 +1,191 @@
+package com.example.timedeposit.service;
+
+import com.example.timedeposit.client.SavingsClient;
+import com.example.timedeposit.model.TimeDeposit;
+import com.example.timedeposit.repository.TimeDepositRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 満期スイープ（time-deposit.sweep.enabled=true のときだけ動く）。
+ *
+ * 満期到来・払出先指定済みの OPEN 定期を chunk-size 件ずつ処理する。DB のトランザクションは savings-service の呼び出しを跨がない:
+ * 1) 短いトランザクションで lockMaturedForSweep（FOR UPDATE SKIP LOCKED。他ノードが掴んでいる行は飛ばす）し、
+ *    PayoutEngine でまとめて計算した受取額を記録して CLOSING にしてコミット（払い出しの引き受け）
+ * 2) トランザクションの外で savings-service への入金を最大 concurrency 本並行で投げる（Idempotency-Key は
+ *    TimeDeposit#payoutKey で定期ごとに固定。仮想スレッドモードでは 1 件 1 仮想スレッドにして、同時数だけを concurrency で絞る）
+ * 3) 成功した分だけ TimeDepositService#finishClose で CLOSED にし、owner ごとの合計（owner_deposit_summary）から差し引く
+ * 入金に失敗した分や、2) の途中でプロセスが落ちた分は CLOSING のまま残り、claim-timeout-seconds を過ぎると
+ * 次のスイープが同じキーで再送する（手動解約が引き受けた分は利用者の認証で払うものなので、スイープは再送しない）。
+ * 払出先に拒否された分（4xx。口座が無い・権限が無いなど）は再送しても通らないので、TimeDepositService#rejectPayout で
+ * 理由を記録して OPEN に戻し、振込先を外す（以降は手動で別の口座へ解約する）。
+ * 二重払いの防止は、CLOSING を引き受けるのが 1 か所だけであることと、savings-service 側の Idempotency-Key 判定に依存する。
+ * 入金はサービス自身として送るので、savings.oauth か savings.service-token が無ければ起動時に失敗させる。
+ *
+ * メトリクス:
+ * - timedeposit.sweep.closed / timedeposit.sweep.failed: 払い出し件数（rate で throughput）
+ * - timedeposit.sweep.chunk: 1 チャンクの所要時間
+ * - timedeposit.sweep.lag: 直近チャンクで最も古い満期からの経過秒（追いついていれば 0）
+ */
+@Component
+@ConditionalOnProperty(name = "time-deposit.sweep.enabled", havingValue = "true")
+public class MaturitySweepJob {
+
+    private static final Logger log = LoggerFactory.getLogger(MaturitySweepJob.class);
+
+    private final TimeDepositRepository repo;
+    private final TimeDepositService deposits;
+    private final PayoutEngine payouts;
+    private final SavingsClient savings;
+    private final TransactionTemplate tx;
+    private final int chunkSize;
+    private final int maxChunks;
+    // CLOSING のまま払い出しが終わっていない行を、これだけ経ったら引き受け直す
+    private final Duration claimTimeout;
+    private final ExecutorService pool;
+    // 仮想スレッドモードでの savings-service への同時入金数の上限（プラットフォームスレッドではプールの大きさで絞る）
+    private final Semaphore inFlight;
+
+    private final Counter closed;
+    private final Counter failed;
+    private final Timer chunkTimer;
+    private final AtomicLong lagSeconds = new AtomicLong();
+
+    public MaturitySweepJob(TimeDepositRepository repo, TimeDepositService deposits,
+                            PayoutEngine payouts, SavingsClient savings,
+                            TransactionTemplate tx, MeterRegistry meters,
+                            @Value("${time-deposit.sweep.chunk-size:200}") int chunkSize,
+                            @Value("${time-deposit.sweep.max-chunks-per-run:100}") int maxChunks,
+                            @Value("${time-deposit.sweep.claim-timeout-seconds:300}") long claimTimeoutSeconds,
+                            @Value("${time-deposit.sweep.concurrency:16}") int concurrency,
+                            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (!savings.canCallAsService()) {
+            throw new IllegalStateException("time-deposit.sweep.enabled requires savings.oauth.* or savings.service-token");
+        }
+        this.repo = repo;
+        this.deposits = deposits;
+        this.payouts = payouts;
+        this.savings = savings;
+        this.tx = tx;
+        this.chunkSize = chunkSize;
+        this.maxChunks = maxChunks;
+        this.claimTimeout = Duration.ofSeconds(claimTimeoutSeconds);
+        if (virtualThreads) {
+            this.pool = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("maturity-sweep-", 1).factory());
+            this.inFlight = new Semaphore(concurrency);
+        } else {
+            AtomicInteger seq = new AtomicInteger();
+            this.pool = Executors.newFixedThreadPool(concurrency, r -> {
+                Thread t = new Thread(r, "maturity-sweep-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            this.inFlight = null;
+        }
+        this.closed = meters.counter("timedeposit.sweep.closed");
+        this.failed = meters.counter("timedeposit.sweep.failed");
+        this.chunkTimer = meters.timer("timedeposit.sweep.chunk");
+        meters.gauge("timedeposit.sweep.lag", lagSeconds);
+    }
+
+    @PreDestroy
+    void stop() {
+        pool.shutdown();
+    }
+
+    @Scheduled(fixedDelayString = "${time-deposit.sweep.interval-ms:60000}")
+    public void sweep() {
+        Instant now = Instant.now();
+        int total = 0;
+        for (int i = 0; i < maxChunks; i++) {
+            int n = chunkTimer.record(() -> sweepChunk(now));
+            total += n;
+            // 残りなし・他ノードが処理中・払い出し失敗あり（下流の不調は次回まで待つ）のいずれか
+            if (n < chunkSize) break;
+        }
+        if (total > 0) log.info("maturity sweep processed {} deposits", total);
+    }
+
+    /** 1 チャンク処理して、CLOSED にできた件数を返す */
+    int sweepChunk(Instant now) {
+        List<TimeDeposit> due = claim(now);
+        if (due.isEmpty()) return 0;
+
+        List<CompletableFuture<Payout>> calls = new ArrayList<>(due.size());
+        for (TimeDeposit td : due) {
+            calls.add(CompletableFuture.supplyAsync(() -> payOut(td), pool));
+        }
+        List<UUID> paid = new ArrayList<>(due.size());
+        for (int i = 0; i < due.size(); i++) {
+            Payout p = calls.get(i).join();
+            if (p.error() == null) paid.add(due.get(i).getId());
+            else if (p.rejected()) deposits.rejectPayout(due.get(i), p.error());
+        }
+        return deposits.finishClose(paid, now).size();
+    }
+
+    // 満期の OPEN を受取額つきで CLOSING にし、引き受けの古い CLOSING は記録済みの受取額のまま引き受け直す
+    private List<TimeDeposit> claim(Instant now) {
+        List<TimeDeposit> due = tx.execute(s -> {
+            Instant claimedAt = Instant.now();
+            List<TimeDeposit> rows = repo.lockMaturedForSweep(now, claimedAt.minus(claimTimeout), chunkSize);
+            if (rows.isEmpty()) {
+                lagSeconds.set(0);
+                return rows;
+            }
+            lagSeconds.set(Math.max(0, Duration.between(rows.get(0).getMaturityAt(), claimedAt).toSeconds()));
+
+            List<TimeDeposit> fresh = rows.stream().filter(td -> td.getStatus() == TimeDeposit.Status.OPEN).toList();
+            List<BigDecimal> amounts = payouts.calculatePayouts(fresh);
+            for (int i = 0; i < fresh.size(); i++) {
+                fresh.get(i).setStatus(TimeDeposit.Status.CLOSING);
+                fresh.get(i).setPayoutAmount(amounts.get(i));
+            }
+            for (TimeDeposit td : rows) td.setClosingAt(claimedAt);
+            return rows;
+        });
+        return due == null ? List.of() : due;
+    }
+
+    /** 1 件の払い出しの結果。error が null なら成功、rejected なら再送しても通らない */
+    private record Payout(String error, boolean rejected) {}
+
+    private Payout payOut(TimeDeposit td) {
+        if (inFlight != null) inFlight.acquireUninterruptibly();
+        try {
+            savings.deposit(td.getPayoutAccount(), td.getPayoutAmount(), td.payoutKey());
+            closed.increment();
+            return new Payout(null, false);
+        } catch (RuntimeException e) {
+            failed.increment();
+            boolean rejected = TimeDepositService.isRejected(e);
+            log.warn("maturity payout failed for {} ({}): {}", td.getId(),
+                    rejected ? "rejected; reopened" : "will retry after the claim timeout", e.toString());
+            return new Payout(String.valueOf(e.getMessage()), rejected);
+        } finally {
+            if (inFlight != null) inFlight.release();
+        }
+    }
+}
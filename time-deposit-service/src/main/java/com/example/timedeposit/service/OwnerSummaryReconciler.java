@@ -0,0 +1,77 @@
+package com.example.timedeposit.service;
+
+import com.example.timedeposit.model.TimeDeposit;
+import com.example.timedeposit.repository.OwnerSummaryRepository;
+import com.example.timedeposit.repository.TimeDepositRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * owner_deposit_summary の突き合わせ。
+ *
+ * 合計は作成・解約と同じトランザクションの差分加算で保つが、手作業の更新や不具合でずれた分は差分では戻らない。
+ * 定期的に time_deposits と件数・元本を比べ、合わない owner だけを 1 owner 1 トランザクションで数え直して上書きする:
+ * 1) owner の行をロック（作成・解約の upsert はここで待つ）
+ * 2) その owner の未解約の定期を読み、PayoutEngine で満期受取額を計算し直して上書き
+ * 受取額は作成時と同じ PayoutEngine で計算するので、以降の差分加算と 1 銭もずれない。
+ *
+ * メトリクス: timedeposit.summary.reconciled（上書きした owner 数）
+ */
+@Component
+public class OwnerSummaryReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(OwnerSummaryReconciler.class);
+
+    private final OwnerSummaryRepository summaries;
+    private final TimeDepositRepository deposits;
+    private final PayoutEngine payouts;
+    private final TransactionTemplate tx;
+    private final int batchSize;
+    private final Counter reconciled;
+
+    public OwnerSummaryReconciler(OwnerSummaryRepository summaries, TimeDepositRepository deposits,
+                                  PayoutEngine payouts, TransactionTemplate tx, MeterRegistry meters,
+                                  @Value("${time-deposit.summary.reconcile-batch-size:1000}") int batchSize) {
+        this.summaries = summaries;
+        this.deposits = deposits;
+        this.payouts = payouts;
+        this.tx = tx;
+        this.batchSize = batchSize;
+        this.reconciled = meters.counter("timedeposit.summary.reconciled");
+    }
+
+    /** ずれていた owner を数え直して、その数を返す（1 回で直すのは reconcile-batch-size 件まで） */
+    @Scheduled(fixedDelayString = "${time-deposit.summary.reconcile-interval-ms:3600000}",
+               initialDelayString = "${time-deposit.summary.reconcile-interval-ms:3600000}")
+    public int reconcile() {
+        List<String> drifted = summaries.driftedOwners(batchSize);
+        for (String owner : drifted) {
+            tx.executeWithoutResult(s -> recount(owner));
+        }
+        if (!drifted.isEmpty()) {
+            reconciled.increment(drifted.size());
+            log.warn("owner_deposit_summary drifted for {} owners (recounted): {}", drifted.size(),
+                    drifted.size() > 10 ? drifted.subList(0, 10) + "..." : drifted);
+        }
+        return drifted.size();
+    }
+
+    void recount(String owner) {
+        summaries.lock(owner);
+        List<TimeDeposit> open = deposits.findByOwner(owner).stream()
+                .filter(td -> td.getStatus() != TimeDeposit.Status.CLOSED)
+                .toList();
+        BigDecimal principal = open.stream().map(TimeDeposit::getPrincipal).reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal payout = payouts.calculatePayouts(open).stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+        summaries.overwrite(owner, open.size(), principal, payout);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.timedeposit.service;
+
+import com.example.timedeposit.model.TimeDeposit;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 満期受取額の計算（単利: principal * (1 + annualRate * termDays/365)、2 桁 HALF_UP）。
+ *
+ * - 係数 1 + annualRate * termDays/365（DECIMAL64）は (annualRate, termDays) ごとにキャッシュする。
+ *   商品の組み合わせは数百程度なので、月末の一括試算でも除算は組み合わせごとに 1 回で済む。
+ * - 元本（銭単位の long）× 係数（10^scale 倍の long）を 128bit で掛けて 10^scale で割り、HALF_UP で丸める。
+ *   BigDecimal 版と同じ値を厳密に求めているので結果はビット単位で一致する。
+ * - long に収まらない元本・係数（極端に小さい利率で係数の桁が深い等）は BigDecimal にフォールバックする。
+ */
+@Component
+public class PayoutEngine {
+
+    static final int MAX_CACHED_FACTORS = 4096;
+
+    private static final BigDecimal DAYS_PER_YEAR = new BigDecimal("365");
+    private static final int MAX_FAST_SCALE = 18;
+    private static final long MASK32 = 0xFFFFFFFFL;
+    private static final long[] POW10 = new long[MAX_FAST_SCALE + 1];
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10;
+    }
+
+    private record Key(BigDecimal annualRate, int termDays) {}
+
+    /** 係数。fast=true のとき exact == unscaled / 10^scale */
+    record Factor(BigDecimal exact, long unscaled, int scale, boolean fast) {
+        static Factor of(BigDecimal annualRate, int termDays) {
+            BigDecimal exact = BigDecimal.ONE.add(
+                    annualRate.multiply(new BigDecimal(termDays)).divide(DAYS_PER_YEAR, MathContext.DECIMAL64));
+            boolean fast = exact.signum() >= 0 && exact.scale() >= 0 && exact.scale() <= MAX_FAST_SCALE
+                    && exact.unscaledValue().bitLength() < Long.SIZE - 1;
+            return fast ? new Factor(exact, exact.unscaledValue().longValue(), exact.scale(), true)
+                        : new Factor(exact, 0, 0, false);
+        }
+    }
+
+    private final ConcurrentHashMap<Key, Factor> factors = new ConcurrentHashMap<>();
+
+    public BigDecimal calculatePayout(TimeDeposit td) {
+        return payout(td.getPrincipal(), factor(td.getAnnualRate(), td.getTermDays()));
+    }
+
+    /** 一括計算（入力の反復順で返す）。同じ商品が続く間は係数の検索も省く */
+    public List<BigDecimal> calculatePayouts(Collection<TimeDeposit> deposits) {
+        List<BigDecimal> out = new ArrayList<>(deposits.size());
+        BigDecimal lastRate = null;
+        int lastDays = -1;
+        Factor f = null;
+        for (TimeDeposit td : deposits) {
+            if (td.getTermDays() != lastDays || !td.getAnnualRate().equals(lastRate)) {
+                lastRate = td.getAnnualRate();
+                lastDays = td.getTermDays();
+                f = factor(lastRate, lastDays);
+            }
+            out.add(payout(td.getPrincipal(), f));
+        }
+        return out;
+    }
+
+    Factor factor(BigDecimal annualRate, int termDays) {
+        Key key = new Key(annualRate, termDays);
+        Factor f = factors.get(key);
+        if (f != null) return f;
+        f = Factor.of(annualRate, termDays);
+        // 想定外に組み合わせが多いときは無制限に溜めない（計算はそのまま続ける）
+        if (factors.size() < MAX_CACHED_FACTORS) factors.putIfAbsent(key, f);
+        return f;
+    }
+
+    static BigDecimal payout(BigDecimal principal, Factor f) {
+        if (f.fast() && principal.signum() >= 0 && principal.scale() >= 0 && principal.scale() <= 2
+                && principal.precision() <= 16) {
+            long cents = principal.unscaledValue().longValue() * POW10[2 - principal.scale()];
+            long rounded = mulDivHalfUp(cents, f.unscaled(), f.scale());
+            if (rounded >= 0) return BigDecimal.valueOf(rounded, 2);
+        }
+        return principal.multiply(f.exact()).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * round_half_up(a * b / 10^scale)（a, b >= 0）。商が long に収まらなければ -1。
+     * 128bit の積を 10^9 以下の除数で 2 段に割る（32bit ずつの筆算で済むように）。配列は使わずローカル変数だけで回す。
+     */
+    static long mulDivHalfUp(long a, long b, int scale) {
+        long lo = a * b;
+        long hi = Math.multiplyHigh(a, b); // a, b >= 0 なので符号なしの上位 64bit と同じ
+        long d1 = POW10[Math.min(scale, 9)];
+        long d2 = POW10[scale - Math.min(scale, 9)];
+        long x0 = hi >>> 32, x1 = hi & MASK32, x2 = lo >>> 32, x3 = lo & MASK32;
+
+        // 1 段目: x / d1（d1 < 2^30 なので (rem << 32) | limb は long に収まる）
+        long cur = x0;            x0 = cur / d1;
+        cur = (cur % d1 << 32) | x1; x1 = cur / d1;
+        cur = (cur % d1 << 32) | x2; x2 = cur / d1;
+        cur = (cur % d1 << 32) | x3; x3 = cur / d1;
+        long r1 = cur % d1;
+
+        // 2 段目: (x / d1) / d2
+        cur = x0;                 x0 = cur / d2;
+        cur = (cur % d2 << 32) | x1; x1 = cur / d2;
+        cur = (cur % d2 << 32) | x2; x2 = cur / d2;
+        cur = (cur % d2 << 32) | x3; x3 = cur / d2;
+        long r2 = cur % d2;
+
+        if (x0 != 0 || x1 != 0 || (x2 & 0x80000000L) != 0) return -1;
+        long quotient = (x2 << 32) | x3;
+
+        // 全体の余り r = r1 + d1 * r2（< 10^scale <= 10^18 なので 2 倍しても long に収まる）
+        long rem = r1 + d1 * r2;
+        if (rem * 2 >= d1 * d2) quotient++;
+        return quotient;
+    }
+}
@@ -2,26 +2,54 @@ package com.example.timedeposit.service;
 
 import com.example.timedeposit.client.SavingsClient;
 import com.example.timedeposit.model.TimeDeposit;
+import com.example.timedeposit.repository.OwnerSummaryRepository;
 import com.example.timedeposit.repository.TimeDepositRepository;
 
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.HttpClientErrorException;
 
 import java.math.BigDecimal;
-import java.math.MathContext;
 import java.math.RoundingMode;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 
+/**
+ * 定期預金サービス。
+ * owner ごとの合計（owner_deposit_summary）は作成・解約と同じトランザクションで差分を加算する。
+ * 解約は行ロック（findForUpdate）と @Version で、手動解約と満期スイープのどちらか一方だけが払い出す。
+ */
 @Service
 public class TimeDepositService {
     private final TimeDepositRepository repo;
+    private final OwnerSummaryRepository summaries;
+    private final OwnerDirectory directory;
+    private final PayoutEngine payouts;
+    private final TransactionTemplate tx;
 
-    public TimeDepositService(TimeDepositRepository repo) {
+    public TimeDepositService(TimeDepositRepository repo, OwnerSummaryRepository summaries,
+                              OwnerDirectory directory, PayoutEngine payouts, TransactionTemplate tx) {
         this.repo = repo;
+        this.summaries = summaries;
+        this.directory = directory;
+        this.payouts = payouts;
+        this.tx = tx;
     }
 
     public TimeDeposit create(String owner, BigDecimal principal, BigDecimal annualRate, int termDays) {
+        return create(owner, principal, annualRate, termDays, null);
+    }
+
+    /** payoutAccount を指定すると、満期時に MaturitySweepJob がその普通預金口座へ自動で払い出す */
+    @Transactional
+    public TimeDeposit create(String owner, BigDecimal principal, BigDecimal annualRate, int termDays, UUID payoutAccount) {
         if (principal == null || principal.signum() <= 0) throw new IllegalArgumentException("principal must be > 0");
         if (annualRate == null || annualRate.signum() < 0) throw new IllegalArgumentException("annualRate must be >= 0");
         if (termDays <= 0) throw new IllegalArgumentException("termDays must be > 0");
@@ -30,57 +58,132 @@ public class TimeDepositService {
         td.setPrincipal(principal.setScale(2, RoundingMode.HALF_UP));
         td.setAnnualRate(annualRate);
         td.setTermDays(termDays);
-        return repo.save(td);
+        td.setPayoutAccount(payoutAccount);
+        TimeDeposit saved = repo.save(td);
+        summaries.opened(saved, calculatePayout(saved));
+        directory.add(owner);
+        return saved;
     }
 
     public TimeDeposit get(UUID id) {
         return repo.findById(id).orElseThrow(() -> new IllegalArgumentException("deposit not found"));
     }
 
-    /** 単利: principal * (1 + annualRate * termDays/365) */
+    /** 単利: principal * (1 + annualRate * termDays/365)。計算本体は PayoutEngine */
     public BigDecimal calculatePayout(TimeDeposit td) {
-        BigDecimal days = new BigDecimal(td.getTermDays());
-        BigDecimal factor = BigDecimal.ONE.add(td.getAnnualRate().multiply(days).divide(new BigDecimal("365"), MathContext.DECIMAL64));
-        return td.getPrincipal().multiply(factor).setScale(2, RoundingMode.HALF_UP);
+        return payouts.calculatePayout(td);
+    }
+
+    /** まとめて計算（月末の試算レポート用）。結果は入力の反復順 */
+    public List<BigDecimal> calculatePayouts(Collection<TimeDeposit> deposits) {
+        return payouts.calculatePayouts(deposits);
     }
 
     @Transactional
     public BigDecimal close(UUID id, Instant now) {
-        TimeDeposit td = get(id);
-        if (td.getStatus() == TimeDeposit.Status.CLOSED) throw new IllegalStateException("already closed");
+        TimeDeposit td = repo.findForUpdate(id).orElseThrow(() -> new IllegalArgumentException("deposit not found"));
+        if (td.getStatus() != TimeDeposit.Status.OPEN) throw new IllegalStateException("already closed");
         if (now.isBefore(td.getMaturityAt())) throw new IllegalStateException("not matured yet");
         BigDecimal payout = calculatePayout(td);
         td.setStatus(TimeDeposit.Status.CLOSED);
+        td.setClosedAt(now);
+        summaries.closed(List.of(td), List.of(payout));
         return payout;
     }
 
-    
-    @Transactional
-    public BigDecimal closeAndTransfer(UUID id, UUID toAccountId, Instant now,
-                                    SavingsClient savingsClient, String idempotencyKey) {
-        TimeDeposit td = get(id);
+    /**
+     * 解約して受取額を普通預金へ振り込む。MaturitySweepJob と同じ 3 段階で、DB のトランザクション中に savings-service を呼ばない:
+     * 1) 行ロックして OPEN → CLOSING（受取額・振込先・引き受けた利用者を記録）。スイープと取り合っても引き受けるのはどちらか一方
+     * 2) トランザクションの外で入金。呼び出し元の利用者の認証のまま送るので、savings-service が利用者の権限を確かめる
+     * 3) 短いトランザクションで CLOSING → CLOSED（finishClose）
+     * 2) の途中で落ちたり savings-service が不調だったりした分は CLOSING のまま残り、同じ利用者の再送が同じキーで続きを行う
+     * （キーの名前空間は利用者ごとなので、スイープは手動解約の引き受けを再送しない）。
+     * 払出先に拒否された（4xx）ときは OPEN に戻して理由を記録し、別の口座で解約し直せるようにする。
+     */
+    public BigDecimal closeAndTransfer(UUID id, UUID toAccountId, Instant now, SavingsClient savingsClient) {
+        String caller = callerName();
+        TimeDeposit td = tx.execute(s -> claimClose(id, toAccountId, now, caller));
         if (td.getStatus() == TimeDeposit.Status.CLOSED) {
             return td.getPayoutAmount(); // 冪等
         }
+        try {
+            savingsClient.deposit(td.getPayoutAccount(), td.getPayoutAmount(), td.payoutKey());
+        } catch (RuntimeException e) {
+            if (isRejected(e)) rejectPayout(td, e.getMessage());
+            throw e;
+        }
+        finishClose(List.of(id), now);
+        return td.getPayoutAmount();
+    }
+
+    private TimeDeposit claimClose(UUID id, UUID toAccountId, Instant now, String caller) {
+        TimeDeposit td = repo.findForUpdate(id).orElseThrow(() -> new IllegalArgumentException("deposit not found"));
+        if (td.getStatus() == TimeDeposit.Status.CLOSED) return td;
+        if (td.getStatus() == TimeDeposit.Status.CLOSING) {
+            // 同じ利用者・同じ振込先への再送なら、引き受け済みの払い出しを続ける（同じキーなので二重にならない）
+            if (!toAccountId.equals(td.getPayoutAccount()) || !Objects.equals(caller, td.getClosingBy())) {
+                throw new IllegalStateException("already closing");
+            }
+            return td;
+        }
         if (now.isBefore(td.getMaturityAt())) {
             throw new IllegalStateException("not matured yet");
         }
         td.setStatus(TimeDeposit.Status.CLOSING);
+        td.setPayoutAmount(calculatePayout(td));
+        td.setPayoutAccount(toAccountId);
+        td.setClosingAt(Instant.now());
+        td.setClosingBy(caller);
+        td.setPayoutError(null);
+        return td;
+    }
 
-        BigDecimal payout = calculatePayout(td);
+    /**
+     * 払出先に拒否された払い出し（claimed の引き受け）を取り下げ、定期を OPEN に戻して理由を記録する（短いトランザクション 1 回）。
+     * 行ロックしたうえで、同じ引き受けがまだ CLOSING のときだけ戻す（その間に別の引き受けが済んでいれば触らない）
+     */
+    public void rejectPayout(TimeDeposit claimed, String error) {
+        tx.executeWithoutResult(s -> repo.findForUpdate(claimed.getId())
+                .filter(td -> td.getStatus() == TimeDeposit.Status.CLOSING
+                        && td.getPayoutAttempts() == claimed.getPayoutAttempts()
+                        && Objects.equals(td.getPayoutAccount(), claimed.getPayoutAccount()))
+                .ifPresent(td -> td.reopenAfterRejectedPayout(error)));
+    }
 
-        String closeKey = (idempotencyKey == null || idempotencyKey.isBlank()) ? null : idempotencyKey + ":CLOSE";
-        if (closeKey != null) {
-            savingsClient.deposit(toAccountId, payout, closeKey);
-        } else {
-            savingsClient.deposit(toAccountId, payout);
-        }
+    /**
+     * 払出先が払い出しを受け付けない（再送しても通らない）エラーか。
+     * 認証の不備（401）・処理中（409）・混雑（408 / 425 / 429）は一時的なものとして再送に回す
+     */
+    static boolean isRejected(RuntimeException e) {
+        if (!(e instanceof HttpClientErrorException ce)) return false;
+        int status = ce.getStatusCode().value();
+        return status != 401 && status != 408 && status != 409 && status != 425 && status != 429;
+    }
 
-        td.setStatus(TimeDeposit.Status.CLOSED);
-        td.setPayoutAmount(payout);
-        td.setPayoutAccount(toAccountId);
-        td.setClosedAt(now);
-        return payout;
+    /**
+     * 払い出しの済んだ定期を CLOSED にし、owner ごとの合計から差し引く（短いトランザクション 1 回）。
+     * 行ロックしたうえで CLOSING のものだけを対象にするので、手動解約とスイープが両方呼んでも 1 回しか差し引かない。
+     * CLOSED にした定期を返す
+     */
+    public List<TimeDeposit> finishClose(Collection<UUID> ids, Instant now) {
+        if (ids.isEmpty()) return List.of();
+        List<TimeDeposit> done = tx.execute(s -> {
+            List<TimeDeposit> closing = repo.findAllForUpdate(ids).stream()
+                    .filter(td -> td.getStatus() == TimeDeposit.Status.CLOSING)
+                    .toList();
+            for (TimeDeposit td : closing) {
+                td.setStatus(TimeDeposit.Status.CLOSED);
+                td.setClosedAt(now);
+            }
+            summaries.closed(closing, closing.stream().map(TimeDeposit::getPayoutAmount).toList());
+            return closing;
+        });
+        return done == null ? List.of() : done;
     }
 
-}
\ No newline at end of file
+    private static String callerName() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return auth != null && auth.isAuthenticated() && !(auth instanceof AnonymousAuthenticationToken)
+                ? auth.getName() : null;
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.timedeposit.service;
+
+import com.example.timedeposit.client.SavingsClient;
+import com.example.timedeposit.model.TimeDeposit;
+import com.example.timedeposit.model.Transfer;
+import com.example.timedeposit.model.Transfer.Status;
+import com.example.timedeposit.repository.TransferRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 振替（transfers = outbox）を進めるリレー。
+ *
+ * 1) 短いトランザクションで、進行中かつ待ち時間の過ぎた行を FOR UPDATE SKIP LOCKED で batch-size 件掴み、
+ *    next_attempt_at を lease 分先へずらしてすぐコミットする（処理中に他ノードが拾わないためのリース）
+ * 2) トランザクションの外で 1 件ずつ手順を進め、手順ごとに短いトランザクションで状態を書く
+ *    - PENDING: withdraw（Idempotency-Key は {key}:WD）→ WITHDRAWN。4xx（残高不足など）なら FAILED
+ *    - WITHDRAWN: 定期作成と COMPLETED への更新を同じローカルトランザクションで行う。失敗なら COMPENSATING
+ *    - COMPENSATING: deposit（{key}:CP）で出金を戻して FAILED
+ * 通信エラー・5xx は attempts を増やして指数バックオフで再試行する（上限なし。出金の成否が不明なまま
+ * 補償すると二重入金になりうるので、同じキーで成否が確定するまで送り直す）。
+ * 同じキーの再送は savings-service 側で前回の応答が返るので、リース切れ等で同じ手順を 2 回送っても二重にならない。
+ *
+ * savings-service は申込者（requested_by / requested_roles）の代わりとして呼ぶ（サービス用トークン + 署名付き
+ * X-On-Behalf-Of）。サービス用トークンと署名鍵が要るので、time-deposit.transfers.enabled=true のときだけ動き
+ * （無効なら振替の受付は 503）、有効なのにどちらかが無ければ起動時に止める。
+ * 状態の書き込みは @Version 付きなので、リース切れの間に他ノードが同じ行を先へ進めていたら遅れた側の書き込みは失敗し、
+ * 定期作成も同じトランザクションで巻き戻る（定期が二重にできない）。遅れた側はその振替から手を引く。
+ */
+@Component
+@ConditionalOnProperty(name = "time-deposit.transfers.enabled", havingValue = "true")
+public class TransferRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferRelay.class);
+
+    private final TransferRepository repo;
+    private final TimeDepositService timeDeposits;
+    private final SavingsClient savings;
+    private final TransactionTemplate tx;
+    private final int batchSize;
+    private final Duration lease;
+    private final Duration backoffBase;
+    private final Duration backoffMax;
+
+    // 受付直後に待たずに 1 回回すための実行先（Boot の applicationTaskExecutor。起こし済みなら重ねない）
+    private final TaskExecutor kicker;
+    private final AtomicBoolean kicked = new AtomicBoolean();
+    // 仮想スレッドモードでは掴んだ振替を 1 件 1 仮想スレッドで並行に進める（プラットフォームスレッドでは順番に）
+    private final boolean virtualThreads;
+
+    private final Counter completed;
+    private final Counter failed;
+    private final Counter retried;
+
+    public TransferRelay(TransferRepository repo, TimeDepositService timeDeposits, SavingsClient savings,
+                         TransactionTemplate tx, MeterRegistry meters,
+                         @Qualifier("applicationTaskExecutor") TaskExecutor kicker,
+                         @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                         @Value("${time-deposit.transfers.batch-size:50}") int batchSize,
+                         @Value("${time-deposit.transfers.lease-seconds:60}") long leaseSeconds,
+                         @Value("${time-deposit.transfers.backoff-base-ms:500}") long backoffBaseMs,
+                         @Value("${time-deposit.transfers.backoff-max-ms:300000}") long backoffMaxMs) {
+        if (!savings.canActOnBehalfOfUsers()) {
+            throw new IllegalStateException("time-deposit.transfers.enabled requires savings.oauth.* "
+                    + "(or savings.service-token) and savings.auth.on-behalf-of-secret");
+        }
+        this.repo = repo;
+        this.timeDeposits = timeDeposits;
+        this.savings = savings;
+        this.tx = tx;
+        this.kicker = kicker;
+        this.virtualThreads = virtualThreads;
+        this.batchSize = batchSize;
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        this.backoffBase = Duration.ofMillis(backoffBaseMs);
+        this.backoffMax = Duration.ofMillis(backoffMaxMs);
+        this.completed = meters.counter("timedeposit.transfers.completed");
+        this.failed = meters.counter("timedeposit.transfers.failed");
+        this.retried = meters.counter("timedeposit.transfers.retried");
+    }
+
+    /** 受付のコミット後に呼ぶ。次のポーリングを待たずにリレーを回す */
+    public void wakeUp() {
+        if (!kicked.compareAndSet(false, true)) return;
+        kicker.execute(() -> {
+            kicked.set(false);
+            try {
+                relay();
+            } catch (RuntimeException e) {
+                log.warn("transfer relay failed: {}", e.toString());
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${time-deposit.transfers.relay-interval-ms:1000}")
+    public void relay() {
+        List<Transfer> due;
+        do {
+            due = claim(Instant.now());
+            if (virtualThreads && due.size() > 1) {
+                // 待ちのほとんどは savings-service の応答なので、件数分の仮想スレッドで同時に待つ。
+                // 同時数は batch-size と savings.http.max-per-route で頭打ちになる
+                try (ExecutorService each = Executors.newVirtualThreadPerTaskExecutor()) {
+                    for (Transfer t : due) each.execute(() -> advanceQuietly(t));
+                }
+            } else {
+                for (Transfer t : due) advance(t);
+            }
+        } while (due.size() == batchSize);
+    }
+
+    private void advanceQuietly(Transfer t) {
+        try {
+            advance(t);
+        } catch (RuntimeException e) {
+            // 状態を書けなかった（DB 障害など）。リースが切れた後に同じ手順からやり直す
+            log.warn("transfer {} step {} failed: {}", t.getId(), t.getStatus(), e.toString());
+        }
+    }
+
+    List<Transfer> claim(Instant now) {
+        List<Transfer> due = tx.execute(s -> {
+            List<Transfer> rows = repo.lockDue(now, batchSize);
+            for (Transfer t : rows) t.setNextAttemptAt(now.plus(lease));
+            return rows;
+        });
+        return due == null ? List.of() : due;
+    }
+
+    /** 行き着くところ（完了・失敗・再試行待ち）まで、申込者として手順を進める */
+    void advance(Transfer claimed) {
+        SecurityContext previous = SecurityContextHolder.getContext();
+        SecurityContextHolder.setContext(submitterContext(claimed));
+        try {
+            steps(claimed);
+        } catch (OptimisticLockingFailureException e) {
+            // リース切れの間に他ノードが同じ振替を掴んで書き込んだ。以降はそちらに任せる
+            log.info("transfer {} was taken over by another relay: {}", claimed.getId(), e.getMessage());
+        } finally {
+            SecurityContextHolder.setContext(previous);
+        }
+    }
+
+    // 申込者の列が無い旧行は、これまでどおりサービス自身として呼ぶ
+    private static SecurityContext submitterContext(Transfer t) {
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        if (t.getRequestedBy() == null) return context;
+        List<GrantedAuthority> roles = t.getRequestedRoles() == null ? List.of()
+                : Arrays.stream(t.getRequestedRoles().split(","))
+                        .filter(r -> !r.isBlank())
+                        .<GrantedAuthority>map(r -> new SimpleGrantedAuthority("ROLE_" + r))
+                        .toList();
+        context.setAuthentication(UsernamePasswordAuthenticationToken.authenticated(t.getRequestedBy(), null, roles));
+        return context;
+    }
+
+    // 状態を書くたびに保存後の行（新しい version）で続ける
+    private void steps(Transfer t) {
+        while (true) {
+            switch (t.getStatus()) {
+                case PENDING -> {
+                    try {
+                        savings.withdraw(t.getFromAccountId(), t.getPrincipal(), t.stepKey(":WD"));
+                    } catch (RestClientResponseException e) {
+                        if (isRetryable(e)) { retryLater(t, e); return; }
+                        // 出金されていないので戻すものはない
+                        finish(t, Status.FAILED, "withdraw rejected: " + e.getResponseBodyAsString());
+                        return;
+                    } catch (RuntimeException e) {
+                        retryLater(t, e);
+                        return;
+                    }
+                    t.setStatus(Status.WITHDRAWN);
+                    t.setAttempts(0);
+                    t.setLastError(null);
+                    t = save(t);
+                }
+                case WITHDRAWN -> {
+                    Transfer w = t;
+                    try {
+                        tx.executeWithoutResult(s -> {
+                            TimeDeposit td = timeDeposits.create(w.getOwner(), w.getPrincipal(), w.getAnnualRate(),
+                                    w.getTermDays(), w.getFromAccountId());
+                            w.setTimeDepositId(td.getId());
+                            w.setStatus(Status.COMPLETED);
+                            w.setLastError(null);
+                            repo.save(w);
+                        });
+                        completed.increment();
+                        return;
+                    } catch (OptimisticLockingFailureException e) {
+                        // 他ノードが先に進めた（定期作成も巻き戻っている）。補償してはいけない
+                        throw e;
+                    } catch (RuntimeException e) {
+                        log.warn("time deposit creation failed for transfer {} (compensating): {}", t.getId(), e.toString());
+                        t.setTimeDepositId(null);
+                        t.setStatus(Status.COMPENSATING);
+                        t.setAttempts(0);
+                        t.setLastError("create failed: " + e.getMessage());
+                        t = save(t);
+                    }
+                }
+                case COMPENSATING -> {
+                    try {
+                        savings.deposit(t.getFromAccountId(), t.getPrincipal(), t.stepKey(":CP"));
+                    } catch (RuntimeException e) {
+                        // 補償は業務エラーでも諦めない（出金済みの資金を戻すまで要監視）
+                        log.error("compensation failed for transfer {}: {}", t.getId(), e.toString());
+                        retryLater(t, e);
+                        return;
+                    }
+                    finish(t, Status.FAILED, t.getLastError());
+                    return;
+                }
+                default -> {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void finish(Transfer t, Status status, String error) {
+        t.setStatus(status);
+        t.setLastError(error);
+        save(t);
+        failed.increment();
+    }
+
+    private void retryLater(Transfer t, RuntimeException e) {
+        int attempts = t.getAttempts() + 1;
+        t.setAttempts(attempts);
+        t.setLastError(e.getMessage());
+        t.setNextAttemptAt(Instant.now().plus(backoff(attempts)));
+        save(t);
+        retried.increment();
+        log.warn("transfer {} step {} failed (attempt {}, will retry): {}", t.getId(), t.getStatus(), attempts, e.toString());
+    }
+
+    Duration backoff(int attempts) {
+        long ms = backoffBase.toMillis() << Math.min(attempts - 1, 20);
+        return Duration.ofMillis(Math.min(ms, backoffMax.toMillis()));
+    }
+
+    private Transfer save(Transfer t) {
+        return tx.execute(s -> repo.save(t));
+    }
+
+    private static boolean isRetryable(RestClientResponseException e) {
+        int code = e.getStatusCode().value();
+        return code >= 500 || code == 408 || code == 429;
+    }
+}
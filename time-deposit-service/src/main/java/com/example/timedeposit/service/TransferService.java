@@ -2,67 +2,129 @@ package com.example.timedeposit.service;
 
 import com.example.timedeposit.api.TransferRequest;
 import com.example.timedeposit.client.SavingsClient;
-import com.example.timedeposit.model.TimeDeposit;
+import com.example.timedeposit.model.Transfer;
+import com.example.timedeposit.repository.TransferRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
+/**
+ * 普通預金 → 定期預金の振替の受付。
+ *
+ * 受付では出金元口座の名義を確かめたうえで、transfers に PENDING の行を 1 件 INSERT する（短いローカルトランザクション 1 回）。
+ * withdraw → 定期作成 →（失敗時）補償 deposit は TransferRelay が非同期にリトライ付きで進めるので、
+ * savings-service の呼び出し中に DB コネクションを握ることはない。
+ *
+ * 申込者（sub）とそのロールを行に残し、リレーはその人の代わりとして出金する（サービスの権限では動かさない）。
+ * savings-service には sub と口座の結び付きが無いので、名義の確認は「出金元口座の owner = 定期の owner」までで、
+ * 口座を読めるか・出金できるかの判定は申込者の権限で savings-service が行う。
+ */
 @Service
 public class TransferService {
 
-    private final SavingsClient savingsClient;
-    private final TimeDepositService timeDepositService;
+    private final TransferRepository repo;
+    private final SavingsClient savings;
 
-    public TransferService(SavingsClient savingsClient,
-                           TimeDepositService timeDepositService) {
-        this.savingsClient = savingsClient;
-        this.timeDepositService = timeDepositService;
+    public TransferService(TransferRepository repo, SavingsClient savings) {
+        this.repo = repo;
+        this.savings = savings;
     }
 
     /**
-     * オーケストレーション：withdraw → create TD（失敗時は補償 deposit）
+     * 振替を受け付けて、その行を返す。
+     * 同じ申込者・同じ Idempotency-Key での再送は新しい振替を作らず、既存の行（進行状況込み）を返す。
+     * 内容が前回と違えば 422。
      */
-    // ← ここポイント：Idempotency-Key を受け取る引数を追加
-    @Transactional
-    public UUID transfer(TransferRequest req, String idempotencyKey) {
-        String wdKey = addSfx(idempotencyKey, ":WD");
-        String cpKey = addSfx(idempotencyKey, ":CP");
+    public Transfer submit(TransferRequest req, String idempotencyKey, Authentication submitter) {
+        if (req.fromAccountId() == null) throw new IllegalArgumentException("fromAccountId is required");
+        if (req.owner() == null || req.owner().isBlank()) throw new IllegalArgumentException("owner is required");
+        if (req.principal() == null || req.principal().signum() <= 0) throw new IllegalArgumentException("principal must be > 0");
+        if (req.annualRate() == null || req.annualRate().signum() < 0) throw new IllegalArgumentException("annualRate must be >= 0");
+        if (req.termDays() <= 0) throw new IllegalArgumentException("termDays must be > 0");
 
-        // 1) 出金（普通預金）
-        if (wdKey != null) {
-            savingsClient.withdraw(req.fromAccountId(), req.principal(), wdKey);
-        } else {
-            savingsClient.withdraw(req.fromAccountId(), req.principal()); // 従来互換
+        String subject = submitter.getName();
+        String hash = fingerprint(req);
+        String key = (idempotencyKey == null || idempotencyKey.isBlank()) ? null : idempotencyKey;
+        if (key != null) {
+            Transfer existing = repo.findByRequestedByAndIdempotencyKey(subject, key).orElse(null);
+            if (existing != null) return replay(existing, hash);
         }
+        verifyOwner(req);
+        Transfer t = Transfer.of(req.owner(), req.fromAccountId(), req.principal().setScale(2, RoundingMode.HALF_UP),
+                req.annualRate(), req.termDays(), key, subject, roles(submitter), hash);
+        try {
+            return repo.save(t);
+        } catch (DataIntegrityViolationException e) {
+            // 同じキーの同時受付に負けた（一意制約）。勝った側の行を返す
+            if (key == null) throw e;
+            return replay(repo.findByRequestedByAndIdempotencyKey(subject, key).orElseThrow(() -> e), hash);
+        }
+    }
 
+    /** 申込者本人の振替だけを返す（他人の振替は存在も明かさない） */
+    public Transfer get(UUID id, String subject) {
+        return repo.findById(id)
+                .filter(t -> t.getRequestedBy() != null && t.getRequestedBy().equals(subject))
+                .orElseThrow(() -> new IllegalArgumentException("transfer not found"));
+    }
+
+    // 出金元口座を申込者の権限で読み、名義が定期の owner と同じことを確かめる
+    private void verifyOwner(TransferRequest req) {
+        Map<String, Object> account;
         try {
-            // 2) 定期預金作成（既存サービスの create を利用）
-            TimeDeposit td = timeDepositService.create(
-                    req.owner(),
-                    req.principal(),
-                    req.annualRate(),
-                    req.termDays()
-            );
-            return td.getId();
+            account = savings.getAccount(req.fromAccountId());
+        } catch (HttpClientErrorException.NotFound e) {
+            throw new IllegalArgumentException("fromAccountId not found");
+        } catch (HttpClientErrorException.Forbidden | HttpClientErrorException.Unauthorized e) {
+            throw new AccessDeniedException("fromAccountId is not accessible");
+        }
+        if (account == null || !req.owner().equals(account.get("owner"))) {
+            throw new AccessDeniedException("fromAccountId is not owned by " + req.owner());
+        }
+    }
 
-        } catch (Exception e) {
-            // 3) 補償（出金を戻す）
-            try {
-                if (cpKey != null) {
-                    savingsClient.deposit(req.fromAccountId(), req.principal(), cpKey);
-                } else {
-                    savingsClient.deposit(req.fromAccountId(), req.principal()); // 従来互換
-                }
-            } catch (Exception compensateEx) {
-                // TODO: ログ/アラート。補償失敗は要監視
-            }
-            throw e;
+    private static Transfer replay(Transfer existing, String hash) {
+        // ハッシュの無い旧行は比べない
+        if (existing.getRequestHash() != null && !existing.getRequestHash().equals(hash)) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    "Idempotency-Key was already used for a different request");
         }
+        return existing;
     }
 
-    private static String addSfx(String key, String sfx) {
-        return (key == null || key.isBlank()) ? null : key + sfx;
+    // ROLE_ の付いた権限だけを、接頭辞を外してカンマ区切りで（SavingsClient が X-On-Behalf-Of-Roles に送る形）
+    private static String roles(Authentication submitter) {
+        return submitter.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .filter(a -> a.startsWith("ROLE_"))
+                .map(a -> a.substring("ROLE_".length()))
+                .sorted()
+                .collect(Collectors.joining(","));
     }
-}
 
+    // 金額・利率は表記揺れ（100 と 100.00 など）で別物にならないよう正規化してから
+    static String fingerprint(TransferRequest req) {
+        String s = String.join("|", req.fromAccountId().toString(), req.owner(),
+                req.principal().setScale(2, RoundingMode.HALF_UP).toPlainString(),
+                req.annualRate().stripTrailingZeros().toPlainString(), String.valueOf(req.termDays()));
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.timedeposit.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+/**
+ * 仮想スレッドの pin 監視（spring.threads.virtual.enabled=true のときだけ動く）。
+ *
+ * synchronized の中や native フレーム上でブロックすると、仮想スレッドはキャリア（プラットフォームスレッド）を
+ * 手放せない。キャリアは CPU 数しかないので、JDBC 待ちなどで pin されると全体が詰まる。
+ * JFR の jdk.VirtualThreadPinned を threshold 以上のものだけ拾い、件数をメトリクスに、場所をログに出す。
+ *
+ * メトリクス: timedeposit.vthreads.pinned（0 のままが正常）
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadPinningMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+
+    private final Counter pinned;
+    private final Duration threshold;
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meters,
+                                       @Value("${time-deposit.vthreads.pinned-threshold-ms:20}") long thresholdMs) {
+        this.pinned = meters.counter("timedeposit.vthreads.pinned");
+        this.threshold = Duration.ofMillis(thresholdMs);
+    }
+
+    @PostConstruct
+    void start() {
+        stream = new RecordingStream();
+        stream.enable(EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(EVENT, this::onPinned);
+        stream.startAsync();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (stream != null) stream.close();
+    }
+
+    private void onPinned(RecordedEvent e) {
+        pinned.increment();
+        log.warn("virtual thread pinned for {} ms at {}", e.getDuration().toMillis(), where(e));
+    }
+
+    // 先頭の数フレーム（どの synchronized / native 呼び出しで止まったか）
+    private static String where(RecordedEvent e) {
+        if (e.getStackTrace() == null) return "(no stack trace)";
+        return e.getStackTrace().getFrames().stream()
+                .limit(8)
+                .map(VirtualThreadPinningMonitor::frame)
+                .collect(Collectors.joining(" <- "));
+    }
+
+    private static String frame(RecordedFrame f) {
+        return f.getMethod().getType().getName() + "." + f.getMethod().getName() + ":" + f.getLineNumber();
+    }
+}
@@ -5,6 +5,7 @@ import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
 @ControllerAdvice
 public class RestClientErrorHandler {
@@ -22,4 +23,12 @@ public class RestClientErrorHandler {
                 .status(ex.getStatusCode())
                 .body(ex.getResponseBodyAsString());
     }
+
+    // ReactiveSavingsClient（WebClient）経由の下流エラーも同じくステータスと本文をそのまま返す
+    @ExceptionHandler(WebClientResponseException.class)
+    public ResponseEntity<String> handleWebClient(WebClientResponseException ex) {
+        return ResponseEntity
+                .status(ex.getStatusCode())
+                .body(ex.getResponseBodyAsString());
+    }
 }
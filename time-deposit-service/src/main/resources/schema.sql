@@ -13,3 +13,75 @@ CREATE TABLE IF NOT EXISTS time_deposits (
   closed_at TIMESTAMPTZ,
   CONSTRAINT time_deposits_status_chk CHECK (status IN ('OPEN','CLOSING','CLOSED'))
 );
+
+-- owner 一覧のキーセットページング（start_at, id 順）用
+CREATE INDEX IF NOT EXISTS time_deposits_owner_start_idx ON time_deposits (owner, start_at, id);
+-- owner 一覧（OwnerDirectory）の差分取り込み用
+CREATE INDEX IF NOT EXISTS time_deposits_start_idx ON time_deposits (start_at);
+-- 満期スイープ（MaturitySweepJob）用。status = 'OPEN' and maturity_at <= now を満期の古い順に範囲走査する
+CREATE INDEX IF NOT EXISTS time_deposits_status_maturity_idx ON time_deposits (status, maturity_at);
+-- 解約の払い出しを引き受けた時刻（CLOSING）と、手動解約・スイープの取り合いを見分ける版数（TimeDeposit の @Version）
+ALTER TABLE time_deposits ADD COLUMN IF NOT EXISTS closing_at TIMESTAMPTZ;
+ALTER TABLE time_deposits ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+-- 払い出しを引き受けた利用者（null はスイープ）、払出先に拒否されて OPEN に戻した回数とその理由
+ALTER TABLE time_deposits ADD COLUMN IF NOT EXISTS closing_by TEXT;
+ALTER TABLE time_deposits ADD COLUMN IF NOT EXISTS payout_attempts INT NOT NULL DEFAULT 0;
+ALTER TABLE time_deposits ADD COLUMN IF NOT EXISTS payout_error TEXT;
+
+-- owner 検索（/api/time-deposits/search）用。3 文字以上の部分一致は pg_trgm の GIN、
+-- それ未満は前方一致を text_pattern_ops の B-tree で引く（OwnerSearch 参照）
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS time_deposits_owner_trgm_idx ON time_deposits USING gin (lower(owner) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS time_deposits_owner_prefix_idx ON time_deposits (lower(owner) text_pattern_ops);
+
+-- 普通預金 → 定期預金の振替（TransferService / TransferRelay）。受付の 1 行がそのまま outbox になる
+CREATE TABLE IF NOT EXISTS transfers (
+  id UUID PRIMARY KEY,
+  idempotency_key TEXT,
+  requested_by TEXT,
+  requested_roles TEXT,
+  request_hash TEXT,
+  owner TEXT NOT NULL,
+  from_account_id UUID NOT NULL,
+  principal NUMERIC(19,2) NOT NULL,
+  annual_rate NUMERIC(9,6) NOT NULL,
+  term_days INT NOT NULL,
+  status TEXT NOT NULL DEFAULT 'PENDING',
+  time_deposit_id UUID,
+  attempts INT NOT NULL DEFAULT 0,
+  next_attempt_at TIMESTAMPTZ NOT NULL,
+  last_error TEXT,
+  created_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+  version BIGINT NOT NULL DEFAULT 0,
+  CONSTRAINT transfers_status_chk CHECK (status IN ('PENDING','WITHDRAWN','COMPLETED','COMPENSATING','FAILED'))
+);
+-- リレーが拾う「進行中」の行だけを索引する（完了・失敗済みは載らないので小さいまま）
+CREATE INDEX IF NOT EXISTS transfers_due_idx ON transfers (next_attempt_at)
+  WHERE status IN ('PENDING','WITHDRAWN','COMPENSATING');
+-- 既存の表への追加分。申込者の列が null の旧行は、リレーがサービス自身として進める（照会は誰からも見えない）
+ALTER TABLE transfers ADD COLUMN IF NOT EXISTS requested_by TEXT;
+ALTER TABLE transfers ADD COLUMN IF NOT EXISTS requested_roles TEXT;
+ALTER TABLE transfers ADD COLUMN IF NOT EXISTS request_hash TEXT;
+ALTER TABLE transfers ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+-- Idempotency-Key は申込者ごとに一意（他人と同じキーを使っても衝突・漏洩しない）
+ALTER TABLE transfers DROP CONSTRAINT IF EXISTS transfers_idempotency_key_key;
+CREATE UNIQUE INDEX IF NOT EXISTS transfers_idempotency_idx ON transfers (requested_by, idempotency_key);
+
+-- owner ごとの定期の合計（OwnerSummaryRepository）。作成・解約（満期スイープ含む）と同じトランザクションで差分を加算する。
+-- 対象は未解約（OPEN / CLOSING）の定期。projected_payout は満期受取額（PayoutEngine の単利）の合計
+CREATE TABLE IF NOT EXISTS owner_deposit_summary (
+  owner TEXT PRIMARY KEY,
+  open_deposits INT NOT NULL DEFAULT 0,
+  principal NUMERIC(19,2) NOT NULL DEFAULT 0,
+  projected_payout NUMERIC(19,2) NOT NULL DEFAULT 0,
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+-- 導入時の埋め戻し（表が空のときだけ。導入は書き込みを止めた状態で行うこと）。
+-- 受取額は SQL で計算するため、係数の丸め方の違いで PayoutEngine と 1 銭ずれる行がありうる
+INSERT INTO owner_deposit_summary (owner, open_deposits, principal, projected_payout)
+SELECT owner, count(*), sum(principal), sum(round(principal * (1 + annual_rate * term_days / 365), 2))
+  FROM time_deposits
+ WHERE status <> 'CLOSED'
+   AND NOT EXISTS (SELECT 1 FROM owner_deposit_summary)
+ GROUP BY owner;
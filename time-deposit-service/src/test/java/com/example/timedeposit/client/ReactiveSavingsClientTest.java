@@ -0,0 +1,125 @@
+package com.example.timedeposit.client;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ReactiveSavingsClient（SavingsAuthorization 込み）のクライアント層テスト。
+ *
+ * 目的：
+ * - Reactor の Context に積んだ JWT が Authorization: Bearer ... で送られること
+ * - 1 本目の応答を待った後（Netty のスレッド上）の後続呼び出しにも同じ JWT が付くこと
+ * - Context に JWT が無ければサービス用トークンを使うこと
+ * - Idempotency-Key は指定したときだけ付くこと
+ * - SERVICE モードでは SavingsClient と同じくサービス用トークン + 署名付きヘッダ（送ったボディに対する署名）で呼ぶこと
+ */
+class ReactiveSavingsClientTest {
+
+    private MockWebServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    private ReactiveSavingsClient client(String serviceToken) {
+        return client(new SavingsAuthorization(ServiceTokenProvider.fixed(serviceToken), SavingsClient.AuthMode.PROPAGATE, ""));
+    }
+
+    private ReactiveSavingsClient client(SavingsAuthorization authorization) {
+        return new ReactiveSavingsClient(WebClient.create(), authorization, server.url("/").toString());
+    }
+
+    private void enqueueOk() {
+        server.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setBody("{\"ok\":true}")
+                .setHeader("Content-Type", MediaType.APPLICATION_JSON_VALUE));
+    }
+
+    private static JwtAuthenticationToken jwt(String token) {
+        Jwt jwt = Jwt.withTokenValue(token).header("alg", "none").claim("sub", "tester").build();
+        return new JwtAuthenticationToken(jwt, List.of(new SimpleGrantedAuthority("ROLE_user")));
+    }
+
+    @Test
+    void chainedCalls_shouldPropagateBearerFromReactorContext() throws Exception {
+        enqueueOk();
+        enqueueOk();
+        ReactiveSavingsClient client = client("");
+        UUID from = UUID.randomUUID();
+        UUID to = UUID.randomUUID();
+
+        Map<String, Object> res = client.withdraw(from, new BigDecimal("10.00"), "REQ-1:WD")
+                .flatMap(r -> client.deposit(to, new BigDecimal("10.00"), null))
+                .contextWrite(ReactiveSecurityContextHolder.withAuthentication(jwt("user-token")))
+                .block();
+
+        assertThat(res).containsEntry("ok", true);
+        var first = server.takeRequest();
+        assertThat(first.getPath()).isEqualTo("/accounts/" + from + "/withdraw");
+        assertThat(first.getHeader("Authorization")).isEqualTo("Bearer user-token");
+        assertThat(first.getHeader("Idempotency-Key")).isEqualTo("REQ-1:WD");
+        assertThat(first.getBody().readUtf8()).contains("\"amount\":10.00");
+
+        var second = server.takeRequest();
+        assertThat(second.getPath()).isEqualTo("/accounts/" + to + "/deposit");
+        assertThat(second.getHeader("Authorization")).isEqualTo("Bearer user-token");
+        assertThat(second.getHeader("Idempotency-Key")).isNull();
+    }
+
+    @Test
+    void withoutJwtInContext_shouldUseServiceToken() throws Exception {
+        enqueueOk();
+
+        client("svc-token").getAccount(UUID.randomUUID()).block();
+
+        assertThat(server.takeRequest().getHeader("Authorization")).isEqualTo("Bearer svc-token");
+    }
+
+    @Test
+    void serviceMode_shouldSendServiceTokenWithSignedOnBehalfOfHeaders() throws Exception {
+        enqueueOk();
+        ReactiveSavingsClient client = client(new SavingsAuthorization(
+                ServiceTokenProvider.fixed("svc-token"), SavingsClient.AuthMode.SERVICE, "obo-secret"));
+        UUID accountId = UUID.randomUUID();
+
+        client.withdraw(accountId, new BigDecimal("10.00"), "REQ-1:WD")
+                .contextWrite(ReactiveSecurityContextHolder.withAuthentication(jwt("user-token")))
+                .block();
+
+        var req = server.takeRequest();
+        assertThat(req.getHeader("Authorization")).isEqualTo("Bearer svc-token");
+        assertThat(req.getHeader(SavingsClient.ON_BEHALF_OF)).isEqualTo("tester");
+        assertThat(req.getHeader(SavingsClient.ON_BEHALF_OF_ROLES)).isEqualTo("user");
+        String canonical = SavingsAuthorization.canonical("POST", "/accounts/" + accountId + "/withdraw",
+                req.getBody().readByteArray(), "tester", "user",
+                req.getHeader(SavingsClient.ON_BEHALF_OF_TIMESTAMP), req.getHeader(SavingsClient.ON_BEHALF_OF_NONCE));
+        assertThat(req.getHeader(SavingsClient.ON_BEHALF_OF_SIGNATURE))
+                .isEqualTo(SavingsAuthorization.sign("obo-secret".getBytes(StandardCharsets.UTF_8), canonical));
+    }
+}
@@ -28,6 +28,9 @@ import static org.assertj.core.api.Assertions.assertThat;
  * - 3引数版のとき Idempotency-Key がヘッダに付くこと
  * - 2引数版（null 委譲）のとき Idempotency-Key ヘッダが付かないこと（＝今回の NPE 対策の要）
  * - JWT を SecurityContext から取得して Authorization: Bearer ... が送られること
+ * - ユーザのリクエスト外ではサービス用トークンが使われること
+ * - service モードではサービス用トークン + 署名付き X-On-Behalf-Of（メソッド・パス・ボディ・ロール・nonce 込み）が送られること
+ * - JWT の無いユーザ（リレーが申込者として動くとき）もサービス用トークン + 署名付きヘッダで送られること
  *
  * テスト構成：
  * - HTTP サーバは MockWebServer を使用し、実際の HTTP リクエストを受けてヘッダ/ボディを検証する
@@ -121,4 +124,102 @@ class SavingsClientTest {
         // Idempotency-Key は付与されない（= ヘッダが無い）
         assertThat(recorded.getHeader("Idempotency-Key")).isNull();
     }
+
+    /**
+     * 一括入金：1 回の POST /accounts/credits:batch に全件が載り、結果配列がそのまま返ること。
+     */
+    @Test
+    void depositBatch_postsAllCreditsInOneRequest() throws Exception {
+        server.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setBody("[{\"index\":0,\"status\":\"APPLIED\"},{\"index\":1,\"status\":\"REJECTED\",\"error\":\"Account not found\"}]")
+                .setHeader("Content-Type", MediaType.APPLICATION_JSON_VALUE));
+
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        List<Map<String, Object>> res = client.depositBatch(List.of(
+                new SavingsClient.Credit(a, new BigDecimal("1.00"), "K1"),
+                new SavingsClient.Credit(b, new BigDecimal("2.00"), null)));
+
+        assertThat(res).hasSize(2);
+        assertThat(res.get(1)).containsEntry("status", "REJECTED");
+
+        var recorded = server.takeRequest();
+        assertThat(recorded.getMethod()).isEqualTo("POST");
+        assertThat(recorded.getPath()).isEqualTo("/accounts/credits:batch");
+        assertThat(recorded.getHeader("Authorization")).isEqualTo("Bearer dummy-token");
+        String body = recorded.getBody().readUtf8();
+        assertThat(body).contains("\"accountId\":\"" + a + "\"").contains("\"idempotencyKey\":\"K1\"")
+                        .contains("\"accountId\":\"" + b + "\"");
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    /**
+     * ユーザのリクエスト外（スイープ・リレー）：SecurityContext に JWT が無ければサービス用トークンを使う。
+     */
+    @Test
+    void usesServiceToken_outsideUserRequest() throws Exception {
+        SecurityContextHolder.clearContext();
+        server.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setBody("{\"ok\":true}")
+                .setHeader("Content-Type", MediaType.APPLICATION_JSON_VALUE));
+        SavingsClient background = new SavingsClient(RestClient.builder(), server.url("/").toString(), "svc-token", null);
+
+        background.deposit(UUID.randomUUID(), new BigDecimal("1.00"), "sweep:1:CLOSE");
+
+        var recorded = server.takeRequest();
+        assertThat(recorded.getHeader("Authorization")).isEqualTo("Bearer svc-token");
+        assertThat(recorded.getHeader(SavingsClient.ON_BEHALF_OF)).isNull();
+    }
+
+    /**
+     * service モード：ユーザのリクエスト中でもサービス用トークンを使い、sub とロールを署名付きヘッダで添える。
+     * 署名はメソッド・パス・ボディに結び付いている。
+     */
+    @Test
+    void serviceMode_sendsServiceTokenWithSignedOnBehalfOf() throws Exception {
+        server.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setBody("{\"ok\":true}")
+                .setHeader("Content-Type", MediaType.APPLICATION_JSON_VALUE));
+        SavingsClient service = new SavingsClient(RestClient.builder(), server.url("/").toString(),
+                ServiceTokenProvider.fixed("svc-token"), SavingsClient.AuthMode.SERVICE, "obo-secret", null);
+        UUID accountId = UUID.randomUUID();
+
+        service.withdraw(accountId, new BigDecimal("5.00"), "K1");
+
+        var recorded = server.takeRequest();
+        assertThat(recorded.getHeader("Authorization")).isEqualTo("Bearer svc-token");
+        assertThat(recorded.getHeader(SavingsClient.ON_BEHALF_OF)).isEqualTo("tester");
+        assertThat(recorded.getHeader(SavingsClient.ON_BEHALF_OF_ROLES)).isEqualTo("user");
+        String canonical = SavingsAuthorization.canonical("POST", "/accounts/" + accountId + "/withdraw",
+                recorded.getBody().readByteArray(), "tester", "user",
+                recorded.getHeader(SavingsClient.ON_BEHALF_OF_TIMESTAMP), recorded.getHeader(SavingsClient.ON_BEHALF_OF_NONCE));
+        assertThat(recorded.getHeader(SavingsClient.ON_BEHALF_OF_SIGNATURE))
+                .isEqualTo(SavingsAuthorization.sign("obo-secret".getBytes(java.nio.charset.StandardCharsets.UTF_8), canonical));
+    }
+
+    /**
+     * JWT の無いユーザ（リレーが申込者として動くとき）：PROPAGATE モードでもサービス用トークン + 署名付きヘッダ。
+     */
+    @Test
+    void delegatedUserWithoutJwt_sendsSignedOnBehalfOf() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(
+                org.springframework.security.authentication.UsernamePasswordAuthenticationToken.authenticated(
+                        "submitter", null, List.of(new SimpleGrantedAuthority("ROLE_user"))));
+        server.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setBody("{\"ok\":true}")
+                .setHeader("Content-Type", MediaType.APPLICATION_JSON_VALUE));
+        SavingsClient relayClient = new SavingsClient(RestClient.builder(), server.url("/").toString(),
+                ServiceTokenProvider.fixed("svc-token"), SavingsClient.AuthMode.PROPAGATE, "obo-secret", null);
+
+        relayClient.withdraw(UUID.randomUUID(), new BigDecimal("5.00"), "K1:WD");
+
+        var recorded = server.takeRequest();
+        assertThat(recorded.getHeader("Authorization")).isEqualTo("Bearer svc-token");
+        assertThat(recorded.getHeader(SavingsClient.ON_BEHALF_OF)).isEqualTo("submitter");
+        assertThat(recorded.getHeader(SavingsClient.ON_BEHALF_OF_SIGNATURE)).isNotBlank();
+    }
 }
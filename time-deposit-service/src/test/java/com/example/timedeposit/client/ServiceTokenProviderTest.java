@@ -0,0 +1,95 @@
+package com.example.timedeposit.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ServiceTokenProvider のユニットテスト（トークンエンドポイントは MockWebServer）。
+ *
+ * 目的：
+ * - client_credentials で取ったトークンを期限まで使い回すこと（呼び出しごとに取りに行かない）
+ * - 期限の refresh-ahead 前に入ったら、いまのトークンを返しつつ裏で取り直すこと
+ * - 未設定なら固定トークン（savings.service-token）を返すこと
+ */
+class ServiceTokenProviderTest {
+
+    private MockWebServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    private void enqueueToken(String token, long expiresIn) {
+        server.enqueue(new MockResponse()
+                .setHeader("Content-Type", MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"access_token\":\"" + token + "\",\"expires_in\":" + expiresIn + ",\"token_type\":\"Bearer\"}"));
+    }
+
+    private ServiceTokenProvider provider(Duration refreshAhead) {
+        return new ServiceTokenProvider(RestClient.create(), server.url("/token").toString(),
+                "time-deposit-service", "s3cret", "", refreshAhead, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void fetchesOnce_andReusesUntilRefreshWindow() throws Exception {
+        enqueueToken("svc-1", 300);
+        ServiceTokenProvider tokens = provider(Duration.ofSeconds(60));
+
+        for (int i = 0; i < 10; i++) assertThat(tokens.token()).isEqualTo("svc-1");
+
+        assertThat(server.getRequestCount()).isEqualTo(1);
+        String form = server.takeRequest().getBody().readUtf8();
+        assertThat(form).contains("grant_type=client_credentials").contains("client_id=time-deposit-service");
+    }
+
+    @Test
+    void refreshesInBackground_whileServingCurrentToken() throws Exception {
+        // 寿命 10s（使うのは余裕を引いた 5s まで）。取り直しは寿命の半分 = 5s 前からなので、取った直後から取り直し窓に入る
+        enqueueToken("svc-1", 10);
+        enqueueToken("svc-2", 300);
+        ServiceTokenProvider tokens = provider(Duration.ofSeconds(3600));
+
+        assertThat(tokens.token()).isEqualTo("svc-1");
+        assertThat(tokens.token()).isEqualTo("svc-1"); // 取り直しを依頼しても待たない
+        server.takeRequest(1, TimeUnit.SECONDS);
+        assertThat(server.takeRequest(5, TimeUnit.SECONDS)).isNotNull(); // 裏での取り直し
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!"svc-2".equals(tokens.token()) && System.nanoTime() < deadline) Thread.sleep(20);
+        assertThat(tokens.token()).isEqualTo("svc-2");
+    }
+
+    @Test
+    void failsWhenTokenEndpointRejects() {
+        server.enqueue(new MockResponse().setResponseCode(401));
+        ServiceTokenProvider tokens = provider(Duration.ofSeconds(60));
+
+        assertThatThrownBy(tokens::token).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void fallsBackToStaticToken_whenClientCredentialsNotConfigured() {
+        assertThat(ServiceTokenProvider.fixed("static").token()).isEqualTo("static");
+        assertThat(ServiceTokenProvider.fixed("").token()).isNull();
+    }
+}
@@ -80,7 +80,7 @@ class DepositControllerTest {
     @Test
     void create_shouldWithdrawWhenFromAccountProvided_andPropagateIdemKey() throws Exception {
         var td = tdReady("alice", new BigDecimal("100.00"), new BigDecimal("0.05"), 30);
-        when(service.create(any(), any(), any(), anyInt())).thenReturn(td);
+        when(service.create(any(), any(), any(), anyInt(), any())).thenReturn(td);
 
         var from = UUID.randomUUID();
         mvc.perform(post("/deposits")
@@ -103,6 +103,8 @@ class DepositControllerTest {
         ArgumentCaptor<String> key = ArgumentCaptor.forClass(String.class);
         verify(savingsClient).withdraw(eq(from), eq(new BigDecimal("100.0")), key.capture());
         org.assertj.core.api.Assertions.assertThat(key.getValue()).isEqualTo("REQ-1:WD");
+        // 満期の自動払出先は省略時 fromAccountId
+        verify(service).create(eq("alice"), any(), any(), eq(30), eq(from));
     }
 
     /**
@@ -113,7 +115,7 @@ class DepositControllerTest {
     @Test
     void create_shouldNotWithdrawWhenFromAccountNull() throws Exception {
         var td = tdReady("alice", new BigDecimal("100.00"), new BigDecimal("0.05"), 30);
-        when(service.create(any(), any(), any(), anyInt())).thenReturn(td);
+        when(service.create(any(), any(), any(), anyInt(), any())).thenReturn(td);
 
         mvc.perform(post("/deposits")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -141,7 +143,7 @@ class DepositControllerTest {
      */
     @Test
     void create_shouldCompensateOnFailure() {
-        when(service.create(any(), any(), any(), anyInt()))
+        when(service.create(any(), any(), any(), anyInt(), any()))
                 .thenThrow(new RuntimeException("boom"));
 
         var from = UUID.randomUUID();
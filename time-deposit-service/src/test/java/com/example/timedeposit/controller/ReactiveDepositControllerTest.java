@@ -0,0 +1,113 @@
+package com.example.timedeposit.controller;
+
+import com.example.timedeposit.client.ReactiveSavingsClient;
+import com.example.timedeposit.model.TimeDeposit;
+import com.example.timedeposit.service.TimeDepositService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * ReactiveDepositController の Web 層テスト。
+ *
+ * 目的：
+ * - Mono を返すので非同期処理になる（asyncStarted → asyncDispatch で結果を見る）
+ * - fromAccountId があれば withdraw(:WD) → 定期作成 → 201
+ * - 定期作成が失敗したら補償 deposit(:CP) を呼んだうえで 400（IllegalArgumentException）
+ *
+ * セキュリティフィルタは無効化（DepositControllerTest と同じ）。
+ */
+@WebMvcTest(controllers = ReactiveDepositController.class)
+@AutoConfigureMockMvc(addFilters = false)
+class ReactiveDepositControllerTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    TimeDepositService service;
+
+    @MockBean
+    ReactiveSavingsClient savingsClient;
+
+    private static TimeDeposit tdReady() {
+        var td = new TimeDeposit();
+        ReflectionTestUtils.setField(td, "id", UUID.randomUUID());
+        ReflectionTestUtils.setField(td, "owner", "alice");
+        ReflectionTestUtils.setField(td, "principal", new BigDecimal("100.00"));
+        ReflectionTestUtils.setField(td, "annualRate", new BigDecimal("0.05"));
+        ReflectionTestUtils.setField(td, "termDays", 30);
+        ReflectionTestUtils.setField(td, "status", TimeDeposit.Status.OPEN);
+        Instant start = Instant.now();
+        ReflectionTestUtils.setField(td, "startAt", start);
+        ReflectionTestUtils.setField(td, "maturityAt", start.plus(30, ChronoUnit.DAYS));
+        return td;
+    }
+
+    private MvcResult start(UUID from, String key) throws Exception {
+        return mvc.perform(post("/reactive/deposits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Idempotency-Key", key)
+                        .content("""
+                                {
+                                  "owner":"alice",
+                                  "principal":100.0,
+                                  "annualRate":0.05,
+                                  "termDays":30,
+                                  "fromAccountId":"%s"
+                                }
+                                """.formatted(from)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    @Test
+    void create_shouldWithdrawThenCreate() throws Exception {
+        when(savingsClient.withdraw(any(), any(), any())).thenReturn(Mono.just(Map.of("balance", 0)));
+        when(service.create(any(), any(), any(), anyInt(), any())).thenReturn(tdReady());
+        var from = UUID.randomUUID();
+
+        mvc.perform(asyncDispatch(start(from, "REQ-1")))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").exists())
+                .andExpect(jsonPath("$.owner").value("alice"));
+
+        verify(savingsClient).withdraw(eq(from), eq(new BigDecimal("100.0")), eq("REQ-1:WD"));
+        verify(service).create(eq("alice"), any(), any(), eq(30), eq(from));
+        verify(savingsClient, never()).deposit(any(), any(), any());
+    }
+
+    @Test
+    void create_shouldCompensateOnFailure() throws Exception {
+        when(savingsClient.withdraw(any(), any(), any())).thenReturn(Mono.just(Map.of("balance", 0)));
+        when(savingsClient.deposit(any(), any(), any())).thenReturn(Mono.just(Map.of("balance", 100)));
+        when(service.create(any(), any(), any(), anyInt(), any()))
+                .thenThrow(new IllegalArgumentException("principal must be > 0"));
+        var from = UUID.randomUUID();
+
+        mvc.perform(asyncDispatch(start(from, "REQ-2")))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("principal must be > 0"));
+
+        verify(savingsClient).deposit(eq(from), eq(new BigDecimal("100.0")), eq("REQ-2:CP"));
+    }
+}
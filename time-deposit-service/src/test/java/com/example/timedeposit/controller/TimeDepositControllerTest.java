@@ -0,0 +1,90 @@
+package com.example.timedeposit.controller;
+
+import com.example.timedeposit.dto.KeysetPage;
+import com.example.timedeposit.dto.PageToken;
+import com.example.timedeposit.model.TimeDeposit;
+import com.example.timedeposit.repository.TimeDepositRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * TimeDepositController（owner 一覧）の Web 層テスト。
+ *
+ * 目的：
+ * - limit/pageToken なしは従来どおり全件（start_at, id 順）を返すこと。
+ * - limit 指定時は limit+1 件を取得し、続きがあれば X-Next-Page-Token を返すこと。
+ * - トークンの (start_at, id) から続きを検索すること。壊れたトークンは 400。
+ *
+ * 注意：
+ * - セキュリティフィルタは無効化（DepositControllerTest と同じ方針）。
+ */
+@WebMvcTest(controllers = TimeDepositController.class)
+@AutoConfigureMockMvc(addFilters = false)
+class TimeDepositControllerTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    TimeDepositRepository repo;
+
+    private static TimeDeposit td(String owner, Instant startAt) {
+        var td = new TimeDeposit();
+        ReflectionTestUtils.setField(td, "id", UUID.randomUUID());
+        ReflectionTestUtils.setField(td, "owner", owner);
+        ReflectionTestUtils.setField(td, "startAt", startAt);
+        return td;
+    }
+
+    @Test
+    void listByOwner_withoutLimit_returnsAllOrdered() throws Exception {
+        when(repo.findByOwnerOrderByStartAtAscIdAsc("alice")).thenReturn(List.of(td("alice", Instant.now())));
+
+        mvc.perform(get("/deposits").param("owner", "alice"))
+           .andExpect(status().isOk())
+           .andExpect(header().doesNotExist(KeysetPage.NEXT_PAGE_TOKEN_HEADER))
+           .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    @Test
+    void listByOwner_keysetPages() throws Exception {
+        var t0 = Instant.parse("2025-01-01T00:00:00Z");
+        var a = td("alice", t0);
+        var b = td("alice", t0.plusSeconds(1));
+        var c = td("alice", t0.plusSeconds(2));
+        when(repo.findPageByOwner("alice", Limit.of(3))).thenReturn(List.of(a, b, c));
+        String token = new PageToken(b.getStartAt(), b.getId()).encode();
+
+        mvc.perform(get("/deposits").param("owner", "alice").param("limit", "2"))
+           .andExpect(status().isOk())
+           .andExpect(header().string(KeysetPage.NEXT_PAGE_TOKEN_HEADER, token))
+           .andExpect(jsonPath("$.length()").value(2));
+
+        when(repo.findPageByOwnerAfter("alice", b.getStartAt(), b.getId(), Limit.of(3))).thenReturn(List.of(c));
+        mvc.perform(get("/deposits").param("owner", "alice").param("limit", "2").param("pageToken", token))
+           .andExpect(status().isOk())
+           .andExpect(header().doesNotExist(KeysetPage.NEXT_PAGE_TOKEN_HEADER))
+           .andExpect(jsonPath("$[0].id").value(c.getId().toString()));
+    }
+
+    @Test
+    void listByOwner_invalidToken_returns400() throws Exception {
+        mvc.perform(get("/deposits").param("owner", "alice").param("pageToken", "%%%"))
+           .andExpect(status().isBadRequest())
+           .andExpect(jsonPath("$.error").value("invalid page token"));
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.timedeposit.controller;
+
+import com.example.timedeposit.service.TransferService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * TransferController の Web 層テスト。
+ *
+ * 目的：
+ * - 振替リレーが無効（time-deposit.transfers.enabled が未設定）のときは受け付けずに 503 を返すこと。
+ *
+ * 注意：
+ * - セキュリティフィルタは無効化（DepositControllerTest と同じ方針）。
+ */
+@WebMvcTest(controllers = TransferController.class)
+@AutoConfigureMockMvc(addFilters = false)
+class TransferControllerTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    TransferService service;
+
+    @Test
+    void createFromSavings_returns503_whenRelayIsDisabled() throws Exception {
+        mvc.perform(post("/transfers/deposits/from-savings")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+           .andExpect(status().isServiceUnavailable());
+        verifyNoInteractions(service);
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.timedeposit.service;
+
+import com.example.timedeposit.client.SavingsClient;
+import com.example.timedeposit.model.TimeDeposit;
+import com.example.timedeposit.repository.OwnerSummaryRepository;
+import com.example.timedeposit.repository.TimeDepositRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * MaturitySweepJob のユニットテスト。
+ *
+ * 目的：
+ * - ロックした満期定期を受取額つきで CLOSING にしてから払出先へ入金し、成功分だけ CLOSED（日時つき）にする
+ * - 入金はトランザクションの外（引き受けのトランザクションが終わってから）で行う
+ * - 入金に失敗した定期は CLOSING のまま残し、その回のスイープを打ち切る（引き受けの期限切れ後に再送）
+ * - 引き受けの古い CLOSING は記録済みの受取額のまま再送する
+ * - 払出先に拒否された（4xx）定期は理由を記録して OPEN に戻し、振込先を外す（再送し続けない）
+ * - サービス用トークンが無ければ起動時に失敗する
+ * - Idempotency-Key は定期ごとに固定（sweep:{id}:CLOSE）
+ * - 処理件数・失敗件数がメトリクスに出る
+ * - CLOSED にした分だけ owner ごとの合計から差し引く
+ *
+ * リポジトリ・SavingsClient はモック、トランザクションはモックの TransactionManager で素通しにする。
+ */
+class MaturitySweepJobTest {
+
+    private final OwnerSummaryRepository summaries = mock(OwnerSummaryRepository.class);
+    private final TimeDepositRepository repo = mock(TimeDepositRepository.class);
+    private final PlatformTransactionManager txManager = mock(PlatformTransactionManager.class);
+    private final List<TimeDeposit> stored = new ArrayList<>();
+
+    private static TimeDeposit matured(String principal, UUID payoutTo) {
+        var td = new TimeDeposit();
+        ReflectionTestUtils.setField(td, "id", UUID.randomUUID());
+        ReflectionTestUtils.setField(td, "owner", "alice");
+        ReflectionTestUtils.setField(td, "principal", new BigDecimal(principal));
+        ReflectionTestUtils.setField(td, "annualRate", new BigDecimal("0.10"));
+        ReflectionTestUtils.setField(td, "termDays", 365);
+        ReflectionTestUtils.setField(td, "status", TimeDeposit.Status.OPEN);
+        Instant start = Instant.now().minus(366, ChronoUnit.DAYS);
+        ReflectionTestUtils.setField(td, "startAt", start);
+        ReflectionTestUtils.setField(td, "maturityAt", start.plus(365, ChronoUnit.DAYS));
+        ReflectionTestUtils.setField(td, "payoutAccount", payoutTo);
+        return td;
+    }
+
+    private MaturitySweepJob job(SavingsClient savings, SimpleMeterRegistry meters, int chunkSize) {
+        // 確定（finishClose）は id で行ロックして読み直す
+        when(repo.findAllForUpdate(any())).thenAnswer(inv -> {
+            Collection<UUID> ids = inv.getArgument(0);
+            return stored.stream().filter(td -> ids.contains(td.getId())).toList();
+        });
+        when(savings.canCallAsService()).thenReturn(true);
+        TransactionTemplate tx = new TransactionTemplate(txManager);
+        TimeDepositService deposits = new TimeDepositService(repo, summaries, mock(OwnerDirectory.class),
+                new PayoutEngine(), tx);
+        return new MaturitySweepJob(repo, deposits, new PayoutEngine(), savings, tx, meters, chunkSize, 10, 300, 4, false);
+    }
+
+    private TimeDeposit store(TimeDeposit td) {
+        stored.add(td);
+        return td;
+    }
+
+    @Test
+    void sweep_shouldClaimThenPayOutAndCloseMaturedDeposits() {
+        SavingsClient savings = mock(SavingsClient.class);
+        var meters = new SimpleMeterRegistry();
+        UUID to = UUID.randomUUID();
+        var a = store(matured("1000.00", to));
+        var b = store(matured("2000.00", to));
+        when(repo.lockMaturedForSweep(any(), any(), eq(2))).thenReturn(List.of(a, b), List.of());
+        // 入金の時点で CLOSING（受取額つき）がコミット済みで、トランザクションの外にいること
+        List<TimeDeposit.Status> seen = new ArrayList<>();
+        when(savings.deposit(any(UUID.class), any(BigDecimal.class), anyString())).thenAnswer(inv -> {
+            seen.add(a.getStatus());
+            return Map.of();
+        });
+
+        job(savings, meters, 2).sweep();
+
+        // 単利: 1000 * 1.1 = 1100.00 / 2000 * 1.1 = 2200.00
+        verify(savings).deposit(to, new BigDecimal("1100.00"), "sweep:" + a.getId() + ":CLOSE");
+        verify(savings).deposit(to, new BigDecimal("2200.00"), "sweep:" + b.getId() + ":CLOSE");
+        assertThat(seen).containsOnly(TimeDeposit.Status.CLOSING);
+        var order = inOrder(txManager, savings);
+        order.verify(txManager).commit(any());
+        order.verify(savings, times(2)).deposit(any(UUID.class), any(BigDecimal.class), anyString());
+        order.verify(txManager).commit(any());
+        assertThat(a.getStatus()).isEqualTo(TimeDeposit.Status.CLOSED);
+        assertThat(a.getPayoutAmount()).isEqualTo(new BigDecimal("1100.00"));
+        assertThat(a.getClosedAt()).isNotNull();
+        assertThat(b.getStatus()).isEqualTo(TimeDeposit.Status.CLOSED);
+        verify(summaries).closed(List.of(a, b), List.of(new BigDecimal("1100.00"), new BigDecimal("2200.00")));
+        // 満杯のチャンクの後は次を取りに行き、空なら終わる
+        verify(repo, times(2)).lockMaturedForSweep(any(), any(), eq(2));
+        assertThat(meters.counter("timedeposit.sweep.closed").count()).isEqualTo(2);
+        assertThat(meters.get("timedeposit.sweep.lag").gauge().value()).isZero();
+    }
+
+    @Test
+    void sweep_shouldLeaveFailedPayoutsClosingAndStop() {
+        SavingsClient savings = mock(SavingsClient.class);
+        var meters = new SimpleMeterRegistry();
+        UUID ok = UUID.randomUUID();
+        UUID broken = UUID.randomUUID();
+        var a = store(matured("1000.00", ok));
+        var b = store(matured("1000.00", broken));
+        when(repo.lockMaturedForSweep(any(), any(), eq(2))).thenReturn(List.of(a, b));
+        when(savings.deposit(eq(broken), any(), anyString())).thenThrow(new RuntimeException("savings down"));
+
+        job(savings, meters, 2).sweep();
+
+        assertThat(a.getStatus()).isEqualTo(TimeDeposit.Status.CLOSED);
+        assertThat(b.getStatus()).isEqualTo(TimeDeposit.Status.CLOSING);
+        assertThat(b.getPayoutAmount()).isEqualTo(new BigDecimal("1100.00"));
+        assertThat(b.getClosingAt()).isNotNull();
+        verify(summaries).closed(List.of(a), List.of(new BigDecimal("1100.00")));
+        // 失敗があったチャンクで打ち切る（同じ行を同じ回で取り直さない）
+        verify(repo, times(1)).lockMaturedForSweep(any(), any(), anyInt());
+        assertThat(meters.counter("timedeposit.sweep.failed").count()).isEqualTo(1);
+        assertThat(meters.get("timedeposit.sweep.lag").gauge().value()).isGreaterThan(0);
+    }
+
+    @Test
+    void sweep_shouldResendStaleClaimWithRecordedAmount() {
+        SavingsClient savings = mock(SavingsClient.class);
+        var meters = new SimpleMeterRegistry();
+        UUID to = UUID.randomUUID();
+        var stale = store(matured("1000.00", to));
+        ReflectionTestUtils.setField(stale, "status", TimeDeposit.Status.CLOSING);
+        ReflectionTestUtils.setField(stale, "payoutAmount", new BigDecimal("1099.99"));
+        when(repo.lockMaturedForSweep(any(), any(), eq(2))).thenReturn(List.of(stale));
+
+        job(savings, meters, 2).sweep();
+
+        verify(savings).deposit(to, new BigDecimal("1099.99"), "sweep:" + stale.getId() + ":CLOSE");
+        assertThat(stale.getStatus()).isEqualTo(TimeDeposit.Status.CLOSED);
+        verify(summaries).closed(List.of(stale), List.of(new BigDecimal("1099.99")));
+    }
+
+    @Test
+    void sweep_shouldReopenDepositsWhosePayoutIsRejected() {
+        SavingsClient savings = mock(SavingsClient.class);
+        var meters = new SimpleMeterRegistry();
+        UUID gone = UUID.randomUUID();
+        var a = store(matured("1000.00", gone));
+        when(repo.lockMaturedForSweep(any(), any(), eq(2))).thenReturn(List.of(a));
+        when(repo.findForUpdate(a.getId())).thenReturn(Optional.of(a));
+        when(savings.deposit(eq(gone), any(), anyString())).thenThrow(
+                HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", HttpHeaders.EMPTY, new byte[0], null));
+
+        job(savings, meters, 2).sweep();
+
+        assertThat(a.getStatus()).isEqualTo(TimeDeposit.Status.OPEN);
+        assertThat(a.getPayoutAccount()).isNull();
+        assertThat(a.getPayoutAmount()).isNull();
+        assertThat(a.getPayoutError()).contains("404");
+        // 次の引き受けは別のキーで払う（拒否された払い出しとは別物）
+        assertThat(a.payoutKey()).isEqualTo("sweep:" + a.getId() + ":CLOSE:1");
+        verify(summaries, never()).closed(any(), any());
+        assertThat(meters.counter("timedeposit.sweep.failed").count()).isEqualTo(1);
+    }
+
+    @Test
+    void constructor_shouldFailWithoutServiceCredentials() {
+        SavingsClient savings = mock(SavingsClient.class);
+        TransactionTemplate tx = new TransactionTemplate(txManager);
+        TimeDepositService deposits = new TimeDepositService(repo, summaries, mock(OwnerDirectory.class), new PayoutEngine(), tx);
+        assertThatThrownBy(() -> new MaturitySweepJob(repo, deposits, new PayoutEngine(), savings, tx,
+                new SimpleMeterRegistry(), 2, 10, 300, 4, false))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("savings.service-token");
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.timedeposit.service;
+
+import com.example.timedeposit.model.TimeDeposit;
+import com.example.timedeposit.repository.OwnerSummaryRepository;
+import com.example.timedeposit.repository.TimeDepositRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * OwnerSummaryReconciler のユニットテスト。
+ *
+ * 目的：
+ * - ずれた owner だけを、行ロックしてから未解約（OPEN / CLOSING）の定期で数え直して上書きする
+ * - 受取額は PayoutEngine で計算し直す
+ * - ずれが無ければ何も書かない
+ */
+class OwnerSummaryReconcilerTest {
+
+    private final OwnerSummaryRepository summaries = mock(OwnerSummaryRepository.class);
+    private final TimeDepositRepository deposits = mock(TimeDepositRepository.class);
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final OwnerSummaryReconciler reconciler = new OwnerSummaryReconciler(summaries, deposits, new PayoutEngine(),
+            new TransactionTemplate(mock(PlatformTransactionManager.class)), meters, 100);
+
+    private static TimeDeposit deposit(String principal, TimeDeposit.Status status) {
+        var td = new TimeDeposit();
+        ReflectionTestUtils.setField(td, "id", UUID.randomUUID());
+        ReflectionTestUtils.setField(td, "owner", "alice");
+        ReflectionTestUtils.setField(td, "principal", new BigDecimal(principal));
+        ReflectionTestUtils.setField(td, "annualRate", new BigDecimal("0.10"));
+        ReflectionTestUtils.setField(td, "termDays", 365);
+        ReflectionTestUtils.setField(td, "status", status);
+        return td;
+    }
+
+    @Test
+    void reconcile_shouldRecountDriftedOwnersUnderLock() {
+        when(summaries.driftedOwners(100)).thenReturn(List.of("alice"));
+        when(deposits.findByOwner("alice")).thenReturn(List.of(
+                deposit("1000.00", TimeDeposit.Status.OPEN),
+                deposit("500.00", TimeDeposit.Status.CLOSING),
+                deposit("9999.00", TimeDeposit.Status.CLOSED)));
+
+        assertThat(reconciler.reconcile()).isEqualTo(1);
+
+        InOrder order = inOrder(summaries, deposits);
+        order.verify(summaries).lock("alice");
+        order.verify(deposits).findByOwner("alice");
+        // 1000 * 1.1 + 500 * 1.1
+        order.verify(summaries).overwrite("alice", 2, new BigDecimal("1500.00"), new BigDecimal("1650.00"));
+        assertThat(meters.counter("timedeposit.summary.reconciled").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void reconcile_shouldDoNothingWithoutDrift() {
+        when(summaries.driftedOwners(anyInt())).thenReturn(List.of());
+
+        assertThat(reconciler.reconcile()).isZero();
+
+        verify(summaries, never()).lock(any());
+        verify(summaries, never()).overwrite(any(), anyInt(), any(), any());
+        verifyNoInteractions(deposits);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.timedeposit.service;
+
+import com.example.timedeposit.model.TimeDeposit;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * PayoutEngine のユニットテスト。
+ *
+ * 目的：
+ * - 固定小数点（long）の計算結果が、従来の BigDecimal 実装とビット単位で一致すること
+ *   （値だけでなく scale も含めて equals で比較する）
+ * - HALF_UP の境界（ちょうど 0.5 銭）と、long に収まらない入力のフォールバック
+ * - 一括計算が入力順で単件計算と同じ結果を返すこと
+ */
+class PayoutEngineTest {
+
+    /** 置き換え前の TimeDepositService.calculatePayout と同じ式 */
+    private static BigDecimal reference(TimeDeposit td) {
+        BigDecimal days = new BigDecimal(td.getTermDays());
+        BigDecimal factor = BigDecimal.ONE.add(td.getAnnualRate().multiply(days).divide(new BigDecimal("365"), MathContext.DECIMAL64));
+        return td.getPrincipal().multiply(factor).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static TimeDeposit td(String principal, String rate, int days) {
+        return td(new BigDecimal(principal), new BigDecimal(rate), days);
+    }
+
+    private static TimeDeposit td(BigDecimal principal, BigDecimal rate, int days) {
+        var td = new TimeDeposit();
+        ReflectionTestUtils.setField(td, "principal", principal);
+        ReflectionTestUtils.setField(td, "annualRate", rate);
+        ReflectionTestUtils.setField(td, "termDays", days);
+        return td;
+    }
+
+    @Test
+    void shouldMatchBigDecimalImplementationExactly() {
+        PayoutEngine engine = new PayoutEngine();
+        Random rnd = new Random(42);
+        int[] terms = {1, 7, 30, 90, 180, 365, 730, 1825, 3650};
+        for (int i = 0; i < 200_000; i++) {
+            // 利率は numeric(9,6) 相当、元本は numeric(19,2) の範囲から桁数もばらつかせる
+            BigDecimal rate = BigDecimal.valueOf(rnd.nextInt(200_000), 6);
+            long cents = switch (i % 4) {
+                case 0 -> rnd.nextInt(100_000);
+                case 1 -> rnd.nextLong(10_000_000_000L);
+                case 2 -> rnd.nextLong(1_000_000_000_000_000L);
+                default -> Long.MAX_VALUE - rnd.nextInt(1000);
+            };
+            int days = i % 3 == 0 ? terms[rnd.nextInt(terms.length)] : 1 + rnd.nextInt(3650);
+            TimeDeposit t = td(BigDecimal.valueOf(cents, 2), rate, days);
+            assertThat(engine.calculatePayout(t)).as("%s / %s / %d", t.getPrincipal(), rate, days).isEqualTo(reference(t));
+        }
+    }
+
+    @Test
+    void shouldRoundHalfUpAtBoundary() {
+        PayoutEngine engine = new PayoutEngine();
+        // 0.05 * 73/365 = 0.01 → 0.25 * 1.01 = 0.2525 → 0.25、0.50 * 1.01 = 0.505 → 0.51
+        assertThat(engine.calculatePayout(td("0.25", "0.05", 73))).isEqualTo(new BigDecimal("0.25"));
+        assertThat(engine.calculatePayout(td("0.50", "0.05", 73))).isEqualTo(new BigDecimal("0.51"));
+        // 固定小数点の経路そのもの（フォールバックに逃げていないこと）: 50 * 1.01 = 50.5 → 51
+        assertThat(PayoutEngine.mulDivHalfUp(50, 101, 2)).isEqualTo(51);
+        assertThat(PayoutEngine.mulDivHalfUp(Long.MAX_VALUE / 2, 1_004_109_589_041_095_890L, 18)).isPositive();
+        assertThat(PayoutEngine.mulDivHalfUp(Long.MAX_VALUE, 2_000_000_000_000_000_000L, 18)).isEqualTo(-1);
+    }
+
+    @Test
+    void shouldFallBackForInputsOutsideLongRange() {
+        PayoutEngine engine = new PayoutEngine();
+        // 係数の桁が深い（極小の利率）、元本の scale が 2 を超える／負の scale、元本が 16 桁超
+        List<TimeDeposit> odd = List.of(
+                td("1234.56", "0.000001", 1),
+                td("100.005", "0.05", 30),
+                td(new BigDecimal("1E+3"), new BigDecimal("0.05"), 30),
+                td("99999999999999999.99", "0.199999", 3650),
+                td("1000", "0", 30));
+        for (TimeDeposit t : odd) {
+            assertThat(engine.calculatePayout(t)).isEqualTo(reference(t));
+        }
+    }
+
+    @Test
+    void calculatePayouts_shouldReturnResultsInInputOrder() {
+        PayoutEngine engine = new PayoutEngine();
+        List<TimeDeposit> batch = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            batch.add(td(BigDecimal.valueOf(100_000L * (i + 1), 2), new BigDecimal(i % 2 == 0 ? "0.015000" : "0.020000"), i < 25 ? 90 : 365));
+        }
+        List<BigDecimal> out = engine.calculatePayouts(batch);
+        assertThat(out).hasSize(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            assertThat(out.get(i)).isEqualTo(reference(batch.get(i)));
+        }
+    }
+}
@@ -2,17 +2,29 @@ package com.example.timedeposit.service;
 
 import com.example.timedeposit.client.SavingsClient;
 import com.example.timedeposit.model.TimeDeposit;
+import com.example.timedeposit.repository.OwnerSummaryRepository;
 import com.example.timedeposit.repository.TimeDepositRepository;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.HttpClientErrorException;
 
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 /**
@@ -21,7 +33,10 @@ import static org.mockito.Mockito.*;
  * 目的：
  * - create() の入力バリデーションと金額の丸め（HALF_UP）を確認
  * - close() の成熟前/二重クローズのエラーを確認
- * - closeAndTransfer() での計算（単利）・状態遷移・下流 deposit 呼び出し
+ * - closeAndTransfer() での計算（単利）・状態遷移・下流 deposit 呼び出し（利用者の認証のまま、引き受けごとに固定のキーで）
+ * - closeAndTransfer() は行ロックで CLOSING を引き受けてから払い出す。他の解約が引き受け済みなら払わない
+ * - 払出先に拒否された（4xx）ら OPEN に戻して理由を記録し、別の口座で解約し直せる。5xx は CLOSING のまま
+ * - create() / close 系で owner ごとの合計を加減算する
  * - closeAndTransfer() の冪等性（CLOSED 済みなら下流呼び出しなし）
  *
  * リポジトリはモック化し、サービス単体の振る舞いに集中する。
@@ -32,6 +47,10 @@ class TimeDepositServiceTest {
         return mock(TimeDepositRepository.class);
     }
 
+    private static TransactionTemplate tx() {
+        return new TransactionTemplate(mock(PlatformTransactionManager.class));
+    }
+
     /**
      * テスト用の TimeDeposit を作成するヘルパー。
      * 満期判定や Map.of を安全にするため、必要フィールドを埋める。
@@ -56,7 +75,8 @@ class TimeDepositServiceTest {
     @Test
     void create_shouldValidateAndRound() {
         TimeDepositRepository repo = repoMock();
-        TimeDepositService service = new TimeDepositService(repo);
+        OwnerSummaryRepository summaries = mock(OwnerSummaryRepository.class);
+        TimeDepositService service = new TimeDepositService(repo, summaries, mock(OwnerDirectory.class), new PayoutEngine(), tx());
 
         // save の戻り値は引数そのまま返す簡易スタブ（ID 採番の有無は本テストでは不要）
         when(repo.save(any())).thenAnswer(inv -> inv.getArgument(0));
@@ -65,6 +85,8 @@ class TimeDepositServiceTest {
         assertThat(saved.getPrincipal()).isEqualTo(new BigDecimal("100.01")); // HALF_UP
         assertThat(saved.getAnnualRate()).isEqualTo(new BigDecimal("0.05"));
         assertThat(saved.getTermDays()).isEqualTo(30);
+        // owner の合計に元本と満期受取額（100.01 * (1 + 0.05 * 30/365) = 100.42）を加算
+        verify(summaries).opened(saved, new BigDecimal("100.42"));
     }
 
     /**
@@ -72,7 +94,7 @@ class TimeDepositServiceTest {
      */
     @Test
     void create_shouldRejectInvalid() {
-        TimeDepositService service = new TimeDepositService(repoMock());
+        TimeDepositService service = new TimeDepositService(repoMock(), mock(OwnerSummaryRepository.class), mock(OwnerDirectory.class), new PayoutEngine(), tx());
         assertThatThrownBy(() -> service.create("a", new BigDecimal("0.00"), BigDecimal.ZERO, 10))
                 .isInstanceOf(IllegalArgumentException.class);
         assertThatThrownBy(() -> service.create("a", new BigDecimal("1"), new BigDecimal("-0.01"), 10))
@@ -87,11 +109,11 @@ class TimeDepositServiceTest {
     @Test
     void close_shouldFailIfNotMaturedOrAlreadyClosed() {
         TimeDepositRepository repo = repoMock();
-        TimeDepositService service = new TimeDepositService(repo);
+        TimeDepositService service = new TimeDepositService(repo, mock(OwnerSummaryRepository.class), mock(OwnerDirectory.class), new PayoutEngine(), tx());
 
         var id = UUID.randomUUID();
         var td = tdNew("alice", "1000.00", "0.05", 10);
-        when(repo.findById(id)).thenReturn(Optional.of(td));
+        when(repo.findForUpdate(id)).thenReturn(Optional.of(td));
 
         // 満期前は IllegalStateException
         assertThatThrownBy(() -> service.close(id, td.getStartAt().plus(1, ChronoUnit.DAYS)))
@@ -104,33 +126,90 @@ class TimeDepositServiceTest {
     }
 
     /**
-     * closeAndTransfer(): 満期後に deposit が呼ばれ、:CLOSE キーが付与される。
-     * 状態が CLOSED になり、支払額・口座・日時がセットされる。
+     * closeAndTransfer(): 満期後に CLOSING を引き受けてから deposit が呼ばれる。
+     * キーは引き受けごとに固定（スイープと同じ形）で、呼び出し元の利用者の認証のまま送る。
+     * 状態が CLOSED になり、支払額・口座・日時がセットされ、owner の合計から 1 回だけ差し引く。
      */
     @Test
-    void closeAndTransfer_shouldDepositThenFinalize_withIdempotencyKey() {
+    void closeAndTransfer_shouldClaimThenDepositThenFinalize() {
         TimeDepositRepository repo = repoMock();
-        TimeDepositService service = new TimeDepositService(repo);
+        OwnerSummaryRepository summaries = mock(OwnerSummaryRepository.class);
+        TimeDepositService service = new TimeDepositService(repo, summaries, mock(OwnerDirectory.class), new PayoutEngine(), tx());
 
         var id = UUID.randomUUID();
         var to = UUID.randomUUID();
         var td = tdNew("alice", "1000.00", "0.10", 365);
-        when(repo.findById(id)).thenReturn(Optional.of(td));
+        ReflectionTestUtils.setField(td, "id", id);
+        when(repo.findForUpdate(id)).thenReturn(Optional.of(td));
+        when(repo.findAllForUpdate(List.of(id))).thenReturn(List.of(td));
 
         SavingsClient savings = mock(SavingsClient.class);
+        List<Object> seen = new ArrayList<>();
+        when(savings.deposit(any(UUID.class), any(BigDecimal.class), anyString())).thenAnswer(inv -> {
+            seen.add(td.getStatus());
+            seen.add(SecurityContextHolder.getContext().getAuthentication());
+            return Map.of();
+        });
+        SecurityContextHolder.getContext().setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated("alice", null, List.of()));
+        try {
+            var payout = service.closeAndTransfer(id, to, td.getMaturityAt(), savings);
+            // 単利: 1000 * (1 + 0.1 * 365/365) = 1100.00
+            assertThat(payout).isEqualTo(new BigDecimal("1100.00"));
+            assertThat(SecurityContextHolder.getContext().getAuthentication().getName()).isEqualTo("alice");
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
 
-        var payout = service.closeAndTransfer(id, to, td.getMaturityAt(), savings, "IDEMPOTENT-KEY");
-        // 単利: 1000 * (1 + 0.1 * 365/365) = 1100.00
-        assertThat(payout).isEqualTo(new BigDecimal("1100.00"));
-
-        // 下流呼び出しは :CLOSE キー付き
-        verify(savings).deposit(eq(to), eq(new BigDecimal("1100.00")), eq("IDEMPOTENT-KEY:CLOSE"));
+        verify(savings).deposit(eq(to), eq(new BigDecimal("1100.00")), eq("sweep:" + id + ":CLOSE"));
+        // 入金時は CLOSING で、利用者の認証のまま（引き受けた利用者も記録する）
+        assertThat(seen).hasSize(2).first().isEqualTo(TimeDeposit.Status.CLOSING);
+        assertThat(((org.springframework.security.core.Authentication) seen.get(1)).getName()).isEqualTo("alice");
+        assertThat(td.getClosingBy()).isEqualTo("alice");
 
         // 状態遷移と出力フィールド
         assertThat(td.getStatus()).isEqualTo(TimeDeposit.Status.CLOSED);
         assertThat(td.getPayoutAmount()).isEqualByComparingTo("1100.00");
         assertThat(td.getPayoutAccount()).isEqualTo(to);
         assertThat(td.getClosedAt()).isNotNull();
+        verify(summaries).closed(List.of(td), List.of(new BigDecimal("1100.00")));
+    }
+
+    /**
+     * closeAndTransfer(): 他の解約（スイープ）が別の口座への払い出しを引き受け済みなら払わない。
+     */
+    @Test
+    void closeAndTransfer_shouldNotPay_whenAnotherCloseClaimedIt() {
+        TimeDepositRepository repo = repoMock();
+        TimeDepositService service = new TimeDepositService(repo, mock(OwnerSummaryRepository.class), mock(OwnerDirectory.class), new PayoutEngine(), tx());
+
+        var id = UUID.randomUUID();
+        var td = tdNew("alice", "1000.00", "0.10", 365);
+        ReflectionTestUtils.setField(td, "status", TimeDeposit.Status.CLOSING);
+        ReflectionTestUtils.setField(td, "payoutAccount", UUID.randomUUID());
+        when(repo.findForUpdate(id)).thenReturn(Optional.of(td));
+
+        SavingsClient savings = mock(SavingsClient.class);
+        assertThatThrownBy(() -> service.closeAndTransfer(id, UUID.randomUUID(), td.getMaturityAt(), savings))
+                .isInstanceOf(IllegalStateException.class);
+        verifyNoInteractions(savings);
+    }
+
+    /**
+     * finishClose(): CLOSING のものだけを CLOSED にする（既に確定済みなら合計から引き直さない）。
+     */
+    @Test
+    void finishClose_shouldOnlyCloseClaimedDeposits() {
+        TimeDepositRepository repo = repoMock();
+        OwnerSummaryRepository summaries = mock(OwnerSummaryRepository.class);
+        TimeDepositService service = new TimeDepositService(repo, summaries, mock(OwnerDirectory.class), new PayoutEngine(), tx());
+
+        var td = tdNew("alice", "1000.00", "0.10", 365);
+        ReflectionTestUtils.setField(td, "status", TimeDeposit.Status.CLOSED);
+        when(repo.findAllForUpdate(List.of(td.getId()))).thenReturn(List.of(td));
+
+        assertThat(service.finishClose(List.of(td.getId()), Instant.now())).isEmpty();
+        verify(summaries).closed(List.of(), List.of());
     }
 
     /**
@@ -139,19 +218,74 @@ class TimeDepositServiceTest {
     @Test
     void closeAndTransfer_shouldBeIdempotentWhenAlreadyClosed() {
         TimeDepositRepository repo = repoMock();
-        TimeDepositService service = new TimeDepositService(repo);
+        TimeDepositService service = new TimeDepositService(repo, mock(OwnerSummaryRepository.class), mock(OwnerDirectory.class), new PayoutEngine(), tx());
 
         var id = UUID.randomUUID();
         var to = UUID.randomUUID();
         var td = tdNew("alice", "1000.00", "0.10", 365);
         ReflectionTestUtils.setField(td, "status", TimeDeposit.Status.CLOSED);
         ReflectionTestUtils.setField(td, "payoutAmount", new BigDecimal("1100.00"));
-        when(repo.findById(id)).thenReturn(Optional.of(td));
+        when(repo.findForUpdate(id)).thenReturn(Optional.of(td));
 
         SavingsClient savings = mock(SavingsClient.class);
 
-        var payout = service.closeAndTransfer(id, to, Instant.now(), savings, "K");
+        var payout = service.closeAndTransfer(id, to, Instant.now(), savings);
         assertThat(payout).isEqualByComparingTo("1100.00");
         verifyNoInteractions(savings); // 冪等：下流を呼ばない
     }
+
+    /**
+     * closeAndTransfer(): 払出先が拒否（404）したら OPEN に戻して理由を記録し、例外はそのまま返す。
+     * その後は別の口座で解約し直せ、新しい引き受けは別のキーで払う。
+     */
+    @Test
+    void closeAndTransfer_shouldReopenOnRejectedPayout_andAllowAnotherAccount() {
+        TimeDepositRepository repo = repoMock();
+        OwnerSummaryRepository summaries = mock(OwnerSummaryRepository.class);
+        TimeDepositService service = new TimeDepositService(repo, summaries, mock(OwnerDirectory.class), new PayoutEngine(), tx());
+
+        var td = tdNew("alice", "1000.00", "0.10", 365);
+        var id = td.getId();
+        var gone = UUID.randomUUID();
+        var other = UUID.randomUUID();
+        when(repo.findForUpdate(id)).thenReturn(Optional.of(td));
+        when(repo.findAllForUpdate(List.of(id))).thenReturn(List.of(td));
+        SavingsClient savings = mock(SavingsClient.class);
+        when(savings.deposit(eq(gone), any(), anyString())).thenThrow(
+                HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", HttpHeaders.EMPTY, new byte[0], null));
+
+        assertThatThrownBy(() -> service.closeAndTransfer(id, gone, td.getMaturityAt(), savings))
+                .isInstanceOf(HttpClientErrorException.class);
+        assertThat(td.getStatus()).isEqualTo(TimeDeposit.Status.OPEN);
+        assertThat(td.getPayoutAccount()).isNull();
+        assertThat(td.getPayoutError()).contains("404");
+
+        assertThat(service.closeAndTransfer(id, other, td.getMaturityAt(), savings)).isEqualByComparingTo("1100.00");
+        verify(savings).deposit(other, new BigDecimal("1100.00"), "sweep:" + id + ":CLOSE:1");
+        assertThat(td.getStatus()).isEqualTo(TimeDeposit.Status.CLOSED);
+        assertThat(td.getPayoutError()).isNull();
+        verify(summaries, times(1)).closed(List.of(td), List.of(new BigDecimal("1100.00")));
+    }
+
+    /**
+     * closeAndTransfer(): 一時的な失敗（5xx・409）は CLOSING のまま残し、同じ振込先への再送で続きを行う。
+     */
+    @Test
+    void closeAndTransfer_shouldKeepClosingOnTransientFailure() {
+        TimeDepositRepository repo = repoMock();
+        TimeDepositService service = new TimeDepositService(repo, mock(OwnerSummaryRepository.class), mock(OwnerDirectory.class), new PayoutEngine(), tx());
+
+        var td = tdNew("alice", "1000.00", "0.10", 365);
+        var to = UUID.randomUUID();
+        when(repo.findForUpdate(td.getId())).thenReturn(Optional.of(td));
+        SavingsClient savings = mock(SavingsClient.class);
+        when(savings.deposit(any(UUID.class), any(BigDecimal.class), anyString())).thenThrow(
+                HttpClientErrorException.create(HttpStatus.CONFLICT, "Conflict", HttpHeaders.EMPTY, new byte[0], null));
+
+        assertThatThrownBy(() -> service.closeAndTransfer(td.getId(), to, td.getMaturityAt(), savings))
+                .isInstanceOf(HttpClientErrorException.class);
+        assertThat(td.getStatus()).isEqualTo(TimeDeposit.Status.CLOSING);
+        assertThat(td.getPayoutAccount()).isEqualTo(to);
+        assertThat(td.getPayoutError()).isNull();
+    }
 }
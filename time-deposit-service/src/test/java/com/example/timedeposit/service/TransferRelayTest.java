@@ -0,0 +1,258 @@
+package com.example.timedeposit.service;
+
+import com.example.timedeposit.client.SavingsClient;
+import com.example.timedeposit.client.ServiceTokenProvider;
+import com.example.timedeposit.model.TimeDeposit;
+import com.example.timedeposit.model.Transfer;
+import com.example.timedeposit.repository.TransferRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestClient;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * TransferRelay のユニットテスト。
+ *
+ * 目的：
+ * - 正常系：withdraw(:WD) → 定期作成 → COMPLETED（補償 deposit は無し）
+ * - 異常系：定期作成が失敗 → 補償 deposit(:CP) → FAILED（原因を残す）
+ * - 出金が 4xx（残高不足など）→ 何も戻さず FAILED
+ * - 出金が 5xx・通信エラー → PENDING のまま attempts を増やして後で再試行
+ * - Idempotency-Key が無い振替は振替 ID をキーにする
+ * - SecurityContext の無いリレーから、申込者の代わり（サービス用トークン + X-On-Behalf-Of）で出金されること
+ * - 代わりに呼ぶ手段（サービス用トークン・署名鍵）が無ければ起動時に失敗すること
+ * - 他ノードが先に書き込んでいたら（@Version の競合）定期作成を巻き戻し、補償もしないこと
+ *
+ * SavingsClient と TimeDepositService はモック、トランザクションはモックの TransactionManager で素通しにする。
+ */
+class TransferRelayTest {
+
+    private final TransferRepository repo = mock(TransferRepository.class);
+    private final TimeDepositService tdService = mock(TimeDepositService.class);
+    private final SavingsClient savings = delegatingSavings();
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final TransferRelay relay = new TransferRelay(repo, tdService, savings,
+            new TransactionTemplate(mock(PlatformTransactionManager.class)), meters, new SyncTaskExecutor(), false,
+            50, 60, 500, 300_000);
+
+    private static SavingsClient delegatingSavings() {
+        SavingsClient savings = mock(SavingsClient.class);
+        when(savings.canActOnBehalfOfUsers()).thenReturn(true);
+        return savings;
+    }
+
+    @BeforeEach
+    void saveReturnsTheRow() {
+        when(repo.save(any(Transfer.class))).thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    private static Transfer pending(String key) {
+        Transfer t = Transfer.of("alice", UUID.randomUUID(), new BigDecimal("100.00"), new BigDecimal("0.05"), 30, key,
+                "alice-sub", "read,user", null);
+        ReflectionTestUtils.setField(t, "id", UUID.randomUUID());
+        ReflectionTestUtils.setField(t, "nextAttemptAt", Instant.now());
+        return t;
+    }
+
+    @Test
+    void advance_shouldWithdrawThenCreate_andComplete() {
+        Transfer t = pending("IDEMPOTENT");
+        TimeDeposit td = new TimeDeposit();
+        UUID tdId = UUID.randomUUID();
+        ReflectionTestUtils.setField(td, "id", tdId);
+        when(tdService.create(eq("alice"), any(), any(), eq(30), eq(t.getFromAccountId()))).thenReturn(td);
+
+        relay.advance(t);
+
+        assertThat(t.getStatus()).isEqualTo(Transfer.Status.COMPLETED);
+        assertThat(t.getTimeDepositId()).isEqualTo(tdId);
+        verify(savings).withdraw(eq(t.getFromAccountId()), eq(new BigDecimal("100.00")), eq("IDEMPOTENT:WD"));
+        verify(savings, never()).deposit(any(UUID.class), any(BigDecimal.class), anyString());
+        assertThat(meters.counter("timedeposit.transfers.completed").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void advance_shouldCompensateDeposit_whenCreateFails() {
+        Transfer t = pending("KEY");
+        when(tdService.create(any(), any(), any(), anyInt(), any())).thenThrow(new RuntimeException("create failed"));
+
+        relay.advance(t);
+
+        assertThat(t.getStatus()).isEqualTo(Transfer.Status.FAILED);
+        assertThat(t.getLastError()).contains("create failed");
+        assertThat(t.getTimeDepositId()).isNull();
+        verify(savings).withdraw(eq(t.getFromAccountId()), eq(new BigDecimal("100.00")), eq("KEY:WD"));
+        verify(savings).deposit(eq(t.getFromAccountId()), eq(new BigDecimal("100.00")), eq("KEY:CP"));
+    }
+
+    @Test
+    void advance_shouldFailWithoutCompensation_whenWithdrawRejected() {
+        Transfer t = pending(null);
+        when(savings.withdraw(any(UUID.class), any(BigDecimal.class), anyString()))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "Bad Request", null,
+                        "{\"error\":\"insufficient funds\"}".getBytes(), null));
+
+        relay.advance(t);
+
+        assertThat(t.getStatus()).isEqualTo(Transfer.Status.FAILED);
+        assertThat(t.getLastError()).contains("insufficient funds");
+        // キー無しの振替は振替 ID をキーにする
+        verify(savings).withdraw(any(UUID.class), any(BigDecimal.class), eq(t.getId() + ":WD"));
+        verify(savings, never()).deposit(any(UUID.class), any(BigDecimal.class), anyString());
+        verifyNoInteractions(tdService);
+    }
+
+    @Test
+    void advance_shouldRetryLater_whenWithdrawFailsTransiently() {
+        Transfer t = pending("KEY");
+        when(savings.withdraw(any(UUID.class), any(BigDecimal.class), anyString()))
+                .thenThrow(HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "Unavailable", null, null, null));
+
+        Instant before = Instant.now();
+        relay.advance(t);
+
+        assertThat(t.getStatus()).isEqualTo(Transfer.Status.PENDING);
+        assertThat(t.getAttempts()).isEqualTo(1);
+        assertThat(t.getNextAttemptAt()).isAfterOrEqualTo(before.plusMillis(500));
+        verify(repo).save(t);
+        verifyNoInteractions(tdService);
+    }
+
+    @Test
+    void claim_shouldLeaseLockedRows() {
+        Transfer t = pending("KEY");
+        Instant now = Instant.now();
+        when(repo.lockDue(now, 50)).thenReturn(List.of(t));
+
+        assertThat(relay.claim(now)).containsExactly(t);
+        assertThat(t.getNextAttemptAt()).isEqualTo(now.plusSeconds(60));
+    }
+
+    @Test
+    void relay_shouldAdvanceClaimedTransfersOnVirtualThreads() {
+        TransferRelay virtual = new TransferRelay(repo, tdService, savings,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), meters, new SyncTaskExecutor(), true,
+                50, 60, 500, 300_000);
+        List<Transfer> due = List.of(pending("A"), pending("B"), pending("C"));
+        when(repo.lockDue(any(), eq(50))).thenReturn(due);
+        when(tdService.create(any(), any(), any(), anyInt(), any())).thenAnswer(inv -> {
+            TimeDeposit td = new TimeDeposit();
+            ReflectionTestUtils.setField(td, "id", UUID.randomUUID());
+            return td;
+        });
+        List<Boolean> onVirtual = Collections.synchronizedList(new ArrayList<>());
+        when(savings.withdraw(any(UUID.class), any(BigDecimal.class), anyString())).thenAnswer(inv -> {
+            onVirtual.add(Thread.currentThread().isVirtual());
+            return Map.of();
+        });
+
+        virtual.relay();
+
+        assertThat(due).allSatisfy(t -> assertThat(t.getStatus()).isEqualTo(Transfer.Status.COMPLETED));
+        assertThat(onVirtual).hasSize(3).containsOnly(true);
+    }
+
+    @Test
+    void advance_shouldCallSavingsAsSubmitter_andRestoreContext() {
+        Transfer t = pending("KEY");
+        when(tdService.create(any(), any(), any(), anyInt(), any())).thenReturn(new TimeDeposit());
+        List<Authentication> seen = new ArrayList<>();
+        when(savings.withdraw(any(UUID.class), any(BigDecimal.class), anyString())).thenAnswer(inv -> {
+            seen.add(SecurityContextHolder.getContext().getAuthentication());
+            return Map.of();
+        });
+
+        relay.advance(t);
+
+        assertThat(seen).hasSize(1);
+        assertThat(seen.get(0).getName()).isEqualTo("alice-sub");
+        assertThat(seen.get(0).getAuthorities()).extracting(Object::toString)
+                .containsExactlyInAnyOrder("ROLE_read", "ROLE_user");
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+    }
+
+    @Test
+    void relayWithoutSecurityContext_withdrawsOnBehalfOfSubmitter() throws Exception {
+        try (MockWebServer server = new MockWebServer()) {
+            server.enqueue(new MockResponse().setResponseCode(200).setBody("{}")
+                    .setHeader("Content-Type", MediaType.APPLICATION_JSON_VALUE));
+            SavingsClient client = new SavingsClient(RestClient.builder(), server.url("/").toString(),
+                    ServiceTokenProvider.fixed("svc-token"), SavingsClient.AuthMode.PROPAGATE, "obo-secret", null);
+            TransferRelay real = new TransferRelay(repo, tdService, client,
+                    new TransactionTemplate(mock(PlatformTransactionManager.class)), meters, new SyncTaskExecutor(), false,
+                    50, 60, 500, 300_000);
+            when(tdService.create(any(), any(), any(), anyInt(), any())).thenReturn(new TimeDeposit());
+            Transfer t = pending("KEY");
+            SecurityContextHolder.clearContext();
+
+            real.advance(t);
+
+            RecordedRequest withdraw = server.takeRequest();
+            assertThat(withdraw.getPath()).isEqualTo("/accounts/" + t.getFromAccountId() + "/withdraw");
+            assertThat(withdraw.getHeader("Authorization")).isEqualTo("Bearer svc-token");
+            assertThat(withdraw.getHeader(SavingsClient.ON_BEHALF_OF)).isEqualTo("alice-sub");
+            assertThat(withdraw.getHeader(SavingsClient.ON_BEHALF_OF_ROLES)).isEqualTo("read,user");
+            assertThat(t.getStatus()).isEqualTo(Transfer.Status.COMPLETED);
+        }
+    }
+
+    @Test
+    void constructor_shouldFail_whenRelayCannotActOnBehalfOfUsers() {
+        SavingsClient noCredentials = new SavingsClient(RestClient.builder(), "http://savings");
+
+        assertThatThrownBy(() -> new TransferRelay(repo, tdService, noCredentials,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), meters, new SyncTaskExecutor(), false,
+                50, 60, 500, 300_000))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("on-behalf-of-secret");
+    }
+
+    @Test
+    void advance_shouldNotCompensate_whenAnotherRelayAdvancedTheTransfer() {
+        Transfer t = pending("KEY");
+        when(tdService.create(any(), any(), any(), anyInt(), any())).thenReturn(new TimeDeposit());
+        when(repo.save(t))
+                .thenReturn(t)  // PENDING → WITHDRAWN
+                .thenThrow(new ObjectOptimisticLockingFailureException(Transfer.class, t.getId()));
+
+        relay.advance(t);
+
+        verify(savings, never()).deposit(any(UUID.class), any(BigDecimal.class), anyString());
+        assertThat(t.getStatus()).isNotEqualTo(Transfer.Status.COMPENSATING);
+        assertThat(meters.counter("timedeposit.transfers.completed").count()).isZero();
+    }
+
+    @Test
+    void backoff_shouldDoubleUpToMax() {
+        assertThat(relay.backoff(1)).isEqualTo(Duration.ofMillis(500));
+        assertThat(relay.backoff(3)).isEqualTo(Duration.ofMillis(2000));
+        assertThat(relay.backoff(30)).isEqualTo(Duration.ofMillis(300_000));
+    }
+}
@@ -2,11 +2,22 @@ package com.example.timedeposit.service;
 
 import com.example.timedeposit.api.TransferRequest;
 import com.example.timedeposit.client.SavingsClient;
-import com.example.timedeposit.model.TimeDeposit;
+import com.example.timedeposit.model.Transfer;
+import com.example.timedeposit.repository.TransferRepository;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.*;
@@ -14,127 +25,137 @@ import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 /**
- * TransferService のユニットテスト。
+ * TransferService（受付）のユニットテスト。
  *
  * 目的：
- * - 正常系：Idempotency-Key あり → withdraw(:WD) → create 成功 → deposit 補償は無し
- * - 異常系：create が失敗 → withdraw 後に補償 deposit(:CP) → 例外再送出
- * - 互換系：Idempotency-Key 無し → 2引数 withdraw が使われる（ヘッダ無し）
- *
- * SavingsClient と TimeDepositService をモックし、オーケストレーションの分岐と
- * キーサフィックス付与の正しさを検証する。
+ * - 受付は出金元口座の名義を確かめて PENDING の行を 1 件保存するだけ（出金はしない）。申込者の sub とロールを残す
+ * - 出金元口座の名義が定期の owner と違えば AccessDeniedException（403）
+ * - 同じ申込者・同じ Idempotency-Key の再送は既存の行を返し、新しい振替を作らない。内容が違えば 422
+ * - 同じキーの同時受付で一意制約に負けたら、勝った側の行を返す
+ * - 照会は申込者本人だけ
+ * - 入力不正は IllegalArgumentException（400）
  */
 class TransferServiceTest {
 
-    /**
-     * 正常系（Idempotency-Key あり）：
-     * - withdraw は 3引数で :WD が付与される
-     * - create 成功なら deposit 補償は呼ばれない
-     * - 戻り値は作成された TimeDeposit の ID
-     */
+    private static final Authentication ALICE = UsernamePasswordAuthenticationToken.authenticated("alice-sub", null,
+            List.of(new SimpleGrantedAuthority("ROLE_user"), new SimpleGrantedAuthority("ROLE_read"),
+                    new SimpleGrantedAuthority("SCOPE_profile")));
+
+    private final TransferRepository repo = mock(TransferRepository.class);
+    private final SavingsClient savings = mock(SavingsClient.class);
+    private final TransferService svc = new TransferService(repo, savings);
+
+    private static TransferRequest request(UUID from) {
+        return new TransferRequest(from, "alice", new BigDecimal("100"), new BigDecimal("0.05"), 30);
+    }
+
+    private static Transfer existing(UUID from, String key) {
+        Transfer t = Transfer.of("alice", from, new BigDecimal("100.00"), new BigDecimal("0.05"), 30, key,
+                "alice-sub", "read,user", TransferService.fingerprint(request(from)));
+        ReflectionTestUtils.setField(t, "id", UUID.randomUUID());
+        return t;
+    }
+
     @Test
-    void transfer_shouldWithdrawThenCreate_andReturnId_withIdempotencyKey() {
-        // Mocks
-        SavingsClient savings = mock(SavingsClient.class);
-        TimeDepositService tdService = mock(TimeDepositService.class);
+    void submit_shouldSavePendingTransfer_asSubmitter() {
+        UUID from = UUID.randomUUID();
+        when(savings.getAccount(from)).thenReturn(Map.of("id", from.toString(), "owner", "alice"));
+        when(repo.findByRequestedByAndIdempotencyKey("alice-sub", "KEY")).thenReturn(Optional.empty());
+        when(repo.save(any(Transfer.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        Transfer t = svc.submit(request(from), "KEY", ALICE);
+
+        assertThat(t.getStatus()).isEqualTo(Transfer.Status.PENDING);
+        assertThat(t.getFromAccountId()).isEqualTo(from);
+        assertThat(t.getPrincipal()).isEqualByComparingTo("100.00");
+        assertThat(t.getPrincipal().scale()).isEqualTo(2);
+        assertThat(t.getIdempotencyKey()).isEqualTo("KEY");
+        assertThat(t.getRequestedBy()).isEqualTo("alice-sub");
+        assertThat(t.getRequestedRoles()).isEqualTo("read,user");
+        verify(repo).save(t);
+        verify(savings, never()).withdraw(any(UUID.class), any(BigDecimal.class), any());
+    }
+
+    @Test
+    void submit_shouldRejectAccountOwnedBySomeoneElse() {
+        UUID from = UUID.randomUUID();
+        when(savings.getAccount(from)).thenReturn(Map.of("id", from.toString(), "owner", "bob"));
 
-        // System under test
-        TransferService svc = new TransferService(savings, tdService);
+        assertThatThrownBy(() -> svc.submit(request(from), null, ALICE))
+                .isInstanceOf(AccessDeniedException.class);
+        verify(repo, never()).save(any());
+    }
 
-        // 入力はモック化（record のシグネチャ変更に強くするため）
-        TransferRequest req = mock(TransferRequest.class);
+    @Test
+    void submit_shouldReturnExistingTransfer_forSameSubjectAndKey() {
         UUID from = UUID.randomUUID();
-        when(req.owner()).thenReturn("alice");
-        when(req.principal()).thenReturn(new BigDecimal("100.00"));
-        when(req.annualRate()).thenReturn(new BigDecimal("0.05"));
-        when(req.termDays()).thenReturn(30);
-        when(req.fromAccountId()).thenReturn(from);
-
-        // create の戻り値（ID は戻り値検証に使う）
-        TimeDeposit td = new TimeDeposit();
-        UUID tdId = UUID.randomUUID();
-        ReflectionTestUtils.setField(td, "id", tdId);
-        ReflectionTestUtils.setField(td, "owner", "alice");
-        ReflectionTestUtils.setField(td, "principal", new BigDecimal("100.00"));
-        ReflectionTestUtils.setField(td, "annualRate", new BigDecimal("0.05"));
-        ReflectionTestUtils.setField(td, "termDays", 30);
-        when(tdService.create(any(), any(), any(), anyInt())).thenReturn(td);
-
-        // 実行
-        UUID result = svc.transfer(req, "IDEMPOTENT");
-
-        // 検証
-        assertThat(result).isEqualTo(tdId);
-        verify(savings).withdraw(eq(from), eq(new BigDecimal("100.00")), eq("IDEMPOTENT:WD"));
-        verify(savings, never()).deposit(any(UUID.class), any(BigDecimal.class));
-        verify(savings, never()).deposit(any(UUID.class), any(BigDecimal.class), anyString());
+        Transfer existing = existing(from, "KEY");
+        existing.setStatus(Transfer.Status.COMPLETED);
+        when(repo.findByRequestedByAndIdempotencyKey("alice-sub", "KEY")).thenReturn(Optional.of(existing));
+
+        // 金額の表記が違うだけなら同じ内容
+        TransferRequest same = new TransferRequest(from, "alice", new BigDecimal("100.00"), new BigDecimal("0.050"), 30);
+        assertThat(svc.submit(same, "KEY", ALICE)).isSameAs(existing);
+        verify(repo, never()).save(any());
+        verifyNoInteractions(savings);
     }
 
-    /**
-     * 異常系：
-     * - create が失敗した場合、補償として同額の deposit(:CP) が呼ばれ、
-     *   その後に例外が再送出される。
-     */
     @Test
-    void transfer_shouldCompensateDeposit_whenCreateFails_withIdempotencyKey() {
-        SavingsClient savings = mock(SavingsClient.class);
-        TimeDepositService tdService = mock(TimeDepositService.class);
-        TransferService svc = new TransferService(savings, tdService);
+    void submit_shouldReject_whenKeyIsReusedForDifferentRequest() {
+        UUID from = UUID.randomUUID();
+        when(repo.findByRequestedByAndIdempotencyKey("alice-sub", "KEY")).thenReturn(Optional.of(existing(from, "KEY")));
+
+        TransferRequest other = new TransferRequest(from, "alice", new BigDecimal("999"), new BigDecimal("0.05"), 30);
+        assertThatThrownBy(() -> svc.submit(other, "KEY", ALICE))
+                .isInstanceOf(ResponseStatusException.class)
+                .extracting(e -> ((ResponseStatusException) e).getStatusCode())
+                .isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+        verify(repo, never()).save(any());
+    }
 
-        TransferRequest req = mock(TransferRequest.class);
+    @Test
+    void submit_shouldScopeKeyPerSubject() {
         UUID from = UUID.randomUUID();
-        when(req.owner()).thenReturn("alice");
-        when(req.principal()).thenReturn(new BigDecimal("50.00"));
-        when(req.annualRate()).thenReturn(new BigDecimal("0.02"));
-        when(req.termDays()).thenReturn(10);
-        when(req.fromAccountId()).thenReturn(from);
+        Authentication bob = UsernamePasswordAuthenticationToken.authenticated("bob-sub", null,
+                List.of(new SimpleGrantedAuthority("ROLE_user")));
+        when(savings.getAccount(from)).thenReturn(Map.of("owner", "alice"));
+        when(repo.findByRequestedByAndIdempotencyKey("bob-sub", "KEY")).thenReturn(Optional.empty());
+        when(repo.save(any(Transfer.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        Transfer t = svc.submit(request(from), "KEY", bob);
 
-        when(tdService.create(any(), any(), any(), anyInt()))
-                .thenThrow(new RuntimeException("create failed"));
+        assertThat(t.getRequestedBy()).isEqualTo("bob-sub");
+        verify(repo, never()).findByRequestedByAndIdempotencyKey(eq("alice-sub"), any());
+    }
 
-        assertThatThrownBy(() -> svc.transfer(req, "KEY"))
-                .isInstanceOf(RuntimeException.class)
-                .hasMessageContaining("create failed");
+    @Test
+    void submit_shouldReturnWinner_whenConcurrentSubmitWithSameKeyWins() {
+        UUID from = UUID.randomUUID();
+        Transfer winner = existing(from, "KEY");
+        when(savings.getAccount(from)).thenReturn(Map.of("owner", "alice"));
+        when(repo.findByRequestedByAndIdempotencyKey("alice-sub", "KEY")).thenReturn(Optional.empty(), Optional.of(winner));
+        when(repo.save(any(Transfer.class))).thenThrow(new DataIntegrityViolationException("duplicate key"));
 
-        verify(savings).withdraw(eq(from), eq(new BigDecimal("50.00")), eq("KEY:WD"));
-        verify(savings).deposit(eq(from), eq(new BigDecimal("50.00")), eq("KEY:CP"));
+        assertThat(svc.submit(request(from), "KEY", ALICE)).isSameAs(winner);
     }
 
-    /**
-     * 互換系（Idempotency-Key なし）：
-     * - withdraw は 2引数版が呼ばれる（= ヘッダなし）
-     * - 成功時は deposit は呼ばれない
-     */
     @Test
-    void transfer_shouldUseLegacyTwoArg_whenNoIdempotencyKey() {
-        SavingsClient savings = mock(SavingsClient.class);
-        TimeDepositService tdService = mock(TimeDepositService.class);
-        TransferService svc = new TransferService(savings, tdService);
+    void get_shouldHideOtherSubjectsTransfers() {
+        Transfer t = existing(UUID.randomUUID(), null);
+        when(repo.findById(t.getId())).thenReturn(Optional.of(t));
 
-        TransferRequest req = mock(TransferRequest.class);
-        UUID from = UUID.randomUUID();
-        when(req.owner()).thenReturn("bob");
-        when(req.principal()).thenReturn(new BigDecimal("200.00"));
-        when(req.annualRate()).thenReturn(new BigDecimal("0.03"));
-        when(req.termDays()).thenReturn(60);
-        when(req.fromAccountId()).thenReturn(from);
-
-        TimeDeposit td = new TimeDeposit();
-        ReflectionTestUtils.setField(td, "id", UUID.randomUUID());
-        ReflectionTestUtils.setField(td, "owner", "bob");
-        ReflectionTestUtils.setField(td, "principal", new BigDecimal("200.00"));
-        ReflectionTestUtils.setField(td, "annualRate", new BigDecimal("0.03"));
-        ReflectionTestUtils.setField(td, "termDays", 60);
-        when(tdService.create(any(), any(), any(), anyInt())).thenReturn(td);
-
-        UUID id = svc.transfer(req, null);
-        assertThat(id).isNotNull();
-
-        // 2引数版が呼ばれ、3引数版は呼ばれない
-        verify(savings).withdraw(eq(from), eq(new BigDecimal("200.00"))); // 2-arg
-        verify(savings, never()).withdraw(any(UUID.class), any(BigDecimal.class), anyString());
-
-        verify(savings, never()).deposit(any(UUID.class), any(BigDecimal.class));
-        verify(savings, never()).deposit(any(UUID.class), any(BigDecimal.class), anyString());
+        assertThat(svc.get(t.getId(), "alice-sub")).isSameAs(t);
+        assertThatThrownBy(() -> svc.get(t.getId(), "bob-sub")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void submit_shouldRejectInvalidRequest() {
+        assertThatThrownBy(() -> svc.submit(
+                new TransferRequest(null, "alice", new BigDecimal("100"), new BigDecimal("0.05"), 30), null, ALICE))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> svc.submit(
+                new TransferRequest(UUID.randomUUID(), "alice", BigDecimal.ZERO, new BigDecimal("0.05"), 30), null, ALICE))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(repo, savings);
     }
 }